@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.audioengines.javasound;
+
+/**
+ * The JSGainTable Class is a lookup table over a distance/gain
+ * attenuation array pair (as given by PointSound distance gain).
+ * The range of distances is split in equal cells, each storing the
+ * attenuation segment its start falls in, so finding the segment for a
+ * distance takes a division and, at most, a few steps instead of a
+ * binary search.  The interpolated factor is the same as the one
+ * returned by JSPositionalSample.findFactor().
+ */
+
+class JSGainTable {
+
+    /**
+     * Number of cells the distance range is split into.
+     */
+    static final int NUM_CELLS = 256;
+
+    private double distances[];
+    private float  factors[];
+    private int    cellSegments[] = null;
+    private double firstDistance;
+    private double cellsPerDistance;
+
+    JSGainTable(double distances[], float factors[]) {
+        this.distances = distances;
+        this.factors = factors;
+        if (distances == null || factors == null || distances.length < 2)
+            return;
+
+        int largestIndex = distances.length - 1;
+        firstDistance = distances[0];
+        double range = distances[largestIndex] - firstDistance;
+        if (range <= 0.0)
+            return;
+        cellsPerDistance = NUM_CELLS / range;
+        cellSegments = new int[NUM_CELLS];
+        int segment = 0;
+        for (int i = 0; i < NUM_CELLS; i++) {
+            double cellStart = firstDistance + i / cellsPerDistance;
+            while (segment < largestIndex - 1 &&
+                   distances[segment + 1] <= cellStart)
+                segment++;
+            cellSegments[i] = segment;
+        }
+    }
+
+    /**
+     * Returns true if this table was built from the given arrays.
+     */
+    boolean isBuiltFrom(double distances[], float factors[]) {
+        return (this.distances == distances && this.factors == factors);
+    }
+
+    /**
+     * Returns the interpolated factor for the given distance, or -1.0
+     * if the arrays don't define a factor.
+     */
+    float lookup(double distance) {
+        if (distances == null || factors == null || distances.length < 2)
+            return -1.0f;
+        int largestIndex = distances.length - 1;
+        if (distance >= distances[largestIndex])
+            return factors[largestIndex];
+        else if (distance <= distances[0] || cellSegments == null)
+            return factors[0];
+
+        int cell = (int)((distance - firstDistance) * cellsPerDistance);
+        if (cell >= NUM_CELLS)
+            cell = NUM_CELLS - 1;
+        int lowIndex = cellSegments[cell];
+        while (lowIndex < largestIndex - 1 && distances[lowIndex + 1] < distance)
+            lowIndex++;
+        int highIndex = lowIndex + 1;
+        if (distances[highIndex] == distance)
+            return factors[highIndex];
+
+        return ((float)(((distance - distances[lowIndex])/
+                 (distances[highIndex] - distances[lowIndex]) ) ) *
+                (factors[highIndex] - factors[lowIndex]) ) +
+            factors[lowIndex];
+    }
+}
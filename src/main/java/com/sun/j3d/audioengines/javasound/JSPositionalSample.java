@@ -154,6 +154,11 @@ class JSPositionalSample extends JSSample
     boolean   filterFlag = false;
     float     filterFreq = -1.0f;
 
+    /*
+     * Lookup table for the distance gain arrays
+     */
+    JSGainTable distanceGainTable = null;
+
     /*
      * Construct a new audio device Sample object
      */  
@@ -978,8 +983,14 @@ class JSPositionalSample extends JSSample
      */
     float calculateDistanceAttenuation(float distance) {
         float  factor = 1.0f;
-        factor = findFactor((double)distance, this.attenuationDistance,
-                           this.attenuationGain);
+        // rebuild the lookup table when the distance gain arrays change
+        if (distanceGainTable == null ||
+            !distanceGainTable.isBuiltFrom(this.attenuationDistance,
+                                           this.attenuationGain)) {
+            distanceGainTable = new JSGainTable(this.attenuationDistance,
+                                                this.attenuationGain);
+        }
+        factor = distanceGainTable.lookup((double)distance);
         if (factor >= 0.0)
             return (factor);
         else
@@ -182,7 +182,7 @@ class JSSample extends com.sun.j3d.audioengines.Sample
     }
 
     // @return error true if error occurred
-    boolean load(MediaContainer soundData) {
+    boolean load(MediaContainer soundData, JSStreamMixer streamMixer) {
         /**
          * Get the AudioInputStream first.
          * MediaContiner passed to method assumed to be a clone of the
@@ -261,7 +261,7 @@ class JSSample extends com.sun.j3d.audioengines.Sample
         else if (dataType == STREAMING_AUDIO_DATA) {
             if (debugFlag) 
                 debugPrintln("JSSample.load dataType = STREAMING ");
-            channel = new JSStream();
+            channel = new JSStream(streamMixer);
             if (debugFlag) 
                 debugPrintln(" calls JSStream.initAudioInputStream");
             if (url != null)
@@ -275,14 +275,20 @@ class JSSample extends com.sun.j3d.audioengines.Sample
                 return true;
             }
             if (debugFlag) 
-                debugPrintln(" calls JSStream.initDataLine");
-            dataLine = channel.initDataLine(ais);
+                debugPrintln(" calls JSStream.initStream");
+            // streams are pulled by the stream mixer, no line of their own
+            if (!((JSStream)channel).initStream(ais)) {
+                if (debugFlag)
+                    debugPrint("JSSample.load initStream failed ");
+                channel = null;
+                return true;
+            }
         }
         else {
             if (debugFlag)
                 debugPrintln("JSSample.load doesn't support MIDI yet"); 
         } 
-        if (dataLine == null) {
+        if (dataLine == null && dataType != STREAMING_AUDIO_DATA) {
             if (debugFlag)
                 debugPrint("JSSample.load initDataLine failed ");
             channel = null;
@@ -39,24 +39,439 @@
 
 package com.sun.j3d.audioengines.javasound;
 
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.locks.LockSupport;
+import javax.sound.sampled.*;
+
 /**
- * The JSStream class defines audio output methods that call the JavaSound
- * API methods for streams.
+ * The JSStream class defines audio output methods for streaming
+ * (non-cached) sounds.  A stream does not open a line of its own: while
+ * it plays, a reader thread decodes its data into a small ring buffer,
+ * which is pulled by the engine's JSStreamMixer, which mixes all the
+ * playing streams into one output.  The mixer thread only copies from
+ * the ring buffer, it never blocks on reading or reopening the data.
+ * The stream is resampled to the mixer rate on the fly, so sample rate
+ * scaling (Doppler) is applied while mixing.
  *
- * <p>
- * NOTE: This class is not yet implemented.
+ * Restarting and looping a stream reopen its data, which is only
+ * possible for sounds given by URL.  A sound given as an InputStream
+ * plays once: its loop count is ignored, and it can't be restarted.
  */
 
 class JSStream extends JSChannel {
-    private static boolean warningReported = false;
-
-    JSStream() {
-	// Report a "not implemented" warning message
-	if (!warningReported) {
-	    System.err.println("***");
-	    System.err.println("*** WARNING: JavaSoundMixer: Streaming (uncached) audio not implemented");
-	    System.err.println("***");
-	    warningReported = true;
-	}
+
+    /**
+     * Size of the ring buffer in frames, must be a power of two.
+     */
+    static final int RING_FRAMES = 16384;
+    static final int RING_MASK = RING_FRAMES - 1;
+
+    // Maximum playback rate, in Hz, after rate scaling
+    static final float MAX_RATE = 48000.0f;
+
+    // Number of frames decoded per read
+    static final int READ_FRAMES = 1024;
+
+    JSStreamMixer mixer = null;
+
+    private int   channels = 0;
+
+    // true once the stream given to initStream has been handed to a reader
+    private boolean aisUsed = false;
+
+    // reader of the current playback, null when not playing
+    private volatile Reader reader = null;
+
+    // playback state, set by the rendering threads
+    private volatile boolean playing = false;
+    private volatile boolean paused = false;
+    private volatile float   leftGain = 0.0f;
+    private volatile float   rightGain = 0.0f;
+    private volatile float   rateScale = 1.0f;
+
+    // gains actually applied, ramped toward leftGain/rightGain
+    private float   currentLeftGain = 0.0f;
+    private float   currentRightGain = 0.0f;
+
+    JSStream(JSStreamMixer mixer) {
+        this.mixer = mixer;
+    }
+
+    /**
+     * Prepares the audio input stream for incremental decoding.
+     * The data is converted to 16 bit signed little endian PCM.
+     * @return true if the stream can be played
+     */
+    boolean initStream(AudioInputStream ais) {
+        if (debugFlag)
+            debugPrintln("JSStream: initStream(" + ais + ")");
+        ais = openDecoder(ais);
+        if (ais == null)
+            return false;
+        this.ais = ais;
+        audioFormat = ais.getFormat();
+        channels = audioFormat.getChannels();
+        aisUsed = false;
+        return true;
+    }
+
+    private AudioInputStream openDecoder(AudioInputStream ais) {
+        AudioFormat format = ais.getFormat();
+        int numChannels = format.getChannels();
+        if (numChannels < 1 || numChannels > 2) {
+            if (debugFlag)
+                debugPrintln("JSStream: " + numChannels +
+                             " channels not supported");
+            return null;
+        }
+        if (format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED &&
+            format.getSampleSizeInBits() == 16 && !format.isBigEndian())
+            return ais;
+
+        AudioFormat target = new AudioFormat(
+                AudioFormat.Encoding.PCM_SIGNED,
+                format.getSampleRate(), 16, numChannels, 2 * numChannels,
+                format.getSampleRate(), false);
+        try {
+            return AudioSystem.getAudioInputStream(target, ais);
+        }
+        catch (Exception e) {
+            if (debugFlag) {
+                debugPrint("JSStream: Internal Error openDecoder ");
+                debugPrintln("conversion to PCM failed");
+                e.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reopens the data from the start, which is only possible for
+     * sounds given by URL.  Called by the reader thread.
+     * @return the new stream, or null if it can't be reopened
+     */
+    private AudioInputStream reopen(URL url) {
+        if (url == null)
+            return null;
+        AudioInputStream newAis;
+        try {
+            newAis = openDecoder(AudioSystem.getAudioInputStream(url.openStream()));
+        }
+        catch (Exception e) {
+            if (debugFlag) {
+                debugPrint("JSStream: Internal Error reopen ");
+                debugPrintln("reopening stream failed");
+            }
+            return null;
+        }
+        if (newAis != null && newAis.getFormat().getChannels() != channels) {
+            close(newAis);
+            return null;
+        }
+        return newAis;
+    }
+
+    private static void close(AudioInputStream in) {
+        try {
+            in.close();
+        }
+        catch (IOException e) {
+        }
+    }
+
+    /**
+     * Decodes the data of one playback into its ring buffer.  The reader
+     * thread is the only writer of writeFrame and the mixer thread the
+     * only writer of readFrame; the reader waits while the ring is full
+     * and the mixer wakes it up after each block it consumes.
+     */
+    private final class Reader implements Runnable {
+
+        // decoded stereo frames; positions are absolute frame counts
+        final float ring[] = new float[2 * RING_FRAMES];
+        volatile long readFrame = 0;
+        volatile long writeFrame = 0;
+        volatile boolean endOfData = false;
+        volatile boolean cancelled = false;
+
+        // fractional read position, only used by the mixer thread
+        double readFraction = 0.0;
+
+        private AudioInputStream in;
+        private final URL url;
+        private int loopsLeft;
+        final Thread thread;
+
+        Reader(AudioInputStream in, URL url, int loopCount) {
+            this.in = in;
+            this.url = url;
+            // an InputStream can't be reopened, so it plays once
+            loopsLeft = (url != null) ? loopCount : 0;
+            thread = new Thread(this, "J3D-JavaSoundStreamReader");
+            thread.setDaemon(true);
+        }
+
+        void cancel() {
+            cancelled = true;
+            LockSupport.unpark(thread);
+        }
+
+        public void run() {
+            try {
+                if (in == null)
+                    in = reopen(url);
+                if (in != null)
+                    decode();
+            }
+            finally {
+                if (in != null)
+                    close(in);
+                if (!cancelled) {
+                    // one silent frame so the last frame can be
+                    // interpolated; decode() always leaves a free slot
+                    int w = (int)(writeFrame & RING_MASK) << 1;
+                    ring[w] = ring[w + 1] = 0.0f;
+                    writeFrame = writeFrame + 1;
+                }
+                endOfData = true;
+            }
+        }
+
+        private void decode() {
+            int frameSize = 2 * channels;
+            byte readBuffer[] = new byte[frameSize * READ_FRAMES];
+            long w = writeFrame;
+            while (!cancelled) {
+                int free = RING_FRAMES - 1 - (int)(w - readFrame);
+                if (free < READ_FRAMES) {
+                    LockSupport.parkNanos(this, 5000000L);
+                    continue;
+                }
+                int numBytes;
+                try {
+                    numBytes = in.read(readBuffer, 0, READ_FRAMES * frameSize);
+                }
+                catch (IOException e) {
+                    if (debugFlag)
+                        debugPrintln("JSStream: read failed " + e);
+                    numBytes = -1;
+                }
+                if (numBytes < 0) {
+                    if (loopsLeft != 0 && !cancelled) {
+                        AudioInputStream next = reopen(url);
+                        if (next != null) {
+                            close(in);
+                            in = next;
+                            if (loopsLeft > 0)
+                                loopsLeft--;
+                            continue;
+                        }
+                    }
+                    return;
+                }
+                int numFrames = numBytes / frameSize;
+                int b = 0;
+                for (int i = 0; i < numFrames; i++) {
+                    int   r = (int)(w & RING_MASK) << 1;
+                    float left = ((readBuffer[b] & 0xff) |
+                                  (readBuffer[b + 1] << 8)) * (1.0f / 32768.0f);
+                    float right = left;
+                    if (channels == 2) {
+                        right = ((readBuffer[b + 2] & 0xff) |
+                                 (readBuffer[b + 3] << 8)) * (1.0f / 32768.0f);
+                    }
+                    ring[r] = left;
+                    ring[r + 1] = right;
+                    b += frameSize;
+                    w++;
+                }
+                // publish the frames to the mixer
+                writeFrame = w;
+            }
+        }
+    }
+
+    /**
+     * Adds the next frames of this stream, scaled by the left and right
+     * gains, to the interleaved stereo mix buffer.  Called by the mixer
+     * thread, which only copies already decoded frames: if the reader
+     * falls behind, the rest of the block is left silent.
+     * @return false once all the data has been played
+     */
+    boolean mix(float mix[], int frames) {
+        Reader r = reader;
+        if (!playing || r == null) {
+            synchronized (this) {
+                // the stream may have been started meanwhile
+                if (!playing || reader == null)
+                    return false;
+            }
+            return true;
+        }
+        double step = (double)audioFormat.getSampleRate() * rateScale /
+            JSStreamMixer.OUTPUT_RATE;
+        if (paused || step <= 0.0)
+            return true;
+
+        float targetLeft = leftGain;
+        float targetRight = rightGain;
+
+        // ramp the gains over the block to avoid clicks
+        float gl = currentLeftGain;
+        float gr = currentRightGain;
+        float dgl = (targetLeft - gl) / frames;
+        float dgr = (targetRight - gr) / frames;
+
+        // endOfData is read first: once it is set, writeFrame is final
+        boolean end = r.endOfData;
+        long   available = r.writeFrame;
+        float  ring[] = r.ring;
+        long   frame = r.readFrame;
+        double fraction = r.readFraction;
+        int    f;
+        for (f = 0; f < frames; f++) {
+            if (available - frame < 2)
+                break;
+            int   a = (int)(frame & RING_MASK) << 1;
+            int   b = (int)((frame + 1) & RING_MASK) << 1;
+            float t = (float)fraction;
+            float left = ring[a] + (ring[b] - ring[a]) * t;
+            float right = ring[a + 1] + (ring[b + 1] - ring[a + 1]) * t;
+            mix[2 * f] += left * gl;
+            mix[2 * f + 1] += right * gr;
+            gl += dgl;
+            gr += dgr;
+
+            fraction += step;
+            int advance = (int)fraction;
+            frame += advance;
+            fraction -= advance;
+        }
+        r.readFrame = Math.min(frame, available);
+        r.readFraction = fraction;
+        LockSupport.unpark(r.thread);
+        currentLeftGain = targetLeft;
+        currentRightGain = targetRight;
+
+        if (f < frames && end) {
+            synchronized (this) {
+                // the stream may have been restarted meanwhile
+                if (reader == r) {
+                    reader = null;
+                    playing = false;
+                    startTime = 0;
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts the stream with the same gain on both sides.
+     */
+    boolean  startSample(int loopCount, float gain, int delay) {
+        return startSamples(loopCount, gain, gain, delay, delay);
+    }
+
+    /**
+     * Starts the stream with separate left and right gains, from the
+     * beginning of the data.  Delays are not applied by the stream
+     * mixer.  Only sounds given by URL can be looped or restarted.
+     */
+    boolean  startSamples(int loopCount, float leftGain, float rightGain,
+                          int leftDelay, int rightDelay) {
+        if (debugFlag)
+            debugPrintln("JSStream: startSamples gains " + leftGain +
+                         ", " + rightGain);
+        if (ais == null || mixer == null)
+            return false;
+        Reader r;
+        synchronized (this) {
+            if (aisUsed && url == null) {
+                if (debugFlag)
+                    debugPrintln("JSStream: can't restart stream");
+                return false;
+            }
+            if (reader != null)
+                reader.cancel();
+            // the reader reopens the data itself for a restart
+            r = new Reader(aisUsed ? null : ais, url, loopCount);
+            aisUsed = true;
+            this.leftGain = leftGain;
+            this.rightGain = rightGain;
+            currentLeftGain = leftGain;
+            currentRightGain = rightGain;
+            paused = false;
+            reader = r;
+            playing = true;
+        }
+        r.thread.start();
+        startTime = System.currentTimeMillis();
+        if (!mixer.addStream(this)) {
+            stopSamples();
+            return false;
+        }
+        return true;
+    }
+
+    int   stopSample() {
+        return stopSamples();
+    }
+
+    int   stopSamples() {
+        if (debugFlag)
+            debugPrintln("JSStream: stopSamples");
+        synchronized (this) {
+            playing = false;
+            if (reader != null) {
+                reader.cancel();
+                reader = null;
+            }
+        }
+        if (mixer != null)
+            mixer.removeStream(this);
+        startTime = 0;
+        return 0;
+    }
+
+    /**
+     * Sets the left and right gains applied while mixing.
+     */
+    void  setStereoGain(float leftGain, float rightGain) {
+        this.leftGain = leftGain;
+        this.rightGain = rightGain;
+    }
+
+    void  setSampleGain(float gain) {
+        setStereoGain(gain, gain);
+    }
+
+    void  scaleSampleRate(float scaleFactor) {
+        if (audioFormat == null)
+            return;
+        float rate = audioFormat.getSampleRate();
+        if (rate * scaleFactor > MAX_RATE)  // clamp to 48K max
+            scaleFactor = MAX_RATE / rate;
+        rateScale = scaleFactor;
+    }
+
+    int  pauseSamples() {
+        paused = true;
+        return 0;
+    }
+
+    int  pauseSample() {
+        return pauseSamples();
+    }
+
+    int  unpauseSamples() {
+        paused = false;
+        return 0;
+    }
+
+    int  unpauseSample() {
+        return unpauseSamples();
     }
 }
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.audioengines.javasound;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import javax.sound.sampled.*;
+
+/**
+ * The JSStreamMixer Class mixes all the playing streaming (non-cached)
+ * sounds into a single output.  It runs its own thread which pulls
+ * decoded data from each JSStream, scales it by the left and right gains
+ * computed for the sound, sums everything in one float buffer and writes
+ * the result as 16 bit stereo PCM either to a single SourceDataLine or,
+ * when the j3d.audio.streamingOutputFile property names a file, to a WAVE
+ * file (useful when no audio hardware is available).
+ *
+ * The output is opened and the thread started when the first stream is
+ * started.
+ */
+
+class JSStreamMixer implements Runnable {
+
+    /**
+     * Output sample rate in Hz.
+     */
+    static final float OUTPUT_RATE = 44100.0f;
+
+    /**
+     * Number of stereo frames mixed per pass.
+     */
+    static final int FRAMES_PER_BLOCK = 512;
+
+    // size of the WAVE file header written by the file sink
+    private static final int WAVE_HEADER_SIZE = 44;
+
+    static final boolean debugFlag = false;
+
+    static void debugPrintln(String message) {
+        if (debugFlag)
+            System.out.println(message);
+    }
+
+    // the streams currently playing, and a snapshot used while mixing
+    private ArrayList streams = new ArrayList();
+    private JSStream  activeStreams[] = new JSStream[0];
+    private boolean   streamsChanged = false;
+
+    private float mixBuffer[] = new float[2 * FRAMES_PER_BLOCK];
+    private byte  outBuffer[] = new byte[4 * FRAMES_PER_BLOCK];
+
+    private volatile float   masterGain = 1.0f;
+    private volatile boolean paused = false;
+    private volatile boolean running = false;
+
+    private Thread           mixThread = null;
+    private SourceDataLine   line = null;
+    private RandomAccessFile file = null;
+    private long             fileDataLength = 0;
+    private boolean          outputFailed = false;
+
+    JSStreamMixer() {
+    }
+
+    /**
+     * Returns the format of the mixed output.
+     */
+    static AudioFormat getOutputFormat() {
+        return new AudioFormat(OUTPUT_RATE, 16, 2, true, false);
+    }
+
+    /**
+     * Adds a stream to the list of playing streams, opening the output
+     * the first time.
+     * @return false if the output could not be opened
+     */
+    synchronized boolean addStream(JSStream stream) {
+        if (!running && !start())
+            return false;
+        if (!streams.contains(stream)) {
+            streams.add(stream);
+            streamsChanged = true;
+        }
+        return true;
+    }
+
+    /**
+     * Removes a stream from the list of playing streams.
+     */
+    synchronized void removeStream(JSStream stream) {
+        if (streams.remove(stream))
+            streamsChanged = true;
+    }
+
+    void setMasterGain(float gain) {
+        masterGain = gain;
+    }
+
+    void setPaused(boolean flag) {
+        paused = flag;
+    }
+
+    /**
+     * Stops the mixing thread and closes the output.
+     */
+    void close() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            t = mixThread;
+            mixThread = null;
+            streams.clear();
+            streamsChanged = true;
+        }
+        if (t != null) {
+            try {
+                t.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeOutput();
+    }
+
+    private boolean start() {
+        if (outputFailed)
+            return false;
+        if (!openOutput()) {
+            outputFailed = true;
+            return false;
+        }
+        running = true;
+        mixThread = new Thread(this, "J3D-JavaSoundStreamMixer");
+        mixThread.setDaemon(true);
+        mixThread.setPriority(Thread.MAX_PRIORITY);
+        mixThread.start();
+        return true;
+    }
+
+    private boolean openOutput() {
+        AudioFormat format = getOutputFormat();
+        String fileName = (String)
+            java.security.AccessController.doPrivileged(
+                new java.security.PrivilegedAction() {
+                    public Object run() {
+                        return System.getProperty(
+                                "j3d.audio.streamingOutputFile");
+                    }
+                });
+        try {
+            if (fileName != null) {
+                file = new RandomAccessFile(new File(fileName), "rw");
+                file.setLength(0);
+                fileDataLength = 0;
+                writeWaveHeader();
+                debugPrintln("JSStreamMixer: writing to " + fileName);
+            }
+            else {
+                DataLine.Info info = new DataLine.Info(SourceDataLine.class,
+                        format);
+                line = (SourceDataLine)AudioSystem.getLine(info);
+                // a few blocks of latency
+                line.open(format, 4 * outBuffer.length);
+                line.start();
+                debugPrintln("JSStreamMixer: opened " + line);
+            }
+        }
+        catch (Exception e) {
+            if (debugFlag)
+                e.printStackTrace();
+            closeOutput();
+            return false;
+        }
+        return true;
+    }
+
+    private void closeOutput() {
+        if (line != null) {
+            line.drain();
+            line.close();
+            line = null;
+        }
+        if (file != null) {
+            try {
+                writeWaveHeader();
+                file.close();
+            }
+            catch (IOException e) {
+                if (debugFlag)
+                    e.printStackTrace();
+            }
+            file = null;
+        }
+    }
+
+    // (Re)writes the header with the current data length
+    private void writeWaveHeader() throws IOException {
+        byte header[] = new byte[WAVE_HEADER_SIZE];
+        int  byteRate = (int)OUTPUT_RATE * 4;
+        putString(header, 0, "RIFF");
+        putInt(header, 4, (int)(fileDataLength + WAVE_HEADER_SIZE - 8));
+        putString(header, 8, "WAVE");
+        putString(header, 12, "fmt ");
+        putInt(header, 16, 16);           // fmt chunk size
+        putShort(header, 20, 1);          // PCM
+        putShort(header, 22, 2);          // channels
+        putInt(header, 24, (int)OUTPUT_RATE);
+        putInt(header, 28, byteRate);
+        putShort(header, 32, 4);          // block align
+        putShort(header, 34, 16);         // bits per sample
+        putString(header, 36, "data");
+        putInt(header, 40, (int)fileDataLength);
+        file.seek(0);
+        file.write(header);
+        file.seek(WAVE_HEADER_SIZE + fileDataLength);
+    }
+
+    private static void putString(byte b[], int offset, String s) {
+        for (int i = 0; i < s.length(); i++)
+            b[offset + i] = (byte)s.charAt(i);
+    }
+
+    private static void putInt(byte b[], int offset, int v) {
+        b[offset]     = (byte)v;
+        b[offset + 1] = (byte)(v >> 8);
+        b[offset + 2] = (byte)(v >> 16);
+        b[offset + 3] = (byte)(v >> 24);
+    }
+
+    private static void putShort(byte b[], int offset, int v) {
+        b[offset]     = (byte)v;
+        b[offset + 1] = (byte)(v >> 8);
+    }
+
+    /**
+     * Mixing loop.  A SourceDataLine paces the loop with its blocking
+     * write, the file sink is paced to real time.
+     */
+    public void run() {
+        long startTime = System.nanoTime();
+        long framesWritten = 0;
+
+        while (running) {
+            if (paused) {
+                try {
+                    Thread.sleep(10);
+                }
+                catch (InterruptedException e) {
+                }
+                startTime = System.nanoTime();
+                framesWritten = 0;
+                continue;
+            }
+            mixBlock(FRAMES_PER_BLOCK);
+            try {
+                if (line != null) {
+                    line.write(outBuffer, 0, outBuffer.length);
+                }
+                else if (file != null) {
+                    file.write(outBuffer, 0, outBuffer.length);
+                    fileDataLength += outBuffer.length;
+                    framesWritten += FRAMES_PER_BLOCK;
+                    long ahead = (long)(framesWritten * 1000.0 / OUTPUT_RATE) -
+                        (System.nanoTime() - startTime) / 1000000L;
+                    if (ahead > 0)
+                        Thread.sleep(ahead);
+                }
+            }
+            catch (InterruptedException e) {
+            }
+            catch (IOException e) {
+                if (debugFlag)
+                    e.printStackTrace();
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Mixes the given number of frames of all the playing streams into
+     * outBuffer as 16 bit little endian stereo PCM.
+     */
+    void mixBlock(int frames) {
+        JSStream list[];
+        int i;
+
+        synchronized (this) {
+            if (streamsChanged) {
+                activeStreams = new JSStream[streams.size()];
+                streams.toArray(activeStreams);
+                streamsChanged = false;
+            }
+            list = activeStreams;
+        }
+
+        float mix[] = mixBuffer;
+        int   numSamples = 2 * frames;
+        for (i = 0; i < numSamples; i++)
+            mix[i] = 0.0f;
+
+        for (i = 0; i < list.length; i++) {
+            if (!list[i].mix(mix, frames)) {
+                // end of the stream reached
+                removeStream(list[i]);
+            }
+        }
+
+        float gain = masterGain * 32767.0f;
+        byte  out[] = outBuffer;
+        for (i = 0; i < numSamples; i++) {
+            float v = mix[i] * gain;
+            int   s;
+            if (v >= 32767.0f)
+                s = 32767;
+            else if (v <= -32768.0f)
+                s = -32768;
+            else
+                s = (int)v;
+            out[2 * i]     = (byte)s;
+            out[2 * i + 1] = (byte)(s >> 8);
+        }
+    }
+}
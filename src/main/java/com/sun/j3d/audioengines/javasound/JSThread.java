@@ -255,10 +255,24 @@ runMonitor(RUN, 0, null);
 
     void setSampleRate(JSSample sample, JSAuralParameters attribs) {
 // TODO:
+        // streams are resampled by the stream mixer
+        if (sample.channel instanceof JSStream)
+            sample.channel.scaleSampleRate(sample.rateRatio);
     }
 
     // gain set at start sample time as well
     void setSampleGain(JSSample sample, JSAuralParameters attribs) {
+        // streams are panned and attenuated by the stream mixer
+        if (sample.channel instanceof JSStream) {
+            JSStream stream = (JSStream)sample.channel;
+            if (sample.getMuteFlag())
+                stream.setStereoGain(0.0f, 0.0f);
+            else if (sample instanceof JSPositionalSample)
+                stream.setStereoGain(((JSPositionalSample)sample).leftGain,
+                                     ((JSPositionalSample)sample).rightGain);
+            else
+                stream.setSampleGain(sample.getGain());
+        }
 /*******
         // take fields as already set in sample and updates gain
         // called after sample.render performed
@@ -666,6 +680,8 @@ leftDelay, rightDelay
   
 
     void pauseSample(JSSample sample) {
+        if (sample.channel instanceof JSStream)
+            sample.channel.pauseSamples();
 /**********
         int   dataType = sample.getDataType();
         int   soundType = sample.getSoundType();
@@ -724,6 +740,8 @@ leftDelay, rightDelay
     }
 
     void unpauseSample(JSSample sample) {
+        if (sample.channel instanceof JSStream)
+            sample.channel.unpauseSamples();
 /**************
         int   dataType = sample.getDataType();
         int   soundType = sample.getSoundType();
@@ -785,6 +803,8 @@ leftDelay, rightDelay
 // TODO: 
     void muteSample(JSSample sample) {
         // is this already muted? if so don't do anytning
+        if (sample.channel instanceof JSStream)
+            ((JSStream)sample.channel).setStereoGain(0.0f, 0.0f);
 
         // This determines if mute is done as a zero gain or
         // as a stop, advance restart...
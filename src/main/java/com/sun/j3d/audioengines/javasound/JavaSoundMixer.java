@@ -86,6 +86,9 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
     // and sample rate.
     JSThread thread = null;
 
+    // mixer shared by all the streaming (non-cached) sounds
+    JSStreamMixer streamMixer = new JSStreamMixer();
+
     /*
      * new fields in extended class
      */  
@@ -143,6 +146,7 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
      * @return flag: true is closed sucessfully, false if error
      */
     public boolean close() {
+        streamMixer.close();
         if (thread == null)
             return false;
         if (thread.close()) {
@@ -190,7 +194,7 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
                 if (debugFlag)
                     debugPrintln("JavaSoundMixer.prepareSound type=CONE");
                 JSDirectionalSample dirSample = new JSDirectionalSample();
-                error = dirSample.load(soundData);
+                error = dirSample.load(soundData, streamMixer);
                 if (error)
                     return JSSample.NULL_SAMPLE;
                 if (methodType == SET_INTO_LIST)
@@ -210,7 +214,7 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
                 if (debugFlag)
                     debugPrintln("JavaSoundMixer.prepareSound type=POINT");
                 JSPositionalSample posSample = new JSPositionalSample();
-                error = posSample.load(soundData);
+                error = posSample.load(soundData, streamMixer);
                 if (error)
                     return JSSample.NULL_SAMPLE;
                 if (methodType == SET_INTO_LIST)
@@ -226,7 +230,7 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
                     debugPrintln("JavaSoundMixer.prepareSound type=BACKGROUND");
                 JSSample sample = null;
                 sample = new JSSample();
-                error = sample.load(soundData);
+                error = sample.load(soundData, streamMixer);
                 if (error)
                     return JSSample.NULL_SAMPLE;
                 if (methodType == SET_INTO_LIST)
@@ -255,6 +259,9 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
         JSSample sample = null;
         if ( (sample = (JSSample)getSample(index)) == null)
             return;
+        // a stream would otherwise keep playing in the stream mixer
+        if (sample.channel instanceof JSStream)
+            sample.channel.stopSamples();
         sample.clear();
         synchronized(samples) {
             samples.set(index, null);
@@ -408,7 +415,20 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
         boolean startSuccessful;
         startSuccessful = thread.startSample(sample);
 
-	sample.channel.startSample(sample.getLoopCount(), sample.getGain(), 0);
+	if (sample.channel instanceof JSStream &&
+	    sample instanceof JSPositionalSample) {
+	    // streams are panned by the stream mixer
+	    JSPositionalSample posSample = (JSPositionalSample)sample;
+	    float leftGain = (muted ? 0.0f : posSample.leftGain);
+	    float rightGain = (muted ? 0.0f : posSample.rightGain);
+	    if (!sample.channel.startSamples(sample.getLoopCount(),
+					     leftGain, rightGain, 0, 0))
+		startSuccessful = false;
+	}
+	else if (!sample.channel.startSample(sample.getLoopCount(),
+					     (muted ? 0.0f : sample.getGain()), 0)) {
+	    startSuccessful = false;
+	}
 
         if (!startSuccessful) {
             if (internalErrors)
@@ -700,6 +720,8 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
         if (dataType == JSSample.STREAMING_AUDIO_DATA ||
             dataType == JSSample.BUFFERED_AUDIO_DATA) {
             thread.setSampleRate(sample, scaleFactor);
+            if (sample.channel instanceof JSStream)
+                sample.channel.scaleSampleRate(scaleFactor);
             /**********
             // TODO:
             if (soundType != AudioDevice3D.BACKGROUND_SOUND)  {
@@ -915,6 +937,7 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
         float gainFactor = scaleFactor/oldDeviceGain;
         // TODO:  for each sample, change gain by gainFactor
         deviceGain = scaleFactor; // set given scalefactor as new device gain
+        streamMixer.setMasterGain(scaleFactor);
         return;
     }
 
@@ -939,6 +962,7 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
     public void  pause() {
         pause = PAUSE_PENDING;
         // TODO: pause all sounds
+        streamMixer.setPaused(true);
         return;
     }
     /**
@@ -949,6 +973,7 @@ public class JavaSoundMixer extends AudioEngine3DL2 {
     public void resume() {
         pause = RESUME_PENDING;
         // TODO: unpause all sounds
+        streamMixer.setPaused(false);
         return;
     }
 }
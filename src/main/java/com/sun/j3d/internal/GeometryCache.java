@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The GeometryCache object is a thread safe cache of shared geometry
+ * with a limit on its total weight, usually an estimate of the memory
+ * it uses.  The entries are spread over segments, each one a map in
+ * access order with its own lock, so threads using different keys
+ * rarely wait for each other.  The limit applies to the total weight
+ * of all the segments.  When an entry takes the cache over the limit,
+ * the least recently used entries of its own segment are evicted
+ * first, then those of the other segments, so eviction is close to,
+ * but not exactly, least recently used over the whole cache.  The
+ * cache counts its hits, misses and evictions.
+ */
+public class GeometryCache {
+
+    /**
+     * Computes the weight of a cache entry.
+     */
+    public interface Weigher {
+	public long weigh(Object key, Object value);
+    }
+
+    private static final int NUM_SEGMENTS = 16;
+
+    private final Segment segments[] = new Segment[NUM_SEGMENTS];
+    private final Weigher weigher;
+    private volatile long maxWeight;
+    private final AtomicLong totalWeight = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private static class Entry {
+	final Object value;
+	final long weight;
+
+	Entry(Object value, long weight) {
+	    this.value = value;
+	    this.weight = weight;
+	}
+    }
+
+    private static class Segment extends LinkedHashMap {
+	long weight = 0;
+
+	Segment() {
+	    super(16, 0.75f, true);
+	}
+    }
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxWeight the limit on the total weight of the entries,
+     * no limit if 0 or less
+     * @param weigher computes the weight of each entry
+     */
+    public GeometryCache(long maxWeight, Weigher weigher) {
+	this.maxWeight = maxWeight;
+	this.weigher = weigher;
+	for (int i = 0; i < NUM_SEGMENTS; i++) {
+	    segments[i] = new Segment();
+	}
+    }
+
+    /**
+     * Returns a size limit set by a system property in megabytes, or
+     * defaultMegabytes if the property isn't set.
+     *
+     * @return the limit in bytes
+     */
+    public static long getSizeProperty(final String name,
+				       final int defaultMegabytes) {
+	Integer size = (Integer) java.security.AccessController.doPrivileged(
+	    new java.security.PrivilegedAction() {
+		public Object run() {
+		    return Integer.getInteger(name, defaultMegabytes);
+		}
+	    });
+	return size.intValue() * 1024L * 1024L;
+    }
+
+    private Segment segmentFor(Object key) {
+	int h = key.hashCode();
+	h ^= (h >>> 16);
+	h ^= (h >>> 8);
+	return segments[h & (NUM_SEGMENTS - 1)];
+    }
+
+    /**
+     * Returns the value cached for key, or null.
+     */
+    public Object get(Object key) {
+	Segment s = segmentFor(key);
+	Entry e;
+	synchronized (s) {
+	    e = (Entry) s.get(key);
+	}
+	if (e == null) {
+	    missCount.incrementAndGet();
+	    return null;
+	}
+	hitCount.incrementAndGet();
+	return e.value;
+    }
+
+    /**
+     * Caches value for key, replacing the value cached before.
+     */
+    public void put(Object key, Object value) {
+	Entry e = new Entry(value, weigher.weigh(key, value));
+	Segment s = segmentFor(key);
+	synchronized (s) {
+	    Entry old = (Entry) s.put(key, e);
+	    if (old != null) {
+		s.weight -= old.weight;
+		totalWeight.addAndGet(-old.weight);
+	    }
+	    s.weight += e.weight;
+	    totalWeight.addAndGet(e.weight);
+	    evict(s, 1);
+	}
+	evictOthers(s);
+    }
+
+    /**
+     * Caches value for key unless a value is already cached for it.
+     * Threads computing the same entry at the same time all get the
+     * first one cached.
+     *
+     * @return the value cached for key
+     */
+    public Object putIfAbsent(Object key, Object value) {
+	Segment s = segmentFor(key);
+	synchronized (s) {
+	    Entry old = (Entry) s.get(key);
+	    if (old != null) {
+		return old.value;
+	    }
+	}
+	Entry e = new Entry(value, weigher.weigh(key, value));
+	synchronized (s) {
+	    Entry old = (Entry) s.get(key);
+	    if (old != null) {
+		return old.value;
+	    }
+	    s.put(key, e);
+	    s.weight += e.weight;
+	    totalWeight.addAndGet(e.weight);
+	    evict(s, 1);
+	}
+	evictOthers(s);
+	return value;
+    }
+
+    // Evicts the least recently used entries of s until the cache is
+    // under the limit, keeping the keep most recently used entries of s.
+    // Must be called with the lock of s held.
+    private void evict(Segment s, int keep) {
+	long max = maxWeight;
+	if (max <= 0) {
+	    return;
+	}
+	Iterator it = s.values().iterator();
+	while ((totalWeight.get() > max) && (s.size() > keep)) {
+	    Entry e = (Entry) it.next();
+	    it.remove();
+	    s.weight -= e.weight;
+	    totalWeight.addAndGet(-e.weight);
+	    evictionCount.incrementAndGet();
+	}
+    }
+
+    // Evicts entries of the segments after s until the cache is under
+    // the limit.  The locks are taken one at a time, so s must not be
+    // locked by the caller.
+    private void evictOthers(Segment s) {
+	long max = maxWeight;
+	if ((max <= 0) || (totalWeight.get() <= max)) {
+	    return;
+	}
+	int first = 0;
+	while (segments[first] != s) {
+	    first++;
+	}
+	for (int i = 1; (i < NUM_SEGMENTS) && (totalWeight.get() > max); i++) {
+	    Segment other = segments[(first + i) & (NUM_SEGMENTS - 1)];
+	    synchronized (other) {
+		evict(other, 0);
+	    }
+	}
+    }
+
+    /**
+     * Removes all the entries.  The counts are not reset.
+     */
+    public void clear() {
+	for (int i = 0; i < NUM_SEGMENTS; i++) {
+	    Segment s = segments[i];
+	    synchronized (s) {
+		totalWeight.addAndGet(-s.weight);
+		s.clear();
+		s.weight = 0;
+	    }
+	}
+    }
+
+    /**
+     * Sets the limit on the total weight of the entries, evicting
+     * entries if the cache is over the new limit.
+     *
+     * @param maxWeight the new limit, no limit if 0 or less
+     */
+    public void setMaxWeight(long maxWeight) {
+	this.maxWeight = maxWeight;
+	for (int i = 0; (i < NUM_SEGMENTS) && (totalWeight.get() > maxWeight); i++) {
+	    Segment s = segments[i];
+	    synchronized (s) {
+		evict(s, 0);
+	    }
+	}
+    }
+
+    /**
+     * Returns the limit on the total weight of the entries.
+     */
+    public long getMaxWeight() {
+	return maxWeight;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+	int size = 0;
+	for (int i = 0; i < NUM_SEGMENTS; i++) {
+	    Segment s = segments[i];
+	    synchronized (s) {
+		size += s.size();
+	    }
+	}
+	return size;
+    }
+
+    /**
+     * Returns the total weight of the entries.
+     */
+    public long getWeight() {
+	return totalWeight.get();
+    }
+
+    /**
+     * Returns the number of lookups which found their entry.
+     */
+    public long getHitCount() {
+	return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups which didn't find their entry.
+     */
+    public long getMissCount() {
+	return missCount.get();
+    }
+
+    /**
+     * Returns the number of entries evicted to stay under the limit.
+     */
+    public long getEvictionCount() {
+	return evictionCount.get();
+    }
+
+    public String toString() {
+	return "GeometryCache[entries=" + size() + ", weight=" + getWeight() +
+	    ", maxWeight=" + maxWeight + ", hits=" + getHitCount() +
+	    ", misses=" + getMissCount() + ", evictions=" +
+	    getEvictionCount() + "]";
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ParallelLoop object runs a loop body over a range of indices,
+ * split in chunks that are handed out to a shared pool of daemon
+ * worker threads.  The calling thread works on chunks too, so nested
+ * loops can't deadlock the pool.  It is used by the utilities that
+ * offer an optional parallel mode.
+ */
+public class ParallelLoop {
+
+    /**
+     * The loop body, called with disjoint [start, end) sub ranges.
+     */
+    public interface Body {
+	public void run(int start, int end);
+    }
+
+    private static ExecutorService pool = null;
+
+    private ParallelLoop() {
+    }
+
+    /**
+     * Returns the default number of threads used by a parallel loop,
+     * the number of available processors.
+     */
+    public static int getDefaultParallelism() {
+	return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static synchronized ExecutorService getPool() {
+	if (pool == null) {
+	    pool = Executors.newCachedThreadPool(new ThreadFactory() {
+		private int count = 0;
+		public Thread newThread(Runnable r) {
+		    Thread t = new Thread(r, "J3D-ParallelLoop-" + (count++));
+		    t.setDaemon(true);
+		    return t;
+		}
+	    });
+	}
+	return pool;
+    }
+
+    /**
+     * Runs body over [start, end) using up to parallelism threads.
+     * Any RuntimeException or Error thrown by the body is rethrown
+     * in the calling thread once all the chunks are done.
+     *
+     * @param start the first index
+     * @param end one past the last index
+     * @param chunkSize the number of indices in each chunk
+     * @param parallelism the maximum number of threads, including
+     * the calling thread
+     * @param body the loop body
+     */
+    public static void run(int start, int end, int chunkSize,
+			   int parallelism, final Body body) {
+	if (end <= start) {
+	    return;
+	}
+	if (chunkSize < 1) {
+	    chunkSize = 1;
+	}
+	final int numChunks = (end - start + chunkSize - 1) / chunkSize;
+	if ((parallelism <= 1) || (numChunks <= 1)) {
+	    body.run(start, end);
+	    return;
+	}
+
+	final int first = start;
+	final int last = end;
+	final int size = chunkSize;
+	final AtomicInteger nextChunk = new AtomicInteger(0);
+	final Throwable failure[] = new Throwable[1];
+	int numWorkers = Math.min(parallelism, numChunks) - 1;
+	final CountDownLatch done = new CountDownLatch(numWorkers);
+
+	Runnable worker = new Runnable() {
+	    public void run() {
+		try {
+		    runChunks(first, last, size, numChunks, nextChunk,
+			      failure, body);
+		} finally {
+		    done.countDown();
+		}
+	    }
+	};
+
+	ExecutorService executor = getPool();
+	for (int i = 0; i < numWorkers; i++) {
+	    executor.execute(worker);
+	}
+	runChunks(first, last, size, numChunks, nextChunk, failure, body);
+
+	boolean interrupted = false;
+	while (true) {
+	    try {
+		done.await();
+		break;
+	    } catch (InterruptedException e) {
+		interrupted = true;
+	    }
+	}
+	if (interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+
+	Throwable t;
+	synchronized (failure) {
+	    t = failure[0];
+	}
+	if (t instanceof RuntimeException) {
+	    throw (RuntimeException) t;
+	} else if (t instanceof Error) {
+	    throw (Error) t;
+	}
+    }
+
+    private static void runChunks(int start, int end, int chunkSize,
+				  int numChunks, AtomicInteger nextChunk,
+				  Throwable failure[], Body body) {
+	int chunk;
+	while ((chunk = nextChunk.getAndIncrement()) < numChunks) {
+	    int s = start + chunk * chunkSize;
+	    int e = Math.min(s + chunkSize, end);
+	    try {
+		body.run(s, e);
+	    } catch (Throwable t) {
+		synchronized (failure) {
+		    if (failure[0] == null) {
+			failure[0] = t;
+		    }
+		}
+		// skip the remaining chunks
+		nextChunk.set(numChunks);
+	    }
+	}
+    }
+}
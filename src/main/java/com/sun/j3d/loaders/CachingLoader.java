@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.loaders;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The CachingLoader keeps the scenes loaded by another Loader in a
+ * directory of binary cache files, so that loading the same content
+ * again skips parsing, triangulation, normal generation and
+ * stripification.  Each cache file is keyed by a digest of the
+ * loaded content together with the wrapped loader's class, its
+ * flags, the base path or base URL used to find associated files,
+ * and an optional key set with setKey().  Later loads of matching
+ * content memory map the cache file and rebuild the scene from it.
+ * <p>
+ * The cache is kept under a size limit; when a new entry would go
+ * over the limit, the least recently used entries are deleted.
+ * Scenes the cache format can't represent (for instance those with
+ * lights, behaviors or views) are returned as loaded and not cached.
+ * <p>
+ * Only the named file, URL or Reader contents are part of the key.
+ * Associated files, such as material libraries or textures, are not;
+ * clear the cache or change the key when those change.  Loader
+ * settings other than the flags, such as the crease angle of an
+ * ObjectFile, should also be reflected in the key.
+ *
+ * @since Java 3D 1.6
+ */
+public class CachingLoader implements Loader {
+
+    /**
+     * Default maximum size of the cache directory, 256 MB.
+     */
+    public static final long DEFAULT_MAX_CACHE_SIZE = 256L << 20;
+
+    private static final String SUFFIX = ".j3dcache";
+
+    private Loader loader;
+    private File cacheDir;
+    private long maxCacheSize;
+    private String key = null;
+
+    // The base settings given by the user.  The wrapped loader's own
+    // may be changed by its load methods, so they can't be used in
+    // the key.
+    private URL baseUrl = null;
+    private String basePath = null;
+
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * Constructs a CachingLoader for the given loader using the
+     * default maximum cache size.
+     * @param loader the loader used when the cache has no entry
+     * @param cacheDir the directory holding the cache files, created
+     * if it doesn't exist
+     */
+    public CachingLoader(Loader loader, File cacheDir) {
+	this(loader, cacheDir, DEFAULT_MAX_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a CachingLoader for the given loader.
+     * @param loader the loader used when the cache has no entry
+     * @param cacheDir the directory holding the cache files, created
+     * if it doesn't exist
+     * @param maxCacheSize the maximum total size in bytes of the
+     * cache files
+     * @exception IllegalArgumentException if maxCacheSize isn't
+     * positive
+     */
+    public CachingLoader(Loader loader, File cacheDir, long maxCacheSize) {
+	if (loader == null || cacheDir == null) {
+	    throw new NullPointerException();
+	}
+	if (maxCacheSize <= 0) {
+	    throw new IllegalArgumentException(
+		"CachingLoader: maxCacheSize must be positive");
+	}
+	this.loader = loader;
+	this.cacheDir = cacheDir;
+	this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Returns the loader used when the cache has no entry.
+     */
+    public Loader getLoader() {
+	return loader;
+    }
+
+    /**
+     * Returns the cache directory.
+     */
+    public File getCacheDirectory() {
+	return cacheDir;
+    }
+
+    /**
+     * Sets the maximum total size in bytes of the cache files.
+     * The limit is enforced when an entry is next added.
+     * @exception IllegalArgumentException if maxCacheSize isn't
+     * positive
+     */
+    public void setMaxCacheSize(long maxCacheSize) {
+	if (maxCacheSize <= 0) {
+	    throw new IllegalArgumentException(
+		"CachingLoader: maxCacheSize must be positive");
+	}
+	this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Returns the maximum total size in bytes of the cache files.
+     */
+    public long getMaxCacheSize() {
+	return maxCacheSize;
+    }
+
+    /**
+     * Sets an extra string that is made part of the cache key.  Use
+     * it for loader settings that change the result but aren't
+     * flags.  The default is null.
+     */
+    public void setKey(String key) {
+	this.key = key;
+    }
+
+    /**
+     * Returns the extra cache key string.
+     */
+    public String getKey() {
+	return key;
+    }
+
+    /**
+     * Returns the number of loads that were satisfied from the cache.
+     */
+    public int getHitCount() {
+	return hits;
+    }
+
+    /**
+     * Returns the number of loads that went to the wrapped loader.
+     */
+    public int getMissCount() {
+	return misses;
+    }
+
+    /**
+     * Deletes all the cache files.
+     */
+    public void clearCache() {
+	File files[] = listCacheFiles();
+	for (int i = 0; i < files.length; i++) {
+	    files[i].delete();
+	}
+    }
+
+
+    // Loading methods
+
+    /**
+     * Loads the named file, from the cache if its content was
+     * loaded before.
+     */
+    public Scene load(String fileName) throws FileNotFoundException,
+	IncorrectFormatException, ParsingErrorException {
+
+	File file = new File(fileName);
+	String base = basePath;
+	if (base == null) {
+	    base = file.getAbsoluteFile().getParent();
+	}
+	MessageDigest md = createDigest("file", base);
+	try {
+	    FileInputStream in = new FileInputStream(file);
+	    try {
+		FileChannel ch = in.getChannel();
+		long size = ch.size();
+		for (long pos = 0; pos < size; pos += Integer.MAX_VALUE) {
+		    md.update(ch.map(FileChannel.MapMode.READ_ONLY, pos,
+				     Math.min(size - pos, Integer.MAX_VALUE)));
+		}
+	    } finally {
+		in.close();
+	    }
+	} catch (FileNotFoundException e) {
+	    throw e;
+	} catch (IOException e) {
+	    throw new ParsingErrorException(e.getMessage());
+	}
+
+	File cacheFile = getCacheFile(md);
+	Scene scene = readCache(cacheFile);
+	if (scene == null) {
+	    scene = loader.load(fileName);
+	    writeCache(scene, cacheFile);
+	}
+	return scene;
+    }
+
+    /**
+     * Loads the URL, from the cache if its content was loaded before.
+     * The content is read once to compute the key, and once more by
+     * the wrapped loader if it isn't cached.
+     */
+    public Scene load(URL url) throws FileNotFoundException,
+	IncorrectFormatException, ParsingErrorException {
+
+	String base = (baseUrl == null) ? url.toString() : baseUrl.toString();
+	if (baseUrl == null) {
+	    base = base.substring(0, base.lastIndexOf('/') + 1);
+	}
+	MessageDigest md = createDigest("url", base);
+	try {
+	    InputStream in = new BufferedInputStream(url.openStream());
+	    try {
+		byte b[] = new byte[1 << 16];
+		int n;
+		while ((n = in.read(b)) > 0) {
+		    md.update(b, 0, n);
+		}
+	    } finally {
+		in.close();
+	    }
+	} catch (FileNotFoundException e) {
+	    throw e;
+	} catch (IOException e) {
+	    throw new ParsingErrorException(e.getMessage());
+	}
+
+	File cacheFile = getCacheFile(md);
+	Scene scene = readCache(cacheFile);
+	if (scene == null) {
+	    scene = loader.load(url);
+	    writeCache(scene, cacheFile);
+	}
+	return scene;
+    }
+
+    /**
+     * Loads the Reader, from the cache if its content was loaded
+     * before.  The Reader is read fully into memory to compute the
+     * key.
+     */
+    public Scene load(Reader reader) throws FileNotFoundException,
+	IncorrectFormatException, ParsingErrorException {
+
+	MessageDigest md = createDigest("reader", basePath + "\n" + baseUrl);
+	StringBuffer sb = new StringBuffer();
+	try {
+	    char c[] = new char[1 << 16];
+	    int n;
+	    while ((n = reader.read(c)) > 0) {
+		sb.append(c, 0, n);
+	    }
+	} catch (IOException e) {
+	    throw new ParsingErrorException(e.getMessage());
+	}
+	String s = sb.toString();
+	try {
+	    md.update(s.getBytes("UTF-8"));
+	} catch (IOException e) {
+	    throw new ParsingErrorException(e.getMessage());
+	}
+
+	File cacheFile = getCacheFile(md);
+	Scene scene = readCache(cacheFile);
+	if (scene == null) {
+	    scene = loader.load(new StringReader(s));
+	    writeCache(scene, cacheFile);
+	}
+	return scene;
+    }
+
+
+    // Variable get/set methods, passed to the wrapped loader
+
+    public void setBaseUrl(URL url) {
+	baseUrl = url;
+	loader.setBaseUrl(url);
+    }
+
+    public void setBasePath(String pathName) {
+	basePath = pathName;
+	loader.setBasePath(pathName);
+    }
+
+    public URL getBaseUrl() {
+	return baseUrl;
+    }
+
+    public String getBasePath() {
+	return basePath;
+    }
+
+    public void setFlags(int flags) {
+	loader.setFlags(flags);
+    }
+
+    public int getFlags() {
+	return loader.getFlags();
+    }
+
+
+    // Cache files
+
+    private MessageDigest createDigest(String source, String base) {
+	MessageDigest md;
+	try {
+	    md = MessageDigest.getInstance("SHA-1");
+	} catch (NoSuchAlgorithmException e) {
+	    throw new RuntimeException(e);
+	}
+	String header = SceneCacheFile.VERSION + "\n" +
+	    loader.getClass().getName() + "\n" +
+	    loader.getFlags() + "\n" + source + "\n" + base + "\n" + key;
+	try {
+	    md.update(header.getBytes("UTF-8"));
+	} catch (IOException e) {
+	    throw new RuntimeException(e);
+	}
+	return md;
+    }
+
+    private File getCacheFile(MessageDigest md) {
+	byte digest[] = md.digest();
+	StringBuffer name = new StringBuffer(digest.length * 2 +
+					     SUFFIX.length());
+	for (int i = 0; i < digest.length; i++) {
+	    name.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+	    name.append(Character.forDigit(digest[i] & 0xf, 16));
+	}
+	name.append(SUFFIX);
+	return new File(cacheDir, name.toString());
+    }
+
+    private Scene readCache(File cacheFile) {
+	if (!cacheFile.isFile()) {
+	    misses++;
+	    return null;
+	}
+	try {
+	    Scene scene = SceneCacheFile.read(cacheFile);
+	    // Keep track of use for the eviction order
+	    cacheFile.setLastModified(System.currentTimeMillis());
+	    hits++;
+	    return scene;
+	} catch (IOException e) {
+	    // Damaged or from an incompatible version, load it again
+	    cacheFile.delete();
+	    misses++;
+	    return null;
+	}
+    }
+
+    private void writeCache(Scene scene, File cacheFile) {
+	if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+	    return;
+	}
+	File tmp = null;
+	try {
+	    tmp = File.createTempFile("j3d", ".tmp", cacheDir);
+	    SceneCacheFile.write(scene, tmp);
+	    if (tmp.length() > maxCacheSize) {
+		return;
+	    }
+	    evict(maxCacheSize - tmp.length());
+	    if (!tmp.renameTo(cacheFile)) {
+		cacheFile.delete();
+		if (!tmp.renameTo(cacheFile)) {
+		    return;
+		}
+	    }
+	    tmp = null;
+	} catch (IOException e) {
+	    // The scene is still returned, just not cached
+	} catch (SceneCacheFile.UncachableException e) {
+	} finally {
+	    if (tmp != null) {
+		tmp.delete();
+	    }
+	}
+    }
+
+    private File[] listCacheFiles() {
+	File files[] = cacheDir.listFiles();
+	if (files == null) {
+	    return new File[0];
+	}
+	int n = 0;
+	for (int i = 0; i < files.length; i++) {
+	    if (files[i].getName().endsWith(SUFFIX)) {
+		files[n++] = files[i];
+	    }
+	}
+	File result[] = new File[n];
+	System.arraycopy(files, 0, result, 0, n);
+	return result;
+    }
+
+    /**
+     * Deletes least recently used cache files until the others take
+     * at most the given number of bytes.
+     */
+    private void evict(long size) {
+	File files[] = listCacheFiles();
+	final long lastUsed[] = new long[files.length];
+	long total = 0;
+	Integer order[] = new Integer[files.length];
+	for (int i = 0; i < files.length; i++) {
+	    lastUsed[i] = files[i].lastModified();
+	    total += files[i].length();
+	    order[i] = new Integer(i);
+	}
+	if (total <= size) {
+	    return;
+	}
+	Arrays.sort(order, new Comparator() {
+	    public int compare(Object o1, Object o2) {
+		long t1 = lastUsed[((Integer)o1).intValue()];
+		long t2 = lastUsed[((Integer)o2).intValue()];
+		return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+	    }
+	});
+	for (int i = 0; (i < order.length) && (total > size); i++) {
+	    File f = files[order[i].intValue()];
+	    long len = f.length();
+	    if (f.delete()) {
+		total -= len;
+	    }
+	}
+    }
+}
@@ -0,0 +1,1247 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.loaders;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+
+import javax.media.j3d.*;
+import javax.vecmath.Color3f;
+import javax.vecmath.Color4f;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector4f;
+
+/**
+ * Binary file format used by CachingLoader to store a loaded Scene.
+ * The scene graph is written depth first; every object is written
+ * once and later uses refer back to it by number, so shared geometry
+ * and appearances stay shared.  Geometry and image data are written
+ * as raw arrays in native byte order and read back in bulk from a
+ * memory mapped file.
+ * <p>
+ * Only the node and node component classes produced by the loaders
+ * are supported: groups, Shape3D, Link, the GeometryArray classes
+ * (by copy or by reference float arrays), Appearance and its
+ * attribute components, and Texture2D with ImageComponent2D images.
+ * A scene that uses anything else, or that has lights, fog,
+ * backgrounds, sounds, behaviors or views, is not cached.
+ */
+class SceneCacheFile {
+
+    static final int MAGIC = 0x4a334443;	// "J3DC"
+    static final int VERSION = 1;
+
+    // Object tags
+    private static final int NULL = 0;
+    private static final int REF = 1;
+    private static final int GROUP = 2;
+    private static final int BRANCH_GROUP = 3;
+    private static final int TRANSFORM_GROUP = 4;
+    private static final int SWITCH = 5;
+    private static final int SHARED_GROUP = 6;
+    private static final int SHAPE3D = 7;
+    private static final int LINK = 8;
+    private static final int APPEARANCE = 9;
+    private static final int MATERIAL = 10;
+    private static final int COLORING_ATTRIBUTES = 11;
+    private static final int TRANSPARENCY_ATTRIBUTES = 12;
+    private static final int POLYGON_ATTRIBUTES = 13;
+    private static final int LINE_ATTRIBUTES = 14;
+    private static final int POINT_ATTRIBUTES = 15;
+    private static final int TEXTURE_ATTRIBUTES = 16;
+    private static final int TEX_COORD_GENERATION = 17;
+    private static final int TEXTURE2D = 18;
+    private static final int IMAGE_COMPONENT2D = 19;
+    private static final int GEOMETRY = 32;
+
+    private static final Class nodeClasses[] = {
+	Group.class, BranchGroup.class, TransformGroup.class, Switch.class,
+	SharedGroup.class, Shape3D.class, Link.class, Appearance.class,
+	Material.class, ColoringAttributes.class,
+	TransparencyAttributes.class, PolygonAttributes.class,
+	LineAttributes.class, PointAttributes.class,
+	TextureAttributes.class, TexCoordGeneration.class, Texture2D.class,
+	ImageComponent2D.class
+    };
+
+    // Indexed by tag - GEOMETRY
+    private static final Class geometryClasses[] = {
+	PointArray.class, LineArray.class, TriangleArray.class,
+	QuadArray.class, LineStripArray.class, TriangleStripArray.class,
+	TriangleFanArray.class, IndexedPointArray.class,
+	IndexedLineArray.class, IndexedTriangleArray.class,
+	IndexedQuadArray.class, IndexedLineStripArray.class,
+	IndexedTriangleStripArray.class, IndexedTriangleFanArray.class
+    };
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Thrown while writing when the scene uses something the format
+     * can't represent.
+     */
+    static class UncachableException extends Exception {
+	UncachableException(String s) {
+	    super(s);
+	}
+    }
+
+    // Writer state
+    private FileChannel channel;
+    private IdentityHashMap ids;
+
+    // Reader state
+    private ArrayList objects;
+
+    private ByteBuffer buf;
+
+    private SceneCacheFile() {
+    }
+
+    /**
+     * Writes the scene to the file.
+     * @exception UncachableException if the scene can't be stored
+     */
+    static void write(Scene scene, File file)
+	throws IOException, UncachableException {
+
+	if ((scene.getLightNodes() != null) ||
+	    (scene.getFogNodes() != null) ||
+	    (scene.getBackgroundNodes() != null) ||
+	    (scene.getSoundNodes() != null) ||
+	    (scene.getBehaviorNodes() != null) ||
+	    (scene.getViewGroups() != null)) {
+	    throw new UncachableException("scene has environment nodes");
+	}
+
+	FileOutputStream out = new FileOutputStream(file);
+	try {
+	    SceneCacheFile w = new SceneCacheFile();
+	    w.channel = out.getChannel();
+	    w.ids = new IdentityHashMap();
+	    w.buf = ByteBuffer.allocate(BUFFER_SIZE);
+	    w.buf.order(ByteOrder.nativeOrder());
+
+	    w.buf.put((byte)(ByteOrder.nativeOrder() ==
+			     ByteOrder.BIG_ENDIAN ? 0 : 1));
+	    w.putInt(MAGIC);
+	    w.putInt(VERSION);
+	    w.putString(scene.getDescription());
+	    w.writeObject(scene.getSceneGroup());
+
+	    Hashtable named = scene.getNamedObjects();
+	    w.putInt(named == null ? 0 : named.size());
+	    if (named != null) {
+		Enumeration e = named.keys();
+		while (e.hasMoreElements()) {
+		    Object key = e.nextElement();
+		    if (!(key instanceof String)) {
+			throw new UncachableException("named object key");
+		    }
+		    w.putString((String)key);
+		    w.writeObject(named.get(key));
+		}
+	    }
+	    w.flush();
+
+	    if (w.channel.size() > Integer.MAX_VALUE) {
+		throw new UncachableException("scene too large");
+	    }
+	} finally {
+	    out.close();
+	}
+    }
+
+    /**
+     * Reads a scene written by write().
+     */
+    static SceneBase read(File file) throws IOException {
+	FileInputStream in = new FileInputStream(file);
+	try {
+	    FileChannel ch = in.getChannel();
+	    if (ch.size() > Integer.MAX_VALUE) {
+		throw new IOException("SceneCacheFile: file too large");
+	    }
+	    SceneCacheFile r = new SceneCacheFile();
+	    r.objects = new ArrayList();
+	    r.buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+	    r.buf.order(r.buf.get() == 0 ?
+			ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+	    if ((r.buf.getInt() != MAGIC) || (r.buf.getInt() != VERSION)) {
+		throw new IOException("SceneCacheFile: bad header");
+	    }
+
+	    SceneBase scene = new SceneBase();
+	    String description = r.getString();
+	    if (description != null) {
+		scene.addDescription(description);
+	    }
+	    scene.setSceneGroup((BranchGroup)r.readObject());
+	    int numNamed = r.buf.getInt();
+	    for (int i = 0; i < numNamed; i++) {
+		String name = r.getString();
+		scene.addNamedObject(name, r.readObject());
+	    }
+	    return scene;
+	} catch (RuntimeException e) {
+	    // A truncated or damaged file
+	    IOException ioe = new IOException("SceneCacheFile: " + e);
+	    ioe.initCause(e);
+	    throw ioe;
+	} finally {
+	    in.close();
+	}
+    }
+
+
+    // Writing
+
+    private void flush() throws IOException {
+	buf.flip();
+	while (buf.hasRemaining()) {
+	    channel.write(buf);
+	}
+	buf.clear();
+    }
+
+    private void ensure(int n) throws IOException {
+	if (buf.remaining() < n) {
+	    flush();
+	}
+    }
+
+    private void putInt(int v) throws IOException {
+	ensure(4);
+	buf.putInt(v);
+    }
+
+    private void putLong(long v) throws IOException {
+	ensure(8);
+	buf.putLong(v);
+    }
+
+    private void putFloat(float v) throws IOException {
+	ensure(4);
+	buf.putFloat(v);
+    }
+
+    private void putBoolean(boolean v) throws IOException {
+	putInt(v ? 1 : 0);
+    }
+
+    private void putString(String s) throws IOException {
+	if (s == null) {
+	    putInt(-1);
+	    return;
+	}
+	byte b[] = s.getBytes("UTF-8");
+	putInt(b.length);
+	int i = 0;
+	while (i < b.length) {
+	    if (!buf.hasRemaining()) {
+		flush();
+	    }
+	    int n = Math.min(b.length - i, buf.remaining());
+	    buf.put(b, i, n);
+	    i += n;
+	}
+    }
+
+    private void putFloats(float a[]) throws IOException {
+	if (a == null) {
+	    putInt(-1);
+	    return;
+	}
+	putInt(a.length);
+	int i = 0;
+	while (i < a.length) {
+	    int n = Math.min(a.length - i, buf.remaining() >> 2);
+	    if (n == 0) {
+		flush();
+		continue;
+	    }
+	    buf.asFloatBuffer().put(a, i, n);
+	    buf.position(buf.position() + (n << 2));
+	    i += n;
+	}
+    }
+
+    private void putInts(int a[]) throws IOException {
+	if (a == null) {
+	    putInt(-1);
+	    return;
+	}
+	putInt(a.length);
+	int i = 0;
+	while (i < a.length) {
+	    int n = Math.min(a.length - i, buf.remaining() >> 2);
+	    if (n == 0) {
+		flush();
+		continue;
+	    }
+	    buf.asIntBuffer().put(a, i, n);
+	    buf.position(buf.position() + (n << 2));
+	    i += n;
+	}
+    }
+
+    private void putDoubles(double a[]) throws IOException {
+	ensure(a.length << 3);
+	buf.asDoubleBuffer().put(a);
+	buf.position(buf.position() + (a.length << 3));
+    }
+
+    private void putColor3f(Color3f c) throws IOException {
+	putFloat(c.x);
+	putFloat(c.y);
+	putFloat(c.z);
+    }
+
+    private void putColor4f(Color4f c) throws IOException {
+	putFloat(c.x);
+	putFloat(c.y);
+	putFloat(c.z);
+	putFloat(c.w);
+    }
+
+    private void putVector4f(Vector4f v) throws IOException {
+	putFloat(v.x);
+	putFloat(v.y);
+	putFloat(v.z);
+	putFloat(v.w);
+    }
+
+    private void putTransform(Transform3D t) throws IOException {
+	double m[] = new double[16];
+	t.get(m);
+	putDoubles(m);
+    }
+
+    private static int getTag(Object o) throws UncachableException {
+	Class c = o.getClass();
+	for (int i = 0; i < nodeClasses.length; i++) {
+	    if (nodeClasses[i] == c) {
+		return GROUP + i;
+	    }
+	}
+	for (int i = 0; i < geometryClasses.length; i++) {
+	    if (geometryClasses[i] == c) {
+		return GEOMETRY + i;
+	    }
+	}
+	throw new UncachableException(c.getName());
+    }
+
+    private void writeObject(Object o)
+	throws IOException, UncachableException {
+
+	if (o == null) {
+	    putInt(NULL);
+	    return;
+	}
+	Integer id = (Integer)ids.get(o);
+	if (id != null) {
+	    putInt(REF);
+	    putInt(id.intValue());
+	    return;
+	}
+
+	int tag = getTag(o);
+	ids.put(o, new Integer(ids.size()));
+	putInt(tag);
+
+	SceneGraphObject sgo = (SceneGraphObject)o;
+	if (sgo.getUserData() != null) {
+	    throw new UncachableException("user data");
+	}
+	long caps = 0L;
+	for (int bit = 0; bit < 64; bit++) {
+	    if (sgo.getCapability(bit)) {
+		caps |= 1L << bit;
+	    }
+	}
+	putLong(caps);
+	putString(sgo.getName());
+	if (sgo instanceof Node) {
+	    writeNode((Node)sgo);
+	}
+
+	switch (tag) {
+	case TRANSFORM_GROUP:
+	    Transform3D t = new Transform3D();
+	    ((TransformGroup)o).getTransform(t);
+	    putTransform(t);
+	    writeChildren((Group)o);
+	    break;
+	case SWITCH:
+	    Switch sw = (Switch)o;
+	    putInt(sw.getWhichChild());
+	    BitSet mask = sw.getChildMask();
+	    putInt(mask.length());
+	    for (int i = 0; i < mask.length(); i++) {
+		putBoolean(mask.get(i));
+	    }
+	    writeChildren(sw);
+	    break;
+	case GROUP:
+	case BRANCH_GROUP:
+	case SHARED_GROUP:
+	    writeChildren((Group)o);
+	    break;
+	case SHAPE3D:
+	    Shape3D shape = (Shape3D)o;
+	    putInt(shape.numGeometries());
+	    for (int i = 0; i < shape.numGeometries(); i++) {
+		writeObject(shape.getGeometry(i));
+	    }
+	    writeObject(shape.getAppearance());
+	    break;
+	case LINK:
+	    writeObject(((Link)o).getSharedGroup());
+	    break;
+	case APPEARANCE:
+	    writeAppearance((Appearance)o);
+	    break;
+	case MATERIAL:
+	    Material m = (Material)o;
+	    Color3f c = new Color3f();
+	    m.getAmbientColor(c);
+	    putColor3f(c);
+	    m.getEmissiveColor(c);
+	    putColor3f(c);
+	    m.getDiffuseColor(c);
+	    putColor3f(c);
+	    m.getSpecularColor(c);
+	    putColor3f(c);
+	    putFloat(m.getShininess());
+	    putBoolean(m.getLightingEnable());
+	    putInt(m.getColorTarget());
+	    break;
+	case COLORING_ATTRIBUTES:
+	    ColoringAttributes ca = (ColoringAttributes)o;
+	    c = new Color3f();
+	    ca.getColor(c);
+	    putColor3f(c);
+	    putInt(ca.getShadeModel());
+	    break;
+	case TRANSPARENCY_ATTRIBUTES:
+	    TransparencyAttributes ta = (TransparencyAttributes)o;
+	    putInt(ta.getTransparencyMode());
+	    putFloat(ta.getTransparency());
+	    putInt(ta.getSrcBlendFunction());
+	    putInt(ta.getDstBlendFunction());
+	    break;
+	case POLYGON_ATTRIBUTES:
+	    PolygonAttributes pa = (PolygonAttributes)o;
+	    putInt(pa.getPolygonMode());
+	    putInt(pa.getCullFace());
+	    putBoolean(pa.getBackFaceNormalFlip());
+	    putFloat(pa.getPolygonOffset());
+	    putFloat(pa.getPolygonOffsetFactor());
+	    break;
+	case LINE_ATTRIBUTES:
+	    LineAttributes la = (LineAttributes)o;
+	    putFloat(la.getLineWidth());
+	    putInt(la.getLinePattern());
+	    putBoolean(la.getLineAntialiasingEnable());
+	    putInt(la.getPatternMask());
+	    putInt(la.getPatternScaleFactor());
+	    break;
+	case POINT_ATTRIBUTES:
+	    PointAttributes pta = (PointAttributes)o;
+	    putFloat(pta.getPointSize());
+	    putBoolean(pta.getPointAntialiasingEnable());
+	    break;
+	case TEXTURE_ATTRIBUTES:
+	    TextureAttributes txa = (TextureAttributes)o;
+	    if (txa.getTextureMode() == TextureAttributes.COMBINE) {
+		throw new UncachableException("texture combine mode");
+	    }
+	    putInt(txa.getTextureMode());
+	    putInt(txa.getPerspectiveCorrectionMode());
+	    Color4f c4 = new Color4f();
+	    txa.getTextureBlendColor(c4);
+	    putColor4f(c4);
+	    t = new Transform3D();
+	    txa.getTextureTransform(t);
+	    putTransform(t);
+	    break;
+	case TEX_COORD_GENERATION:
+	    TexCoordGeneration tg = (TexCoordGeneration)o;
+	    putInt(tg.getGenMode());
+	    putInt(tg.getFormat());
+	    putBoolean(tg.getEnable());
+	    Vector4f plane = new Vector4f();
+	    tg.getPlaneS(plane);
+	    putVector4f(plane);
+	    tg.getPlaneT(plane);
+	    putVector4f(plane);
+	    tg.getPlaneR(plane);
+	    putVector4f(plane);
+	    tg.getPlaneQ(plane);
+	    putVector4f(plane);
+	    break;
+	case TEXTURE2D:
+	    writeTexture((Texture2D)o);
+	    break;
+	case IMAGE_COMPONENT2D:
+	    writeImage((ImageComponent2D)o);
+	    break;
+	default:
+	    writeGeometry((GeometryArray)o);
+	    break;
+	}
+    }
+
+    private void writeNode(Node node)
+	throws IOException, UncachableException {
+
+	putBoolean(node.getPickable());
+	putBoolean(node.getCollidable());
+	boolean auto = node.getBoundsAutoCompute();
+	putBoolean(auto);
+	if (!auto) {
+	    Bounds b = node.getBounds();
+	    if (b instanceof BoundingSphere) {
+		BoundingSphere s = (BoundingSphere)b;
+		Point3d p = new Point3d();
+		s.getCenter(p);
+		putInt(0);
+		putDoubles(new double[] {p.x, p.y, p.z, s.getRadius()});
+	    } else if (b instanceof BoundingBox) {
+		Point3d lower = new Point3d();
+		Point3d upper = new Point3d();
+		((BoundingBox)b).getLower(lower);
+		((BoundingBox)b).getUpper(upper);
+		putInt(1);
+		putDoubles(new double[] {lower.x, lower.y, lower.z,
+					 upper.x, upper.y, upper.z});
+	    } else {
+		throw new UncachableException("bounds");
+	    }
+	}
+    }
+
+    private void writeChildren(Group g)
+	throws IOException, UncachableException {
+
+	int n = g.numChildren();
+	putInt(n);
+	for (int i = 0; i < n; i++) {
+	    writeObject(g.getChild(i));
+	}
+    }
+
+    private void writeAppearance(Appearance app)
+	throws IOException, UncachableException {
+
+	if ((app.getTextureUnitCount() != 0) ||
+	    (app.getRenderingAttributes() != null)) {
+	    throw new UncachableException("appearance");
+	}
+	writeObject(app.getMaterial());
+	writeObject(app.getColoringAttributes());
+	writeObject(app.getTransparencyAttributes());
+	writeObject(app.getPolygonAttributes());
+	writeObject(app.getLineAttributes());
+	writeObject(app.getPointAttributes());
+	writeObject(app.getTextureAttributes());
+	writeObject(app.getTexCoordGeneration());
+	writeObject(app.getTexture());
+    }
+
+    private void writeTexture(Texture2D tex)
+	throws IOException, UncachableException {
+
+	putInt(tex.getMipMapMode());
+	putInt(tex.getFormat());
+	putInt(tex.getWidth());
+	putInt(tex.getHeight());
+	putInt(tex.getBoundaryWidth());
+	putInt(tex.getBoundaryModeS());
+	putInt(tex.getBoundaryModeT());
+	putInt(tex.getMinFilter());
+	putInt(tex.getMagFilter());
+	putInt(tex.getAnisotropicFilterMode());
+	putFloat(tex.getAnisotropicFilterDegree());
+	Color4f c = new Color4f();
+	tex.getBoundaryColor(c);
+	putColor4f(c);
+	putBoolean(tex.getEnable());
+	ImageComponent images[] = tex.getImages();
+	putInt(images == null ? 0 : images.length);
+	for (int i = 0; (images != null) && (i < images.length); i++) {
+	    writeObject(images[i]);
+	}
+    }
+
+    private void writeImage(ImageComponent2D image)
+	throws IOException, UncachableException {
+
+	BufferedImage bi;
+	try {
+	    bi = image.getImage();
+	} catch (IllegalStateException e) {
+	    // NioImageBuffer or RenderedImage data
+	    throw new UncachableException("image");
+	}
+	if (bi == null) {
+	    throw new UncachableException("image");
+	}
+	int w = image.getWidth();
+	int h = image.getHeight();
+	putInt(image.getFormat());
+	putInt(w);
+	putInt(h);
+	putBoolean(image.isByReference());
+	putBoolean(image.isYUp());
+	putInts(bi.getRGB(0, 0, w, h, null, 0, w));
+    }
+
+    private static int getColorSize(int format) {
+	return ((format & GeometryArray.COLOR_4) == GeometryArray.COLOR_4) ? 4 : 3;
+    }
+
+    private static int getTexCoordSize(int format) {
+	if ((format & GeometryArray.TEXTURE_COORDINATE_4) != 0) {
+	    return 4;
+	} else if ((format & GeometryArray.TEXTURE_COORDINATE_3) != 0) {
+	    return 3;
+	} else if ((format & GeometryArray.TEXTURE_COORDINATE_2) != 0) {
+	    return 2;
+	}
+	return 0;
+    }
+
+    private void writeGeometry(GeometryArray ga)
+	throws IOException, UncachableException {
+
+	int format = ga.getVertexFormat();
+	if (((format & (GeometryArray.INTERLEAVED |
+			GeometryArray.USE_NIO_BUFFER)) != 0) ||
+	    (ga.getVertexAttrCount() != 0)) {
+	    throw new UncachableException("geometry format");
+	}
+	int vertexCount = ga.getVertexCount();
+	int texCoordSetCount = ga.getTexCoordSetCount();
+	int texCoordSetMap[] = new int[ga.getTexCoordSetMapLength()];
+	ga.getTexCoordSetMap(texCoordSetMap);
+	boolean byRef = (format & GeometryArray.BY_REFERENCE) != 0;
+	int texCoordSize = getTexCoordSize(format);
+
+	putInt(vertexCount);
+	putInt(format);
+	putInt(texCoordSetCount);
+	putInts(texCoordSetMap);
+
+	IndexedGeometryArray iga = null;
+	if (ga instanceof IndexedGeometryArray) {
+	    iga = (IndexedGeometryArray)ga;
+	    putInt(iga.getIndexCount());
+	}
+	if (ga instanceof GeometryStripArray) {
+	    int counts[] = new int[((GeometryStripArray)ga).getNumStrips()];
+	    ((GeometryStripArray)ga).getStripVertexCounts(counts);
+	    putInts(counts);
+	} else if (ga instanceof IndexedGeometryStripArray) {
+	    IndexedGeometryStripArray igsa = (IndexedGeometryStripArray)ga;
+	    int counts[] = new int[igsa.getNumStrips()];
+	    igsa.getStripIndexCounts(counts);
+	    putInts(counts);
+	} else if (iga == null) {
+	    putInt(ga.getValidVertexCount());
+	}
+
+	if (byRef) {
+	    float coords[] = ga.getCoordRefFloat();
+	    float colors[] = null;
+	    float normals[] = null;
+	    if ((format & GeometryArray.COLOR_3) != 0) {
+		colors = ga.getColorRefFloat();
+	    }
+	    if ((format & GeometryArray.NORMALS) != 0) {
+		normals = ga.getNormalRefFloat();
+	    }
+	    if ((coords == null) ||
+		(((format & GeometryArray.COLOR_3) != 0) && (colors == null)) ||
+		(((format & GeometryArray.NORMALS) != 0) &&
+		 (normals == null))) {
+		throw new UncachableException("geometry reference type");
+	    }
+	    putFloats(coords);
+	    putFloats(colors);
+	    putFloats(normals);
+	    for (int i = 0; (texCoordSize != 0) && (i < texCoordSetCount);
+		 i++) {
+		float texCoords[] = ga.getTexCoordRefFloat(i);
+		if (texCoords == null) {
+		    throw new UncachableException("geometry reference type");
+		}
+		putFloats(texCoords);
+	    }
+	    if (iga == null) {
+		putInt(ga.getInitialCoordIndex());
+		putInt(ga.getInitialColorIndex());
+		putInt(ga.getInitialNormalIndex());
+		for (int i = 0; (texCoordSize != 0) && (i < texCoordSetCount);
+		     i++) {
+		    putInt(ga.getInitialTexCoordIndex(i));
+		}
+	    }
+	} else {
+	    float coords[] = new float[vertexCount * 3];
+	    ga.getCoordinates(0, coords);
+	    putFloats(coords);
+	    if ((format & GeometryArray.COLOR_3) != 0) {
+		float colors[] = new float[vertexCount * getColorSize(format)];
+		ga.getColors(0, colors);
+		putFloats(colors);
+	    }
+	    if ((format & GeometryArray.NORMALS) != 0) {
+		float normals[] = new float[vertexCount * 3];
+		ga.getNormals(0, normals);
+		putFloats(normals);
+	    }
+	    for (int i = 0; (texCoordSize != 0) && (i < texCoordSetCount);
+		 i++) {
+		float texCoords[] = new float[vertexCount * texCoordSize];
+		ga.getTextureCoordinates(i, 0, texCoords);
+		putFloats(texCoords);
+	    }
+	    if ((iga == null) && !(ga instanceof GeometryStripArray)) {
+		putInt(ga.getInitialVertexIndex());
+	    }
+	}
+
+	if (iga != null) {
+	    int indexCount = iga.getIndexCount();
+	    putInt(iga.getValidIndexCount());
+	    putInt(iga.getInitialIndexIndex());
+	    if ((format & GeometryArray.BY_REFERENCE_INDICES) != 0) {
+		putInts(iga.getCoordIndicesRef());
+	    } else {
+		int indices[] = new int[indexCount];
+		iga.getCoordinateIndices(0, indices);
+		putInts(indices);
+		if ((format & GeometryArray.USE_COORD_INDEX_ONLY) == 0) {
+		    if ((format & GeometryArray.COLOR_3) != 0) {
+			iga.getColorIndices(0, indices);
+			putInts(indices);
+		    }
+		    if ((format & GeometryArray.NORMALS) != 0) {
+			iga.getNormalIndices(0, indices);
+			putInts(indices);
+		    }
+		    for (int i = 0;
+			 (texCoordSize != 0) && (i < texCoordSetCount); i++) {
+			iga.getTextureCoordinateIndices(i, 0, indices);
+			putInts(indices);
+		    }
+		}
+	    }
+	}
+    }
+
+
+    // Reading
+
+    private boolean getBoolean() {
+	return buf.getInt() != 0;
+    }
+
+    private String getString() throws UnsupportedEncodingException {
+	int len = buf.getInt();
+	if (len < 0) {
+	    return null;
+	}
+	byte b[] = new byte[len];
+	buf.get(b);
+	return new String(b, "UTF-8");
+    }
+
+    private float[] getFloats() {
+	int len = buf.getInt();
+	if (len < 0) {
+	    return null;
+	}
+	float a[] = new float[len];
+	buf.asFloatBuffer().get(a);
+	buf.position(buf.position() + (len << 2));
+	return a;
+    }
+
+    private int[] getInts() {
+	int len = buf.getInt();
+	if (len < 0) {
+	    return null;
+	}
+	int a[] = new int[len];
+	buf.asIntBuffer().get(a);
+	buf.position(buf.position() + (len << 2));
+	return a;
+    }
+
+    private double[] getDoubles(int len) {
+	double a[] = new double[len];
+	buf.asDoubleBuffer().get(a);
+	buf.position(buf.position() + (len << 3));
+	return a;
+    }
+
+    private Color3f getColor3f() {
+	return new Color3f(buf.getFloat(), buf.getFloat(), buf.getFloat());
+    }
+
+    private Color4f getColor4f() {
+	return new Color4f(buf.getFloat(), buf.getFloat(), buf.getFloat(),
+			   buf.getFloat());
+    }
+
+    private Vector4f getVector4f() {
+	return new Vector4f(buf.getFloat(), buf.getFloat(), buf.getFloat(),
+			    buf.getFloat());
+    }
+
+    private Transform3D getTransform() {
+	return new Transform3D(getDoubles(16));
+    }
+
+    private Object readObject() throws IOException {
+	int tag = buf.getInt();
+	if (tag == NULL) {
+	    return null;
+	} else if (tag == REF) {
+	    return objects.get(buf.getInt());
+	}
+
+	int id = objects.size();
+	objects.add(null);
+	long caps = buf.getLong();
+	String name = getString();
+	boolean pickable = true;
+	boolean collidable = true;
+	Bounds bounds = null;
+	if ((tag <= LINK) && (tag >= GROUP)) {
+	    pickable = getBoolean();
+	    collidable = getBoolean();
+	    if (!getBoolean()) {
+		double b[];
+		if (buf.getInt() == 0) {
+		    b = getDoubles(4);
+		    bounds = new BoundingSphere(new Point3d(b[0], b[1], b[2]),
+						b[3]);
+		} else {
+		    b = getDoubles(6);
+		    bounds = new BoundingBox(new Point3d(b[0], b[1], b[2]),
+					     new Point3d(b[3], b[4], b[5]));
+		}
+	    }
+	}
+
+	SceneGraphObject o;
+	switch (tag) {
+	case GROUP:
+	    o = readChildren(new Group(), id);
+	    break;
+	case BRANCH_GROUP:
+	    o = readChildren(new BranchGroup(), id);
+	    break;
+	case TRANSFORM_GROUP:
+	    o = readChildren(new TransformGroup(getTransform()), id);
+	    break;
+	case SWITCH:
+	    Switch sw = new Switch(buf.getInt());
+	    int maskLength = buf.getInt();
+	    BitSet mask = new BitSet(maskLength);
+	    for (int i = 0; i < maskLength; i++) {
+		if (getBoolean()) {
+		    mask.set(i);
+		}
+	    }
+	    sw.setChildMask(mask);
+	    o = readChildren(sw, id);
+	    break;
+	case SHARED_GROUP:
+	    o = readChildren(new SharedGroup(), id);
+	    break;
+	case SHAPE3D:
+	    Shape3D shape = new Shape3D();
+	    objects.set(id, shape);
+	    int numGeometries = buf.getInt();
+	    for (int i = 0; i < numGeometries; i++) {
+		Geometry g = (Geometry)readObject();
+		if (i == 0) {
+		    shape.setGeometry(g);
+		} else {
+		    shape.addGeometry(g);
+		}
+	    }
+	    shape.setAppearance((Appearance)readObject());
+	    o = shape;
+	    break;
+	case LINK:
+	    Link link = new Link();
+	    objects.set(id, link);
+	    link.setSharedGroup((SharedGroup)readObject());
+	    o = link;
+	    break;
+	case APPEARANCE:
+	    Appearance app = new Appearance();
+	    objects.set(id, app);
+	    app.setMaterial((Material)readObject());
+	    app.setColoringAttributes((ColoringAttributes)readObject());
+	    app.setTransparencyAttributes(
+		(TransparencyAttributes)readObject());
+	    app.setPolygonAttributes((PolygonAttributes)readObject());
+	    app.setLineAttributes((LineAttributes)readObject());
+	    app.setPointAttributes((PointAttributes)readObject());
+	    app.setTextureAttributes((TextureAttributes)readObject());
+	    app.setTexCoordGeneration((TexCoordGeneration)readObject());
+	    app.setTexture((Texture)readObject());
+	    o = app;
+	    break;
+	case MATERIAL:
+	    Material m = new Material(getColor3f(), getColor3f(),
+				      getColor3f(), getColor3f(),
+				      buf.getFloat());
+	    m.setLightingEnable(getBoolean());
+	    m.setColorTarget(buf.getInt());
+	    o = m;
+	    break;
+	case COLORING_ATTRIBUTES:
+	    o = new ColoringAttributes(getColor3f(), buf.getInt());
+	    break;
+	case TRANSPARENCY_ATTRIBUTES:
+	    o = new TransparencyAttributes(buf.getInt(), buf.getFloat(),
+					   buf.getInt(), buf.getInt());
+	    break;
+	case POLYGON_ATTRIBUTES:
+	    o = new PolygonAttributes(buf.getInt(), buf.getInt(), 0.0f,
+				      getBoolean());
+	    ((PolygonAttributes)o).setPolygonOffset(buf.getFloat());
+	    ((PolygonAttributes)o).setPolygonOffsetFactor(buf.getFloat());
+	    break;
+	case LINE_ATTRIBUTES:
+	    LineAttributes la = new LineAttributes(buf.getFloat(),
+						   buf.getInt(),
+						   getBoolean());
+	    la.setPatternMask(buf.getInt());
+	    la.setPatternScaleFactor(buf.getInt());
+	    o = la;
+	    break;
+	case POINT_ATTRIBUTES:
+	    o = new PointAttributes(buf.getFloat(), getBoolean());
+	    break;
+	case TEXTURE_ATTRIBUTES:
+	    TextureAttributes ta = new TextureAttributes();
+	    ta.setTextureMode(buf.getInt());
+	    ta.setPerspectiveCorrectionMode(buf.getInt());
+	    ta.setTextureBlendColor(getColor4f());
+	    ta.setTextureTransform(getTransform());
+	    o = ta;
+	    break;
+	case TEX_COORD_GENERATION:
+	    TexCoordGeneration tg = new TexCoordGeneration(buf.getInt(),
+							   buf.getInt());
+	    tg.setEnable(getBoolean());
+	    tg.setPlaneS(getVector4f());
+	    tg.setPlaneT(getVector4f());
+	    tg.setPlaneR(getVector4f());
+	    tg.setPlaneQ(getVector4f());
+	    o = tg;
+	    break;
+	case TEXTURE2D:
+	    o = readTexture(id);
+	    break;
+	case IMAGE_COMPONENT2D:
+	    o = readImage();
+	    break;
+	default:
+	    if ((tag < GEOMETRY) || (tag >= GEOMETRY + geometryClasses.length)) {
+		throw new IOException("SceneCacheFile: bad tag " + tag);
+	    }
+	    o = readGeometry(tag - GEOMETRY);
+	    break;
+	}
+	objects.set(id, o);
+
+	for (int bit = 0; bit < 64; bit++) {
+	    boolean set = (caps & (1L << bit)) != 0L;
+	    if (set != o.getCapability(bit)) {
+		if (set) {
+		    o.setCapability(bit);
+		} else {
+		    o.clearCapability(bit);
+		}
+	    }
+	}
+	if (name != null) {
+	    o.setName(name);
+	}
+	if (o instanceof Node) {
+	    Node node = (Node)o;
+	    node.setPickable(pickable);
+	    node.setCollidable(collidable);
+	    if (bounds != null) {
+		node.setBoundsAutoCompute(false);
+		node.setBounds(bounds);
+	    }
+	}
+	return o;
+    }
+
+    private Group readChildren(Group g, int id) throws IOException {
+	objects.set(id, g);
+	int n = buf.getInt();
+	for (int i = 0; i < n; i++) {
+	    g.addChild((Node)readObject());
+	}
+	return g;
+    }
+
+    private Texture2D readTexture(int id) throws IOException {
+	int mipMapMode = buf.getInt();
+	int format = buf.getInt();
+	int width = buf.getInt();
+	int height = buf.getInt();
+	Texture2D tex = new Texture2D(mipMapMode, format, width, height,
+				      buf.getInt());
+	objects.set(id, tex);
+	tex.setBoundaryModeS(buf.getInt());
+	tex.setBoundaryModeT(buf.getInt());
+	tex.setMinFilter(buf.getInt());
+	tex.setMagFilter(buf.getInt());
+	tex.setAnisotropicFilterMode(buf.getInt());
+	tex.setAnisotropicFilterDegree(buf.getFloat());
+	tex.setBoundaryColor(getColor4f());
+	tex.setEnable(getBoolean());
+	int numImages = buf.getInt();
+	for (int i = 0; i < numImages; i++) {
+	    ImageComponent image = (ImageComponent)readObject();
+	    if (image != null) {
+		tex.setImage(i, image);
+	    }
+	}
+	return tex;
+    }
+
+    private ImageComponent2D readImage() {
+	int format = buf.getInt();
+	int w = buf.getInt();
+	int h = buf.getInt();
+	boolean byRef = getBoolean();
+	boolean yUp = getBoolean();
+	BufferedImage bi = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+	int pixels[] =
+	    ((DataBufferInt)bi.getRaster().getDataBuffer()).getData();
+	int len = buf.getInt();
+	buf.asIntBuffer().get(pixels, 0, len);
+	buf.position(buf.position() + (len << 2));
+	return new ImageComponent2D(format, bi, byRef, yUp);
+    }
+
+    private GeometryArray readGeometry(int type) throws IOException {
+	int vertexCount = buf.getInt();
+	int format = buf.getInt();
+	int texCoordSetCount = buf.getInt();
+	int texCoordSetMap[] = getInts();
+	int indexCount = (type >= 7) ? buf.getInt() : 0;
+	int stripCounts[] = null;
+	int validVertexCount = vertexCount;
+	if ((type >= 4) && (type <= 6) || (type >= 11)) {
+	    stripCounts = getInts();
+	} else if (type < 7) {
+	    validVertexCount = buf.getInt();
+	}
+
+	GeometryArray ga;
+	switch (type) {
+	case 0:
+	    ga = new PointArray(vertexCount, format, texCoordSetCount,
+				texCoordSetMap);
+	    break;
+	case 1:
+	    ga = new LineArray(vertexCount, format, texCoordSetCount,
+			       texCoordSetMap);
+	    break;
+	case 2:
+	    ga = new TriangleArray(vertexCount, format, texCoordSetCount,
+				   texCoordSetMap);
+	    break;
+	case 3:
+	    ga = new QuadArray(vertexCount, format, texCoordSetCount,
+			       texCoordSetMap);
+	    break;
+	case 4:
+	    ga = new LineStripArray(vertexCount, format, texCoordSetCount,
+				    texCoordSetMap, stripCounts);
+	    break;
+	case 5:
+	    ga = new TriangleStripArray(vertexCount, format,
+					texCoordSetCount, texCoordSetMap,
+					stripCounts);
+	    break;
+	case 6:
+	    ga = new TriangleFanArray(vertexCount, format, texCoordSetCount,
+				      texCoordSetMap, stripCounts);
+	    break;
+	case 7:
+	    ga = new IndexedPointArray(vertexCount, format, texCoordSetCount,
+				       texCoordSetMap, indexCount);
+	    break;
+	case 8:
+	    ga = new IndexedLineArray(vertexCount, format, texCoordSetCount,
+				      texCoordSetMap, indexCount);
+	    break;
+	case 9:
+	    ga = new IndexedTriangleArray(vertexCount, format,
+					  texCoordSetCount, texCoordSetMap,
+					  indexCount);
+	    break;
+	case 10:
+	    ga = new IndexedQuadArray(vertexCount, format, texCoordSetCount,
+				      texCoordSetMap, indexCount);
+	    break;
+	case 11:
+	    ga = new IndexedLineStripArray(vertexCount, format,
+					   texCoordSetCount, texCoordSetMap,
+					   indexCount, stripCounts);
+	    break;
+	case 12:
+	    ga = new IndexedTriangleStripArray(vertexCount, format,
+					       texCoordSetCount,
+					       texCoordSetMap, indexCount,
+					       stripCounts);
+	    break;
+	default:
+	    ga = new IndexedTriangleFanArray(vertexCount, format,
+					     texCoordSetCount, texCoordSetMap,
+					     indexCount, stripCounts);
+	    break;
+	}
+
+	boolean indexed = type >= 7;
+	int texCoordSize = getTexCoordSize(format);
+	if ((format & GeometryArray.BY_REFERENCE) != 0) {
+	    ga.setCoordRefFloat(getFloats());
+	    float colors[] = getFloats();
+	    if (colors != null) {
+		ga.setColorRefFloat(colors);
+	    }
+	    float normals[] = getFloats();
+	    if (normals != null) {
+		ga.setNormalRefFloat(normals);
+	    }
+	    for (int i = 0; (texCoordSize != 0) && (i < texCoordSetCount);
+		 i++) {
+		ga.setTexCoordRefFloat(i, getFloats());
+	    }
+	    if (!indexed) {
+		if (stripCounts == null) {
+		    ga.setValidVertexCount(validVertexCount);
+		}
+		ga.setInitialCoordIndex(buf.getInt());
+		ga.setInitialColorIndex(buf.getInt());
+		ga.setInitialNormalIndex(buf.getInt());
+		for (int i = 0; (texCoordSize != 0) && (i < texCoordSetCount);
+		     i++) {
+		    ga.setInitialTexCoordIndex(i, buf.getInt());
+		}
+	    }
+	} else {
+	    ga.setCoordinates(0, getFloats());
+	    if ((format & GeometryArray.COLOR_3) != 0) {
+		ga.setColors(0, getFloats());
+	    }
+	    if ((format & GeometryArray.NORMALS) != 0) {
+		ga.setNormals(0, getFloats());
+	    }
+	    for (int i = 0; (texCoordSize != 0) && (i < texCoordSetCount);
+		 i++) {
+		ga.setTextureCoordinates(i, 0, getFloats());
+	    }
+	    if (!indexed && (stripCounts == null)) {
+		ga.setValidVertexCount(validVertexCount);
+		ga.setInitialVertexIndex(buf.getInt());
+	    }
+	}
+
+	if (indexed) {
+	    IndexedGeometryArray iga = (IndexedGeometryArray)ga;
+	    int validIndexCount = buf.getInt();
+	    int initialIndexIndex = buf.getInt();
+	    if ((format & GeometryArray.BY_REFERENCE_INDICES) != 0) {
+		iga.setCoordIndicesRef(getInts());
+	    } else {
+		iga.setCoordinateIndices(0, getInts());
+		if ((format & GeometryArray.USE_COORD_INDEX_ONLY) == 0) {
+		    if ((format & GeometryArray.COLOR_3) != 0) {
+			iga.setColorIndices(0, getInts());
+		    }
+		    if ((format & GeometryArray.NORMALS) != 0) {
+			iga.setNormalIndices(0, getInts());
+		    }
+		    for (int i = 0;
+			 (texCoordSize != 0) && (i < texCoordSetCount); i++) {
+			iga.setTextureCoordinateIndices(i, 0, getInts());
+		    }
+		}
+	    }
+	    if (stripCounts == null) {
+		iga.setValidIndexCount(validIndexCount);
+		iga.setInitialIndexIndex(initialIndexIndex);
+	    }
+	}
+	return ga;
+    }
+}
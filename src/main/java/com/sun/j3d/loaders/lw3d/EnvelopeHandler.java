@@ -41,12 +41,7 @@ package com.sun.j3d.loaders.lw3d;
 
 import java.io.StreamTokenizer;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import com.sun.j3d.loaders.ParsingErrorException;
-import java.lang.ClassNotFoundException;
-import java.lang.InstantiationException;
-import java.lang.IllegalAccessException;
-import java.lang.reflect.InvocationTargetException;
 
 
 /**
@@ -68,61 +63,44 @@ class EnvelopeHandler extends TextfileParser {
 
 	/**
 	* Constructor: This constructor is used if there is no existing
-	* implementation for this type of envelope.  The real constructor
-	* is called with the generic LwsEnvelope class name, which will
-	* allow s to parse and ignore the envelope data
+	* implementation for this type of envelope.  The envelope data
+	* is parsed and ignored with the generic LwsEnvelope class
 	*/
     EnvelopeHandler(StreamTokenizer st,
         int totalFrames, float totalTime) {
-        this(st, totalFrames, totalTime,
-	     "com.sun.j3d.utils.loaders.lw3d.LwsEnvelope");
+        this(st, totalFrames, totalTime, false);
     }
 
 	/**
-	* Constructor: This constructor is called with the name of a class
-	* that can handle the encountered envelope.  This is done so that this
-	* EnvelopeHandler class can generically call the given class to handle
-	* the envelope, whether it results in parsing/ignoring the data or 
-	* in actually using the data
+	* Constructor: If lightIntensity is true, an encountered envelope
+	* is handled by LwsEnvelopeLightIntensity, which uses the data;
+	* otherwise the generic LwsEnvelope parses and ignores it
 	*/
     EnvelopeHandler(StreamTokenizer st,
 			   int totalFrames,
 			   float totalTime,
-			   String envClassName) throws ParsingErrorException {
+			   boolean lightIntensity) throws ParsingErrorException {
+	// Look at the next token first: getNumber() fails on the '(' of
+	// an envelope with a ParsingErrorException
 	try {
+	    st.nextToken();
+	}
+	catch (IOException e) {
+	    throw new ParsingErrorException(e.getMessage());
+	}
+	st.pushBack();
+	if (st.ttype == '(') {
+	    if (lightIntensity)
+		theEnvelope = new LwsEnvelopeLightIntensity(st,
+							   totalFrames,
+							   totalTime);
+	    else
+		theEnvelope = new LwsEnvelope(st, totalFrames, totalTime);
+	    hasEnvelope = true;
+	}
+	else {
 	    theValue = (float)getNumber(st);
             hasValue = true;
 	}
-	catch (NumberFormatException e) {
-	    if (st.ttype == '(') {
-		st.pushBack();
-		// This code creates a new instance for the given class name
-		try {
-		    Class envClass = Class.forName(envClassName);
-		    Constructor constructors[] = envClass.getConstructors();
-		    Constructor con = constructors[0];
-		    Object args[] = new Object[3];
-		    args[0] = (Object)st;
-		    args[1] = (Object)(new Integer(totalFrames));
-		    args[2] = (Object)(new Float(totalTime));
-		    try {
-			theEnvelope = (LwsEnvelope)con.newInstance(args);
-			hasEnvelope = true;
-		    }
-		    catch (InstantiationException e3) {
-			// Ignore
-		    }
-		    catch (IllegalAccessException e3) {
-			// Ignore
-		    }
-		    catch (InvocationTargetException e3) {
-			// Ignore
-		    }
-		}
-		catch (ClassNotFoundException e2) {
-		    // Ignore
-		}
-	    }
-	}
     }
 }
@@ -516,6 +516,9 @@ class J3dLwoParser extends LwoParser {
 	double s, t;
 	
 	debugOutputLn(VALUES, "Cyl Texture Coords:");
+	// Skip building the per vertex strings unless they are printed
+	boolean printValues =
+	    (debugPrinter.getValidOutput() & VALUES) != 0;
 	for (int i = 0; i < indices.length; ++i) {
 	    float x = verts[3*indices[i]] - textureCenter.x;
 	    float y = verts[3*indices[i]+1] - textureCenter.y;
@@ -537,9 +540,10 @@ class J3dLwoParser extends LwoParser {
 	    textureCoords[indices[i]*2] = (float)s;
 	    textureCoords[indices[i]*2 + 1] = (float)t;
 	    textureIndices[i] = indices[i];
-	    debugOutputLn(VALUES, "x, y, z = " +
-			  x + ", " + y + ", " + z + "    " +
-			  "s, t = " + s + ", " + t);
+	    if (printValues)
+		debugOutputLn(VALUES, "x, y, z = " +
+			      x + ", " + y + ", " + z + "    " +
+			      "s, t = " + s + ", " + t);
 	}
     }
     
@@ -569,6 +573,9 @@ class J3dLwoParser extends LwoParser {
 	}
 
 	debugOutputLn(VALUES, "Planar Texture Coords:");
+	// Skip building the per vertex strings unless they are printed
+	boolean printValues =
+	    (debugPrinter.getValidOutput() & VALUES) != 0;
 	for (int i = 0; i < indices.length; ++i) {
 	    float x = verts[3*indices[i]] - textureCenter.x;
 	    float y = verts[3*indices[i]+1] - textureCenter.y;
@@ -578,9 +585,10 @@ class J3dLwoParser extends LwoParser {
 	    textureCoords[indices[i]*2] = (float)s;
 	    textureCoords[indices[i]*2 + 1] = (float)t;
 	    textureIndices[i] = indices[i];
-	    debugOutputLn(VALUES, "x, y, z = " +
-			  x + ", " + y + ", " + z + "    " +
-			  "s, t = " + s + ", " + t);
+	    if (printValues)
+		debugOutputLn(VALUES, "x, y, z = " +
+			      x + ", " + y + ", " + z + "    " +
+			      "s, t = " + s + ", " + t);
 	}
     }
 
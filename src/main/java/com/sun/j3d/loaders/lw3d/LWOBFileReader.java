@@ -41,15 +41,22 @@ package com.sun.j3d.loaders.lw3d;
 
 
 
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileInputStream;
-import java.io.BufferedInputStream;
+import java.io.InputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
 import com.sun.j3d.loaders.ParsingErrorException;
 
 
-class LWOBFileReader extends BufferedInputStream {
+/**
+ * Reads the binary LWOB data.  The whole file is read into a big
+ * endian ByteBuffer when the reader is created, so all the get
+ * methods work on memory and the file is closed right away.
+ */
+class LWOBFileReader extends InputStream {
 
 
 
@@ -65,7 +72,7 @@ class LWOBFileReader extends BufferedInputStream {
 
     protected String theFilename;
 
-    protected int marker;
+    protected ByteBuffer buffer;
 
 
 
@@ -82,18 +89,12 @@ class LWOBFileReader extends BufferedInputStream {
     // Return a string consisting of the next 4 bytes in the file
     public String getToken() throws ParsingErrorException {
         byte tokenBuffer[] = new byte[4];
-        try {
-            int readResult = read(tokenBuffer, 0, 4);
-            if (readResult == -1) {
-                debugOutputLn(LINE_TRACE, "no token - returning null");
-                return null;
-            }
-            return new String(tokenBuffer);
-        }
-        catch (IOException e) {
-            debugOutputLn(EXCEPTION, "getToken: " + e);
-	    throw new ParsingErrorException(e.getMessage());
+        int readResult = read(tokenBuffer, 0, 4);
+        if (readResult == -1) {
+            debugOutputLn(LINE_TRACE, "no token - returning null");
+            return null;
         }
+        return new String(tokenBuffer);
     }
 
 
@@ -102,14 +103,7 @@ class LWOBFileReader extends BufferedInputStream {
      * Skip ahead amount bytes in the file
      */
     public void skipLength(int amount) throws ParsingErrorException {
-	try {
-	    skip((long)amount);
-	    marker += amount;
-	}
-	catch (IOException e) {
-	    debugOutputLn(EXCEPTION, "skipLength: " + e);
-	    throw new ParsingErrorException(e.getMessage());
-	}
+	skip((long)amount);
     }
 
 
@@ -118,20 +112,11 @@ class LWOBFileReader extends BufferedInputStream {
      * Read four bytes from the file and return their integer value 
      */
     public int getInt() throws ParsingErrorException {
-        try {
-	    int x = 0;
-	    for (int i = 0 ; i < 4 ; i++) {
-		int readResult = read();
-		if (readResult == -1)
-		    throw new ParsingErrorException("Unexpected EOF");
-		x = (x << 8) | readResult;
-	    }
-            return x;
-        }
-        catch (IOException e) {
-            debugOutputLn(EXCEPTION, "getInt: " + e);
-	    throw new ParsingErrorException(e.getMessage());
-        }
+	if (buffer.remaining() < 4) {
+	    buffer.position(buffer.limit());
+	    throw new ParsingErrorException("Unexpected EOF");
+	}
+	return buffer.getInt();
     }
 
 
@@ -159,21 +144,22 @@ class LWOBFileReader extends BufferedInputStream {
      * end with '0'.
      */
     public String getString() throws ParsingErrorException {
-      byte buf[] = new byte[512];
-      try {
-	  byte b;
-	  int len = 0;
-	  do {
-	    b = (byte)read();
-	    buf[len++] = b;
-	  } while (b != 0);
-	  // Have to read an even number of bytes
-	  if (len % 2 != 0) read();
-      }
-      catch (IOException e) {
-	  debugOutputLn(EXCEPTION, "getString: " + e);
-	  throw new ParsingErrorException(e.getMessage());
+      int start = buffer.position();
+      int end = start;
+      int limit = buffer.limit();
+      while (end < limit && buffer.get(end) != 0)
+	end++;
+      if (end == limit) {
+	  buffer.position(limit);
+	  debugOutputLn(EXCEPTION, "getString: Unexpected EOF");
+	  throw new ParsingErrorException("Unexpected EOF");
       }
+      int len = end - start + 1;
+      // The string is returned in a zero filled 512 byte buffer
+      byte buf[] = new byte[Math.max(512, len)];
+      buffer.get(buf, 0, len);
+      // Have to read an even number of bytes
+      if (len % 2 != 0) read();
       return new String(buf);
     } // End of getString
 
@@ -183,10 +169,15 @@ class LWOBFileReader extends BufferedInputStream {
      * Reads an array of xyz values.
      */
     public void getVerts(float ar[], int num) throws ParsingErrorException {
+      if (buffer.remaining() < num * 12) {
+	  buffer.position(buffer.limit());
+	  throw new ParsingErrorException("Unexpected EOF");
+      }
+      FloatBuffer fb = buffer.asFloatBuffer();
+      fb.get(ar, 0, num * 3);
+      buffer.position(buffer.position() + num * 12);
       for (int i = 0 ; i < num ; i++) {
-	ar[i * 3 + 0] = getFloat();
-	ar[i * 3 + 1] = getFloat();
-	ar[i * 3 + 2] = -getFloat();
+	ar[i * 3 + 2] = -ar[i * 3 + 2];
       }
     } // End of getVerts
 
@@ -196,17 +187,14 @@ class LWOBFileReader extends BufferedInputStream {
      * Reads two bytes from the file and returns their integer value.
      */
     public int getShortInt() throws ParsingErrorException {
-	int i = 0;
-	try {
-	    i = read();
-	    i = (i << 8) | read();
-	    // Sign extension
-	    if ((i & 0x8000) != 0) i |= 0xffff0000;
-	}
-	catch (IOException e) {
-	    debugOutputLn(EXCEPTION, "getShortInt: " + e);
-	    throw new ParsingErrorException(e.getMessage());
+	if (buffer.remaining() >= 2) {
+	    // Sign extended
+	    return buffer.getShort();
 	}
+	int i = read();
+	i = (i << 8) | read();
+	// Sign extension
+	if ((i & 0x8000) != 0) i |= 0xffff0000;
 	return i;
     } // End of getShortInt
 
@@ -216,46 +204,107 @@ class LWOBFileReader extends BufferedInputStream {
      * Returns the current position in the file
      */
     public int getMarker() {
-      // protected field inherited from BufferedInputStream
-      return marker;
+      return buffer.position();
     } // End of getMarker
 
 
 
-    public int read() throws IOException {
-      marker++;
-      return super.read();
+    public int read() {
+      if (!buffer.hasRemaining())
+	return -1;
+      return buffer.get() & 0xff;
     } // End of read()
 
 
 
-    public int read(byte[] buffer, int offset, int count) throws IOException {
-      int ret = super.read(buffer, offset, count);
-      if (ret != -1) marker += ret;
-      return ret;
+    public int read(byte[] b, int offset, int count) {
+      if (count == 0)
+	return 0;
+      if (!buffer.hasRemaining())
+	return -1;
+      int n = Math.min(count, buffer.remaining());
+      buffer.get(b, offset, n);
+      return n;
     } // End of read(byte[], int, int)
 
 
 
+    public long skip(long n) {
+      if (n <= 0)
+	return 0;
+      int skipped = (int)Math.min(n, (long)buffer.remaining());
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    } // End of skip
+
+
+
+    public int available() {
+      return buffer.remaining();
+    } // End of available
+
+
+
+    /**
+     * Reads all of the stream into the buffer.
+     */
+    private void readAll(InputStream in) throws IOException {
+	try {
+	    byte data[] = new byte[1 << 16];
+	    int length = 0;
+	    int n;
+	    while ((n = in.read(data, length, data.length - length)) != -1) {
+		length += n;
+		if (length == data.length) {
+		    byte newData[] = new byte[data.length * 2];
+		    System.arraycopy(data, 0, newData, 0, length);
+		    data = newData;
+		}
+	    }
+	    buffer = ByteBuffer.wrap(data, 0, length).slice();
+	}
+	finally {
+	    in.close();
+	}
+    } // End of readAll
+
+
+
     /**
      * Constructor.
      */
     public LWOBFileReader(String filename) throws FileNotFoundException {
-	super(new FileInputStream(filename));
-
 	// Add constants on this line to get more debug output
 	debugPrinter = new DebugOutput(127);
 
-	marker = 0;
+	theFilename = filename;
+	FileInputStream in = new FileInputStream(filename);
+	try {
+	    FileChannel channel = in.getChannel();
+	    buffer = ByteBuffer.allocate((int)channel.size());
+	    while (buffer.hasRemaining() && channel.read(buffer) != -1)
+		;
+	    buffer.flip();
+	}
+	catch (IOException e) {
+	    debugOutputLn(EXCEPTION, "LWOBFileReader: " + e);
+	    throw new ParsingErrorException(e.getMessage());
+	}
+	finally {
+	    try {
+		in.close();
+	    }
+	    catch (IOException e) {
+	    }
+	}
     } // End of constructor
 
   public LWOBFileReader(java.net.URL url) throws java.io.IOException {
-    super(url.openStream());
-
     // add constants on this line to get more debug output
     debugPrinter = new DebugOutput(127);
 
-    marker = 0;
+    theFilename = url.toString();
+    readAll(url.openStream());
   }
 
 } // End of file LWOBFileReader
@@ -41,6 +41,8 @@ package com.sun.j3d.loaders.lw3d;
 
 
 import com.sun.j3d.loaders.*;
+import com.sun.j3d.internal.J3dUtilsI18N;
+import com.sun.j3d.internal.ParallelLoop;
 import java.awt.Component;
 import java.io.*;
 import java.util.Vector;
@@ -84,6 +86,7 @@ public class Lw3dLoader extends TextfileParser implements Loader {
     static final int FILE_TYPE_FILENAME = 2;
     static final int FILE_TYPE_READER = 4;
     int              fileType = FILE_TYPE_NONE;
+    int              parallelism = ParallelLoop.getDefaultParallelism();
     
     /**
      * Default constructor.  Sets up default values for some variables.
@@ -175,6 +178,9 @@ public class Lw3dLoader extends TextfileParser implements Loader {
 	skipUntilString(tokenizer, "FramesPerSecond");
 	double fps = getNumber(tokenizer);
 	float totalTime = (float)(finalFrame - firstFrame)/(float)fps;
+	// Object to clone for each entry of objectList, created once the
+	// whole scene file is parsed
+	Vector cloneList = new Vector();
 	boolean done = false;
 	while (!done) {
 	    int token;
@@ -197,8 +203,8 @@ public class Lw3dLoader extends TextfileParser implements Loader {
 				      finalFrame, totalTime,
 				      this,
 				      debugPrinter.getValidOutput());
-		    obj.createJava3dObject(null, loadBehaviors);
 		    objectList.addElement(obj);
+		    cloneList.addElement(null);
 		}
 		else if (tokenizer.sval.equals("LoadObject")) {
 		    String filename = getString(tokenizer);
@@ -222,8 +228,8 @@ public class Lw3dLoader extends TextfileParser implements Loader {
 			    break;
 			}
 		    }
-		    obj.createJava3dObject(cloneObject, loadBehaviors);
 		    objectList.addElement(obj);
+		    cloneList.addElement(cloneObject);
 		}
 		else if (tokenizer.sval.equals("AmbientColor")) {
 		    ambientColor.x = (float)getNumber(tokenizer)/255f;
@@ -273,6 +279,8 @@ public class Lw3dLoader extends TextfileParser implements Loader {
 	    }
 	}
 	
+	createJava3dObjects(cloneList);
+
 	// Set up scene groups and parent objects appropriately
 	sceneGroupNode = new BranchGroup();
         sceneBehaviors = new Vector();
@@ -284,6 +292,60 @@ public class Lw3dLoader extends TextfileParser implements Loader {
     }
 
 
+    /**
+     * Creates the Java3d objects for all the objects of the scene.  The
+     * geometry files of the objects that aren't clones of earlier objects
+     * are parsed first, by several threads, then the objects are created
+     * in scene file order.  If a geometry file fails to load, the
+     * exception of the first such object is thrown.
+     */
+    void createJava3dObjects(Vector cloneList) throws FileNotFoundException,
+                            IncorrectFormatException, ParsingErrorException {
+
+	final Vector loadList = new Vector();
+	int loadIndices[] = new int[objectList.size()];
+	for (int i = 0; i < objectList.size(); ++i) {
+	    LwsObject obj = (LwsObject)objectList.elementAt(i);
+	    loadIndices[i] = -1;
+	    if (cloneList.elementAt(i) == null && obj.hasGeometryFile()) {
+		loadIndices[i] = loadList.size();
+		loadList.addElement(obj);
+	    }
+	}
+
+	final Exception loadErrors[] = new Exception[loadList.size()];
+	ParallelLoop.run(0, loadList.size(), 1, parallelism,
+			 new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int i = start; i < end; ++i) {
+		    LwsObject obj = (LwsObject)loadList.elementAt(i);
+		    try {
+			obj.loadGeometry();
+		    }
+		    catch (FileNotFoundException e) {
+			loadErrors[i] = e;
+		    }
+		    catch (RuntimeException e) {
+			loadErrors[i] = e;
+		    }
+		}
+	    }
+	});
+
+	for (int i = 0; i < objectList.size(); ++i) {
+	    LwsObject obj = (LwsObject)objectList.elementAt(i);
+	    int loadIndex = loadIndices[i];
+	    if (loadIndex != -1 && loadErrors[loadIndex] != null) {
+		Exception e = loadErrors[loadIndex];
+		if (e instanceof FileNotFoundException)
+		    throw (FileNotFoundException)e;
+		throw (RuntimeException)e;
+	    }
+	    obj.createJava3dObject((LwsObject)cloneList.elementAt(i),
+				   loadBehaviors);
+	}
+    }
+
     /**
      * This method creates the Scene (actually SceneBase) data structure
      * and adds all appropriate items to it.  This is the data structure
@@ -491,6 +553,35 @@ public class Lw3dLoader extends TextfileParser implements Loader {
 	return loadFlags;
     }
 
+    /**
+     * Sets the number of threads used to parse the object files
+     * referenced by a scene.  The default is the number of available
+     * processors.
+     *
+     * @param parallelism the number of threads, 1 to parse the object
+     * files with the calling thread only
+     *
+     * @exception IllegalArgumentException if parallelism is less than 1
+     *
+     * @since Java 3D 1.6
+     */
+    public void setParallelism(int parallelism) {
+	if (parallelism < 1)
+	    throw new IllegalArgumentException(
+		J3dUtilsI18N.getString("Lw3dLoader0"));
+	this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of threads used to parse the object files
+     * referenced by a scene.
+     *
+     * @since Java 3D 1.6
+     */
+    public int getParallelism() {
+	return parallelism;
+    }
+
 
     
     /**
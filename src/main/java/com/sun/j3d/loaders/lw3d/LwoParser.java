@@ -49,6 +49,7 @@ import java.util.Date;
 import java.util.Enumeration;
 import com.sun.j3d.loaders.lw3d.LWOBFileReader;
 import com.sun.j3d.internal.J3dUtilsI18N;
+import com.sun.j3d.internal.FastVector;
 import java.net.*;
 import com.sun.j3d.loaders.ParsingErrorException;
 import com.sun.j3d.loaders.IncorrectFormatException;
@@ -126,19 +127,11 @@ class LwoParser extends ParserObject {
     int skipDetailPolygons(int numPolys) throws ParsingErrorException {
 	debugOutputLn(TRACE, "skipDetailPolygons(), numPolys = " + numPolys);
 	int lengthRead = 0;
-	int vert;
 	
-	try {
-	    for (int polyNum = 0; polyNum < numPolys; ++polyNum) {
-		debugOutputLn(VALUES, "polyNum = " + polyNum);
-		int numVerts = theReader.getShortInt();
-		theReader.skip(numVerts * 2 + 2);  // skip indices plus surf
-		lengthRead += (numVerts * 2) + 4;  // increment counter
-	    }
-	}
-	catch (IOException e) {
-	    debugOutputLn(EXCEPTION, "Exception in reading detail polys: " + e);
-	    throw new ParsingErrorException(e.getMessage());
+	for (int polyNum = 0; polyNum < numPolys; ++polyNum) {
+	    int numVerts = theReader.getShortInt();
+	    theReader.skipLength(numVerts * 2 + 2);  // skip indices plus surf
+	    lengthRead += (numVerts * 2) + 4;  // increment counter
 	}
 	return lengthRead;
     }
@@ -167,39 +160,35 @@ class LwoParser extends ParserObject {
 	*/ 
     void getPols(int length) {
 	debugOutputLn(TRACE, "getPols(len), len = " + length);
-	int vert;
 	int lengthRead = 0;
 	int prevNumVerts = -1;
 	int prevNumSurf = 0;
-	Vector facetSizesList;
-	int facetIndicesArray[];
-	facetSizesList =
-	    new Vector(length/6);  // worst case size (every poly one vert)
-		// Note that our array sizes are hardcoded because we don't
-		// know until we're done how large they will be
-	facetIndicesArray = new int[length/2];
+	// Initial sizes guess at quads; the lists grow as needed
+	int sizesCapacity = Math.max(length / 10, 16);
+	int indicesCapacity = Math.max(length / 3, 16);
+	FastVector facetSizesList = new FastVector(sizesCapacity);
+	FastVector facetIndicesList = new FastVector(indicesCapacity);
 	ShapeHolder shape = new ShapeHolder(debugPrinter.getValidOutput());
 	debugOutputLn(VALUES, "new shape = " + shape);
 	shape.coordsArray = coordsArray;
 	shape.facetSizesList = facetSizesList;
-	//shape.facetIndicesList = facetIndicesList;
-	shape.facetIndicesArray = facetIndicesArray;
+	shape.facetIndicesList = facetIndicesList;
 	shapeList.addElement(shape);
 		
-    //long startTime = (new Date()).getTime();
+	int intArray[] = new int[16];
 	boolean firstTime = true;
 	while (lengthRead < length) {
 	    int numVerts = theReader.getShortInt();
 	    lengthRead += 2;
-	    int intArray[] = new int[numVerts];
+	    if (numVerts > intArray.length)
+		intArray = new int[numVerts];
 	    for (int i = 0; i < numVerts; ++i) {
 		intArray[i] = theReader.getShortInt();
-		lengthRead += 2;
 	    }
+	    lengthRead += numVerts * 2;
 
 	    int numSurf = theReader.getShortInt();
 	    lengthRead += 2;
-	    long startTimeBuff = 0, startTimeList = 0;
 	    if (!firstTime &&
 		(numSurf != prevNumSurf ||
 		 ((numVerts != prevNumVerts) &&
@@ -209,20 +198,19 @@ class LwoParser extends ParserObject {
 		shape = getAppropriateShape(numSurf, numVerts);
 		if (shape == null) {
 		    //debugOutputLn(LINE_TRACE, "Starting new shape");
-		    facetSizesList = new Vector(length/6);
-		    facetIndicesArray = new int[length/2];
+		    facetSizesList = new FastVector(sizesCapacity);
+		    facetIndicesList = new FastVector(indicesCapacity);
 		    shape = new ShapeHolder(debugPrinter.getValidOutput());
 		    shape.coordsArray = coordsArray;
 		    shape.facetSizesList = facetSizesList;
-		    //shape.facetIndicesList = facetIndicesList;
-		    shape.facetIndicesArray = facetIndicesArray;
+		    shape.facetIndicesList = facetIndicesList;
 		    shape.numSurf = numSurf;
 		    shape.numVerts = numVerts;
 		    shapeList.addElement(shape);
 		    }
 		else {
 		    facetSizesList = shape.facetSizesList;
-		    facetIndicesArray = shape.facetIndicesArray;
+		    facetIndicesList = shape.facetIndicesList;
 		}
 	    }
 	    else {
@@ -231,15 +219,15 @@ class LwoParser extends ParserObject {
 	    }
 	    prevNumVerts = numVerts;
 	    prevNumSurf = numSurf;
-	    facetSizesList.addElement(new Integer(numVerts));
+	    facetSizesList.addElement(numVerts);
 
-	    int currPtr = 0;
-	    System.arraycopy(intArray, 0,
-			     facetIndicesArray, shape.currentNumIndices,
-			     numVerts);
+	    for (int i = 0; i < numVerts; ++i) {
+		facetIndicesList.addElement(intArray[i]);
+	    }
 	    shape.currentNumIndices += numVerts;
 	    if (numSurf < 0) {   // neg number means detail poly
 		int numPolys = theReader.getShortInt();
+		lengthRead += 2;
 		lengthRead += skipDetailPolygons(numPolys);
 		shape.numSurf = ~shape.numSurf & 0xffff;
 		if (shape.numSurf == 0)
@@ -40,7 +40,6 @@
 package com.sun.j3d.loaders.lw3d;
 
 import java.awt.Image;
-import java.io.IOException;
 import java.util.Vector;
 import java.util.Enumeration;
 import javax.vecmath.Color3f;
@@ -194,15 +193,10 @@ class LwoSurface extends ParserObject {
 
 	    if (tokenString.equals("COLR")) {
 		debugOutputLn(LINE_TRACE, "  COLR");
-		try {
-		    red = theReader.read();
-		    green = theReader.read();
-		    blue = theReader.read();
-		    theReader.read();
-		}
-		catch (IOException e) {
-		    throw new ParsingErrorException(e.getMessage());
-		}
+		red = theReader.read();
+		green = theReader.read();
+		blue = theReader.read();
+		theReader.read();
 		if (fieldLength != 4)
 		    throw new IncorrectFormatException(
 			J3dUtilsI18N.getString("LwoSurface0"));
@@ -45,7 +45,6 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.io.FileReader;
 import java.io.File;
-import java.io.IOException;
 import java.util.Vector;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -132,16 +131,20 @@ class LwoTexture extends ParserObject {
 	debugOutputLn(TRACE, "getTexture()");
 	if (theImage == null)
 	    return null;
-	Texture2D t2d = (Texture2D)textureTable.get(theImage);
-	if (t2d == null) {
-	    ImageScaler scaler = new ImageScaler((BufferedImage)theImage);
-	    BufferedImage scaledImage = (BufferedImage)scaler.getScaledImage();
-	    TextureLoader tl = new TextureLoader(scaledImage);
-	    t2d = (Texture2D)tl.getTexture();
-	    textureTable.put(theImage, t2d);
+	// Objects may be loaded in parallel, so the lookup and the
+	// creation must be atomic to share one texture per image
+	synchronized (textureTable) {
+	    Texture2D t2d = (Texture2D)textureTable.get(theImage);
+	    if (t2d == null) {
+		ImageScaler scaler = new ImageScaler((BufferedImage)theImage);
+		BufferedImage scaledImage =
+		    (BufferedImage)scaler.getScaledImage();
+		TextureLoader tl = new TextureLoader(scaledImage);
+		t2d = (Texture2D)tl.getTexture();
+		textureTable.put(theImage, t2d);
+	    }
+	    return t2d;
 	}
-
-	return t2d;
     }
 
     String getType() {
@@ -209,15 +212,10 @@ class LwoTexture extends ParserObject {
 	    }
 	    else if (tokenString.equals("TCLR")) {
 		debugOutputLn(WARNING, "Not yet handling: " + tokenString);
-		try {
-		    red = theReader.read();
-		    green = theReader.read();
-		    blue = theReader.read();
-		    theReader.read();
-		}
-		catch (IOException e) {
-		    throw new ParsingErrorException(e.getMessage());
-		}
+		red = theReader.read();
+		green = theReader.read();
+		blue = theReader.read();
+		theReader.read();
 		debugOutputLn(WARNING, "val = " + red + ", " + green +
 			      ", " + blue);
 	    }
@@ -226,19 +224,21 @@ class LwoTexture extends ParserObject {
 		imageFile = theReader.getString();
 		debugOutputLn(VALUES, "imageFile = " + imageFile);
 		if (imageFile.indexOf("none") == -1) {
-		    if ((theImage =
-			 (Image)imageTable.get(imageFile)) == null) {
-			try {
-			    TargaReader tr =
-				new TargaReader(imageFile,
-						debugPrinter.getValidOutput());
-			    theImage = tr.getImage();
-			    imageTable.put(imageFile, theImage);
-			}
-			catch (FileNotFoundException e) {
-			    // Ignore texture if can't find it
-			    debugOutputLn(WARNING, "Image File skipped: " +
-				imageFile);
+		    synchronized (imageTable) {
+			if ((theImage =
+			     (Image)imageTable.get(imageFile)) == null) {
+			    try {
+				TargaReader tr =
+				    new TargaReader(imageFile,
+						    debugPrinter.getValidOutput());
+				theImage = tr.getImage();
+				imageTable.put(imageFile, theImage);
+			    }
+			    catch (FileNotFoundException e) {
+				// Ignore texture if can't find it
+				debugOutputLn(WARNING, "Image File skipped: " +
+					      imageFile);
+			    }
 			}
 		    }
 		}
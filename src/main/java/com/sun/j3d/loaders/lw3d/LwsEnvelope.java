@@ -98,7 +98,7 @@ class LwsEnvelope extends TextfileParser {
 	debugOutputLn(VALUES, "got frames" + numFrames);
 
 	for (int i = 0; i < numFrames; ++i) {
-	    frames[i] = new LwsEnvelopeFrame(st);
+	    frames[i] = new LwsEnvelopeFrame(st, debugPrinter);
 	}
 	debugOutput(LINE_TRACE, "got all frames");
 
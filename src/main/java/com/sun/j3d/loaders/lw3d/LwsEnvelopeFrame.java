@@ -61,18 +61,22 @@ class LwsEnvelopeFrame extends TextfileParser {
 
     /**
      * Constructor: parses stream and stores data for one keyframe of
-     * an envelope sequence
+     * an envelope sequence, printing debug output with the printer of
+     * its envelope
      */    
-    LwsEnvelopeFrame(StreamTokenizer st) {
+    LwsEnvelopeFrame(StreamTokenizer st, DebugOutput debugPrinter) {
+	super(debugPrinter);
 	value = getNumber(st);
-	debugOutputLn(VALUES, "value = " + value);
 	frameNumber = (int)getNumber(st);
 	linearValue = (int)getNumber(st);
-	debugOutputLn(VALUES, "framenum, linear " + frameNumber + " , " + linearValue);
 	tension = getNumber(st);
 	continuity = getNumber(st);
 	bias = getNumber(st);
-	debugOutputLn(VALUES, "tension, cont, bias = " + tension + ", " + continuity + ", " + bias);
+	if (printValues()) {
+	    debugOutputLn(VALUES, "value = " + value);
+	    debugOutputLn(VALUES, "framenum, linear " + frameNumber + " , " + linearValue);
+	    debugOutputLn(VALUES, "tension, cont, bias = " + tension + ", " + continuity + ", " + bias);
+	}
 	//System.out.println("   FRAME VALS");
 	//printVals();
     }
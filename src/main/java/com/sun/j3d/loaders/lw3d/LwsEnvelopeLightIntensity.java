@@ -44,7 +44,6 @@ package com.sun.j3d.loaders.lw3d;
 import java.io.*;
 import javax.media.j3d.*;
 import javax.vecmath.*;
-import javax.media.j3d.TransformGroup;
 
 
 /**
@@ -100,8 +99,9 @@ class LwsEnvelopeLightIntensity extends LwsEnvelope {
 		values[i] = (float)frames[i].getValue();
 		knots[i] = (float)(frames[i].getFrameNum())/
 		    (float)(frames[numFrames-1].getFrameNum());
-		debugOutputLn(VALUES, "value, knot = " +
-				   values[i] + ", " + knots[i]);
+		if (printValues())
+		    debugOutputLn(VALUES, "value, knot = " +
+				  values[i] + ", " + knots[i]);
 	    }
 	    LightIntensityPathInterpolator l = new
 		LightIntensityPathInterpolator(theAlpha,
@@ -113,9 +113,6 @@ class LwsEnvelopeLightIntensity extends LwsEnvelope {
 	      BoundingSphere bounds =
 	  	  new BoundingSphere(new Point3d(0.0,0.0,0.0), 1000000.0);
 	      behaviors.setSchedulingBounds(bounds);
-              ((TransformGroup)target).setCapability
-                                (TransformGroup.ALLOW_TRANSFORM_WRITE);
-              ((TransformGroup)target).addChild(behaviors);
             }
 	}
     }
@@ -66,34 +66,40 @@ class LwsFrame extends TextfileParser {
 
     /**
      * Constructor: parses and stores all data associated with a particular
-     * keyframe
+     * keyframe, printing debug output with the printer of its motion
      */
-    LwsFrame(StreamTokenizer st) {
+    LwsFrame(StreamTokenizer st, DebugOutput debugPrinter) {
+	super(debugPrinter);
 	x = getNumber(st);
 	y = getNumber(st);
 	z = -getNumber(st);
-	debugOutputLn(VALUES, "x, y, z " + x + ", " + y + ", " + z);
 	heading = getNumber(st);
 	pitch = getNumber(st);
 	bank = getNumber(st);
-	debugOutputLn(VALUES, "(degrees) h, p, b = " + heading + ", " + pitch + ", " + bank);
+	if (printValues()) {
+	    debugOutputLn(VALUES, "x, y, z " + x + ", " + y + ", " + z);
+	    debugOutputLn(VALUES, "(degrees) h, p, b = " + heading + ", " + pitch + ", " + bank);
+	}
 	heading *= (Math.PI / 180.0);  // Java3d works with radians
 	pitch *= (Math.PI / 180.0);
 	bank *= (Math.PI / 180.0);
-	debugOutputLn(VALUES, "(radians) h, p, b = " + heading + ", " + pitch + ", " + bank);
+	if (printValues())
+	    debugOutputLn(VALUES, "(radians) h, p, b = " + heading + ", " + pitch + ", " + bank);
 	debugOutputLn(LINE_TRACE, "got pos and ori");
 	xScale = getNumber(st);
 	yScale = getNumber(st);
 	zScale = getNumber(st);
-	debugOutputLn(VALUES, "xs, ys, zs " + xScale +", " + yScale + ", " + zScale);
 	frameNumber = (int)getNumber(st);
 	// Note: The following spline controls are ignored
 	linearValue = (int)getNumber(st);
-	debugOutputLn(VALUES, "framenum, linear " + frameNumber + " , " + linearValue);
 	tension = getNumber(st);
 	continuity = getNumber(st);
 	bias = getNumber(st);
-	debugOutputLn(VALUES, "tension, cont, bias = " + tension + ", " + continuity + ", " + bias);
+	if (printValues()) {
+	    debugOutputLn(VALUES, "xs, ys, zs " + xScale +", " + yScale + ", " + zScale);
+	    debugOutputLn(VALUES, "framenum, linear " + frameNumber + " , " + linearValue);
+	    debugOutputLn(VALUES, "tension, cont, bias = " + tension + ", " + continuity + ", " + bias);
+	}
     }
 
 
@@ -104,6 +110,7 @@ class LwsFrame extends TextfileParser {
      * the new frame should be  (0.5 is half-way, etc)
      */
     LwsFrame(LwsFrame prevFrame, LwsFrame nextFrame, double ratio) {
+	super(prevFrame.debugPrinter);
 
  	x = prevFrame.x + (nextFrame.x - prevFrame.x) * ratio;
 	y = prevFrame.y + (nextFrame.y - prevFrame.y) * ratio;
@@ -144,6 +151,7 @@ class LwsFrame extends TextfileParser {
     LwsFrame(LwsFrame prevFrame, LwsFrame frame1, 
              LwsFrame frame2, LwsFrame nextFrame, double u, 
              double adj0, double adj1) {
+	super(frame1.debugPrinter);
 
         double h1, h2, h3, h4;
         double dd0a, dd0b, ds1a, ds1b;
@@ -281,10 +289,11 @@ class LwsFrame extends TextfileParser {
     void setRotationMatrix(Matrix4d mat)
     {
 	debugOutputLn(TRACE, "setRotMat()");
-	debugOutputLn(VALUES, " p, h, b = " +
-			   pitch + ", " +
-			   heading + ", " +
-			   bank);
+	if (printValues())
+	    debugOutputLn(VALUES, " p, h, b = " +
+			  pitch + ", " +
+			  heading + ", " +
+			  bank);
 	Matrix4d pitchMat = new Matrix4d();
 	pitchMat.rotX(-pitch);
 	Matrix4d bankMat = new Matrix4d();
@@ -292,21 +301,22 @@ class LwsFrame extends TextfileParser {
 	mat.rotY(-heading);
 	mat.mul(pitchMat);
 	mat.mul(bankMat);
-	debugOutputLn(VALUES, "setRotMat(), mat = " + mat);
+	if (printValues())
+	    debugOutputLn(VALUES, "setRotMat(), mat = " + mat);
     }
 
-    Point3f getPosition() {
-	return (new Point3f((float)x, (float)y, (float)z));
+    void getPosition(Point3f position) {
+	position.set((float)x, (float)y, (float)z);
     }
 
-    Point3f getScale() {
+    void getScale(Point3f scale) {
         // Make sure we don't have zero scale components
         if ((xScale < -0.0001 || xScale > 0.0001) &&
             (yScale < -0.0001 || yScale > 0.0001) &&
             (zScale < -0.0001 || zScale > 0.0001)) {
-	   return (new Point3f((float)xScale, (float)yScale, (float)zScale));
+	   scale.set((float)xScale, (float)yScale, (float)zScale);
         } else {
-	   return (new Point3f(1.0f, 1.0f, 1.0f));
+	   scale.set(1.0f, 1.0f, 1.0f);
         }
     }
 
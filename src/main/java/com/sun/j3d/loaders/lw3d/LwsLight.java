@@ -127,16 +127,8 @@ class LwsLight extends TextfileParser implements LwsPrimitive {
 	    }
 	    else if (isCurrentToken(st, "LgtIntensity")) {
 		// TODO: must be able to handle envelopes here
-		String className = getClass().getName();
-		int classIndex = className.lastIndexOf('.');
-		String packageName;
-		if (classIndex < 0)
-		    packageName = "";
-		else
-		    packageName = className.substring(0, classIndex) + ".";
 		EnvelopeHandler env = 
-		    new EnvelopeHandler(st, totalFrames, totalTime,
-			    packageName + "LwsEnvelopeLightIntensity");
+		    new EnvelopeHandler(st, totalFrames, totalTime, true);
 		if (env.hasValue) {
 		    float intensity = (float)env.theValue;
 		    color.x *= intensity;
@@ -230,8 +222,12 @@ class LwsLight extends TextfileParser implements LwsPrimitive {
 	      b = null;
 	      intensityEnvelope.createJava3dBehaviors(lwLight);
 	      b = intensityEnvelope.getBehaviors(); 
-	      if (b != null)
+	      if (b != null) {
+		// The target of the envelope is the LwLightObject, so the
+		// behavior goes under the light's TransformGroup
+		objectTransform.addChild(b);
 		objectBehavior.addElement(b);
+	      }
 	    }
 	  }
 	}
@@ -77,6 +77,10 @@ class LwsMotion extends TextfileParser {
     int totalFrames;
     Behavior behaviors;
 
+    // Scratch points for the key frames, which copy them
+    private Point3f position = new Point3f();
+    private Point3f scale = new Point3f();
+
     /**
      * Constructor
      */
@@ -125,7 +129,7 @@ class LwsMotion extends TextfileParser {
 	debugOutputLn(VALUES, "got frames" + numFrames);
 
 	for (int i = 0; i < numFrames; ++i) {
-	    frames[i] = new LwsFrame(st);
+	    frames[i] = new LwsFrame(st, debugPrinter);
 	}
 
 	debugOutput(LINE_TRACE, "got all frames");
@@ -469,56 +473,22 @@ class LwsMotion extends TextfileParser {
 		      0, 0, (long)animTime, 0,
 		      alphaAtOne, 0, 0, 0);
 
-	float knots[]           = new float[numFrames];
-	Point3f[] positions     = new Point3f[numFrames];
-	Quat4f[] quats          = new Quat4f[numFrames];
-        Point3f[] scales        = new Point3f[numFrames];
 	Transform3D yAxis       = new Transform3D();
-	Matrix4d mat            = new Matrix4d(); 
         KBKeyFrame[] keyFrames  = new KBKeyFrame[numFrames];
 
 	for (int i=0; i < numFrames; ++i) {
 
 	    FrameHolder frameHolder = (FrameHolder)frameHolders.elementAt(i);
-	    LwsFrame frame = frameHolder.frame;
-
-            // copy position
-	    positions[i] = frame.getPosition();
- 
-            // copy scale
-	    // Used to hardcode no-scale:   scales[i] = 1.0f, 1.0f, 1.0f;
-            // Note that we can't do non-uniform scaling in the current Path
-            // interpolators. The interpolator just uses the x scale.
-            // getScale makes sure that we don't have any zero scale component
-            scales[i] = frame.getScale();
-
-            // copy rotation information
-	    frame.setRotationMatrix(mat);
-	    debugOutputLn(VALUES, "LwsMotion::createj3dbeh, mat = " + mat);
-	    quats[i] = new Quat4f();
-	    quats[i].set(mat);
-	    debugOutputLn(VALUES, " and quat = " + quats[i]);
 
             // calculate knot points from frame numbers 
+	    float knot;
 	    if (i == 0)
-	      knots[i] = 0.0f;
+	      knot = 0.0f;
 	    else	
-	      knots[i] = (float)(frameHolder.frameNumber)/
+	      knot = (float)(frameHolder.frameNumber)/
 				(float)(lastFrameHolder.frameNumber);
 
-             // Create KB key frames
-             keyFrames[i] = new KBKeyFrame(knots[i], frame.linearValue,  
-                                                     positions[i], 
-                                                     (float)frame.heading,
-                                                     (float)frame.pitch,
-                                                     (float)frame.bank,
-                                                     scales[i],
-                                                     (float)frame.tension,
-                                                     (float)frame.continuity,
-                                                     (float)frame.bias);
-
-	    debugOutputLn(VALUES, "pos, knots, quat = " +
-			  positions[i] + knots[i] + quats[i]);
+	    keyFrames[i] = createKeyFrame(frameHolder.frame, knot);
 	}
 
         // Pass the KeyFrames to the interpolator an let it do its thing
@@ -580,54 +550,20 @@ class LwsMotion extends TextfileParser {
 			  0, 0, (long)animTime, 0,
 			  alphaAtOne, 0, 0, 0);
 
-	    float knots[]           = new float[numFrames];
-	    Point3f[] positions     = new Point3f[numFrames];
-	    Quat4f[] quats          = new Quat4f[numFrames];
-            Point3f[] scales        = new Point3f[numFrames];
 	    Transform3D yAxis       = new Transform3D();
-	    Matrix4d mat            = new Matrix4d();
             KBKeyFrame[] keyFrames  = new KBKeyFrame[numFrames]; 
 
 	    for (int i=0; i < numFrames; ++i) {
 
-                // copy position
-		positions[i] = frames[i].getPosition();
-
-                // copy scale
-                // Used to hardcode no-scale:   scales[i] = 1.0f, 1.0f, 1.0f;
-                // Note that we can't do non-uniform scaling in the current Path
-                // interpolators. The interpolator just uses the x scale.
-                // getScale makes sure that we don't have any 0 scale component
-                scales[i] = frames[i].getScale();
-
-                // copy rotation information
-		frames[i].setRotationMatrix(mat);
-		debugOutputLn(VALUES, "LwsMotion::createj3dbeh, mat = " + mat);
-		quats[i] = new Quat4f();
-		quats[i].set(mat);
-		debugOutputLn(VALUES, " and quat = " + quats[i]);
-		
                 // calculate knot points from frame numbers
+		float knot;
 		if (i == 0)
-		   knots[i] = 0.0f;
+		   knot = 0.0f;
 		else
-		   knots[i] = (float)(frames[i].getFrameNum())/
+		   knot = (float)(frames[i].getFrameNum())/
 		   	         (float)(frames[numFrames-1].getFrameNum());
 
-                // Create KB key frames
-                keyFrames[i] = new KBKeyFrame(knots[i],frames[i].linearValue,
-                                              positions[i], 
-                                              (float)frames[i].heading,
-                                              (float)frames[i].pitch,
-                                              (float)frames[i].bank,
-                                              scales[i],
-                                              (float)frames[i].tension,
-                                              (float)frames[i].continuity,
-                                              (float)frames[i].bias);
- 
-
-		debugOutputLn(VALUES, "pos, knots, quat = " +
-				   positions[i] + knots[i] + quats[i]);
+		keyFrames[i] = createKeyFrame(frames[i], knot);
 	    }
 
             // Pass the KeyFrames to the interpolator an let it do its thing
@@ -648,6 +584,41 @@ class LwsMotion extends TextfileParser {
 
     }
 
+    /**
+     * Creates the KB key frame of a LwsFrame.  The position and scale
+     * go through scratch points, since KBKeyFrame copies them, and the
+     * rotation matrix and quaternion are only computed for debug output.
+     */
+    KBKeyFrame createKeyFrame(LwsFrame frame, float knot) {
+
+        // Note that we can't do non-uniform scaling in the current Path
+        // interpolators. The interpolator just uses the x scale.
+        // getScale makes sure that we don't have any zero scale component
+	frame.getPosition(position);
+	frame.getScale(scale);
+
+	if (printValues()) {
+	    Matrix4d mat = new Matrix4d();
+	    Quat4f quat = new Quat4f();
+	    frame.setRotationMatrix(mat);
+	    quat.set(mat);
+	    debugOutputLn(VALUES, "LwsMotion::createj3dbeh, mat = " + mat);
+	    debugOutputLn(VALUES, " and quat = " + quat);
+	    debugOutputLn(VALUES, "pos, knots, quat = " +
+			  position + knot + quat);
+	}
+
+	return new KBKeyFrame(knot, frame.linearValue,
+			      position,
+			      (float)frame.heading,
+			      (float)frame.pitch,
+			      (float)frame.bank,
+			      scale,
+			      (float)frame.tension,
+			      (float)frame.continuity,
+			      (float)frame.bias);
+    }
+
     /**
      * Returns the Behavior object created for this animation
      */
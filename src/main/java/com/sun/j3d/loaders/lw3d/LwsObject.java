@@ -79,6 +79,7 @@ class LwsObject extends TextfileParser implements LwsPrimitive {
     Vector         shapeList = null;
     boolean        hasPivot = false;
     TransformGroup pivotTransGroup = null;
+    J3dLwoParser   objParser = null;
 
   URL urlName;
     String protocol;
@@ -392,6 +393,67 @@ class LwsObject extends TextfileParser implements LwsPrimitive {
 	}
     }
 
+    /**
+     * Returns the name of the sequence file for the "_sequence_" object
+     * file hack described in createJava3dObject(), or null if this
+     * object is not such a sequence or the sequence file doesn't exist.
+     */
+    String getSequenceFilename() {
+	String seqToken = "_sequence_";
+	if (fileName == null || fileName.indexOf(seqToken) == -1)
+	    return null;
+	int index = fileName.indexOf(seqToken);
+	index += seqToken.length();
+	String seqFilename = fileName.substring(index);
+	int endIndex = seqFilename.indexOf(".lwo");
+	if (endIndex != -1)
+	    seqFilename = seqFilename.substring(0, endIndex);
+	if ((new File(seqFilename)).exists())
+	    return seqFilename;
+	return null;
+    }
+
+    /**
+     * Returns true if createJava3dObject() needs to parse an external
+     * geometry file for this object when it isn't cloned from another
+     * object.
+     */
+    boolean hasGeometryFile() {
+	return (fileName != null || urlName != null) &&
+	    getSequenceFilename() == null;
+    }
+
+    /**
+     * Parses the external geometry file of this object and creates its
+     * Java3d geometry.  The loader calls this ahead of
+     * createJava3dObject() so that the geometry files of several objects
+     * can be parsed at the same time; it doesn't touch any state shared
+     * with other objects.
+     */
+    void loadGeometry()
+	throws IncorrectFormatException, ParsingErrorException,
+	    FileNotFoundException
+    {
+	debugOutputLn(VALUES,
+		      "About to load binary file for " + fileName);
+	// Create a J3dLwoParser object to parse the geometry file
+	// and create the appropriate geometry
+	J3dLwoParser parser = null;
+	switch (fileType) {
+	case Lw3dLoader.FILE_TYPE_FILENAME:
+	  parser =
+	    new J3dLwoParser(fileName,
+			     debugPrinter.getValidOutput());
+	  break;
+	case Lw3dLoader.FILE_TYPE_URL:
+	  parser = new J3dLwoParser(urlName,
+				    debugPrinter.getValidOutput());
+	  break;
+	}
+	parser.createJava3dGeometry();
+	objParser = parser;
+    }
+
     /**
      * Creates Java3d objects from the data stored for this object.
      * The objects created consist of: A TransformGroup that holds the
@@ -404,7 +466,6 @@ class LwsObject extends TextfileParser implements LwsPrimitive {
 	throws IncorrectFormatException, ParsingErrorException,
 	    FileNotFoundException
     {
-	String seqToken = new String("_sequence_");
 	Matrix4d mat = new Matrix4d();
 	mat.setIdentity();
 	// Set the node's transform matrix according to the first frame
@@ -433,31 +494,23 @@ class LwsObject extends TextfileParser implements LwsPrimitive {
 	// i think it would be better to base any Tloop stuff on that
 	// standard than on some proprietary hack of our own.
 
-	if (fileName != null && fileName.indexOf(seqToken) != -1) { // Tloop
-	   
-	    int index = fileName.indexOf(seqToken);
-	    index += seqToken.length();
-	    String seqFilename = fileName.substring(index);
-	    int endIndex = seqFilename.indexOf(".lwo");
-	    if (endIndex != -1)
-		seqFilename = seqFilename.substring(0, endIndex);
-	    if ((new File(seqFilename)).exists()) {
-		SequenceReader sr =
-		    new SequenceReader(seqFilename,
-				       motion.totalTime,
-				       (int)motion.totalFrames);
-		sr.printLines();
-		sr.createJava3dObjects(debugPrinter.getValidOutput(),
-                                                         loadBehaviors);
-		Group  g = sr.getObjectNode();
-		if (g != null)
-		    objectTransform.addChild(g);
-
-                // Sequence reader's getObjectBehaviors creates new Vector
-		objectBehavior = sr.getObjectBehaviors();
-
-		return;
-            }	
+	String seqFilename = getSequenceFilename();
+	if (seqFilename != null) { // Tloop
+	    SequenceReader sr =
+		new SequenceReader(seqFilename,
+				   motion.totalTime,
+				   (int)motion.totalFrames);
+	    sr.printLines();
+	    sr.createJava3dObjects(debugPrinter.getValidOutput(),
+				   loadBehaviors);
+	    Group  g = sr.getObjectNode();
+	    if (g != null)
+		objectTransform.addChild(g);
+
+	    // Sequence reader's getObjectBehaviors creates new Vector
+	    objectBehavior = sr.getObjectBehaviors();
+
+	    return;
 	}
 
 	// Okay, now that that hack is out of the way, let's get on with
@@ -466,23 +519,12 @@ class LwsObject extends TextfileParser implements LwsPrimitive {
 	    // If this object refers to an obj file, load it and create
 	    // geometry from it.
 	    if (cloneObject == null) {
-		debugOutputLn(VALUES,
-			      "About to load binary file for " + fileName);
-		// Create a J3dLwoParser object to parse the geometry file
-		// and create the appropriate geometry
-		J3dLwoParser objParser = null;
-		switch (fileType) {
-		case Lw3dLoader.FILE_TYPE_FILENAME:
-		  objParser =
-		    new J3dLwoParser(fileName,
-				     debugPrinter.getValidOutput());
-		  break;
-		case Lw3dLoader.FILE_TYPE_URL:
-		  objParser = new J3dLwoParser(urlName,
-					       debugPrinter.getValidOutput());
-		  break;
-		}
-		objParser.createJava3dGeometry();
+		// Use the geometry from loadGeometry() if the loader
+		// already parsed the file
+		if (objParser == null)
+		    loadGeometry();
+		J3dLwoParser objParser = this.objParser;
+		this.objParser = null;
 		// pivot points change the parent transform
 		if (hasPivot) {
 		    objectTransform.addChild(pivotTransGroup);
@@ -39,8 +39,8 @@
 
 package com.sun.j3d.loaders.lw3d;
 
-import java.util.Vector;
 import javax.vecmath.Vector3f;
+import com.sun.j3d.internal.FastVector;
 
 
 /**
@@ -52,9 +52,8 @@ import javax.vecmath.Vector3f;
 class ShapeHolder extends ParserObject {
 
     
-    Vector facetSizesList;
-    Vector facetIndicesList;
-    int facetIndicesArray[];
+    FastVector facetSizesList;
+    FastVector facetIndicesList;
     int currentNumIndices = 0;
     int numSurf;
     int numVerts;
@@ -109,33 +108,30 @@ class ShapeHolder extends ParserObject {
 	//	      facetSizesList.size());
 	//facetIndices = 
 	//	    new int[facetIndicesList.size()];
+	int numFacets = facetSizesList.getSize();
+	int sizes[] = facetSizesList.getData();
+	int indices[] = facetIndicesList.getData();
 	facetIndices = new int[currentNumIndices];
 	if (reverseWinding) {
 	    int facetBeginIndex = 0;
-	    for (int facetIndex = 0;
-		 facetIndex < facetSizesList.size();
-		 ++facetIndex) {
-		int currFaceSize =
-		    ((Integer)facetSizesList.elementAt(facetIndex)).intValue();
-		int tempFace[] = new int[currFaceSize];
+	    for (int facetIndex = 0; facetIndex < numFacets; ++facetIndex) {
+		int currFaceSize = sizes[facetIndex];
+		int facetEndIndex = facetBeginIndex + currFaceSize - 1;
 		for (int j = 0; j < currFaceSize; ++j) {
-		    facetIndices[facetBeginIndex  + j] =
-			facetIndicesArray[facetBeginIndex +
-					 currFaceSize - j - 1];
+		    facetIndices[facetBeginIndex + j] =
+			indices[facetEndIndex - j];
 		}
 		facetBeginIndex += currFaceSize;
 	    }
 
 	}
 	else {
-	    for (int i = 0; i < facetIndices.length; ++i) {
-		facetIndices[i] = facetIndicesArray[i];
-	    }
+	    System.arraycopy(indices, 0, facetIndices, 0, facetIndices.length);
 	}
 
 	debugOutputLn(LINE_TRACE, "facetIndices.len and coordsArray.len = " +
 		      facetIndices.length + ", " + coordsArray.length);
-	if (((Integer)facetSizesList.elementAt(0)).intValue() < 3) {
+	if (sizes[0] < 3) {
 	    // if we're dealing with point/line primitives, then let's abandon
 	    // the indexed route and simply construct a new coordsArray
 	    // that holds the direct values we need for a GeometryArray
@@ -159,16 +155,11 @@ class ShapeHolder extends ParserObject {
 	    facetIndices = null;
 	}
 
-	facetSizes = 
-	    new int[facetSizesList.size()];
-	for (int i = 0; i < facetSizes.length; ++i) {
-	    facetSizes[i] = 
-		((Integer)facetSizesList.elementAt(i)).intValue();
-	}
+	facetSizes = new int[numFacets];
+	System.arraycopy(sizes, 0, facetSizes, 0, numFacets);
 	
-	facetSizesList = null;  // Force garbage collection on Vectors
+	facetSizesList = null;  // Force garbage collection on lists
 	facetIndicesList = null;
-	facetIndicesArray = null;
     }
 
     /**
@@ -177,7 +168,6 @@ class ShapeHolder extends ParserObject {
     void nullify() {
 	facetSizesList = null;  // Force garbage collection on everything
 	facetIndicesList = null;
-	facetIndicesArray = null;
 	facetSizes = null;
 	facetIndices = null;
 	normalCoords = null;
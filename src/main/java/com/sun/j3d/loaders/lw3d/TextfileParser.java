@@ -59,13 +59,28 @@ class TextfileParser {
     final static int NONE = DebugOutput.NONE, EXCEPTION = DebugOutput.EXCEPTION;
     final static int TIME = DebugOutput.TIME;
     protected DebugOutput debugPrinter;
-    char lineSeparatorChar = 0;
+    static final char lineSeparatorChar =
+	System.getProperty("line.separator").charAt(0);
 
     TextfileParser() {
-	debugPrinter = new DebugOutput(EXCEPTION);
-	String lineSeparator = System.getProperty("line.separator");
-	lineSeparatorChar = lineSeparator.charAt(0);
-	debugOutputLn(VALUES, "lineSeparatorChar = " + (int)lineSeparatorChar);
+	this(new DebugOutput(EXCEPTION));
+    }
+
+    /**
+     * Constructor for the parsers created for each keyframe, which
+     * share the debug printer of their motion or envelope instead of
+     * allocating one per keyframe
+     */
+    TextfileParser(DebugOutput debugPrinter) {
+	this.debugPrinter = debugPrinter;
+    }
+
+    /**
+     * Returns true if VALUES debug output is enabled.  Used to skip
+     * building the debug strings of the values parsed for each keyframe.
+     */
+    boolean printValues() {
+	return (debugPrinter.getValidOutput() & VALUES) != 0;
     }
 
     
@@ -119,7 +134,7 @@ class TextfileParser {
 	    throw new ParsingErrorException(e.getMessage());
 	}
 	checkType(st, WORD);
-	return ((Double.valueOf(st.sval)).doubleValue());
+	return Double.parseDouble(st.sval);
     }
 
     /**
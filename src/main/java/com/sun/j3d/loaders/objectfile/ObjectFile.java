@@ -49,6 +49,8 @@ import com.sun.j3d.loaders.objectfile.ObjectFileMaterials;
 import com.sun.j3d.utils.geometry.GeometryInfo;
 import com.sun.j3d.utils.geometry.NormalGenerator;
 import com.sun.j3d.utils.geometry.Stripifier;
+import com.sun.j3d.internal.FastVector;
+import com.sun.j3d.internal.ParallelLoop;
 import java.io.FileNotFoundException;
 import java.io.StreamTokenizer;
 import java.io.Reader;
@@ -57,8 +59,11 @@ import java.io.BufferedInputStream;
 import java.io.FileReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.HashMap;
 import java.util.StringTokenizer;
@@ -258,6 +263,17 @@ public class ObjectFile implements Loader {
      */
     public static final int STRIPIFY = REVERSE << 1;
 
+    /**
+     * Flag sent to constructor.  The Shape3D objects will be given
+     * indexed geometry created BY_REFERENCE instead of non-indexed
+     * geometry holding a copy of the data.  The arrays of each
+     * Shape3D only hold the vertices of its group, so its bounds
+     * only cover that group.
+     *
+     * @since Java 3D 1.6
+     */
+    public static final int BY_REFERENCE = STRIPIFY << 1;
+
     private static final char BACKSLASH = '\\';
 
     private int flags;
@@ -265,51 +281,59 @@ public class ObjectFile implements Loader {
     private URL baseUrl = null;
     private boolean fromUrl = false;
     private float radians;
+    private int parallelism = ParallelLoop.getDefaultParallelism();
 
-    // First, lists of points are read from the .obj file into these arrays. . .
-    private ArrayList coordList;	// Holds Point3f
-    private ArrayList texList;		// Holds TexCoord2f
-    private ArrayList normList;		// Holds Vector3f
+    // First, points are read from the .obj file into these arrays. . .
+    private float coordList[];		// x, y and z of each vertex
+    private int coordCount;		// Number of floats used
+    private float texList[];		// s and t of each texture coordinate
+    private int texCount;
+    private float normList[];		// x, y and z of each normal
+    private int normCount;
 
     // . . . and index lists are read into these arrays.
-    private ArrayList coordIdxList;	// Holds Integer index into coordList
-    private ArrayList texIdxList;	// Holds Integer index into texList
-    private ArrayList normIdxList;	// Holds Integer index into normList
+    private FastVector coordIdxList;	// Holds index into coordList
+    private FastVector texIdxList;	// Holds index into texList
+    private FastVector normIdxList;	// Holds index into normList
 
     // The length of each face is stored in this array.
-    private ArrayList stripCounts;	// Holds Integer
+    private FastVector stripCounts;
 
     // Each face's Geometry Group membership is kept here. . .
-    private HashMap groups;		// key=Integer index into stripCounts
-					// value=String name of group
+    private FastVector groups;		// Holds index into groupNames
+    private ArrayList groupNames;	// Holds String name of group
+    private HashMap groupIds;		// key=String name of group
+					// value=Integer index into groupNames
     private String curGroup;
+    private int curGroupId;
 
     // . . . and Smoothing Group membership is kept here
-    private HashMap sGroups;		// key=Integer index into stripCounts
-					// value=String name of group
+    private FastVector sGroups;		// Holds index into sGroupNames,
+					// or -1 if there's no current group
+    private ArrayList sGroupNames;
+    private HashMap sGroupIds;
     private String curSgroup;
+    private int curSgroupId;
 
     // The name of each group's "usemtl" material property is kept here
     private HashMap groupMaterials;	// key=String name of Group
 					// value=String name of material
 
 
-    // After reading the entire file, the faces are converted into triangles.
-    // The Geometry Group information is converted into these structures. . .
-    private HashMap triGroups;		// key=String name of group
-					// value=ArrayList of Integer
-					//       indices into coordIdxList
-    private ArrayList curTriGroup;
+    // After reading the entire file, the faces are converted into
+    // triangles.  Each triangle has 3 indices in each list. . .
+    private int triCoordIdx[];
+    private int triTexIdx[];
+    private int triNormIdx[];
+    private int numTris;
 
-    // . . . and Smoothing Group info is converted into these.
-    private HashMap triSgroups;		// key=String name of group
-					// value=ArrayList of Integer
-					// indices into coordIdxList
-    private ArrayList curTriSgroup;
+    // . . . and the index of its Geometry Group and Smoothing Group.
+    private int triGroups[];
+    private int triSgroups[];
 
 
     // Finally, coordList, texList, and normList are converted to arrays for
-    // use with GeometryInfo
+    // use with GeometryInfo when needed
     private Point3f coordArray[] = null;
     private Vector3f normArray[] = null;
     private TexCoord2f texArray[] = null;
@@ -321,22 +345,26 @@ public class ObjectFile implements Loader {
 
 
     void readVertex(ObjectFileParser st) throws ParsingErrorException {
-	Point3f p = new Point3f();
+	float x, y, z;
 
 	st.getNumber();
-	p.x = (float)st.nval;
+	x = (float)st.nval;
 	st.getNumber();
-	p.y = (float)st.nval;
+	y = (float)st.nval;
 	st.getNumber();
-	p.z = (float)st.nval;
+	z = (float)st.nval;
 
 	if ((DEBUG & 32) != 0)
-	    System.out.println("  (" + p.x + "," + p.y + "," + p.z + ")");
+	    System.out.println("  (" + x + "," + y + "," + z + ")");
 
 	st.skipToNextLine();
 
 	// Add this vertex to the array
-	coordList.add(p);
+	if (coordCount + 3 > coordList.length)
+	    coordList = ObjectFileByteParser.grow(coordList, coordCount + 3);
+	coordList[coordCount++] = x;
+	coordList[coordCount++] = y;
+	coordList[coordCount++] = z;
     } // End of readVertex
 
 
@@ -344,22 +372,26 @@ public class ObjectFile implements Loader {
      * readNormal
      */
     void readNormal(ObjectFileParser st) throws ParsingErrorException {
-	Vector3f p = new Vector3f();
+	float x, y, z;
 
 	st.getNumber();
-	p.x = (float)st.nval;
+	x = (float)st.nval;
 	st.getNumber();
-	p.y = (float)st.nval;
+	y = (float)st.nval;
 	st.getNumber();
-	p.z = (float)st.nval;
+	z = (float)st.nval;
 
 	if ((DEBUG & 32) != 0)
-	    System.out.println("  (" + p.x + "," + p.y + "," + p.z + ")");
+	    System.out.println("  (" + x + "," + y + "," + z + ")");
 
 	st.skipToNextLine();
 
 	// Add this vertex to the array
-	normList.add(p);
+	if (normCount + 3 > normList.length)
+	    normList = ObjectFileByteParser.grow(normList, normCount + 3);
+	normList[normCount++] = x;
+	normList[normCount++] = y;
+	normList[normCount++] = z;
     } // End of readNormal
 
 
@@ -367,20 +399,23 @@ public class ObjectFile implements Loader {
      * readTexture
      */
     void readTexture(ObjectFileParser st) throws ParsingErrorException {
-	TexCoord2f p = new TexCoord2f();
+	float s, t;
 
 	st.getNumber();
-	p.x = (float)st.nval;
+	s = (float)st.nval;
 	st.getNumber();
-	p.y = (float)st.nval;
+	t = (float)st.nval;
 
 	if ((DEBUG & 32) != 0)
-	    System.out.println("  (" + p.x + "," + p.y + ")");
+	    System.out.println("  (" + s + "," + t + ")");
 
 	st.skipToNextLine();
 
 	// Add this vertex to the array
-	texList.add(p);
+	if (texCount + 2 > texList.length)
+	    texList = ObjectFileByteParser.grow(texList, texCount + 2);
+	texList[texCount++] = s;
+	texList[texCount++] = t;
     } // End of readTexture
 
 
@@ -408,8 +443,8 @@ public class ObjectFile implements Loader {
 	    st.pushBack();
 	    st.getNumber();
 	    vertIndex = (int)st.nval - 1;
-	    if (vertIndex < 0) vertIndex += coordList.size() + 1;
-	    coordIdxList.add(new Integer(vertIndex));
+	    if (vertIndex < 0) vertIndex += coordCount / 3 + 1;
+	    coordIdxList.addElement(vertIndex);
 
 	    // Next token is a slash, a number, or EOL.  Continue on slash
 	    st.getToken();
@@ -422,8 +457,8 @@ public class ObjectFile implements Loader {
 		    st.pushBack();
 		    st.getNumber();
 		    texIndex = (int)st.nval - 1;
-		    if (texIndex < 0) texIndex += texList.size() + 1;
-		    texIdxList.add(new Integer(texIndex));
+		    if (texIndex < 0) texIndex += texCount / 2 + 1;
+		    texIdxList.addElement(texIndex);
 		    st.getToken();
 		}
 
@@ -433,8 +468,8 @@ public class ObjectFile implements Loader {
 		    // There has to be a number after the 2nd slash
 		    st.getNumber();
 		    normIndex = (int)st.nval - 1;
-		    if (normIndex < 0) normIndex += normList.size() + 1;
-		    normIdxList.add(new Integer(normIndex));
+		    if (normIndex < 0) normIndex += normCount / 3 + 1;
+		    normIdxList.addElement(normIndex);
 		    st.getToken();
 		}
 	    }
@@ -445,30 +480,61 @@ public class ObjectFile implements Loader {
 	    count++;
 	}
 
-	Integer faceNum = new Integer(stripCounts.size());
-	stripCounts.add(new Integer(count));
-
-	// Add face to current groups
-	groups.put(faceNum, curGroup);
-	if (curSgroup != null) sGroups.put(faceNum, curSgroup);
+	addFace(count);
 
 	// In case we exited early
 	st.skipToNextLine();
     } // End of readFace
 
 
+    /**
+     * Adds a face of count vertices to the current groups.
+     */
+    private void addFace(int count) {
+	stripCounts.addElement(count);
+	groups.addElement(curGroupId);
+	sGroups.addElement(curSgroup != null ? curSgroupId : -1);
+    } // End of addFace
+
+
+    /**
+     * Returns the index of a group name in names, adding it if needed.
+     */
+    private static int groupId(ArrayList names, HashMap ids, String name) {
+	Integer id = (Integer)ids.get(name);
+	if (id == null) {
+	    id = new Integer(names.size());
+	    names.add(name);
+	    ids.put(name, id);
+	}
+	return id.intValue();
+    } // End of groupId
+
+
     /**
      * readPartName
      */
     void readPartName(ObjectFileParser st) {
 	st.getToken();
 
+	setPartName(st.ttype != ObjectFileParser.TT_WORD ? null : st.sval);
+
+	st.skipToNextLine();
+    } // End of readPartName
+
+
+    /**
+     * Makes the named group, or "default" if name is null, the current
+     * group.
+     */
+    private void setPartName(String name) {
 	// Find the Material Property of the current group
 	String curMat = (String)groupMaterials.get(curGroup);
 
 	// New faces will be added to the curGroup
-	if (st.ttype != ObjectFileParser.TT_WORD) curGroup = "default";
-	else curGroup = st.sval;
+	if (name == null) curGroup = "default";
+	else curGroup = name;
+	curGroupId = groupId(groupNames, groupIds, curGroup);
 	if ((DEBUG & 32) != 0) System.out.println("  Changed to group " + curGroup);
 
 	// See if this group has Material Properties yet
@@ -476,9 +542,7 @@ public class ObjectFile implements Loader {
 	    // It doesn't - carry over from last group
 	    groupMaterials.put(curGroup, curMat);
 	}
-
-	st.skipToNextLine();
-    } // End of readPartName
+    } // End of setPartName
 
 
     /**
@@ -487,16 +551,21 @@ public class ObjectFile implements Loader {
     void readMaterialName(ObjectFileParser st) throws ParsingErrorException {
 	st.getToken();
 	if (st.ttype == ObjectFileParser.TT_WORD) {
-	    groupMaterials.put(curGroup, new String(st.sval));
-	    if ((DEBUG & 32) != 0) {
-		System.out.println("  Material Property " + st.sval +
-				   " assigned to group " + curGroup);
-	    }
+	    setMaterialName(st.sval);
 	}
 	st.skipToNextLine();
     } // End of readMaterialName
 
 
+    private void setMaterialName(String name) {
+	groupMaterials.put(curGroup, new String(name));
+	if ((DEBUG & 32) != 0) {
+	    System.out.println("  Material Property " + name +
+			       " assigned to group " + curGroup);
+	}
+    } // End of setMaterialName
+
+
     /**
      * loadMaterialFile
      *
@@ -517,14 +586,19 @@ public class ObjectFile implements Loader {
 	    if (st.ttype == ObjectFileParser.TT_WORD) s = st.sval;
 	} while (st.ttype != ObjectFileParser.TT_EOL);
 
-	materials.readMaterialFile(fromUrl,
-				   fromUrl ? baseUrl.toString() : basePath, s);
+	loadMaterialFile(s);
 
 	st.lowerCaseMode(true);
 	st.skipToNextLine();
     } // End of loadMaterialFile
 
 
+    private void loadMaterialFile(String s) throws ParsingErrorException {
+	materials.readMaterialFile(fromUrl,
+				   fromUrl ? baseUrl.toString() : basePath, s);
+    } // End of loadMaterialFile
+
+
     /**
      * readSmoothingGroup
      */
@@ -534,13 +608,19 @@ public class ObjectFile implements Loader {
 	    st.skipToNextLine();
 	    return;
 	}
-	if (st.sval.equals("off")) curSgroup = "0";
-	else curSgroup = st.sval;
-	if ((DEBUG & 32) != 0) System.out.println("  Smoothing group " + curSgroup);
+	setSmoothingGroup(st.sval);
 	st.skipToNextLine();
     } // End of readSmoothingGroup
 
 
+    private void setSmoothingGroup(String name) {
+	if (name.equals("off")) curSgroup = "0";
+	else curSgroup = name;
+	curSgroupId = groupId(sGroupNames, sGroupIds, curSgroup);
+	if ((DEBUG & 32) != 0) System.out.println("  Smoothing group " + curSgroup);
+    } // End of setSmoothingGroup
+
+
     /**
      * readFile
      *
@@ -602,6 +682,110 @@ public class ObjectFile implements Loader {
     } // End of readFile
 
 
+    /**
+     * readFile
+     *
+     *    Read the model data from the chunks of the file parsed by an
+     *    ObjectFileByteParser.  The chunks are merged in order, replaying
+     *    their group, smoothing group and material lines between faces.
+     */
+    void readFile(ObjectFileByteParser parser) throws IOException {
+	ObjectFileByteParser.Chunk chunks[] = parser.parse(parallelism);
+
+	// Report the first error, with its line in the file
+	int line = 0;
+	for (int i = 0 ; i < chunks.length ; i++) {
+	    ObjectFileByteParser.Chunk c = chunks[i];
+	    if (c.error != null) {
+		throw new ParsingErrorException(c.errorLine == -1 ? c.error :
+						c.error + (line + c.errorLine));
+	    }
+	    line += c.lines;
+	}
+
+	// Allocate the lists for the whole file
+	int coords = 0, texs = 0, norms = 0;
+	int coordIdx = 0, texIdx = 0, normIdx = 0, faces = 0;
+	for (int i = 0 ; i < chunks.length ; i++) {
+	    coords += chunks[i].coordCount;
+	    texs += chunks[i].texCoordCount;
+	    norms += chunks[i].normalCount;
+	    coordIdx += chunks[i].coordIdx.getSize();
+	    texIdx += chunks[i].texIdx.getSize();
+	    normIdx += chunks[i].normIdx.getSize();
+	    faces += chunks[i].stripCounts.getSize();
+	}
+	coordList = new float[Math.max(coords, 1)];
+	texList = new float[Math.max(texs, 1)];
+	normList = new float[Math.max(norms, 1)];
+	coordIdxList = new FastVector(Math.max(coordIdx, 1));
+	texIdxList = new FastVector(Math.max(texIdx, 1));
+	normIdxList = new FastVector(Math.max(normIdx, 1));
+	stripCounts = new FastVector(Math.max(faces, 1));
+	groups = new FastVector(Math.max(faces, 1));
+	sGroups = new FastVector(Math.max(faces, 1));
+
+	for (int i = 0 ; i < chunks.length ; i++) {
+	    ObjectFileByteParser.Chunk c = chunks[i];
+
+	    addIndices(coordIdxList, c.coordIdx, c.relCoordIdx, coordCount / 3);
+	    addIndices(texIdxList, c.texIdx, c.relTexIdx, texCount / 2);
+	    addIndices(normIdxList, c.normIdx, c.relNormIdx, normCount / 3);
+
+	    System.arraycopy(c.coords, 0, coordList, coordCount, c.coordCount);
+	    coordCount += c.coordCount;
+	    System.arraycopy(c.texCoords, 0, texList, texCount, c.texCoordCount);
+	    texCount += c.texCoordCount;
+	    System.arraycopy(c.normals, 0, normList, normCount, c.normalCount);
+	    normCount += c.normalCount;
+
+	    int counts[] = c.stripCounts.getData();
+	    int eventFaces[] = c.eventFaces.getData();
+	    int eventTypes[] = c.eventTypes.getData();
+	    int f = 0;
+	    for (int e = 0 ; e <= c.eventTypes.getSize() ; e++) {
+		int end = e < c.eventTypes.getSize() ?
+		    eventFaces[e] : c.stripCounts.getSize();
+		for ( ; f < end ; f++) addFace(counts[f]);
+		if (e == c.eventTypes.getSize()) break;
+
+		String name = (String)c.eventNames.get(e);
+		switch (eventTypes[e]) {
+		case ObjectFileByteParser.GROUP:
+		    setPartName(name);
+		    break;
+		case ObjectFileByteParser.SMOOTHING_GROUP:
+		    setSmoothingGroup(name);
+		    break;
+		case ObjectFileByteParser.MATERIAL:
+		    setMaterialName(name);
+		    break;
+		case ObjectFileByteParser.MATERIAL_FILE:
+		    loadMaterialFile(name);
+		    break;
+		}
+	    }
+	}
+    } // End of readFile
+
+
+    /**
+     * Adds the indices of a chunk to a list, making its relative
+     * indices absolute.
+     */
+    private static void addIndices(FastVector list, FastVector chunkList,
+				   FastVector relative, int base) {
+	int indices[] = chunkList.getData();
+	int rel[] = relative.getData();
+	for (int i = 0 ; i < relative.getSize() ; i++) {
+	    indices[rel[i]] += base;
+	}
+	for (int i = 0 ; i < chunkList.getSize() ; i++) {
+	    list.addElement(indices[i]);
+	}
+    } // End of addIndices
+
+
     /**
      * Constructor.
      *
@@ -655,7 +839,8 @@ public class ObjectFile implements Loader {
 
     /**
      * The Object File is loaded from the .obj file specified by
-     * the filename.
+     * the filename.  The file is memory mapped and parsed in chunks
+     * by several threads (see setParallelism).
      * To attach the model to your scene, call getSceneGroup() on
      * the Scene object passed back, and attach the returned
      * BranchGroup to your scene graph.  For an example, see 
@@ -667,8 +852,20 @@ public class ObjectFile implements Loader {
 
 	setBasePathFromFilename(filename);
 
-	Reader reader = new BufferedReader(new FileReader(filename));
-	return load(reader);
+	RandomAccessFile file = new RandomAccessFile(filename, "r");
+	try {
+	    return load(new ObjectFileByteParser(file));
+	}
+	catch (IOException e) {
+	    throw new ParsingErrorException(e.getMessage());
+	}
+	finally {
+	    try {
+		file.close();
+	    }
+	    catch (IOException e) {
+	    }
+	}
     } // End of load(String)
 
 
@@ -690,7 +887,9 @@ public class ObjectFile implements Loader {
 
 
     /**
-     * The object file is loaded off of the web.
+     * The object file is loaded off of the web.  The whole file is
+     * read before it is parsed in chunks by several threads (see
+     * setParallelism).
      * To attach the model to your scene, call getSceneGroup() on
      * the Scene object passed back, and attach the returned
      * BranchGroup to your scene graph.  For an example, see 
@@ -699,18 +898,33 @@ public class ObjectFile implements Loader {
     public Scene load(URL url) throws FileNotFoundException,
 				      IncorrectFormatException,
 				      ParsingErrorException {
-	BufferedReader reader;
+	InputStream in;
 
 	if (baseUrl == null) setBaseUrlFromUrl(url);
 
 	try {
-	    reader = new BufferedReader(new InputStreamReader(url.openStream()));
+	    in = url.openStream();
 	}
 	catch (IOException e) {
 	    throw new FileNotFoundException(e.getMessage());
 	}
 	fromUrl = true;
-	return load(reader);
+
+	ObjectFileByteParser parser;
+	try {
+	    parser = new ObjectFileByteParser(in);
+	}
+	catch (IOException e) {
+	    throw new ParsingErrorException(e.getMessage());
+	}
+	finally {
+	    try {
+		in.close();
+	    }
+	    catch (IOException e) {
+	    }
+	}
+	return load(parser);
     } // End of load(URL)
 
 
@@ -722,23 +936,22 @@ public class ObjectFile implements Loader {
      * See normalize() below for an example of how to use this method.
      */
     private Point3f[] getLimits() {
-	Point3f cur_vtx = new Point3f();
-
 	// Find the limits of the model
 	Point3f[] limit = new Point3f[2];
 	limit[0] = new Point3f(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
 	limit[1] = new Point3f(Float.MIN_VALUE, Float.MIN_VALUE, Float.MIN_VALUE);
-	for (int i = 0 ; i < coordList.size() ; i++) {
-
-	    cur_vtx = (Point3f)coordList.get(i);
+	for (int i = 0 ; i < coordCount ; i += 3) {
+	    float x = coordList[i];
+	    float y = coordList[i + 1];
+	    float z = coordList[i + 2];
 
 	    // Keep track of limits for normalization
-	    if (cur_vtx.x < limit[0].x) limit[0].x = cur_vtx.x;
-	    if (cur_vtx.x > limit[1].x) limit[1].x = cur_vtx.x;
-	    if (cur_vtx.y < limit[0].y) limit[0].y = cur_vtx.y;
-	    if (cur_vtx.y > limit[1].y) limit[1].y = cur_vtx.y;
-	    if (cur_vtx.z < limit[0].z) limit[0].z = cur_vtx.z;
-	    if (cur_vtx.z > limit[1].z) limit[1].z = cur_vtx.z;
+	    if (x < limit[0].x) limit[0].x = x;
+	    if (x > limit[1].x) limit[1].x = x;
+	    if (y < limit[0].y) limit[0].y = y;
+	    if (y > limit[1].y) limit[1].y = y;
+	    if (z < limit[0].z) limit[0].z = z;
+	    if (z > limit[1].z) limit[1].z = z;
 	}
 
 	if ((DEBUG & 64) != 0) {
@@ -756,8 +969,7 @@ public class ObjectFile implements Loader {
      * Center the object and make it (-1,-1,-1) to (1,1,1).
      */
     private void resize() {
-	int i, j;
-	Point3f cur_vtx = new Point3f();
+	int i;
 	float biggest_dif;
 
 	Point3f[] limit = getLimits();
@@ -780,76 +992,111 @@ public class ObjectFile implements Loader {
 	    biggest_dif = limit[1].z - limit[0].z;
 	biggest_dif /= 2.0f;
 
-	for (i = 0 ; i < coordList.size() ; i++) {
-
-	    cur_vtx = (Point3f)coordList.get(i);
-
-	    cur_vtx.add(cur_vtx, offset);
-
-	    cur_vtx.x /= biggest_dif;
-	    cur_vtx.y /= biggest_dif;
-	    cur_vtx.z /= biggest_dif;
-
-	    // coordList.setElementAt(cur_vtx, i);
+	for (i = 0 ; i < coordCount ; i += 3) {
+	    coordList[i] = (coordList[i] + offset.x) / biggest_dif;
+	    coordList[i + 1] = (coordList[i + 1] + offset.y) / biggest_dif;
+	    coordList[i + 2] = (coordList[i + 2] + offset.z) / biggest_dif;
 	}
     } // End of resize
 
 
-    private int[] objectToIntArray(ArrayList inList) {
-	int outList[] = new int[inList.size()];
-	for (int i = 0 ; i < inList.size() ; i++) {
-	    outList[i] = ((Integer)inList.get(i)).intValue();
-	}
+    private static int[] trim(FastVector inList) {
+	int outList[] = new int[inList.getSize()];
+	System.arraycopy(inList.getData(), 0, outList, 0, outList.length);
 	return outList;
-    } // End of objectToIntArray
+    } // End of trim
 
 
-    private Point3f[] objectToPoint3Array(ArrayList inList) {
-	Point3f outList[] = new Point3f[inList.size()];
-	for (int i = 0 ; i < inList.size() ; i++) {
-	    outList[i] = (Point3f)inList.get(i);
+    private Point3f[] getCoordArray() {
+	if (coordArray == null) {
+	    coordArray = new Point3f[coordCount / 3];
+	    for (int i = 0 ; i < coordArray.length ; i++) {
+		coordArray[i] = new Point3f(coordList[i * 3],
+					    coordList[i * 3 + 1],
+					    coordList[i * 3 + 2]);
+	    }
 	}
-	return outList;
-    } // End of objectToPoint3Array
-
+	return coordArray;
+    } // End of getCoordArray
 
 
-    private TexCoord2f[] objectToTexCoord2Array(ArrayList inList) {
-	TexCoord2f outList[] = new TexCoord2f[inList.size()];
-	for (int i = 0 ; i < inList.size() ; i++) {
-	    outList[i] = (TexCoord2f)inList.get(i);
+    private TexCoord2f[] getTexArray() {
+	if (texArray == null) {
+	    texArray = new TexCoord2f[texCount / 2];
+	    for (int i = 0 ; i < texArray.length ; i++) {
+		texArray[i] = new TexCoord2f(texList[i * 2], texList[i * 2 + 1]);
+	    }
 	}
-	return outList;
-    } // End of objectToTexCoord2Array
+	return texArray;
+    } // End of getTexArray
 
 
-    private Vector3f[] objectToVectorArray(ArrayList inList) {
-	Vector3f outList[] = new Vector3f[inList.size()];
-	for (int i = 0 ; i < inList.size() ; i++) {
-	    outList[i] = (Vector3f)inList.get(i);
+    private Vector3f[] getNormArray() {
+	if (normArray == null) {
+	    normArray = new Vector3f[normCount / 3];
+	    for (int i = 0 ; i < normArray.length ; i++) {
+		normArray[i] = new Vector3f(normList[i * 3],
+					    normList[i * 3 + 1],
+					    normList[i * 3 + 2]);
+	    }
 	}
-	return outList;
-    } // End of objectToVectorArray
+	return normArray;
+    } // End of getNormArray
+
+
+    /**
+     * Returns the triangles of each group, in the order of the triangle
+     * list: the triangles of group g are
+     * list[offsets[g]] to list[offsets[g + 1] - 1].
+     */
+    private static int[] sortByGroup(int triGroup[], int numTris,
+				     int numGroups, int offsets[]) {
+	for (int t = 0 ; t < numTris ; t++) offsets[triGroup[t] + 1]++;
+	for (int g = 0 ; g < numGroups ; g++) offsets[g + 1] += offsets[g];
+	int next[] = new int[numGroups];
+	System.arraycopy(offsets, 0, next, 0, numGroups);
+	int list[] = new int[numTris];
+	for (int t = 0 ; t < numTris ; t++) list[next[triGroup[t]]++] = t;
+	return list;
+    } // End of sortByGroup
 
 
     /**
-     * Each group is a list of indices into the model's index lists,
-     * indicating the starting index of each triangle in the group.
-     * This method converts those data structures
-     * into an integer array to use with GeometryInfo.
+     * Each group is a range of the list of triangles sorted by group.
+     * This method copies the indices of these triangles into an
+     * integer array to use with GeometryInfo.
      */
-    private int[] groupIndices(ArrayList sourceList, ArrayList group) {
-	int indices[] = new int[group.size() * 3];
-	for (int i = 0 ; i < group.size() ; i++) {
-	    int j = ((Integer)group.get(i)).intValue();
-	    indices[i * 3 + 0] = ((Integer)sourceList.get(j + 0)).intValue();
-	    indices[i * 3 + 1] = ((Integer)sourceList.get(j + 1)).intValue();
-	    indices[i * 3 + 2] = ((Integer)sourceList.get(j + 2)).intValue();
+    private static int[] groupIndices(int source[], int list[],
+				      int start, int end) {
+	int indices[] = new int[(end - start) * 3];
+	for (int i = start ; i < end ; i++) {
+	    int j = list[i] * 3;
+	    int k = (i - start) * 3;
+	    indices[k + 0] = source[j + 0];
+	    indices[k + 1] = source[j + 1];
+	    indices[k + 2] = source[j + 2];
 	}
 	return indices;
     } // end of groupIndices
 
 
+    /**
+     * Returns the names of the groups in the order in which they are
+     * made into Shape3D objects: the order of a HashMap where each name
+     * is put when the first face of its group is seen.
+     */
+    private static Iterator groupOrder(ArrayList names, int faceGroups[],
+				       int numFaces, int defaultGroup) {
+	HashMap order = new HashMap(50);
+	for (int f = 0 ; f < numFaces ; f++) {
+	    int g = faceGroups[f] == -1 ? defaultGroup : faceGroups[f];
+	    String name = (String)names.get(g);
+	    if (!order.containsKey(name)) order.put(name, new Integer(g));
+	}
+	return order.values().iterator();
+    } // End of groupOrder
+
+
     /**
      * smoothingGroupNormals
      *
@@ -861,26 +1108,28 @@ public class ObjectFile implements Loader {
      * are then copied out of the GeometryInfo and back into
      * ObjectFile data structures.
      */
-    private void smoothingGroupNormals() {
+    private void smoothingGroupNormals(Iterator e, int list[], int offsets[]) {
 	NormalGenerator ng =
 	    new NormalGenerator(radians == -1.0f ? Math.PI : radians);
 	NormalGenerator ng0 = new NormalGenerator(0.0);
-	normList.clear();
-	normIdxList = null;
-	int newNormIdxArray[] = new int[coordIdxList.size()];
+	normList = new float[Math.max(numTris * 9, 1)];
+	normCount = 0;
+	normArray = null;
+	triNormIdx = new int[numTris * 3];
 
-	Iterator e = triSgroups.keySet().iterator();
 	while (e.hasNext()) {
-	    String curname = (String)e.next();
-	    ArrayList triList = (ArrayList)triSgroups.get(curname);
+	    int sg = ((Integer)e.next()).intValue();
+	    String curname = (String)sGroupNames.get(sg);
+	    int start = offsets[sg];
+	    int end = offsets[sg + 1];
 
 	    // Check for group with no faces
-	    if (triList.size() > 0) {
+	    if (end > start) {
 
 		GeometryInfo gi = new GeometryInfo(GeometryInfo.TRIANGLE_ARRAY);
 
-		gi.setCoordinateIndices(groupIndices(coordIdxList, triList));
-		gi.setCoordinates(coordArray);
+		gi.setCoordinateIndices(groupIndices(triCoordIdx, list, start, end));
+		gi.setCoordinates(getCoordArray());
 
 		if (curname.equals("0")) ng0.generateNormals(gi);
 		else ng.generateNormals(gi);
@@ -890,42 +1139,38 @@ public class ObjectFile implements Loader {
 		int genNormIndices[] = gi.getNormalIndices();
 
 		// Now we need to copy the generated normals into ObjectFile
-		// data structures (normList and normIdxList).  The variable
+		// data structures (normList and triNormIdx).  The variable
 		// normIdx is the index of the index of the normal currently
-		// being put into the list.  It takes some calculation to
-		// figure out the new index and where to put it.
+		// being put into the list.
 		int normIdx = 0;
 		// Repeat for each triangle in the smoothing group
-		for (int i = 0 ; i < triList.size() ; i++) {
+		for (int i = start ; i < end ; i++) {
 
-		    // Get the coordIdxList index of the first index in this face
-		    int idx = ((Integer)triList.get(i)).intValue();
+		    // Get the index of the first index of this triangle
+		    int idx = list[i] * 3;
 
 		    // Repeat for each vertex in the triangle
 		    for (int j = 0 ; j < 3 ; j++) {
 
 			// Put the new normal's index into the index list
-			newNormIdxArray[idx + j] = normList.size();
+			triNormIdx[idx + j] = normCount / 3;
 
 			// Add the vertex's normal to the normal list
-			normList.add(genNorms[genNormIndices[normIdx++]]);
+			Vector3f n = genNorms[genNormIndices[normIdx++]];
+			normList[normCount++] = n.x;
+			normList[normCount++] = n.y;
+			normList[normCount++] = n.z;
 		    }
 		}
 	    }
 	}
-	normIdxList = new ArrayList(coordIdxList.size());
-	for (int i = 0 ; i < coordIdxList.size() ; i++) {
-	    normIdxList.add(new Integer(newNormIdxArray[i]));
-	}
-	normArray = objectToVectorArray(normList);
     } // end of smoothingGroupNormals
 
 
     /**
      * Each face is converted to triangles.  As each face is converted,
      * we look up which geometry group and smoothing group the face
-     * belongs to.  The generated triangles are added to each of these
-     * groups, which are also being converted to a new triangle based format.
+     * belongs to, and keep them with the triangles.
      *
      * We need to convert to triangles before normals are generated
      * because of smoothing groups.  The faces in a smoothing group 
@@ -941,35 +1186,27 @@ public class ObjectFile implements Loader {
      * with our original Fan data, so we couldn't tell which normals
      * go with which vertices.
      */
-    private void convertToTriangles() {
+    private void convertToTriangles(boolean textures, boolean normals) {
 	boolean triangulate = (flags & TRIANGULATE) != 0;
-	boolean textures = !texList.isEmpty() && !texIdxList.isEmpty() &&
-	    (texIdxList.size() == coordIdxList.size());
-	boolean normals = !normList.isEmpty() && !normIdxList.isEmpty() &&
-	    (normIdxList.size() == coordIdxList.size());
-	int numFaces = stripCounts.size();
+	int numFaces = stripCounts.getSize();
+	int counts[] = stripCounts.getData();
 	boolean haveSgroups = curSgroup != null;
 
-	triGroups = new HashMap(50);
-	if (haveSgroups) triSgroups = new HashMap(50);
-
-	ArrayList newCoordIdxList = null;
-	ArrayList newTexIdxList = null;
-	ArrayList newNormIdxList = null;
+	triCoordIdx = null;
 
 	if (triangulate) {
 	    GeometryInfo gi = new GeometryInfo(GeometryInfo.POLYGON_ARRAY);
-	    gi.setStripCounts(objectToIntArray(stripCounts));
-	    gi.setCoordinates(coordArray);
-	    gi.setCoordinateIndices(objectToIntArray(coordIdxList));
+	    gi.setStripCounts(trim(stripCounts));
+	    gi.setCoordinates(getCoordArray());
+	    gi.setCoordinateIndices(trim(coordIdxList));
 	    if (textures) {
 		gi.setTextureCoordinateParams(1, 2);
-		gi.setTextureCoordinates(0, texArray);
-		gi.setTextureCoordinateIndices(0, objectToIntArray(texIdxList));
+		gi.setTextureCoordinates(0, getTexArray());
+		gi.setTextureCoordinateIndices(0, trim(texIdxList));
 	    }
 	    if (normals) {
-		gi.setNormals(normArray);
-		gi.setNormalIndices(objectToIntArray(normIdxList));
+		gi.setNormals(getNormArray());
+		gi.setNormalIndices(trim(normIdxList));
 	    }
 	    gi.convertToIndexedTriangles();
 
@@ -982,119 +1219,200 @@ public class ObjectFile implements Loader {
 	    // Make sure triangulated geometry has the correct number of triangles
 	    int tris = 0;
 	    for (int i = 0 ; i < numFaces ; i++)
-		tris += ((Integer)stripCounts.get(i)).intValue() - 2;
+		tris += counts[i] - 2;
 
 	    if (coordIndicesArray.length != (tris * 3)) {
 		// Model contains bad polygons that didn't triangulate into the
 		// correct number of triangles.  Fall back to "simple" triangulation
 		triangulate = false;
 	    } else {
-
-		int texIndicesArray[] = gi.getTextureCoordinateIndices();
-		int normIndicesArray[] = gi.getNormalIndices();
-
-		// Convert index arrays to internal ArrayList format
-		coordIdxList.clear();
-		texIdxList.clear();
-		normIdxList.clear();
-		for (int i = 0 ; i < coordIndicesArray.length ; i++) {
-		    coordIdxList.add(new Integer(coordIndicesArray[i]));
-		    if (textures) texIdxList.add(new Integer(texIndicesArray[i]));
-		    if (normals) normIdxList.add(new Integer(normIndicesArray[i]));
-		}
+		numTris = tris;
+		triCoordIdx = coordIndicesArray;
+		if (textures) triTexIdx = gi.getTextureCoordinateIndices();
+		if (normals) triNormIdx = gi.getNormalIndices();
 	    }
 	}
 
 	if (!triangulate) {
-	    newCoordIdxList = new ArrayList();
-	    if (textures) newTexIdxList = new ArrayList();
-	    if (normals) newNormIdxList = new ArrayList();
+	    numTris = 0;
+	    for (int f = 0 ; f < numFaces ; f++)
+		if (counts[f] > 2) numTris += counts[f] - 2;
+	    triCoordIdx = new int[numTris * 3];
+	    if (textures) triTexIdx = new int[numTris * 3];
+	    if (normals) triNormIdx = new int[numTris * 3];
 	}
 
-	// Repeat for each face in the model - add the triangles from each 
-	// face to the Geometry and Smoothing Groups
+	int coordIdx[] = coordIdxList.getData();
+	int texIdx[] = texIdxList.getData();
+	int normIdx[] = normIdxList.getData();
+	int faceGroups[] = groups.getData();
+	int faceSgroups[] = sGroups.getData();
+
+	triGroups = new int[numTris];
+	triSgroups = haveSgroups ? new int[numTris] : null;
+
+	// Weird case - a face has no smoothing group.  Happens if the
+	// first 's' token comes after some faces have already been defined.
+	// Assume they wanted no smoothing for these faces
+	int noSgroup = haveSgroups ? groupId(sGroupNames, sGroupIds, "0") : -1;
+
+	// Repeat for each face in the model - keep the groups of the
+	// triangles from each face
 	int baseVertex = 0;
+	int tri = 0;
 	for (int f = 0 ; f < numFaces ; f++) {
-	    int faceSize = ((Integer)stripCounts.get(f)).intValue();
-
-	    // Find out the name of the group to which this face belongs
-	    Integer curFace = new Integer(f);
-	    curGroup = (String)groups.get(curFace);
+	    int faceSize = counts[f];
+	    int sGroup = haveSgroups ?
+		(faceSgroups[f] == -1 ? noSgroup : faceSgroups[f]) : -1;
+
+	    // Each polygon of n vertices is now n-2 triangles
+	    for (int v = 0 ; v < faceSize - 2 ; v++) {
+		triGroups[tri] = faceGroups[f];
+		if (haveSgroups) triSgroups[tri] = sGroup;
+
+		if (!triangulate) {
+		    // Triangulate simply
+		    int t = tri * 3;
+		    triCoordIdx[t] = coordIdx[baseVertex];
+		    triCoordIdx[t + 1] = coordIdx[baseVertex + v + 1];
+		    triCoordIdx[t + 2] = coordIdx[baseVertex + v + 2];
 
-	    // Change to a new geometry group, create if it doesn't exist
-	    curTriGroup = (ArrayList)triGroups.get(curGroup);
-	    if (curTriGroup == null) {
-		curTriGroup = new ArrayList();
-		triGroups.put(curGroup, curTriGroup);
-	    }
+		    if (textures) {
+			triTexIdx[t] = texIdx[baseVertex];
+			triTexIdx[t + 1] = texIdx[baseVertex + v + 1];
+			triTexIdx[t + 2] = texIdx[baseVertex + v + 2];
+		    }
 
-	    // Change to a new smoothing group, create if it doesn't exist
-	    if (haveSgroups) {
-		curSgroup = (String)sGroups.get(curFace);
-		if (curSgroup == null) {
-		    // Weird case - this face has no smoothing group.  Happens if the
-		    // first 's' token comes after some faces have already been defined.
-		    // Assume they wanted no smoothing for these faces
-		    curSgroup = "0";
-		}
-		curTriSgroup = (ArrayList)triSgroups.get(curSgroup);
-		if (curTriSgroup == null) {
-		    curTriSgroup = new ArrayList();
-		    triSgroups.put(curSgroup, curTriSgroup);
+		    if (normals) {
+			triNormIdx[t] = normIdx[baseVertex];
+			triNormIdx[t + 1] = normIdx[baseVertex + v + 1];
+			triNormIdx[t + 2] = normIdx[baseVertex + v + 2];
+		    }
 		}
+		tri++;
 	    }
+	    if (!triangulate) baseVertex += faceSize;
+	}
+    } // End of convertToTriangles
 
-	    if (triangulate) {
 
-		// Each polygon of n vertices is now n-2 triangles
-		for (int t = 0 ; t < faceSize - 2 ; t++) {
+    /**
+     * Creates the geometry of a group directly from the model arrays,
+     * when the normals come from the file and the triangles are not
+     * stripified.  The result is the same as with GeometryInfo:
+     * non-indexed triangles, or with the BY_REFERENCE flag, indexed
+     * triangles referring to arrays that hold only the vertices of
+     * the group.
+     */
+    private GeometryArray makeGeometry(int list[], int start, int end,
+				       boolean do_tex) {
+	int coordIndices[] = groupIndices(triCoordIdx, list, start, end);
+	int normIndices[] = groupIndices(triNormIdx, list, start, end);
+	int texIndices[] = do_tex ? groupIndices(triTexIdx, list, start, end) : null;
+	int vertexCount = coordIndices.length;
+	int vertexFormat = GeometryArray.COORDINATES | GeometryArray.NORMALS;
+	int texCoordSetMap[] = null;
+	if (do_tex) {
+	    vertexFormat |= GeometryArray.TEXTURE_COORDINATE_2;
+	    texCoordSetMap = new int[] {0};
+	}
 
-		    // The groups just remember the first vertex of each triangle
-		    Integer triBaseVertex = new Integer(baseVertex);
-		    curTriGroup.add(triBaseVertex);
-		    if (haveSgroups) curTriSgroup.add(triBaseVertex);
+	if ((flags & REVERSE) != 0) {
+	    reverse(coordIndices);
+	    reverse(normIndices);
+	    if (do_tex) reverse(texIndices);
+	}
 
-		    baseVertex += 3;
+	if ((flags & BY_REFERENCE) != 0) {
+	    // Give the group its own arrays, holding one vertex for each
+	    // distinct coordinate, normal and texture coordinate index
+	    // triple it uses, so the bounds of the Shape3D only cover
+	    // the group and the arrays need no padding
+	    int table[] = new int[Integer.highestOneBit(vertexCount) << 2];
+	    int mask = table.length - 1;
+	    Arrays.fill(table, -1);
+	    int vertCoord[] = new int[vertexCount];
+	    int vertNorm[] = new int[vertexCount];
+	    int vertTex[] = do_tex ? new int[vertexCount] : null;
+	    int indices[] = new int[vertexCount];
+	    int count = 0;
+	    for (int i = 0 ; i < vertexCount ; i++) {
+		int c = coordIndices[i];
+		int n = normIndices[i];
+		int t = do_tex ? texIndices[i] : 0;
+		int h = (((c * 31) + n) * 31 + t) * 0x9e3779b9;
+		h = (h ^ (h >>> 16)) & mask;
+		int v;
+		while ((v = table[h]) >= 0 &&
+		       (vertCoord[v] != c || vertNorm[v] != n ||
+			(do_tex && vertTex[v] != t))) {
+		    h = (h + 1) & mask;
 		}
-	    } else {
-		// Triangulate simply
-		for (int v = 0 ; v < faceSize - 2 ; v++) {
-		    // Add this triangle to the geometry group and the smoothing group
-		    Integer triBaseVertex = new Integer(newCoordIdxList.size());
-		    curTriGroup.add(triBaseVertex);
-		    if (haveSgroups) curTriSgroup.add(triBaseVertex);
+		if (v < 0) {
+		    v = count++;
+		    table[h] = v;
+		    vertCoord[v] = c;
+		    vertNorm[v] = n;
+		    if (do_tex) vertTex[v] = t;
+		}
+		indices[i] = v;
+	    }
 
-		    newCoordIdxList.add(coordIdxList.get(baseVertex));
-		    newCoordIdxList.add(coordIdxList.get(baseVertex + v + 1));
-		    newCoordIdxList.add(coordIdxList.get(baseVertex + v + 2));
+	    float coords[] = new float[count * 3];
+	    float norms[] = new float[count * 3];
+	    float texs[] = do_tex ? new float[count * 2] : null;
+	    for (int i = 0 ; i < count ; i++) {
+		System.arraycopy(coordList, vertCoord[i] * 3, coords, i * 3, 3);
+		System.arraycopy(normList, vertNorm[i] * 3, norms, i * 3, 3);
+		if (do_tex)
+		    System.arraycopy(texList, vertTex[i] * 2, texs, i * 2, 2);
+	    }
 
-		    if (textures) {
-			newTexIdxList.add(texIdxList.get(baseVertex));
-			newTexIdxList.add(texIdxList.get(baseVertex + v + 1));
-			newTexIdxList.add(texIdxList.get(baseVertex + v + 2));
-		    }
+	    IndexedTriangleArray ita = new IndexedTriangleArray(count,
+		vertexFormat | GeometryArray.BY_REFERENCE |
+		GeometryArray.USE_COORD_INDEX_ONLY,
+		do_tex ? 1 : 0, texCoordSetMap, vertexCount);
+	    ita.setCoordRefFloat(coords);
+	    ita.setNormalRefFloat(norms);
+	    if (do_tex) ita.setTexCoordRefFloat(0, texs);
+	    ita.setCoordinateIndices(0, indices);
+	    return ita;
+	}
 
-		    if (normals) {
-			newNormIdxList.add(normIdxList.get(baseVertex));
-			newNormIdxList.add(normIdxList.get(baseVertex + v + 1));
-			newNormIdxList.add(normIdxList.get(baseVertex + v + 2));
-		    }
-		}
-		baseVertex += faceSize;
+	float coords[] = new float[vertexCount * 3];
+	float norms[] = new float[vertexCount * 3];
+	float texs[] = do_tex ? new float[vertexCount * 2] : null;
+	for (int i = 0 ; i < vertexCount ; i++) {
+	    int c = coordIndices[i] * 3;
+	    coords[i * 3] = coordList[c];
+	    coords[i * 3 + 1] = coordList[c + 1];
+	    coords[i * 3 + 2] = coordList[c + 2];
+	    int n = normIndices[i] * 3;
+	    norms[i * 3] = normList[n];
+	    norms[i * 3 + 1] = normList[n + 1];
+	    norms[i * 3 + 2] = normList[n + 2];
+	    if (do_tex) {
+		int t = texIndices[i] * 2;
+		texs[i * 2] = texList[t];
+		texs[i * 2 + 1] = texList[t + 1];
 	    }
 	}
-
-	// No need to keep these around
-	stripCounts = null;
-	groups = null;
-	sGroups = null;
-
-	if (!triangulate) {
-	    coordIdxList = newCoordIdxList;
-	    texIdxList = newTexIdxList;
-	    normIdxList = newNormIdxList;
+	TriangleArray ta = new TriangleArray(vertexCount, vertexFormat,
+					     do_tex ? 1 : 0, texCoordSetMap);
+	ta.setCoordinates(0, coords);
+	ta.setNormals(0, norms);
+	if (do_tex) ta.setTextureCoordinates(0, 0, texs);
+	return ta;
+    } // End of makeGeometry
+
+
+    private static void reverse(int list[]) {
+	for (int i = 0, j = list.length - 1 ; i < j ; i++, j--) {
+	    int tmp = list[i];
+	    list[i] = list[j];
+	    list[j] = tmp;
 	}
-    } // End of convertToTriangles
+    } // End of reverse
 
 
     private SceneBase makeScene() {
@@ -1103,17 +1421,12 @@ public class ObjectFile implements Loader {
 	BranchGroup group = new BranchGroup();
 	scene.setSceneGroup(group);
 
-	boolean gen_norms = normList.isEmpty() || normIdxList.isEmpty() ||
-	    (normIdxList.size() != coordIdxList.size());
-	boolean do_tex = !texList.isEmpty() && !texIdxList.isEmpty() &&
-	    (texIdxList.size() == coordIdxList.size());
+	boolean gen_norms = normCount == 0 || normIdxList.getSize() == 0 ||
+	    (normIdxList.getSize() != coordIdxList.getSize());
+	boolean do_tex = texCount > 0 && texIdxList.getSize() > 0 &&
+	    (texIdxList.getSize() == coordIdxList.getSize());
 
-	// Convert ArrayLists to arrays
-	coordArray = objectToPoint3Array(coordList);
-	if (!gen_norms) normArray = objectToVectorArray(normList);
-	if (do_tex) texArray = objectToTexCoord2Array(texList);
-
-	convertToTriangles();
+	convertToTriangles(do_tex, !gen_norms);
 
 	if ((DEBUG & 8) != 0) {
 	    time = System.currentTimeMillis() - time;
@@ -1122,7 +1435,13 @@ public class ObjectFile implements Loader {
 	}
 
 	if ((gen_norms) && (curSgroup != null)) {
-	    smoothingGroupNormals();
+	    int offsets[] = new int[sGroupNames.size() + 1];
+	    int list[] = sortByGroup(triSgroups, numTris, sGroupNames.size(),
+				     offsets);
+	    smoothingGroupNormals(groupOrder(sGroupNames, sGroups.getData(),
+					     sGroups.getSize(),
+					     groupId(sGroupNames, sGroupIds, "0")),
+				  list, offsets);
 	    gen_norms = false;
 	    if ((DEBUG & 8) != 0) {
 		time = System.currentTimeMillis() - time;
@@ -1137,57 +1456,83 @@ public class ObjectFile implements Loader {
 	Stripifier strippy = null;
 	if ((flags & STRIPIFY) != 0) strippy = new Stripifier();
 
+	boolean byRef = (flags & BY_REFERENCE) != 0;
+
 	long t1 = 0, t2 = 0, t3 = 0, t4 = 0;
 
+	int offsets[] = new int[groupNames.size() + 1];
+	int list[] = sortByGroup(triGroups, numTris, groupNames.size(), offsets);
+
 	// Each "Group" of faces in the model will be one Shape3D
-	Iterator e = triGroups.keySet().iterator();
+	Iterator e = groupOrder(groupNames, groups.getData(),
+				groups.getSize(), -1);
 	while (e.hasNext()) {
 
-	    String curname = (String)e.next();
-	    ArrayList triList = (ArrayList)triGroups.get(curname);
+	    int g = ((Integer)e.next()).intValue();
+	    String curname = (String)groupNames.get(g);
+	    int start = offsets[g];
+	    int end = offsets[g + 1];
 
 	    // Check for group with no faces
-	    if (triList.size() > 0) {
+	    if (end > start) {
 
-		GeometryInfo gi = new GeometryInfo(GeometryInfo.TRIANGLE_ARRAY);
+		if ((DEBUG & 8) != 0) time = System.currentTimeMillis();
 
-		gi.setCoordinateIndices(groupIndices(coordIdxList, triList));
-		gi.setCoordinates(coordArray);
+		GeometryArray geometry;
+		if (!gen_norms && (flags & STRIPIFY) == 0) {
+		    // Nothing to compute - skip GeometryInfo
+		    geometry = makeGeometry(list, start, end, do_tex);
+		} else {
+		    GeometryInfo gi = new GeometryInfo(GeometryInfo.TRIANGLE_ARRAY);
 
-		if (do_tex) {
-		    gi.setTextureCoordinateParams(1, 2);
-		    gi.setTextureCoordinates(0, texArray);
-		    gi.setTextureCoordinateIndices(0, groupIndices(texIdxList, triList));
-		}
+		    gi.setCoordinateIndices(groupIndices(triCoordIdx, list,
+							 start, end));
+		    gi.setCoordinates(getCoordArray());
 
-		if ((DEBUG & 8) != 0) time = System.currentTimeMillis();
-		if (gen_norms) {
-		    if ((flags & REVERSE) != 0) gi.reverse();
-		    ng.generateNormals(gi);
-		    if ((DEBUG & 8) != 0) {
-			t2 += System.currentTimeMillis() - time;
-			System.out.println("Generate normals: " + t2 + " ms");
-			time = System.currentTimeMillis();
+		    if (do_tex) {
+			gi.setTextureCoordinateParams(1, 2);
+			gi.setTextureCoordinates(0, getTexArray());
+			gi.setTextureCoordinateIndices(0,
+			    groupIndices(triTexIdx, list, start, end));
+		    }
+
+		    if (gen_norms) {
+			if ((flags & REVERSE) != 0) gi.reverse();
+			ng.generateNormals(gi);
+			if ((DEBUG & 8) != 0) {
+			    t2 += System.currentTimeMillis() - time;
+			    System.out.println("Generate normals: " + t2 + " ms");
+			    time = System.currentTimeMillis();
+			}
+		    } else {
+			gi.setNormalIndices(groupIndices(triNormIdx, list,
+							 start, end));
+			gi.setNormals(getNormArray());
+			if ((flags & REVERSE) != 0) gi.reverse();
+		    }
+
+		    if ((flags & STRIPIFY) != 0) {
+			strippy.stripify(gi);
+			if ((DEBUG & 8) != 0) {
+			    t3 += System.currentTimeMillis() - time;
+			    System.out.println("Stripify: " + t3 + " ms");
+			    time = System.currentTimeMillis();
+			}
 		    }
-		} else {
-		    gi.setNormalIndices(groupIndices(normIdxList, triList));
-		    gi.setNormals(normArray);
-		    if ((flags & REVERSE) != 0) gi.reverse();
-		}
 
-		if ((flags & STRIPIFY) != 0) {
-		    strippy.stripify(gi);
-		    if ((DEBUG & 8) != 0) {
-			t3 += System.currentTimeMillis() - time;
-			System.out.println("Stripify: " + t3 + " ms");
-			time = System.currentTimeMillis();
+		    // issue 638; default to BY_COPY for consistency
+		    if (byRef) {
+			geometry = gi.getIndexedGeometryArray(false, true,
+							      false, false,
+							      false);
+		    } else {
+			geometry = gi.getGeometryArray(false, false, false);
 		    }
 		}
 
 		// Put geometry into Shape3d
 		Shape3D shape = new Shape3D();
-		// issue 638; default to BY_COPY for consistency
-		shape.setGeometry(gi.getGeometryArray(false, false, false));
+		shape.setGeometry(geometry);
 
 		String matName = (String)groupMaterials.get(curname);
 		materials.assignMaterial(matName, shape);
@@ -1207,6 +1552,78 @@ public class ObjectFile implements Loader {
     } // end of makeScene
 
 
+    /**
+     * Clears the data of the previous model before a file is read.
+     */
+    private void initLists() {
+	coordList = new float[48];
+	coordCount = 0;
+	texList = new float[32];
+	texCount = 0;
+	normList = new float[48];
+	normCount = 0;
+	coordIdxList = new FastVector(64);
+	texIdxList = new FastVector(64);
+	normIdxList = new FastVector(64);
+	stripCounts = new FastVector(16);
+	groups = new FastVector(16);
+	groupNames = new ArrayList();
+	groupIds = new HashMap(50);
+	curGroup = "default";
+	curGroupId = groupId(groupNames, groupIds, curGroup);
+	sGroups = new FastVector(16);
+	sGroupNames = new ArrayList();
+	sGroupIds = new HashMap(50);
+	curSgroup = null;
+	curSgroupId = -1;
+	groupMaterials = new HashMap(50);
+	groupMaterials.put(curGroup, "default");
+	materials = new ObjectFileMaterials();
+	coordArray = null;
+	normArray = null;
+	texArray = null;
+	triTexIdx = null;
+	triNormIdx = null;
+    } // End of initLists
+
+
+    /**
+     * Builds the scene once the file is read.
+     */
+    private Scene finishLoad() {
+	if ((DEBUG & 8) != 0) {
+	    time = System.currentTimeMillis() - time;
+	    System.out.println("Read file: " + time + " ms");
+	    time = System.currentTimeMillis();
+	}
+
+	if ((flags & RESIZE) != 0) resize();
+
+	return makeScene();
+    } // End of finishLoad
+
+
+    private Scene load(ObjectFileByteParser parser)
+	throws ParsingErrorException {
+
+	initLists();
+
+	time = 0L;
+	if ((DEBUG & 8) != 0) {
+	    time = System.currentTimeMillis();
+	}
+
+	try {
+	    readFile(parser);
+	}
+	catch (IOException e) {
+	    throw new ParsingErrorException(e.getMessage());
+	}
+
+	return finishLoad();
+    } // End of load(ObjectFileByteParser)
+
+
     /**
      * The Object File is loaded from the already opened file.
      * To attach the model to your scene, call getSceneGroup() on
@@ -1220,20 +1637,7 @@ public class ObjectFile implements Loader {
 	// ObjectFileParser does lexical analysis
 	ObjectFileParser st = new ObjectFileParser(reader);
 
-	coordList = new ArrayList();
-	texList = new ArrayList();
-	normList = new ArrayList();
-	coordIdxList = new ArrayList();
-	texIdxList = new ArrayList();
-	normIdxList = new ArrayList();
-	groups = new HashMap(50);
-	curGroup = "default";
-	sGroups = new HashMap(50);
-	curSgroup = null;
-	stripCounts = new ArrayList();
-	groupMaterials = new HashMap(50);
-	groupMaterials.put(curGroup, "default");
-	materials = new ObjectFileMaterials();
+	initLists();
 
 	time = 0L;
 	if ((DEBUG & 8) != 0) {
@@ -1242,15 +1646,7 @@ public class ObjectFile implements Loader {
 
 	readFile(st);
 
-	if ((DEBUG & 8) != 0) {
-	    time = System.currentTimeMillis() - time;
-	    System.out.println("Read file: " + time + " ms");
-	    time = System.currentTimeMillis();
-	}
-
-	if ((flags & RESIZE) != 0) resize();
-
-	return makeScene();
+	return finishLoad();
     } // End of load(Reader)
 
 
@@ -1324,6 +1720,36 @@ public class ObjectFile implements Loader {
 	return flags;
     } // End of getFlags
 
+
+    /**
+     * Set the number of threads used to parse files loaded by name or
+     * URL.  The default is the number of available processors.
+     *
+     * @param parallelism the number of threads, 1 to parse the file
+     * with the calling thread only
+     *
+     * @exception IllegalArgumentException if parallelism is less than 1
+     *
+     * @since Java 3D 1.6
+     */
+    public void setParallelism(int parallelism) {
+	if (parallelism < 1)
+	    throw new IllegalArgumentException(
+		"ObjectFile: parallelism must be at least 1");
+	this.parallelism = parallelism;
+    } // End of setParallelism
+
+
+    /**
+     * Get the number of threads used to parse files loaded by name or
+     * URL.
+     *
+     * @since Java 3D 1.6
+     */
+    public int getParallelism() {
+	return parallelism;
+    } // End of getParallelism
+
 } // End of class ObjectFile
 
 // End of file ObjectFile.java
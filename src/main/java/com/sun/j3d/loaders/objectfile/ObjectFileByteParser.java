@@ -0,0 +1,598 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.loaders.objectfile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import com.sun.j3d.internal.FastVector;
+import com.sun.j3d.internal.ParallelLoop;
+import com.sun.j3d.loaders.ParsingErrorException;
+
+/**
+ * The ObjectFileByteParser reads a .obj file as bytes instead of
+ * through a StreamTokenizer.  The file is split into chunks at line
+ * boundaries which are parsed in parallel into primitive arrays.  Index
+ * lists of a chunk are relative to the data of the chunk only where the
+ * file uses negative indices; ObjectFile merges the chunks in order and
+ * replays the group, smoothing group and material lines of each chunk.
+ *
+ * The tokens and their meaning are the same as with ObjectFileParser.
+ */
+class ObjectFileByteParser {
+
+    // Chunks are about this size.  Smaller files are parsed by the
+    // calling thread in a single chunk.
+    static final int CHUNK_SIZE = 1 << 22;
+
+    // Kinds of lines replayed by ObjectFile when merging chunks
+    static final int GROUP = 0;
+    static final int SMOOTHING_GROUP = 1;
+    static final int MATERIAL = 2;
+    static final int MATERIAL_FILE = 3;
+
+    // Token types
+    private static final int TT_WORD = -3;
+    private static final int TT_EOL = '\n';
+    private static final int TT_EOF = -1;
+
+    private static final char BACKSLASH = '\\';
+
+    // Exact powers of ten for the fast path of parseNumber
+    private static final double POW10[] = {
+	1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+	1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private FileChannel channel = null;
+    private ByteBuffer buffer = null;
+    private long size;
+
+
+    /**
+     * The data read from one chunk of the file.
+     */
+    static class Chunk {
+	long start, end;
+
+	float coords[] = new float[48];
+	int coordCount = 0;		// in floats
+	float texCoords[] = new float[32];
+	int texCoordCount = 0;
+	float normals[] = new float[48];
+	int normalCount = 0;
+
+	FastVector coordIdx = new FastVector(64);
+	FastVector texIdx = new FastVector(64);
+	FastVector normIdx = new FastVector(64);
+	FastVector stripCounts = new FastVector(16);
+
+	// Positions in the index lists of indices relative to the
+	// start of the chunk, from negative indices in the file
+	FastVector relCoordIdx = new FastVector(1);
+	FastVector relTexIdx = new FastVector(1);
+	FastVector relNormIdx = new FastVector(1);
+
+	// g, s, usemtl and mtllib lines, with the number of faces of
+	// the chunk read before each of them
+	FastVector eventFaces = new FastVector(4);
+	FastVector eventTypes = new FastVector(4);
+	ArrayList eventNames = new ArrayList(4);
+
+	// The first error, followed by the line in the chunk if
+	// errorLine isn't -1
+	int lines = 0;
+	String error = null;
+	int errorLine = -1;
+
+	// tokenizer state
+	private byte data[];
+	private int pos;
+	private int ttype;
+	private int wordStart, wordEnd;
+	private boolean pushedBack = false;
+	private int lineno = 1;
+
+	void addEvent(int type, String name) {
+	    eventFaces.addElement(stripCounts.getSize());
+	    eventTypes.addElement(type);
+	    eventNames.add(name);
+	}
+    } // End of class Chunk
+
+
+    /**
+     * Parser for a file, which is memory mapped one chunk at a time.
+     */
+    ObjectFileByteParser(RandomAccessFile file) throws IOException {
+	channel = file.getChannel();
+	size = channel.size();
+    } // End of ObjectFileByteParser(RandomAccessFile)
+
+
+    /**
+     * Parser for the whole content of a stream.
+     */
+    ObjectFileByteParser(InputStream in) throws IOException {
+	byte data[] = new byte[1 << 16];
+	int length = 0;
+	int n;
+	while ((n = in.read(data, length, data.length - length)) != -1) {
+	    length += n;
+	    if (length == data.length) {
+		byte newData[] = new byte[data.length * 2];
+		System.arraycopy(data, 0, newData, 0, length);
+		data = newData;
+	    }
+	}
+	buffer = ByteBuffer.wrap(data, 0, length);
+	size = length;
+    } // End of ObjectFileByteParser(InputStream)
+
+
+    private ByteBuffer slice(long start, long end) throws IOException {
+	if (channel != null) {
+	    return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+	}
+	ByteBuffer b = buffer.duplicate();
+	b.limit((int)end);
+	b.position((int)start);
+	return b.slice();
+    } // End of slice
+
+
+    /**
+     * Returns the offset of the start of the first line at or after
+     * pos which doesn't continue the previous line.
+     */
+    private long findLineStart(long pos) throws IOException {
+	final int WINDOW = 4096;
+	long start = Math.max(0, pos - 256);
+	while (start < size) {
+	    long end = Math.min(size, start + WINDOW);
+	    ByteBuffer b = slice(start, end);
+	    int n = (int)(end - start);
+	    for (int i = (int)Math.max(0, pos - start) ; i < n ; i++) {
+		if (b.get(i) != '\n') continue;
+		// Skip lines ending with a backslash
+		int j = i - 1;
+		while (j >= 0 && (b.get(j) == ' ' || b.get(j) == '\t' ||
+				  b.get(j) == '\r')) j--;
+		if (j < 0 || b.get(j) != BACKSLASH) return start + i + 1;
+	    }
+	    if (end == size) break;
+	    pos = end;
+	    start = end - 256;
+	}
+	return size;
+    } // End of findLineStart
+
+
+    /**
+     * Splits the file into chunks and parses them with up to
+     * parallelism threads.  Errors are stored in the chunks.
+     */
+    Chunk[] parse(int parallelism) throws IOException {
+	ArrayList list = new ArrayList();
+	long start = 0;
+	do {
+	    long end = size;
+	    if (size - start > CHUNK_SIZE * 3 / 2) {
+		end = findLineStart(start + CHUNK_SIZE);
+	    }
+	    Chunk chunk = new Chunk();
+	    chunk.start = start;
+	    chunk.end = end;
+	    list.add(chunk);
+	    start = end;
+	} while (start < size);
+
+	final Chunk chunks[] = new Chunk[list.size()];
+	list.toArray(chunks);
+
+	if (chunks.length == 1 || parallelism < 2) {
+	    for (int i = 0 ; i < chunks.length ; i++) parseChunk(chunks[i]);
+	} else {
+	    final IOException ioe[] = new IOException[1];
+	    ParallelLoop.run(0, chunks.length, 1, parallelism,
+			     new ParallelLoop.Body() {
+		public void run(int s, int e) {
+		    for (int i = s ; i < e ; i++) {
+			try {
+			    parseChunk(chunks[i]);
+			}
+			catch (IOException x) {
+			    synchronized (ioe) {
+				ioe[0] = x;
+			    }
+			}
+		    }
+		}
+	    });
+	    if (ioe[0] != null) throw ioe[0];
+	}
+	return chunks;
+    } // End of parse
+
+
+    private void parseChunk(Chunk c) throws IOException {
+	ByteBuffer b = slice(c.start, c.end);
+	c.data = new byte[(int)(c.end - c.start)];
+	b.get(c.data);
+	c.pos = 0;
+	try {
+	    readFile(c);
+	}
+	catch (ParsingErrorException e) {
+	    c.error = e.getMessage();
+	}
+	c.lines = c.lineno - 1;
+	c.data = null;
+    } // End of parseChunk
+
+
+    /**
+     * Reads the next token of the chunk, like StreamTokenizer.nextToken
+     * with the syntax set by ObjectFileParser.setup.
+     */
+    private static int nextToken(Chunk c) {
+	if (c.pushedBack) {
+	    c.pushedBack = false;
+	    return c.ttype;
+	}
+	byte d[] = c.data;
+	int n = d.length;
+	int i = c.pos;
+	while (i < n) {
+	    int ch = d[i] & 0xff;
+	    if (ch == ' ' || ch == '\t') {
+		i++;
+	    } else if (ch == '\n' || ch == '\r') {
+		i++;
+		if (ch == '\r' && i < n && d[i] == '\n') i++;
+		c.lineno++;
+		c.pos = i;
+		return c.ttype = TT_EOL;
+	    } else if (ch == '!') {
+		// Comment to the end of the line
+		while (i < n && d[i] != '\n' && d[i] != '\r') i++;
+	    } else if (ch > ' ' && ch <= '~' && ch != '#' && ch != '/' &&
+		       ch != BACKSLASH) {
+		int s = i;
+		while (i < n) {
+		    ch = d[i] & 0xff;
+		    if (ch <= ' ' || ch > '~' || ch == '#' || ch == '/' ||
+			ch == BACKSLASH || ch == '!') break;
+		    i++;
+		}
+		c.wordStart = s;
+		c.wordEnd = i;
+		c.pos = i;
+		return c.ttype = TT_WORD;
+	    } else {
+		c.pos = i + 1;
+		return c.ttype = ch;
+	    }
+	}
+	c.pos = n;
+	return c.ttype = TT_EOF;
+    } // End of nextToken
+
+
+    /**
+     * Gets the next token, handling backslash continuation of lines as
+     * ObjectFileParser.getToken does.
+     */
+    private static int getToken(Chunk c) {
+	int t;
+	do {
+	    t = nextToken(c);
+	    if (t == BACKSLASH) {
+		t = nextToken(c);
+		if (t != TT_EOL) return t;
+	    } else return t;
+	} while (true);
+    } // End of getToken
+
+
+    private static void skipToNextLine(Chunk c) {
+	while (c.ttype != TT_EOL && c.ttype != TT_EOF) {
+	    getToken(c);
+	}
+    } // End of skipToNextLine
+
+
+    private static String word(Chunk c, boolean lowerCase) {
+	// Words are made of ASCII characters only
+	char chars[] = new char[c.wordEnd - c.wordStart];
+	for (int i = 0 ; i < chars.length ; i++) {
+	    chars[i] = (char)c.data[c.wordStart + i];
+	}
+	String s = new String(chars);
+	return lowerCase ? s.toLowerCase() : s;
+    } // End of word
+
+
+    private static boolean isWord(Chunk c, String s) {
+	int n = c.wordEnd - c.wordStart;
+	if (n != s.length()) return false;
+	for (int i = 0 ; i < n ; i++) {
+	    int ch = c.data[c.wordStart + i];
+	    if (ch >= 'A' && ch <= 'Z') ch += 'a' - 'A';
+	    if (ch != s.charAt(i)) return false;
+	}
+	return true;
+    } // End of isWord
+
+
+    /**
+     * Gets a number, which must be the next token.
+     */
+    private static double getNumber(Chunk c) {
+	getToken(c);
+	return number(c);
+    } // End of getNumber
+
+
+    /**
+     * Parses the current word token as Double.valueOf would.  Decimal
+     * numbers with up to 15 significant digits and small exponents are
+     * converted exactly with one multiplication or division; other
+     * forms go through Double.valueOf.
+     */
+    private static double number(Chunk c) {
+	if (c.ttype != TT_WORD) error(c, "Expected number on line ");
+	byte d[] = c.data;
+	int i = c.wordStart;
+	int end = c.wordEnd;
+	boolean negative = false;
+	if (d[i] == '-' || d[i] == '+') {
+	    negative = d[i] == '-';
+	    i++;
+	}
+	long mantissa = 0;
+	int digits = 0;
+	int exponent = 0;
+	boolean seenDigit = false;
+	boolean fast = true;
+	while (i < end && d[i] >= '0' && d[i] <= '9') {
+	    seenDigit = true;
+	    if (mantissa != 0 || d[i] != '0') {
+		mantissa = mantissa * 10 + (d[i] - '0');
+		digits++;
+	    }
+	    i++;
+	}
+	if (i < end && d[i] == '.') {
+	    i++;
+	    while (i < end && d[i] >= '0' && d[i] <= '9') {
+		seenDigit = true;
+		if (mantissa != 0 || d[i] != '0') {
+		    mantissa = mantissa * 10 + (d[i] - '0');
+		    digits++;
+		}
+		exponent--;
+		i++;
+	    }
+	}
+	if (seenDigit && i < end && (d[i] == 'e' || d[i] == 'E')) {
+	    i++;
+	    boolean negExp = false;
+	    if (i < end && (d[i] == '-' || d[i] == '+')) {
+		negExp = d[i] == '-';
+		i++;
+	    }
+	    int e = 0;
+	    boolean seenExp = false;
+	    while (i < end && d[i] >= '0' && d[i] <= '9') {
+		seenExp = true;
+		if (e < 10000) e = e * 10 + (d[i] - '0');
+		i++;
+	    }
+	    if (!seenExp) fast = false;
+	    exponent += negExp ? -e : e;
+	}
+	if (!seenDigit || i != end || digits > 15) fast = false;
+
+	if (fast) {
+	    double v = 0.0;
+	    if (mantissa == 0) v = 0.0;
+	    else if (exponent == 0) v = mantissa;
+	    else if (exponent > 0 && exponent <= 22) v = mantissa * POW10[exponent];
+	    else if (exponent < 0 && exponent >= -22) v = mantissa / POW10[-exponent];
+	    else fast = false;
+	    if (fast) return negative ? -v : v;
+	}
+
+	try {
+	    return Double.valueOf(word(c, true)).doubleValue();
+	}
+	catch (NumberFormatException e) {
+	    throw new ParsingErrorException(e.getMessage());
+	}
+    } // End of number
+
+
+    // Stops parsing the chunk; the line is added by ObjectFile, which
+    // knows where the chunk starts
+    private static void error(Chunk c, String message) {
+	c.errorLine = c.lineno;
+	throw new ParsingErrorException(message);
+    } // End of error
+
+
+    private static void readVertex(Chunk c) {
+	if (c.coordCount + 3 > c.coords.length)
+	    c.coords = grow(c.coords, c.coordCount + 3);
+	c.coords[c.coordCount] = (float)getNumber(c);
+	c.coords[c.coordCount + 1] = (float)getNumber(c);
+	c.coords[c.coordCount + 2] = (float)getNumber(c);
+	c.coordCount += 3;
+	skipToNextLine(c);
+    } // End of readVertex
+
+
+    private static void readNormal(Chunk c) {
+	if (c.normalCount + 3 > c.normals.length)
+	    c.normals = grow(c.normals, c.normalCount + 3);
+	c.normals[c.normalCount] = (float)getNumber(c);
+	c.normals[c.normalCount + 1] = (float)getNumber(c);
+	c.normals[c.normalCount + 2] = (float)getNumber(c);
+	c.normalCount += 3;
+	skipToNextLine(c);
+    } // End of readNormal
+
+
+    private static void readTexture(Chunk c) {
+	if (c.texCoordCount + 2 > c.texCoords.length)
+	    c.texCoords = grow(c.texCoords, c.texCoordCount + 2);
+	c.texCoords[c.texCoordCount] = (float)getNumber(c);
+	c.texCoords[c.texCoordCount + 1] = (float)getNumber(c);
+	c.texCoordCount += 2;
+	skipToNextLine(c);
+    } // End of readTexture
+
+
+    static float[] grow(float array[], int minSize) {
+	float newArray[] = new float[Math.max(minSize, array.length * 2)];
+	System.arraycopy(array, 0, newArray, 0, array.length);
+	return newArray;
+    } // End of grow
+
+
+    // Adds an index read from the file, with count elements of its
+    // kind read so far in the chunk
+    private static void addIndex(FastVector list, FastVector rel,
+				 double value, int count) {
+	int index = (int)value - 1;
+	if (index < 0) {
+	    index += count + 1;
+	    rel.addElement(list.getSize());
+	}
+	list.addElement(index);
+    } // End of addIndex
+
+
+    /**
+     * Reads a face, as ObjectFile.readFace.  The end of the file also
+     * ends the face.
+     */
+    private static void readFace(Chunk c) {
+	int count = 0;
+
+	getToken(c);
+	while (c.ttype != TT_EOL && c.ttype != TT_EOF) {
+	    addIndex(c.coordIdx, c.relCoordIdx, number(c), c.coordCount / 3);
+
+	    getToken(c);
+	    if (c.ttype == '/') {
+		getToken(c);
+		if (c.ttype == TT_WORD) {
+		    addIndex(c.texIdx, c.relTexIdx, number(c),
+			     c.texCoordCount / 2);
+		    getToken(c);
+		}
+		if (c.ttype == '/') {
+		    addIndex(c.normIdx, c.relNormIdx, getNumber(c),
+			     c.normalCount / 3);
+		    getToken(c);
+		}
+	    }
+	    count++;
+	}
+	c.stripCounts.addElement(count);
+    } // End of readFace
+
+
+    private static void readFile(Chunk c) {
+	getToken(c);
+	while (c.ttype != TT_EOF) {
+	    if (c.ttype == TT_WORD) {
+		if (isWord(c, "v")) {
+		    readVertex(c);
+		} else if (isWord(c, "vn")) {
+		    readNormal(c);
+		} else if (isWord(c, "vt")) {
+		    readTexture(c);
+		} else if (isWord(c, "f") || isWord(c, "fo")) {
+		    readFace(c);
+		} else if (isWord(c, "g")) {
+		    getToken(c);
+		    c.addEvent(GROUP, c.ttype == TT_WORD ? word(c, true) : null);
+		} else if (isWord(c, "s")) {
+		    getToken(c);
+		    if (c.ttype == TT_WORD)
+			c.addEvent(SMOOTHING_GROUP, word(c, true));
+		} else if (isWord(c, "usemtl")) {
+		    getToken(c);
+		    if (c.ttype == TT_WORD)
+			c.addEvent(MATERIAL, word(c, true));
+		} else if (isWord(c, "mtllib")) {
+		    // Keep the last word of the line, with its case
+		    String s = null;
+		    do {
+			getToken(c);
+			if (c.ttype == TT_WORD) s = word(c, false);
+		    } while (c.ttype != TT_EOL && c.ttype != TT_EOF);
+		    c.addEvent(MATERIAL_FILE, s);
+		} else if (!isWord(c, "p") && !isWord(c, "l") &&
+			   !isWord(c, "maplib") && !isWord(c, "usemap")) {
+		    error(c, "Unrecognized token, line ");
+		}
+	    }
+
+	    skipToNextLine(c);
+
+	    // Get next token
+	    getToken(c);
+	}
+    } // End of readFile
+
+
+    void close() throws IOException {
+	if (channel != null) channel.close();
+    } // End of close
+
+} // End of class ObjectFileByteParser
+
+// End of file ObjectFileByteParser.java
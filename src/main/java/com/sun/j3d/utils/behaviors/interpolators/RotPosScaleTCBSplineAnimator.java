@@ -0,0 +1,704 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.behaviors.interpolators;
+
+import javax.media.j3d.*;
+import java.util.*;
+import javax.vecmath.*;
+import com.sun.j3d.internal.J3dUtilsI18N;
+import com.sun.j3d.internal.ParallelLoop;
+
+/**
+ * RotPosScaleTCBSplineAnimator behavior.  This class animates many
+ * TransformGroups along Kochanek-Bartels (TCB) spline paths from a
+ * single behavior.  Each animated TransformGroup is a track with its
+ * own Alpha, key frames and axis of transform, and produces the same
+ * transform as a RotPosScaleTCBSplinePathInterpolator built from the
+ * same parameters.
+ * <p>
+ * The spline coefficients of all tracks are precomputed and kept in
+ * packed float arrays, and all tracks are evaluated in one pass per
+ * frame, optionally split in chunks evaluated in parallel.  Only the
+ * tracks whose alpha value changed since the last frame are evaluated
+ * and have their target transform updated, all in one call to
+ * <code>TransformGroup.setTransforms</code>.  This is much cheaper than
+ * running one interpolator behavior per TransformGroup when thousands
+ * of objects are animated.
+ *
+ * @see RotPosScaleTCBSplinePathInterpolator
+ */
+
+public class RotPosScaleTCBSplineAnimator extends Behavior {
+
+    // Number of tracks in each chunk evaluated by a worker thread
+    private static final int CHUNK_SIZE = 256;
+
+    // Number of floats stored per segment for the position and the
+    // scale (c0, c1, c2, c3 or e0, e1, e2, e3), and for the two
+    // quaternions bounding the segment
+    private static final int COEF_SIZE = 12;
+    private static final int QUAT_SIZE = 8;
+
+    // Number of floats in the interpolated value of a track:
+    // quaternion, position, scale
+    private static final int VALUE_SIZE = 10;
+
+    private WakeupCriterion defaultWakeupCriterion =
+	new WakeupOnElapsedFrames(0);
+    private WakeupCriterion passiveWakeupCriterion =
+	new WakeupOnElapsedFrames(0, true);
+
+    private int parallelism = 1;
+
+    // Per track data
+    private int numTracks = 0;
+    private Alpha alphas[] = new Alpha[0];
+    private TransformGroup targets[] = new TransformGroup[0];
+    private Transform3D axes[] = new Transform3D[0];
+    private Transform3D axisInverses[] = new Transform3D[0];
+    private int firstKey[] = new int[0];
+    private int numKeys[] = new int[0];
+    private float alphaValues[] = new float[0];
+    private float prevAlphaValues[] = new float[0];
+    private boolean dirty[] = new boolean[0];
+    private float values[] = new float[0];
+    private double matrices[] = new double[0];
+
+    // Per key data, the keys of a track are stored from firstKey.
+    // Segment k of a track is between key k and key k+1 and is
+    // stored at index firstKey+k.
+    private int totalKeys = 0;
+    private float knots[] = new float[0];
+    private float keyValues[] = new float[0];
+    private float posCoef[] = new float[0];
+    private float scaleCoef[] = new float[0];
+    private float segQuats[] = new float[0];
+    private boolean segLinear[] = new boolean[0];
+
+    // Targets and transforms of the tracks updated in a frame, set
+    // together through TransformGroup.setTransforms
+    private TransformGroup batchTargets[] = new TransformGroup[0];
+    private Transform3D batchTransforms[] = new Transform3D[0];
+
+    private Transform3D rotation = new Transform3D();
+    private Vector3d scale = new Vector3d();
+    private double tmpMatrix[] = new double[16];
+
+    // Evaluates the dirty tracks of a range
+    private ParallelLoop.Body evaluator = new ParallelLoop.Body() {
+	public void run(int start, int end) {
+	    for (int i = start; i < end; i++) {
+		if (dirty[i]) {
+		    evaluate(i);
+		}
+	    }
+	}
+    };
+
+    /**
+     * Constructs a RotPosScaleTCBSplineAnimator with no track.
+     */
+    public RotPosScaleTCBSplineAnimator() {
+    }
+
+    /**
+     * Sets the maximum number of threads used to evaluate the tracks.
+     * A value of 1, the default, evaluates all tracks in the behavior
+     * scheduler thread.
+     *
+     * @param parallelism the number of threads, or 0 to use the number
+     * of available processors
+     */
+    public void setParallelism(int parallelism) {
+	if (parallelism <= 0) {
+	    parallelism = ParallelLoop.getDefaultParallelism();
+	}
+	this.parallelism = parallelism;
+    }
+
+    /**
+     * Retrieves the maximum number of threads used to evaluate the tracks.
+     */
+    public int getParallelism() {
+	return parallelism;
+    }
+
+    /**
+     * Returns the number of tracks of this animator.
+     */
+    public int numTracks() {
+	return numTracks;
+    }
+
+    /**
+     * Adds a track with an identity axis of transform.
+     *
+     * @param alpha the alpha object for this track
+     * @param target the TransformGroup node affected by this track
+     * @param keys an array of key frames that define the motion path
+     * @return the index of the new track
+     *
+     * @see #addTrack(Alpha, TransformGroup, Transform3D, TCBKeyFrame[])
+     */
+    public int addTrack(Alpha alpha, TransformGroup target,
+			TCBKeyFrame keys[]) {
+	return addTrack(alpha, target, null, keys);
+    }
+
+    /**
+     * Adds a track that varies the rotation, translation, and scale of
+     * the target TransformGroup's transform.  The key frames follow the
+     * same rules as for a RotPosScaleTCBSplinePathInterpolator: at least
+     * 2 key frames are required, the first key frame's knot must have a
+     * value of 0.0, the last knot must have a value of 1.0 and the knots
+     * must be in increasing order.
+     *
+     * @param alpha the alpha object for this track
+     * @param target the TransformGroup node affected by this track
+     * @param axisOfTransform the transform that specifies the local
+     * coordinate system in which this track operates, or null for
+     * the identity
+     * @param keys an array of key frames that define the motion path
+     * @return the index of the new track
+     */
+    public synchronized int addTrack(Alpha alpha, TransformGroup target,
+				     Transform3D axisOfTransform,
+				     TCBKeyFrame keys[]) {
+	int n = keys.length;
+	checkKeyFrames(keys);
+
+	// Use the same padded key frames and segments as
+	// TCBSplinePathInterpolator and CubicSplineCurve
+	TCBKeyFrame keyFrames[] = new TCBKeyFrame[n+2];
+	keyFrames[0] = keys[0];
+	System.arraycopy(keys, 0, keyFrames, 1, n);
+	keyFrames[n+1] = keys[n-1];
+	CubicSplineCurve curve = new CubicSplineCurve(keyFrames);
+
+	ensureTrackCapacity(numTracks + 1);
+	ensureKeyCapacity(totalKeys + n);
+
+	int t = numTracks;
+	alphas[t] = alpha;
+	targets[t] = target;
+	if ((axisOfTransform != null) &&
+	    ((axisOfTransform.getType() & Transform3D.IDENTITY) == 0)) {
+	    axes[t] = new Transform3D(axisOfTransform);
+	    axisInverses[t] = new Transform3D(axisOfTransform);
+	    axisInverses[t].invert();
+	} else {
+	    axes[t] = null;
+	    axisInverses[t] = null;
+	}
+	firstKey[t] = totalKeys;
+	numKeys[t] = n;
+	prevAlphaValues[t] = Float.NaN;
+	dirty[t] = false;
+
+	for (int k = 0; k < n; k++) {
+	    int key = totalKeys + k;
+	    TCBKeyFrame kf = keys[k];
+	    knots[key] = kf.knot;
+	    int v = key * VALUE_SIZE;
+	    keyValues[v]   = kf.quat.x;
+	    keyValues[v+1] = kf.quat.y;
+	    keyValues[v+2] = kf.quat.z;
+	    keyValues[v+3] = kf.quat.w;
+	    keyValues[v+4] = kf.position.x;
+	    keyValues[v+5] = kf.position.y;
+	    keyValues[v+6] = kf.position.z;
+	    keyValues[v+7] = kf.scale.x;
+	    keyValues[v+8] = kf.scale.y;
+	    keyValues[v+9] = kf.scale.z;
+
+	    if (k < n-1) {
+		packSegment(key, curve.getSegment(k));
+	    }
+	}
+
+	totalKeys += n;
+	numTracks++;
+	return t;
+    }
+
+    private void checkKeyFrames(TCBKeyFrame keys[]) {
+	int n = keys.length;
+	if (n < 2) {
+	    throw new IllegalArgumentException(J3dUtilsI18N.getString("TCBSplinePathInterpolator0"));
+	}
+	if (keys[0].knot < -0.0001 || keys[0].knot > 0.0001) {
+	    throw new IllegalArgumentException(J3dUtilsI18N.getString("TCBSplinePathInterpolator1"));
+	}
+	if (keys[n-1].knot -1.0 < -0.0001 || keys[n-1].knot -1.0 > 0.0001) {
+	    throw new IllegalArgumentException(J3dUtilsI18N.getString("TCBSplinePathInterpolator2"));
+	}
+	for (int i = 1; i < n; i++) {
+	    if (keys[i].knot < keys[i-1].knot) {
+		throw new IllegalArgumentException(J3dUtilsI18N.getString("TCBSplinePathInterpolator3"));
+	    }
+	}
+    }
+
+    // Store the coefficients of a segment. Linear segments are stored
+    // as cubic polynomials with zero second and third order terms.
+    private void packSegment(int seg, CubicSplineSegment s) {
+	TCBKeyFrame kf1 = s.keyFrame[1];
+	TCBKeyFrame kf2 = s.keyFrame[2];
+	int c = seg * COEF_SIZE;
+
+	if (s.linear == 1) {
+	    segLinear[seg] = true;
+	    posCoef[c]   = kf1.position.x;
+	    posCoef[c+1] = kf1.position.y;
+	    posCoef[c+2] = kf1.position.z;
+	    posCoef[c+3] = kf2.position.x - kf1.position.x;
+	    posCoef[c+4] = kf2.position.y - kf1.position.y;
+	    posCoef[c+5] = kf2.position.z - kf1.position.z;
+	    scaleCoef[c]   = kf1.scale.x;
+	    scaleCoef[c+1] = kf1.scale.y;
+	    scaleCoef[c+2] = kf1.scale.z;
+	    scaleCoef[c+3] = kf2.scale.x - kf1.scale.x;
+	    scaleCoef[c+4] = kf2.scale.y - kf1.scale.y;
+	    scaleCoef[c+5] = kf2.scale.z - kf1.scale.z;
+	    for (int i = 6; i < COEF_SIZE; i++) {
+		posCoef[c+i] = 0f;
+		scaleCoef[c+i] = 0f;
+	    }
+	} else {
+	    segLinear[seg] = false;
+	    posCoef[c]    = s.c0.x;  posCoef[c+1]  = s.c0.y;  posCoef[c+2]  = s.c0.z;
+	    posCoef[c+3]  = s.c1.x;  posCoef[c+4]  = s.c1.y;  posCoef[c+5]  = s.c1.z;
+	    posCoef[c+6]  = s.c2.x;  posCoef[c+7]  = s.c2.y;  posCoef[c+8]  = s.c2.z;
+	    posCoef[c+9]  = s.c3.x;  posCoef[c+10] = s.c3.y;  posCoef[c+11] = s.c3.z;
+	    scaleCoef[c]   = s.e0.x; scaleCoef[c+1]  = s.e0.y; scaleCoef[c+2]  = s.e0.z;
+	    scaleCoef[c+3] = s.e1.x; scaleCoef[c+4]  = s.e1.y; scaleCoef[c+5]  = s.e1.z;
+	    scaleCoef[c+6] = s.e2.x; scaleCoef[c+7]  = s.e2.y; scaleCoef[c+8]  = s.e2.z;
+	    scaleCoef[c+9] = s.e3.x; scaleCoef[c+10] = s.e3.y; scaleCoef[c+11] = s.e3.z;
+	}
+
+	int q = seg * QUAT_SIZE;
+	segQuats[q]   = kf1.quat.x;
+	segQuats[q+1] = kf1.quat.y;
+	segQuats[q+2] = kf1.quat.z;
+	segQuats[q+3] = kf1.quat.w;
+	segQuats[q+4] = kf2.quat.x;
+	segQuats[q+5] = kf2.quat.y;
+	segQuats[q+6] = kf2.quat.z;
+	segQuats[q+7] = kf2.quat.w;
+    }
+
+    private void ensureTrackCapacity(int size) {
+	if (size <= alphas.length) {
+	    return;
+	}
+	int n = Math.max(size, alphas.length * 2);
+	Alpha newAlphas[] = new Alpha[n];
+	TransformGroup newTargets[] = new TransformGroup[n];
+	Transform3D newAxes[] = new Transform3D[n];
+	Transform3D newAxisInverses[] = new Transform3D[n];
+	System.arraycopy(alphas, 0, newAlphas, 0, numTracks);
+	System.arraycopy(targets, 0, newTargets, 0, numTracks);
+	System.arraycopy(axes, 0, newAxes, 0, numTracks);
+	System.arraycopy(axisInverses, 0, newAxisInverses, 0, numTracks);
+	alphas = newAlphas;
+	targets = newTargets;
+	axes = newAxes;
+	axisInverses = newAxisInverses;
+	firstKey = grow(firstKey, n, numTracks);
+	numKeys = grow(numKeys, n, numTracks);
+	alphaValues = grow(alphaValues, n, numTracks);
+	prevAlphaValues = grow(prevAlphaValues, n, numTracks);
+	values = grow(values, n * VALUE_SIZE, numTracks * VALUE_SIZE);
+	boolean newDirty[] = new boolean[n];
+	System.arraycopy(dirty, 0, newDirty, 0, numTracks);
+	dirty = newDirty;
+	double newMatrices[] = new double[n * 16];
+	System.arraycopy(matrices, 0, newMatrices, 0, numTracks * 16);
+	matrices = newMatrices;
+    }
+
+    private void ensureKeyCapacity(int size) {
+	if (size <= knots.length) {
+	    return;
+	}
+	int n = Math.max(size, knots.length * 2);
+	knots = grow(knots, n, totalKeys);
+	keyValues = grow(keyValues, n * VALUE_SIZE, totalKeys * VALUE_SIZE);
+	posCoef = grow(posCoef, n * COEF_SIZE, totalKeys * COEF_SIZE);
+	scaleCoef = grow(scaleCoef, n * COEF_SIZE, totalKeys * COEF_SIZE);
+	segQuats = grow(segQuats, n * QUAT_SIZE, totalKeys * QUAT_SIZE);
+	boolean newLinear[] = new boolean[n];
+	System.arraycopy(segLinear, 0, newLinear, 0, totalKeys);
+	segLinear = newLinear;
+    }
+
+    private static int[] grow(int a[], int n, int used) {
+	int b[] = new int[n];
+	System.arraycopy(a, 0, b, 0, used);
+	return b;
+    }
+
+    private static float[] grow(float a[], int n, int used) {
+	float b[] = new float[n];
+	System.arraycopy(a, 0, b, 0, used);
+	return b;
+    }
+
+    /**
+     * Computes the interpolated quaternion, position and scale of a
+     * track for its current alpha value, and its transform when the
+     * track has no axis of transform.
+     */
+    private void evaluate(int t) {
+	float alphaValue = alphaValues[t];
+	int k0 = firstKey[t];
+	int n = numKeys[t];
+	int v = t * VALUE_SIZE;
+
+	// Find the segment, same as
+	// TCBSplinePathInterpolator.computePathInterpolation()
+	int i = 1;
+	while ((alphaValue > knots[k0+i-1]) && (i < n)) {
+	    i++;
+	}
+	int seg;
+	float u;
+	if (i == 1) {
+	    seg = 0;
+	    u = 0f;
+	} else {
+	    seg = i - 2;
+	    u = (alphaValue - knots[k0+i-2])/(knots[k0+i-1] - knots[k0+i-2]);
+	}
+
+	if (seg == 0 && u == 0f) {
+	    // start of the curve
+	    System.arraycopy(keyValues, k0 * VALUE_SIZE, values, v, VALUE_SIZE);
+	} else if (seg == (n-2) && u == 1.0) {
+	    // end of the curve
+	    System.arraycopy(keyValues, (k0+n-1) * VALUE_SIZE,
+			     values, v, VALUE_SIZE);
+	} else {
+	    int s = k0 + seg;
+	    interpolateQuat(s, u, v);
+	    int c = s * COEF_SIZE;
+	    for (int j = 0; j < 3; j++, c++) {
+		values[v+4+j] = posCoef[c] + u * (posCoef[c+3] +
+				u * (posCoef[c+6] + u * posCoef[c+9]));
+		values[v+7+j] = scaleCoef[c] + u * (scaleCoef[c+3] +
+				u * (scaleCoef[c+6] + u * scaleCoef[c+9]));
+	    }
+	}
+
+	// Always normalize the quaternion, same as Quat4f.normalize()
+	float qx = values[v], qy = values[v+1], qz = values[v+2], qw = values[v+3];
+	float norm = qx*qx + qy*qy + qz*qz + qw*qw;
+	if (norm > 0.0f) {
+	    norm = 1.0f / (float)Math.sqrt(norm);
+	    qx *= norm;
+	    qy *= norm;
+	    qz *= norm;
+	    qw *= norm;
+	} else {
+	    qx = qy = qz = qw = 0f;
+	}
+	values[v]   = qx;
+	values[v+1] = qy;
+	values[v+2] = qz;
+	values[v+3] = qw;
+
+	if (axes[t] == null) {
+	    // rotation scaled by column, same as Transform3D.setScale()
+	    // of a pure rotation
+	    double sx = values[v+7], sy = values[v+8], sz = values[v+9];
+	    int m = t * 16;
+	    matrices[m]    = (1.0 - 2.0*qy*qy - 2.0*qz*qz) * sx;
+	    matrices[m+1]  = (2.0*(qx*qy - qw*qz)) * sy;
+	    matrices[m+2]  = (2.0*(qx*qz + qw*qy)) * sz;
+	    matrices[m+3]  = values[v+4];
+	    matrices[m+4]  = (2.0*(qx*qy + qw*qz)) * sx;
+	    matrices[m+5]  = (1.0 - 2.0*qx*qx - 2.0*qz*qz) * sy;
+	    matrices[m+6]  = (2.0*(qy*qz - qw*qx)) * sz;
+	    matrices[m+7]  = values[v+5];
+	    matrices[m+8]  = (2.0*(qx*qz - qw*qy)) * sx;
+	    matrices[m+9]  = (2.0*(qy*qz + qw*qx)) * sy;
+	    matrices[m+10] = (1.0 - 2.0*qx*qx - 2.0*qy*qy) * sz;
+	    matrices[m+11] = values[v+6];
+	    matrices[m+12] = 0.0;
+	    matrices[m+13] = 0.0;
+	    matrices[m+14] = 0.0;
+	    matrices[m+15] = 1.0;
+	}
+    }
+
+    // Same as CubicSplineSegment.getInterpolatedQuaternion()
+    private void interpolateQuat(int seg, float u, int v) {
+	int q = seg * QUAT_SIZE;
+	float x1 = segQuats[q],   y1 = segQuats[q+1];
+	float z1 = segQuats[q+2], w1 = segQuats[q+3];
+	float x2 = segQuats[q+4], y2 = segQuats[q+5];
+	float z2 = segQuats[q+6], w2 = segQuats[q+7];
+
+	if (segLinear[seg]) {
+	    double quatDot = x1*x2 + y1*y2 + z1*z2 + w1*w2;
+	    if (quatDot < 0) {
+		values[v]   = x1 + (-x2 - x1) * u;
+		values[v+1] = y1 + (-y2 - y1) * u;
+		values[v+2] = z1 + (-z2 - z1) * u;
+		values[v+3] = w1 + (-w2 - w1) * u;
+	    } else {
+		values[v]   = x1 + (x2 - x1) * u;
+		values[v+1] = y1 + (y2 - y1) * u;
+		values[v+2] = z1 + (z2 - z1) * u;
+		values[v+3] = w1 + (w2 - w1) * u;
+	    }
+	} else {
+	    // great circle spherical interpolation, same as
+	    // Quat4f.interpolate()
+	    double dot = x2*x1 + y2*y1 + z2*z1 + w2*w1;
+	    if (dot < 0) {
+		x1 = -x1;  y1 = -y1;  z1 = -z1;  w1 = -w1;
+		dot = -dot;
+	    }
+	    double s1, s2;
+	    if ((1.0 - dot) > 0.000001) {
+		double om = Math.acos(dot);
+		double sinom = Math.sin(om);
+		s1 = Math.sin((1.0-u)*om)/sinom;
+		s2 = Math.sin(u*om)/sinom;
+	    } else {
+		s1 = 1.0 - u;
+		s2 = u;
+	    }
+	    values[v+3] = (float)(s1*w1 + s2*w2);
+	    values[v]   = (float)(s1*x1 + s2*x2);
+	    values[v+1] = (float)(s1*y1 + s2*y2);
+	    values[v+2] = (float)(s1*z1 + s2*z2);
+	}
+    }
+
+    /**
+     * Initializes this behavior.
+     */
+    public void initialize() {
+	wakeupOn(defaultWakeupCriterion);
+    }
+
+    /**
+     * Evaluates all tracks whose alpha value changed since the last
+     * frame and updates their target transforms.
+     *
+     * @param criteria an enumeration of the criteria that caused the
+     * stimulus
+     */
+    public synchronized void processStimulus(Enumeration criteria) {
+	boolean running = false;
+	int numDirty = 0;
+
+	for (int t = 0; t < numTracks; t++) {
+	    Alpha alpha = alphas[t];
+	    dirty[t] = false;
+	    if (alpha == null) {
+		continue;
+	    }
+	    float value = alpha.value();
+	    if (value != prevAlphaValues[t]) {
+		alphaValues[t] = value;
+		prevAlphaValues[t] = value;
+		dirty[t] = true;
+		numDirty++;
+	    }
+	    if (!alpha.finished() && !alpha.isPaused()) {
+		running = true;
+	    }
+	}
+
+	if (numDirty > 0) {
+	    ParallelLoop.run(0, numTracks, CHUNK_SIZE, parallelism, evaluator);
+
+	    if (batchTargets.length < numDirty) {
+		int n = batchTransforms.length;
+		batchTargets = new TransformGroup[numDirty];
+		batchTransforms = Arrays.copyOf(batchTransforms, numDirty);
+		for (; n < numDirty; n++) {
+		    batchTransforms[n] = new Transform3D();
+		}
+	    }
+	    int count = 0;
+	    for (int t = 0; t < numTracks; t++) {
+		if (dirty[t] && (targets[t] != null)) {
+		    computeTransform(t, batchTransforms[count]);
+		    batchTargets[count++] = targets[t];
+		}
+	    }
+	    TransformGroup.setTransforms(batchTargets, batchTransforms, count);
+	    Arrays.fill(batchTargets, 0, count, null);
+	}
+
+	wakeupOn(running ? defaultWakeupCriterion : passiveWakeupCriterion);
+    }
+
+    // Build the transform of an evaluated track, the tracks with an
+    // axis of transform are composed the same way as
+    // RotPosScaleTCBSplinePathInterpolator.computeTransform()
+    private void computeTransform(int t, Transform3D result) {
+	double m[] = tmpMatrix;
+
+	if (axes[t] == null) {
+	    System.arraycopy(matrices, t * 16, m, 0, 16);
+	    result.set(m);
+	    return;
+	}
+
+	int v = t * VALUE_SIZE;
+	double qx = values[v], qy = values[v+1], qz = values[v+2], qw = values[v+3];
+	m[0]  = 1.0 - 2.0*qy*qy - 2.0*qz*qz;
+	m[1]  = 2.0*(qx*qy - qw*qz);
+	m[2]  = 2.0*(qx*qz + qw*qy);
+	m[3]  = values[v+4];
+	m[4]  = 2.0*(qx*qy + qw*qz);
+	m[5]  = 1.0 - 2.0*qx*qx - 2.0*qz*qz;
+	m[6]  = 2.0*(qy*qz - qw*qx);
+	m[7]  = values[v+5];
+	m[8]  = 2.0*(qx*qz - qw*qy);
+	m[9]  = 2.0*(qy*qz + qw*qx);
+	m[10] = 1.0 - 2.0*qx*qx - 2.0*qy*qy;
+	m[11] = values[v+6];
+	m[12] = m[13] = m[14] = 0.0;
+	m[15] = 1.0;
+	rotation.set(m);
+
+	scale.set(values[v+7], values[v+8], values[v+9]);
+	result.mul(axes[t], rotation);
+	result.setScale(scale);
+	result.mul(result, axisInverses[t]);
+    }
+
+    /**
+     * Used to create a new instance of the node.  This routine is called
+     * by <code>cloneTree</code> to duplicate the current node.
+     * @param forceDuplicate when set to <code>true</code>, causes the
+     *  <code>duplicateOnCloneTree</code> flag to be ignored.  When
+     *  <code>false</code>, the value of each node's
+     *  <code>duplicateOnCloneTree</code> variable determines whether
+     *  NodeComponent data is duplicated or copied.
+     *
+     * @see Node#cloneTree
+     * @see Node#cloneNode
+     * @see Node#duplicateNode
+     * @see NodeComponent#setDuplicateOnCloneTree
+     */
+    public Node cloneNode(boolean forceDuplicate) {
+	RotPosScaleTCBSplineAnimator animator =
+	    new RotPosScaleTCBSplineAnimator();
+	animator.duplicateNode(this, forceDuplicate);
+	return animator;
+    }
+
+   /**
+     * Copies RotPosScaleTCBSplineAnimator information from
+     * <code>originalNode</code> into
+     * the current node.  The tracks share the Alpha objects and
+     * target TransformGroups of the original node.
+     *
+     * @param originalNode the original node to duplicate.
+     * @param forceDuplicate when set to <code>true</code>, causes the
+     *  <code>duplicateOnCloneTree</code> flag to be ignored.  When
+     *  <code>false</code>, the value of each node's
+     *  <code>duplicateOnCloneTree</code> variable determines whether
+     *  NodeComponent data is duplicated or copied.
+     *
+     * @exception RestrictedAccessException if this object is part of a live
+     *  or compiled scenegraph.
+     *
+     * @see Node#duplicateNode
+     * @see Node#cloneTree
+     * @see NodeComponent#setDuplicateOnCloneTree
+     */
+    public void duplicateNode(Node originalNode, boolean forceDuplicate) {
+	super.duplicateNode(originalNode, forceDuplicate);
+	RotPosScaleTCBSplineAnimator a =
+	    (RotPosScaleTCBSplineAnimator) originalNode;
+
+	synchronized (a) {
+	    parallelism = a.parallelism;
+	    numTracks = a.numTracks;
+	    totalKeys = a.totalKeys;
+	    alphas = a.alphas.clone();
+	    targets = a.targets.clone();
+	    axes = a.axes.clone();
+	    axisInverses = a.axisInverses.clone();
+	    firstKey = a.firstKey.clone();
+	    numKeys = a.numKeys.clone();
+	    alphaValues = new float[alphas.length];
+	    prevAlphaValues = new float[alphas.length];
+	    Arrays.fill(prevAlphaValues, Float.NaN);
+	    dirty = new boolean[alphas.length];
+	    values = new float[alphas.length * VALUE_SIZE];
+	    matrices = new double[alphas.length * 16];
+	    knots = a.knots.clone();
+	    keyValues = a.keyValues.clone();
+	    posCoef = a.posCoef.clone();
+	    scaleCoef = a.scaleCoef.clone();
+	    segQuats = a.segQuats.clone();
+	    segLinear = a.segLinear.clone();
+	}
+    }
+
+    /**
+     * Callback used to allow a node to check if any nodes referenced
+     * by that node have been duplicated via a call to
+     * <code>cloneTree</code>.  The target TransformGroups of the tracks
+     * are updated to the duplicated nodes.
+     *
+     * @param referenceTable a NodeReferenceTableObject that contains the
+     *  <code>getNewObjectReference</code> method needed to search for
+     *  new object instances.
+     */
+    public void updateNodeReferences(NodeReferenceTable referenceTable) {
+	super.updateNodeReferences(referenceTable);
+	for (int t = 0; t < numTracks; t++) {
+	    if (targets[t] != null) {
+		targets[t] = (TransformGroup)
+		    referenceTable.getNewObjectReference(targets[t]);
+	    }
+	}
+    }
+}
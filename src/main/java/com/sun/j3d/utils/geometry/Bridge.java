@@ -105,11 +105,21 @@ class Bridge {
 
 	// construct bridges. every bridge will eminate at the left-most point of
 	// its corresponding inner loop.
+	// the distances array is only grown here, so the faces of a large
+	// polygon list don't each allocate one entry per loop of the list.
 	numDist = triRef.numPoints + 2 * triRef.numLoops;
-	triRef.maxNumDist = numDist;
-	triRef.distances = new Distance[numDist];
-	for (int k = 0; k < triRef.maxNumDist; k++)
-	    triRef.distances[k] = new Distance();
+	Distance old[] = triRef.distances;
+	int numOld = (old == null) ? 0 : old.length;
+	if (numDist > numOld) {
+	    triRef.maxNumDist = numDist;
+	    triRef.distances = new Distance[numDist];
+	    if (numOld > 0)
+		System.arraycopy(old, 0, triRef.distances, 0, numOld);
+	    for (int k = numOld; k < triRef.maxNumDist; k++)
+		triRef.distances[k] = new Distance();
+	} else {
+	    triRef.maxNumDist = numOld;
+	}
 
 
 	for (j = 0; j < numLeftMost;  ++j) {
@@ -109,7 +109,10 @@ import com.sun.j3d.internal.J3dUtilsI18N;
  * the number of countours in each polygon. For example, a triangle with a
  * triangular hole would have strip counts [3, 3] (indicating two contours of
  * three points) and contour counts [2] (indicating a single polygon with two
- * contours).<p>
+ * contours).  The polygons are triangulated by ear clipping, or by
+ * monotone decomposition, which is much faster for large polygons with
+ * many holes, after calling
+ * setTriangulationAlgorithm(Triangulator.MONOTONE).<p>
  *         GeometryInfo itelf contains some simple utilities, such as
  * calculating indices for non-indexed data ("indexifying") and getting rid
  * of unused data in your indexed geometry ("compacting").<p>
@@ -209,6 +212,9 @@ public class GeometryInfo {
 
   private boolean coordOnly = false;
 
+  private int parallelism = 1;
+  private int triangulationAlgorithm = Triangulator.EAR_CLIPPING;
+
 
 
   /**
@@ -544,6 +550,86 @@ public class GeometryInfo {
 
 
 
+  /**
+   * Sets the number of threads the geometry utilities may use to
+   * process this GeometryInfo.  With more than one thread, the
+   * Triangulator splits the polygons in chunks that are triangulated
+   * in parallel, the NormalGenerator calculates facet normals,
+   * hard edges and vertex normals in parallel, and indexify() welds
+   * large data lists in parallel.  The results are the
+   * same as with a single thread.  The default is 1.  The value is
+   * kept by reset().
+   *
+   * @param parallelism the number of threads, 1 to use the calling
+   * thread only
+   *
+   * @exception IllegalArgumentException if parallelism is less than 1
+   *
+   * @since Java 3D 1.6
+   */
+  public void setParallelism(int parallelism)
+  {
+      if (parallelism < 1)
+	  throw new IllegalArgumentException(
+	      "GeometryInfo: parallelism must be at least 1");
+      this.parallelism = parallelism;
+  } // End of setParallelism
+
+
+
+  /**
+   * Returns the number of threads the geometry utilities may use to
+   * process this GeometryInfo.
+   *
+   * @since Java 3D 1.6
+   */
+  public int getParallelism()
+  {
+      return parallelism;
+  } // End of getParallelism
+
+
+
+  /**
+   * Sets the algorithm used to triangulate POLYGON_ARRAY geometry,
+   * either by getGeometryArray() or by the NormalGenerator.
+   * Triangulator.EAR_CLIPPING, the default, clips the ears of each
+   * polygon.  Triangulator.MONOTONE cuts the polygons in monotone
+   * pieces with a plane sweep, which is much faster for large polygons
+   * with many holes, and produces different but equivalent triangles.
+   * The value is kept by reset().
+   *
+   * @param algorithm Triangulator.EAR_CLIPPING or Triangulator.MONOTONE
+   *
+   * @exception IllegalArgumentException if algorithm is not one of
+   * these values
+   *
+   * @since Java 3D 1.6
+   */
+  public void setTriangulationAlgorithm(int algorithm)
+  {
+      if ((algorithm != Triangulator.EAR_CLIPPING) &&
+	  (algorithm != Triangulator.MONOTONE))
+	  throw new IllegalArgumentException(
+	      "GeometryInfo: unknown triangulation algorithm " + algorithm);
+      triangulationAlgorithm = algorithm;
+  } // End of setTriangulationAlgorithm
+
+
+
+  /**
+   * Returns the algorithm used to triangulate POLYGON_ARRAY geometry,
+   * Triangulator.EAR_CLIPPING or Triangulator.MONOTONE.
+   *
+   * @since Java 3D 1.6
+   */
+  public int getTriangulationAlgorithm()
+  {
+      return triangulationAlgorithm;
+  } // End of getTriangulationAlgorithm
+
+
+
   /**
    * Sets the coordinates array.  
    * No data copying is done because a reference to user data is used.
@@ -1528,6 +1614,20 @@ public class GeometryInfo {
    */
   int[] getListIndices(Object list[])
   {
+      return getListIndices(list, 0.0f);
+  } // End of getListIndices
+
+
+
+  /*
+   * Returns an index list for any array of objects.  Tuple lists
+   * are welded by VertexWelder, other objects go through a HashMap.
+   */
+  int[] getListIndices(Object list[], float epsilon)
+  {
+      if (VertexWelder.getDimension(list) != 0)
+	  return VertexWelder.weld(list, epsilon, parallelism);
+
       // Create list of indices to return
       int indices[] = new int[list.length];
       
@@ -1559,48 +1659,6 @@ public class GeometryInfo {
 
 
 
-  // Class to hash 'size' integers
-  private class IndexRow {
-    int[] val;
-    int size;
-    private static final int HASHCONST = 0xBABEFACE;
-
-    public int hashCode()
-    {
-      int bits = 0;
-      for (int i = 0 ; i < size ; i++) {
-	bits ^= (bits * HASHCONST) << 2;
-      }
-      return bits;
-    } // End of IndexRow.hashCode
-
-    public boolean equals(Object obj)
-    {
-      for (int i = 0 ; i < size ; i++) {
-	if (((IndexRow)obj).get(i) != val[i]) return false;
-      }
-      return true;
-    } // End of IndexRow.equals()
-
-    public int get(int index)
-    {
-      return val[index];
-    } // End of IndexRow.get
-
-    public void set(int index, int value)
-    {
-      val[index] = value;
-    } // End of IndexRow.set
-
-    IndexRow(int numColumns)
-    {
-      size = numColumns;
-      val = new int[size];
-    } // End of IndexRow constructor
-  } // End of class IndexRow
- 
-
-
   /**
    * Create index lists for all data lists.
    * Identical data entries are guaranteed to
@@ -1624,6 +1682,34 @@ public class GeometryInfo {
    */
   public void indexify(boolean useCoordIndexOnly)
   {
+      indexify(useCoordIndexOnly, 0.0f);
+  } // End of indexify(boolean)
+
+
+
+  /**
+   * Create index lists for all data lists, welding data entries that
+   * are within epsilon of each other.  An entry is welded to the
+   * first earlier entry of its list whose components all differ
+   * from its own by at most epsilon.  With an epsilon of 0 this is
+   * the same as indexify(useCoordIndexOnly).  Data that is already
+   * indexed isn't welded again.
+   * @param useCoordIndexOnly Reformat the data into the
+   * GeometryArray.USE_COORD_INDEX_ONLY format where there is only
+   * one index list.
+   * @param epsilon The largest difference between the components
+   * of two entries that are welded
+   * @throws IllegalArgumentException if epsilon is negative, or for
+   * any of the reasons listed in indexify(boolean).
+   *
+   * @since Java 3D 1.6
+   */
+  public void indexify(boolean useCoordIndexOnly, float epsilon)
+  {
+      if (!(epsilon >= 0.0f))
+	  throw new IllegalArgumentException(
+	      "GeometryInfo: epsilon must not be negative");
+
       checkForBadData();
 
       if (useCoordIndexOnly) {
@@ -1631,7 +1717,7 @@ public class GeometryInfo {
 	if (coordOnly) return;
 
 	// Start from normal indexed format
-	indexify(false);
+	indexify(false, epsilon);
 
 	// Reformat data to USE_COORD_INDEX_ONLY format
 	// Need to make an index into the index lists using each
@@ -1643,28 +1729,36 @@ public class GeometryInfo {
         if (normalIndices != null) numLists++;
 	numLists += texCoordSetCount;
 
-	// Make single array containing all indices
+	// Make single array containing all indices, one row of
+	// numLists indices per vertex
 	int n = coordinateIndices.length;
-	IndexRow[] ir = new IndexRow[n];
-	int j;
+	int rows[] = new int[n * numLists];
+	int j = 0;
 	for (int i = 0 ; i < n ; i++) {
-	  ir[i] = new IndexRow(numLists);
-	  j = 0;
-	  ir[i].set(j++, coordinateIndices[i]);
-	  if (colorIndices != null) ir[i].set(j++, colorIndices[i]);
-	  if (normalIndices != null) ir[i].set(j++, normalIndices[i]);
+	  rows[j++] = coordinateIndices[i];
+	  if (colorIndices != null) rows[j++] = colorIndices[i];
+	  if (normalIndices != null) rows[j++] = normalIndices[i];
 	  for (int k = 0 ; k < texCoordSetCount ; k++) {
-	    ir[i].set(j++, texCoordIndexSets[k][i]);
+	    rows[j++] = texCoordIndexSets[k][i];
 	  }
 	}
 
 	// Get index into that array
-	int[] coordOnlyIndices = getListIndices(ir);
+	int[] coordOnlyIndices =
+	    VertexWelder.weldRows(rows, numLists, parallelism);
 
-	// Get rid of duplicate rows
-	int newInd[] = new int[coordOnlyIndices.length];
-	ir = (IndexRow[])compactData(coordOnlyIndices, ir, newInd);
-	coordOnlyIndices = newInd;
+	// Get rid of duplicate rows.  Each row refers to the first row
+	// with the same values, so those are the rows to keep.
+	int numRows = 0;
+	int translationTable[] = new int[n];
+	for (int i = 0 ; i < n ; i++) {
+	  if (coordOnlyIndices[i] == i) translationTable[i] = numRows++;
+	}
+	int ir[] = new int[numRows];
+	for (int i = 0 ; i < n ; i++) {
+	  if (coordOnlyIndices[i] == i) ir[translationTable[i]] = i * numLists;
+	  coordOnlyIndices[i] = translationTable[coordOnlyIndices[i]];
+	}
 
 	// Reformat data lists to correspond to new index
 
@@ -1693,16 +1787,16 @@ public class GeometryInfo {
 	// Copy data into new arrays
 	n = ir.length;
 	for (int i = 0 ; i < n ; i++) {
-	  j = 0;
-	  newCoords[i] = coordinates[(ir[i]).get(j++)];
+	  j = ir[i];
+	  newCoords[i] = coordinates[rows[j++]];
 	  if (colors3 != null) {
-	    newColors3[i] = colors3[(ir[i]).get(j++)];
+	    newColors3[i] = colors3[rows[j++]];
 	  } else if (colors4 != null) {
-	    newColors4[i] = colors4[(ir[i]).get(j++)];
+	    newColors4[i] = colors4[rows[j++]];
 	  }
-	  if (normals != null) newNormals[i] = normals[(ir[i]).get(j++)];
+	  if (normals != null) newNormals[i] = normals[rows[j++]];
 	  for (int k = 0 ; k < texCoordSetCount ; k++) {
-	    newTexCoordSets[k][i] = texCoordSets[k][(ir[i]).get(j++)];
+	    newTexCoordSets[k][i] = texCoordSets[k][rows[j++]];
 	  }
 	}
 
@@ -1745,16 +1839,17 @@ public class GeometryInfo {
 	// No need to indexify if already indexed
 	if (coordinateIndices != null) return;
 
-	coordinateIndices = getListIndices(coordinates);
+	coordinateIndices = getListIndices(coordinates, epsilon);
 	
-	if (colors3 != null) colorIndices = getListIndices(colors3);
-	else if (colors4 != null) colorIndices = getListIndices(colors4);
+	if (colors3 != null) colorIndices = getListIndices(colors3, epsilon);
+	else if (colors4 != null)
+	    colorIndices = getListIndices(colors4, epsilon);
 	
-	if (normals != null) normalIndices = getListIndices(normals);
+	if (normals != null) normalIndices = getListIndices(normals, epsilon);
 	
 	texCoordIndexSets = new int[texCoordSetCount][];
 	for(int i = 0 ; i < texCoordSetCount ; i++) {
-	    texCoordIndexSets[i] = getListIndices(texCoordSets[i]);
+	    texCoordIndexSets[i] = getListIndices(texCoordSets[i], epsilon);
 	}
 
 	coordOnly = false;
@@ -1814,9 +1909,6 @@ public class GeometryInfo {
 	  newData = new TexCoord3f[num];
       } else if (data instanceof javax.vecmath.TexCoord4f[]) {
 	  newData = new TexCoord4f[num];
-      } else if (data instanceof IndexRow[]) {
-	  // Hack so we can use compactData for coordIndexOnly
-	  newData = new IndexRow[num];
       } else throw new IllegalArgumentException(
 	  J3dUtilsI18N.getString("GeometryInfo9"));
       return newData;
@@ -1935,6 +2027,36 @@ public class GeometryInfo {
 
 
 
+  // Used by the MeshOptimizer.  The data must be in the
+  // USE_COORD_INDEX_ONLY format.  Entry i of the new data lists is
+  // entry order[i] of the old ones, and indices is the new
+  // coordinate index list.
+  void reorderVertices(int order[], int indices[])
+  {
+      coordinates = (Point3f[])reorderData(coordinates, order);
+      if (colors3 != null) colors3 = (Color3f[])reorderData(colors3, order);
+      else if (colors4 != null)
+	  colors4 = (Color4f[])reorderData(colors4, order);
+      if (normals != null) normals = (Vector3f[])reorderData(normals, order);
+      for (int i = 0 ; i < texCoordSetCount ; i++) {
+	  texCoordSets[i] = reorderData(texCoordSets[i], order);
+      }
+      coordinateIndices = indices;
+  } // End of reorderVertices
+
+
+
+  private Object[] reorderData(Object data[], int order[])
+  {
+      Object newData[] = allocateArray(data, order.length);
+      for (int i = 0 ; i < order.length ; i++) {
+	  newData[i] = data[order[i]];
+      }
+      return newData;
+  } // End of reorderData
+
+
+
   /**
    * Check the data to make sure everything's consistent.
    */
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.geometry;
+
+import com.sun.j3d.internal.J3dUtilsI18N;
+
+/**
+ * The MeshOptimizer utility reorders the triangles of the GeometryInfo
+ * object so that they reuse the vertices held in the post-transform
+ * vertex cache of the graphics hardware, then renumbers the vertices
+ * in the order the triangles first use them.  The result is an
+ * indexed triangle list in the USE_COORD_INDEX_ONLY format.  For
+ * hardware with a vertex cache this usually renders faster than the
+ * strips made by the Stripifier.<p>
+ * <p>
+ * The triangle order is found with the greedy algorithm described by
+ * Tom Forsyth in "Linear-Speed Vertex Cache Optimisation", which
+ * runs in time linear in the number of triangles.  The quality of a
+ * triangle order is measured by its average cache miss ratio (ACMR),
+ * the number of vertices transformed per triangle, which is collected
+ * by a MeshOptimizerStats object when the COLLECT_STATS flag is set.
+ * <p>
+ * Normal Generation should be performed on the GeometryInfo object
+ * <i>before</i> optimization.  Example:<p>
+ * <p>
+ * <pre>
+ *   GeometryInfo gi = new GeometryInfo(TRIANGLE_ARRAY);
+ *   gi.setCoordinates(coordinateData);
+ *
+ *   NormalGenerator ng = new NormalGenerator();
+ *   ng.generateNormals(gi);
+ *
+ *   MeshOptimizer mo = new MeshOptimizer();
+ *   mo.optimize(gi);
+ *
+ *   Shape3D part = new Shape3D();
+ *   part.setAppearance(appearance);
+ *   part.setGeometry(gi.getIndexedGeometryArray(false, false, false,
+ *                                               true, false));
+ *   </pre>
+ *
+ * @see Stripifier
+ * @since Java 3D 1.6
+ */
+public class MeshOptimizer {
+
+    /**
+     * Indicates to the mesh optimizer to collect statistics on the data
+     */
+    public static final int COLLECT_STATS = 0x01;
+
+    // Constants of the vertex scoring function
+    static final float CACHE_DECAY_POWER = 1.5f;
+    static final float LAST_TRI_SCORE = 0.75f;
+    static final float VALENCE_BOOST_SCALE = 2.0f;
+    static final float VALENCE_BOOST_POWER = 0.5f;
+
+    // Valences above this are scored as this
+    static final int MAX_VALENCE = 64;
+
+    int cacheSize = 32;
+
+    MeshOptimizerStats stats;
+
+    // Scores indexed by cache position and by number of triangles left
+    float[] cacheScore;
+    float[] valenceScore;
+
+    /**
+     * Creates the MeshOptimizer object.
+     */
+    public MeshOptimizer() {
+    }
+
+    /**
+     * Creates the MeshOptimizer object.
+     * @param flags Flags
+     */
+    public MeshOptimizer(int flags) {
+	if ((flags & COLLECT_STATS) != 0) {
+	    stats = new MeshOptimizerStats();
+	}
+    }
+
+    /**
+     * Sets the number of vertices in the simulated vertex cache.  The
+     * default is 32.  The same size is used to measure the cache
+     * miss ratios of the statistics.
+     * @param cacheSize the number of vertices the cache holds
+     * @exception IllegalArgumentException if cacheSize is less than 4
+     */
+    public void setCacheSize(int cacheSize) {
+	if (cacheSize < 4) {
+	    throw new IllegalArgumentException(
+		J3dUtilsI18N.getString("MeshOptimizer0"));
+	}
+	this.cacheSize = cacheSize;
+	cacheScore = null;
+    }
+
+    /**
+     * Returns the number of vertices in the simulated vertex cache.
+     */
+    public int getCacheSize() {
+	return cacheSize;
+    }
+
+    /**
+     * Returns the mesh optimizer stats object.
+     * @exception IllegalStateException if the MeshOptimizer has not
+     * been constructed with the COLLECT_STATS flag
+     */
+    public MeshOptimizerStats getMeshOptimizerStats() {
+	if (stats == null) {
+	    throw new IllegalStateException(
+		J3dUtilsI18N.getString("MeshOptimizer1"));
+	}
+	return stats;
+    }
+
+    /**
+     * Converts the geometry contained in the GeometryInfo object into
+     * an indexed triangle list in the USE_COORD_INDEX_ONLY format, with
+     * the triangles and vertices reordered for the vertex cache.
+     * Vertices that aren't used by any triangle are removed.
+     */
+    public void optimize(GeometryInfo gi) {
+	long time = System.currentTimeMillis();
+
+	gi.convertToIndexedTriangles();
+	gi.forgetOldPrim();
+	gi.indexify(true);
+
+	int[] indices = gi.getCoordinateIndices();
+	int numVerts = gi.getCoordinates().length;
+
+	int origMisses = 0;
+	if (stats != null) {
+	    origMisses = countCacheMisses(indices, numVerts, cacheSize);
+	}
+
+	int[] newIndices = reorderTriangles(indices, numVerts);
+
+	// Number the vertices in the order they are first used
+	int[] newVertex = new int[numVerts];
+	for (int i = 0; i < numVerts; i++) {
+	    newVertex[i] = -1;
+	}
+	int[] order = new int[numVerts];
+	int numUsed = 0;
+	for (int i = 0; i < newIndices.length; i++) {
+	    int v = newIndices[i];
+	    if (newVertex[v] < 0) {
+		newVertex[v] = numUsed;
+		order[numUsed++] = v;
+	    }
+	    newIndices[i] = newVertex[v];
+	}
+	if (numUsed < numVerts) {
+	    int[] used = new int[numUsed];
+	    System.arraycopy(order, 0, used, 0, numUsed);
+	    order = used;
+	}
+	gi.reorderVertices(order, newIndices);
+
+	if (stats != null) {
+	    stats.updateInfo(System.currentTimeMillis() - time,
+			     newIndices.length / 3, numUsed, origMisses,
+			     countCacheMisses(newIndices, numUsed, cacheSize));
+	}
+    }
+
+    /**
+     * Returns the number of vertices a FIFO vertex cache of cacheSize
+     * entries transforms to draw the indexed triangle list.
+     */
+    static int countCacheMisses(int[] indices, int numVerts, int cacheSize) {
+	// Miss count at the time each vertex entered the cache, 0 if never
+	int[] entered = new int[numVerts];
+	int misses = 0;
+	for (int i = 0; i < indices.length; i++) {
+	    int v = indices[i];
+	    if ((entered[v] == 0) || (misses - entered[v] >= cacheSize)) {
+		misses++;
+		entered[v] = misses;
+	    }
+	}
+	return misses;
+    }
+
+    void initScores() {
+	if (cacheScore != null) {
+	    return;
+	}
+	cacheScore = new float[cacheSize];
+	float scaler = 1.0f / (cacheSize - 3);
+	for (int i = 0; i < cacheSize; i++) {
+	    if (i < 3) {
+		// The vertices of the last triangle get a fixed score, so
+		// its neighbors don't win just for being adjacent to it
+		cacheScore[i] = LAST_TRI_SCORE;
+	    } else {
+		cacheScore[i] = (float)Math.pow(1.0f - (i - 3) * scaler,
+						CACHE_DECAY_POWER);
+	    }
+	}
+	valenceScore = new float[MAX_VALENCE + 1];
+	for (int i = 1; i <= MAX_VALENCE; i++) {
+	    valenceScore[i] = VALENCE_BOOST_SCALE *
+		(float)Math.pow(i, -VALENCE_BOOST_POWER);
+	}
+    }
+
+    float vertexScore(int cachePos, int numTris) {
+	if (numTris == 0) {
+	    // No triangle needs this vertex any more
+	    return -1.0f;
+	}
+	float score = valenceScore[Math.min(numTris, MAX_VALENCE)];
+	if (cachePos >= 0) {
+	    score += cacheScore[cachePos];
+	}
+	return score;
+    }
+
+    /**
+     * Returns the indexed triangle list in the order that makes the
+     * best use of a vertex cache.  Each step adds the triangle with
+     * the highest score among those that use a cached vertex, and
+     * only the scores of the triangles around the cache are updated.
+     */
+    int[] reorderTriangles(int[] indices, int numVerts) {
+	initScores();
+	int numTris = indices.length / 3;
+
+	// The triangles using each vertex.  The ones not yet added are
+	// kept at the front of each list.
+	int[] triStart = new int[numVerts + 1];
+	for (int i = 0; i < numTris * 3; i++) {
+	    triStart[indices[i] + 1]++;
+	}
+	for (int v = 0; v < numVerts; v++) {
+	    triStart[v + 1] += triStart[v];
+	}
+	int[] vertTris = new int[numTris * 3];
+	int[] numLive = new int[numVerts];
+	for (int i = 0; i < numTris * 3; i++) {
+	    int v = indices[i];
+	    vertTris[triStart[v] + numLive[v]++] = i / 3;
+	}
+
+	int[] cachePos = new int[numVerts];
+	float[] vertScore = new float[numVerts];
+	for (int v = 0; v < numVerts; v++) {
+	    cachePos[v] = -1;
+	    vertScore[v] = vertexScore(-1, numLive[v]);
+	}
+
+	boolean[] added = new boolean[numTris];
+	int best = -1;
+	float bestScore = -1.0f;
+	for (int t = 0; t < numTris; t++) {
+	    float score = vertScore[indices[t * 3]] +
+		vertScore[indices[t * 3 + 1]] + vertScore[indices[t * 3 + 2]];
+	    if (score > bestScore) {
+		bestScore = score;
+		best = t;
+	    }
+	}
+
+	int[] cache = new int[cacheSize + 3];
+	int[] newCache = new int[cacheSize + 3];
+	int cacheCount = 0;
+	int[] result = new int[numTris * 3];
+	int numAdded = 0;
+	int nextTri = 0;
+
+	while (best >= 0) {
+	    added[best] = true;
+	    System.arraycopy(indices, best * 3, result, numAdded * 3, 3);
+	    numAdded++;
+
+	    // The vertices of the new triangle move to the front of the
+	    // cache, the others move back
+	    int newCount = 0;
+	    for (int k = 0; k < 3; k++) {
+		int v = indices[best * 3 + k];
+		// Remove the triangle from the live list of the vertex
+		int end = triStart[v] + numLive[v] - 1;
+		for (int j = triStart[v]; j <= end; j++) {
+		    if (vertTris[j] == best) {
+			vertTris[j] = vertTris[end];
+			vertTris[end] = best;
+			numLive[v]--;
+			break;
+		    }
+		}
+		if (cachePos[v] != -2) {
+		    cachePos[v] = -2;
+		    newCache[newCount++] = v;
+		}
+	    }
+	    for (int i = 0; i < cacheCount; i++) {
+		int v = cache[i];
+		if (cachePos[v] != -2) {
+		    newCache[newCount++] = v;
+		}
+	    }
+
+	    // Rescore the vertices that were or are in the cache, then
+	    // their triangles
+	    for (int i = 0; i < newCount; i++) {
+		int v = newCache[i];
+		cachePos[v] = (i < cacheSize) ? i : -1;
+		vertScore[v] = vertexScore(cachePos[v], numLive[v]);
+	    }
+	    best = -1;
+	    bestScore = -1.0f;
+	    for (int i = 0; i < newCount; i++) {
+		int v = newCache[i];
+		for (int j = triStart[v]; j < triStart[v] + numLive[v]; j++) {
+		    int t = vertTris[j];
+		    float score = vertScore[indices[t * 3]] +
+			vertScore[indices[t * 3 + 1]] +
+			vertScore[indices[t * 3 + 2]];
+		    if (score > bestScore) {
+			bestScore = score;
+			best = t;
+		    }
+		}
+	    }
+
+	    int[] tmp = cache;
+	    cache = newCache;
+	    newCache = tmp;
+	    cacheCount = Math.min(newCount, cacheSize);
+
+	    if (best < 0) {
+		// Nothing left around the cache, start again with the
+		// first triangle not added yet
+		while ((nextTri < numTris) && added[nextTri]) {
+		    nextTri++;
+		}
+		if (nextTri < numTris) {
+		    best = nextTri;
+		}
+	    }
+	}
+	return result;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.geometry;
+
+/**
+ * This class collects statistics on the MeshOptimizer.  The statistics
+ * are cumulative over all calls to optimize() until clearData() is
+ * called.  The cache miss counts are measured with a FIFO vertex cache
+ * of the MeshOptimizer's cache size.
+ *
+ * @since Java 3D 1.6
+ */
+
+public class MeshOptimizerStats {
+
+    int numTris = 0;
+    int numVerts = 0;
+    long origMisses = 0;
+    long misses = 0;
+    long time = 0;
+
+    boolean noData = true;
+
+    /**
+     * Returns the number of triangles optimized.
+     */
+    public int getNumTris() {
+	return numTris;
+    }
+
+    /**
+     * Returns the number of unique vertices in the optimized data.
+     */
+    public int getNumVerts() {
+	return numVerts;
+    }
+
+    /**
+     * Returns the number of vertex cache misses of the original
+     * triangle order.
+     */
+    public long getNumOrigCacheMisses() {
+	return origMisses;
+    }
+
+    /**
+     * Returns the number of vertex cache misses of the optimized
+     * triangle order.
+     */
+    public long getNumCacheMisses() {
+	return misses;
+    }
+
+    /**
+     * Returns the average cache miss ratio of the original data, the
+     * number of vertices transformed per triangle.
+     */
+    public double getOrigACMR() {
+	return ((double)origMisses/(double)numTris);
+    }
+
+    /**
+     * Returns the average cache miss ratio of the optimized data, the
+     * number of vertices transformed per triangle.  It can't be lower
+     * than 0.5 for a large closed mesh, and is 3 without any reuse.
+     */
+    public double getACMR() {
+	return ((double)misses/(double)numTris);
+    }
+
+    /**
+     * Returns the average number of times each vertex of the optimized
+     * data is transformed.  1 is the best possible value.
+     */
+    public double getATVR() {
+	return ((double)misses/(double)numVerts);
+    }
+
+    /**
+     * Returns the total time spent in the optimize() method
+     */
+    public long getTotalTime() {
+	return time;
+    }
+
+    /**
+     * Returns a formated String that can be used to print out
+     * the MeshOptimizer stats.
+     */
+    public String toString() {
+	return "num tris:             " + numTris + "\n" +
+	       "num vertices:         " + numVerts + "\n" +
+	       "orig cache misses:    " + origMisses + "\n" +
+	       "cache misses:         " + misses + "\n" +
+	       "orig ACMR:            " + getOrigACMR() + "\n" +
+	       "ACMR:                 " + getACMR() + "\n" +
+	       "ATVR:                 " + getATVR() + "\n" +
+	       "total time:           " + time + "\n";
+    }
+
+    /**
+     * Clears the statistical data
+     */
+    public void clearData() {
+	noData = true;
+
+	numTris = 0;
+	numVerts = 0;
+	origMisses = 0;
+	misses = 0;
+	time = 0;
+    }
+
+    void updateInfo(long ntime, int nNumTris, int nNumVerts,
+		    int nOrigMisses, int nMisses) {
+	noData = false;
+
+	time += ntime;
+	numTris += nNumTris;
+	numVerts += nNumVerts;
+	origMisses += nOrigMisses;
+	misses += nMisses;
+    }
+}
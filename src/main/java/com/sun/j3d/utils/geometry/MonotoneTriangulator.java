@@ -0,0 +1,704 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.geometry;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+import javax.vecmath.Point3f;
+import com.sun.j3d.internal.FastVector;
+
+/**
+ * Triangulates polygons with holes by cutting them in y-monotone pieces
+ * with a plane sweep, then triangulating each piece in linear time, as
+ * described in "Computational Geometry" by de Berg et al.  A face with
+ * n vertices takes O(n log n) time whatever its shape, where ear
+ * clipping has to search the reflex vertices for every ear it cuts.
+ * Each face is projected on the plane of the dominant axis of its
+ * normal.  Faces the sweep can't handle, like self intersecting
+ * contours or contours touching each other, are reported to the caller
+ * so that their ears can be clipped instead.
+ */
+class MonotoneTriangulator {
+
+    // Vertex types of the sweep
+    private static final int START = 0;
+    private static final int END = 1;
+    private static final int SPLIT = 2;
+    private static final int MERGE = 3;
+    private static final int REGULAR = 4;
+
+    // Relative difference allowed between the area of the triangles and
+    // the area of the face
+    private static final double AREA_EPSILON = 1.0e-7;
+
+    private Point3f vertices[];
+    private int vertexIndices[];
+
+    // The vertices of the face being triangulated, with their index in
+    // vertexIndices, their projection and their neighbors along the
+    // contour.  The outer contour is counter clockwise and the holes
+    // are clockwise, so the face is always left of its edges.
+    private int numVerts = 0;
+    private int common[] = new int[0];
+    private double x[] = new double[0];
+    private double y[] = new double[0];
+    private int next[] = new int[0];
+    private int prev[] = new int[0];
+    private int type[] = new int[0];
+    private int helper[] = new int[0];
+    private Edge edges[] = new Edge[0];
+
+    // The vertices sorted from top to bottom, and a scratch array
+    private int order[] = new int[0];
+    private int work[] = new int[0];
+
+    // Diagonals added by the sweep, as pairs of vertices
+    private int numDiagonals = 0;
+    private int diagonals[] = new int[0];
+
+    // Half edges of the contours and the diagonals, and the half edges
+    // leaving each vertex
+    private int halfFrom[] = new int[0];
+    private int halfTo[] = new int[0];
+    private boolean visited[] = new boolean[0];
+    private int outStart[] = new int[0];
+    private int outHalf[] = new int[0];
+
+    // The vertices of a monotone piece around it and in sweep order,
+    // whether they are on its left chain, and the stack of vertices
+    // waiting for their triangles
+    private int piece[] = new int[0];
+    private int sorted[] = new int[0];
+    private boolean leftChain[] = new boolean[0];
+    private int stack[] = new int[0];
+
+    // The triangles, as triples of vertices
+    private int numTriangles = 0;
+    private int triangles[] = new int[0];
+
+    // The edges crossing the sweep line, from left to right
+    private TreeSet status = new TreeSet(new Comparator() {
+	public int compare(Object o1, Object o2) {
+	    return compareEdges((Edge)o1, (Edge)o2);
+	}
+    });
+    private Edge probe = new Edge();
+
+    // An edge from vertex upper down to vertex lower, or a point when
+    // upper and lower are the same vertex.
+    private static class Edge {
+	int upper;
+	int lower;
+    }
+
+    MonotoneTriangulator(Point3f vertices[], int vertexIndices[]) {
+	this.vertices = vertices;
+	this.vertexIndices = vertexIndices;
+    }
+
+    /**
+     * Triangulates one face and adds the corners of its triangles to
+     * out, as indices in vertexIndices, wound like the outer contour.
+     * The face is made of the numContours strips starting at firstStrip
+     * and its first vertex is vertexIndices[firstIndex].  Returns false
+     * and leaves out unchanged if the face can't be triangulated this
+     * way.
+     */
+    boolean triangulateFace(int stripCounts[], int firstStrip,
+			    int numContours, int firstIndex, FastVector out) {
+	int total = 0;
+	for (int s = 0; s < numContours; s++) {
+	    total += stripCounts[firstStrip + s];
+	}
+	allocate(total);
+
+	// Gather the contours, dropping repeated vertices and the holes
+	// which are too small to have an inside.
+	int contourStart[] = new int[numContours + 1];
+	int numLoops = 0;
+	int index = firstIndex;
+	numVerts = 0;
+	for (int s = 0; s < numContours; s++) {
+	    int first = numVerts;
+	    for (int k = 0; k < stripCounts[firstStrip + s]; k++, index++) {
+		if ((numVerts == first) ||
+		    !samePoint(common[numVerts - 1], index)) {
+		    common[numVerts++] = index;
+		}
+	    }
+	    while ((numVerts - first > 1) &&
+		   samePoint(common[numVerts - 1], common[first])) {
+		numVerts--;
+	    }
+	    if (numVerts - first >= 3) {
+		contourStart[numLoops++] = first;
+	    } else if (s == 0) {
+		return false;
+	    } else {
+		numVerts = first;
+	    }
+	}
+	contourStart[numLoops] = numVerts;
+
+	if ((numLoops == 1) && (numVerts == 3)) {
+	    out.addElement(common[0]);
+	    out.addElement(common[1]);
+	    out.addElement(common[2]);
+	    return true;
+	}
+
+	if (!project(contourStart[1])) {
+	    return false;
+	}
+
+	// Orient the contours.  Once the outer contour is counter
+	// clockwise in the projection, counter clockwise triangles are
+	// wound like the outer contour in the original face.
+	double area = loopArea(0, contourStart[1]);
+	if (area < 0.0) {
+	    for (int i = 0; i < numVerts; i++) {
+		x[i] = -x[i];
+	    }
+	    area = -area;
+	}
+	linkLoop(0, contourStart[1], false);
+	for (int l = 1; l < numLoops; l++) {
+	    double holeArea = loopArea(contourStart[l], contourStart[l + 1]);
+	    if (holeArea == 0.0) {
+		return false;
+	    }
+	    linkLoop(contourStart[l], contourStart[l + 1], holeArea > 0.0);
+	    area -= Math.abs(holeArea);
+	}
+	if (area <= 0.0) {
+	    return false;
+	}
+
+	if (!makeMonotone() || !triangulatePieces()) {
+	    return false;
+	}
+
+	// A triangulation of a polygon with h holes has n + 2h - 2
+	// triangles, which have to cover the area of the polygon.
+	if (numTriangles != numVerts + 2 * (numLoops - 1) - 2) {
+	    return false;
+	}
+	double triangleArea = 0.0;
+	for (int t = 0; t < numTriangles * 3; t += 3) {
+	    triangleArea += orient(triangles[t], triangles[t + 1],
+				   triangles[t + 2]);
+	}
+	if (Math.abs(triangleArea - area) >
+	    AREA_EPSILON * (triangleArea + area)) {
+	    return false;
+	}
+
+	for (int t = 0; t < numTriangles * 3; t++) {
+	    out.addElement(common[triangles[t]]);
+	}
+	return true;
+    }
+
+    private void allocate(int size) {
+	if (common.length < size) {
+	    common = new int[size];
+	    x = new double[size];
+	    y = new double[size];
+	    next = new int[size];
+	    prev = new int[size];
+	    type = new int[size];
+	    helper = new int[size];
+	    edges = new Edge[size];
+	    order = new int[size];
+	    work = new int[size];
+	    outStart = new int[size + 1];
+	}
+    }
+
+    private boolean samePoint(int i, int j) {
+	return (vertexIndices[i] == vertexIndices[j]) ||
+	    vertices[vertexIndices[i]].equals(vertices[vertexIndices[j]]);
+    }
+
+    /**
+     * Projects the vertices on the coordinate plane closest to the plane
+     * of the outer contour, whose Newell normal is computed from its
+     * numOuter vertices.
+     */
+    private boolean project(int numOuter) {
+	double nx = 0.0, ny = 0.0, nz = 0.0;
+	for (int i = 0, j = numOuter - 1; i < numOuter; j = i++) {
+	    Point3f p = vertices[vertexIndices[common[j]]];
+	    Point3f q = vertices[vertexIndices[common[i]]];
+	    nx += ((double)p.y - q.y) * ((double)p.z + q.z);
+	    ny += ((double)p.z - q.z) * ((double)p.x + q.x);
+	    nz += ((double)p.x - q.x) * ((double)p.y + q.y);
+	}
+	nx = Math.abs(nx);
+	ny = Math.abs(ny);
+	nz = Math.abs(nz);
+	if ((nx == 0.0) && (ny == 0.0) && (nz == 0.0)) {
+	    return false;
+	}
+
+	for (int i = 0; i < numVerts; i++) {
+	    Point3f p = vertices[vertexIndices[common[i]]];
+	    if ((nz >= nx) && (nz >= ny)) {
+		x[i] = p.x;
+		y[i] = p.y;
+	    } else if (nx >= ny) {
+		x[i] = p.y;
+		y[i] = p.z;
+	    } else {
+		x[i] = p.z;
+		y[i] = p.x;
+	    }
+	}
+	return true;
+    }
+
+    // Twice the signed area of the contour [first, last)
+    private double loopArea(int first, int last) {
+	double area = 0.0;
+	for (int i = first, j = last - 1; i < last; j = i++) {
+	    area += x[j] * y[i] - x[i] * y[j];
+	}
+	return area;
+    }
+
+    private void linkLoop(int first, int last, boolean reverse) {
+	for (int i = first; i < last; i++) {
+	    int n = (i == last - 1) ? first : i + 1;
+	    int p = (i == first) ? last - 1 : i - 1;
+	    next[i] = reverse ? p : n;
+	    prev[i] = reverse ? n : p;
+	}
+    }
+
+    // Twice the signed area of the triangle (a, b, c), positive when
+    // it is counter clockwise.
+    private double orient(int a, int b, int c) {
+	return (x[b] - x[a]) * (y[c] - y[a]) - (y[b] - y[a]) * (x[c] - x[a]);
+    }
+
+    // Order of the sweep: top to bottom, then left to right
+    private boolean above(int a, int b) {
+	if (y[a] != y[b]) {
+	    return y[a] > y[b];
+	}
+	if (x[a] != x[b]) {
+	    return x[a] < x[b];
+	}
+	return a < b;
+    }
+
+    // Positive when the point p is right of the edge e
+    private double side(Edge e, int p) {
+	return orient(e.upper, e.lower, p);
+    }
+
+    private int compareEdges(Edge a, Edge b) {
+	if (a == b) {
+	    return 0;
+	}
+	if (a.upper == a.lower) {
+	    return (side(b, a.upper) < 0.0) ? -1 : 1;
+	}
+	if (b.upper == b.lower) {
+	    return (side(a, b.upper) < 0.0) ? 1 : -1;
+	}
+
+	// Both edges cross the sweep line, so the one lying on one side
+	// of the other is on that side along the sweep line.
+	double s1 = side(b, a.upper);
+	double s2 = side(b, a.lower);
+	if ((s1 >= 0.0) && (s2 >= 0.0) && ((s1 > 0.0) || (s2 > 0.0))) {
+	    return 1;
+	}
+	if ((s1 <= 0.0) && (s2 <= 0.0) && ((s1 < 0.0) || (s2 < 0.0))) {
+	    return -1;
+	}
+	s1 = side(a, b.upper);
+	s2 = side(a, b.lower);
+	if ((s1 >= 0.0) && (s2 >= 0.0) && ((s1 > 0.0) || (s2 > 0.0))) {
+	    return -1;
+	}
+	if ((s1 <= 0.0) && (s2 <= 0.0) && ((s1 < 0.0) || (s2 < 0.0))) {
+	    return 1;
+	}
+
+	// Overlapping or crossing edges, which the final checks reject
+	return (a.upper < b.upper) ? -1 : 1;
+    }
+
+    /**
+     * Adds the diagonals which cut the face in monotone pieces.
+     */
+    private boolean makeMonotone() {
+	for (int i = 0; i < numVerts; i++) {
+	    order[i] = i;
+	}
+	sortVertices();
+
+	for (int v = 0; v < numVerts; v++) {
+	    int p = prev[v];
+	    int n = next[v];
+	    boolean convex = orient(p, v, n) > 0.0;
+	    if (above(v, p) && above(v, n)) {
+		type[v] = convex ? START : SPLIT;
+	    } else if (above(p, v) && above(n, v)) {
+		type[v] = convex ? END : MERGE;
+	    } else {
+		type[v] = REGULAR;
+	    }
+	}
+
+	status.clear();
+	numDiagonals = 0;
+	for (int k = 0; k < numVerts; k++) {
+	    int v = order[k];
+	    int e;
+	    switch (type[v]) {
+	    case START:
+		insertEdge(v);
+		break;
+	    case END:
+		if (!removeEdge(v, prev[v])) {
+		    return false;
+		}
+		break;
+	    case SPLIT:
+		if ((e = leftEdge(v)) < 0) {
+		    return false;
+		}
+		addDiagonal(v, helper[e]);
+		helper[e] = v;
+		insertEdge(v);
+		break;
+	    case MERGE:
+		if (!removeEdge(v, prev[v]) || ((e = leftEdge(v)) < 0)) {
+		    return false;
+		}
+		if (type[helper[e]] == MERGE) {
+		    addDiagonal(v, helper[e]);
+		}
+		helper[e] = v;
+		break;
+	    default:
+		if (above(prev[v], v)) {
+		    // The face is right of v
+		    if (!removeEdge(v, prev[v])) {
+			return false;
+		    }
+		    insertEdge(v);
+		} else {
+		    if ((e = leftEdge(v)) < 0) {
+			return false;
+		    }
+		    if (type[helper[e]] == MERGE) {
+			addDiagonal(v, helper[e]);
+		    }
+		    helper[e] = v;
+		}
+	    }
+	}
+	return status.isEmpty();
+    }
+
+    // Merge sort of order, so that equal inputs give equal outputs
+    private void sortVertices() {
+	for (int width = 1; width < numVerts; width *= 2) {
+	    for (int lo = 0; lo < numVerts - width; lo += 2 * width) {
+		int mid = lo + width;
+		int hi = Math.min(lo + 2 * width, numVerts);
+		int i = lo, j = mid, k = lo;
+		while ((i < mid) && (j < hi)) {
+		    work[k++] = above(order[j], order[i]) ? order[j++] : order[i++];
+		}
+		while (i < mid) {
+		    work[k++] = order[i++];
+		}
+		while (j < hi) {
+		    work[k++] = order[j++];
+		}
+		System.arraycopy(work, lo, order, lo, hi - lo);
+	    }
+	}
+    }
+
+    // Adds the edge from v to next[v] to the status, with v as helper
+    private void insertEdge(int v) {
+	if (edges[v] == null) {
+	    edges[v] = new Edge();
+	}
+	edges[v].upper = v;
+	edges[v].lower = next[v];
+	helper[v] = v;
+	status.add(edges[v]);
+    }
+
+    // Removes the edge from e to v from the status
+    private boolean removeEdge(int v, int e) {
+	if (type[helper[e]] == MERGE) {
+	    addDiagonal(v, helper[e]);
+	}
+	return (edges[e] != null) && status.remove(edges[e]);
+    }
+
+    // Returns the edge of the status directly left of v, or -1
+    private int leftEdge(int v) {
+	probe.upper = v;
+	probe.lower = v;
+	Edge e = (Edge)status.lower(probe);
+	return (e == null) ? -1 : e.upper;
+    }
+
+    private void addDiagonal(int a, int b) {
+	if (diagonals.length < 2 * numDiagonals + 2) {
+	    int d[] = new int[Math.max(16, diagonals.length * 2)];
+	    System.arraycopy(diagonals, 0, d, 0, 2 * numDiagonals);
+	    diagonals = d;
+	}
+	diagonals[2 * numDiagonals] = a;
+	diagonals[2 * numDiagonals + 1] = b;
+	numDiagonals++;
+    }
+
+    /**
+     * Walks around the pieces cut out by the diagonals and triangulates
+     * each of them.
+     */
+    private boolean triangulatePieces() {
+	int numHalf = numVerts + 2 * numDiagonals;
+	if (halfFrom.length < numHalf) {
+	    halfFrom = new int[numHalf];
+	    halfTo = new int[numHalf];
+	    visited = new boolean[numHalf];
+	    outHalf = new int[numHalf];
+	    piece = new int[numHalf];
+	    sorted = new int[numHalf];
+	    stack = new int[numHalf];
+	    leftChain = new boolean[numHalf];
+	}
+	for (int i = 0; i < numVerts; i++) {
+	    halfFrom[i] = i;
+	    halfTo[i] = next[i];
+	}
+	for (int d = 0; d < numDiagonals; d++) {
+	    int h = numVerts + 2 * d;
+	    halfFrom[h] = halfTo[h + 1] = diagonals[2 * d];
+	    halfTo[h] = halfFrom[h + 1] = diagonals[2 * d + 1];
+	}
+
+	// The half edges leaving each vertex
+	for (int v = 0; v <= numVerts; v++) {
+	    outStart[v] = 0;
+	}
+	for (int h = 0; h < numHalf; h++) {
+	    outStart[halfFrom[h] + 1]++;
+	    visited[h] = false;
+	}
+	for (int v = 0; v < numVerts; v++) {
+	    outStart[v + 1] += outStart[v];
+	}
+	for (int h = 0; h < numHalf; h++) {
+	    outHalf[outStart[halfFrom[h]]++] = h;
+	}
+	for (int v = numVerts; v > 0; v--) {
+	    outStart[v] = outStart[v - 1];
+	}
+	outStart[0] = 0;
+
+	numTriangles = 0;
+	for (int h = 0; h < numHalf; h++) {
+	    if (visited[h]) {
+		continue;
+	    }
+	    int size = 0;
+	    int g = h;
+	    do {
+		if (visited[g] || (size == numHalf)) {
+		    return false;
+		}
+		visited[g] = true;
+		piece[size++] = halfFrom[g];
+		g = nextHalfEdge(g);
+	    } while (g != h);
+	    if (!triangulatePiece(size)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    // Returns the half edge which follows g around the piece on its left
+    private int nextHalfEdge(int g) {
+	int a = halfFrom[g];
+	int b = halfTo[g];
+	int first = outStart[b];
+	int last = outStart[b + 1];
+	if (last - first == 1) {
+	    return outHalf[first];
+	}
+
+	// Turn clockwise around b from the way back to a
+	double back = Math.atan2(y[a] - y[b], x[a] - x[b]);
+	int best = -1;
+	double bestTurn = 0.0;
+	for (int i = first; i < last; i++) {
+	    int h = outHalf[i];
+	    int c = halfTo[h];
+	    double turn = back - Math.atan2(y[c] - y[b], x[c] - x[b]);
+	    while (turn <= 0.0) {
+		turn += 2.0 * Math.PI;
+	    }
+	    if ((best < 0) || (turn < bestTurn)) {
+		best = h;
+		bestTurn = turn;
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * Triangulates the monotone piece of size vertices in piece.
+     */
+    private boolean triangulatePiece(int size) {
+	if (size < 3) {
+	    return false;
+	}
+	int top = 0;
+	int bottom = 0;
+	for (int i = 1; i < size; i++) {
+	    if (above(piece[i], piece[top])) {
+		top = i;
+	    }
+	    if (above(piece[bottom], piece[i])) {
+		bottom = i;
+	    }
+	}
+
+	// Going around counter clockwise leads down the left chain and
+	// back up the right chain.  Merge the two chains in sweep order,
+	// checking that the piece really is monotone.
+	int l = (top + 1) % size;
+	int r = (top + size - 1) % size;
+	sorted[0] = piece[top];
+	leftChain[0] = true;
+	for (int k = 1; k < size - 1; k++) {
+	    int v;
+	    if ((l != bottom) &&
+		((r == bottom) || above(piece[l], piece[r]))) {
+		v = piece[l];
+		leftChain[k] = true;
+		l = (l + 1) % size;
+	    } else {
+		v = piece[r];
+		leftChain[k] = false;
+		r = (r + size - 1) % size;
+	    }
+	    if (!above(sorted[k - 1], v)) {
+		return false;
+	    }
+	    sorted[k] = v;
+	}
+	if (!above(sorted[size - 2], piece[bottom])) {
+	    return false;
+	}
+	sorted[size - 1] = piece[bottom];
+
+	int sp = 0;
+	stack[sp++] = 0;
+	stack[sp++] = 1;
+	for (int j = 2; j < size - 1; j++) {
+	    if (leftChain[j] != leftChain[stack[sp - 1]]) {
+		// Fan from j to the whole stack, on the other chain
+		while (sp > 1) {
+		    int t = stack[--sp];
+		    addTriangle(sorted[j], sorted[t], sorted[stack[sp - 1]]);
+		}
+		sp = 0;
+		stack[sp++] = j - 1;
+		stack[sp++] = j;
+	    } else {
+		// Cut the triangles whose diagonal from j is inside
+		int last = stack[--sp];
+		while ((sp > 0) && inside(j, last, stack[sp - 1])) {
+		    addTriangle(sorted[j], sorted[last], sorted[stack[sp - 1]]);
+		    last = stack[--sp];
+		}
+		stack[sp++] = last;
+		stack[sp++] = j;
+	    }
+	}
+	int last = stack[--sp];
+	while (sp > 0) {
+	    int t = stack[--sp];
+	    addTriangle(sorted[size - 1], sorted[last], sorted[t]);
+	    last = t;
+	}
+	return true;
+    }
+
+    // Whether the diagonal from sorted vertex j to t, above the chain
+    // vertex p in between, lies inside the piece
+    private boolean inside(int j, int p, int t) {
+	double o = orient(sorted[t], sorted[j], sorted[p]);
+	return leftChain[j] ? (o < 0.0) : (o > 0.0);
+    }
+
+    // Adds the triangle (a, b, c), counter clockwise
+    private void addTriangle(int a, int b, int c) {
+	if (triangles.length < 3 * numTriangles + 3) {
+	    int t[] = new int[Math.max(48, triangles.length * 2)];
+	    System.arraycopy(triangles, 0, t, 0, 3 * numTriangles);
+	    triangles = t;
+	}
+	if (orient(a, b, c) < 0.0) {
+	    int tmp = b;
+	    b = c;
+	    c = tmp;
+	}
+	triangles[3 * numTriangles] = a;
+	triangles[3 * numTriangles + 1] = b;
+	triangles[3 * numTriangles + 2] = c;
+	numTriangles++;
+    }
+}
@@ -40,10 +40,10 @@
 package com.sun.j3d.utils.geometry;
 
 import com.sun.j3d.utils.geometry.GeometryInfo;
-import com.sun.j3d.utils.geometry.EdgeTable;
 import java.util.ArrayList;
 import javax.vecmath.Vector3f;
 import javax.vecmath.Point3f;
+import com.sun.j3d.internal.ParallelLoop;
 
 /**
  * The NormalGenerator utility will calculate and fill in the normals
@@ -69,8 +69,19 @@ import javax.vecmath.Point3f;
 public class NormalGenerator {
 
   private double creaseAngle;
-  private Vector3f facetNorms[];
-  private ArrayList tally;
+  // Facet normal of each triangle, packed as x, y, z
+  private float facetNorms[];
+  // The triangle corners (coordinate index list positions) sharing
+  // each vertex normal.  Group n is sharers[groupStart[n]] to
+  // sharers[groupStart[n + 1] - 1].
+  private int sharers[];
+  private int groupStart[];
+  private int numGroups;
+  // The triangle corners of each vertex, in increasing order.  The
+  // corners of vertex v are vertCorners[vertStart[v]] to
+  // vertCorners[vertStart[v + 1] - 1].
+  private int vertStart[];
+  private int vertCorners[];
   private GeometryInfo gi;
   private int coordInds[];
   private int normalInds[];
@@ -80,6 +91,10 @@ public class NormalGenerator {
   private static long t1=0, t2=0, t3=0, t4=0, t5=0, t6=0;
   private Triangulator tr = null;
   private int numTexSets;
+  private int parallelism = 1;
+
+  // Number of triangles, vertices or normals handled by one parallel task
+  private static final int PARALLEL_CHUNK = 4096;
 
 
   // 0 - No debug info
@@ -99,58 +114,130 @@ public class NormalGenerator {
   // the cross product
   private void calculatefacetNorms()
   {
-    Point3f coordinates[] = gi.getCoordinates();
-    facetNorms = new Vector3f[coordInds.length / 3];
-    Vector3f a = new Vector3f();
-    Vector3f b = new Vector3f();
+    final Point3f coordinates[] = gi.getCoordinates();
+    facetNorms = new float[coordInds.length];
     if ((DEBUG & 1) != 0) System.out.println("Facet normals:");
 
-    if (gi.getOldPrim() != gi.QUAD_ARRAY) {
-      for (int t = 0 ; t < coordInds.length ; t += 3) {
-	a.sub(coordinates[coordInds[t + 2]], coordinates[coordInds[t + 1]]);
-	b.sub(coordinates[coordInds[t + 0]], coordinates[coordInds[t + 1]]);
-	facetNorms[t / 3] = new Vector3f();
-	facetNorms[t / 3].cross(a, b);
-	facetNorms[t / 3].normalize();
-
-	if (Float.isNaN(facetNorms[t / 3].x)) {
-	  // Normal isn't valid
-	  facetNorms[t / 3].x = 1.0f;
-	  facetNorms[t / 3].y = facetNorms[t / 3].z = 0.0f;
-	}
-	if ((DEBUG & 1) != 0) {
-	  System.out.println("  " + (t/3) + " " + facetNorms[t / 3]);
-	}
-      }
-    } else {
-      // For quads, the facet normal of both triangles is the cross 
-      // product of the two vectors that make an 'X' across the quad.
-      for (int t = 0 ; t < coordInds.length ; t += 6) {
-	a.sub(coordinates[coordInds[t + 2]], coordinates[coordInds[t + 0]]);
-	b.sub(coordinates[coordInds[t + 5]], coordinates[coordInds[t + 1]]);
-	facetNorms[t / 3] = new Vector3f();
-	facetNorms[t / 3].cross(a, b);
-	facetNorms[t / 3].normalize();
-
-	if (Float.isNaN(facetNorms[t / 3].x)) {
-	  // Normal isn't valid
-	  facetNorms[t / 3].x = 1.0f;
-	  facetNorms[t / 3].y = facetNorms[t / 3].z = 0.0f;
+    // Quads are handled two triangles at a time
+    final int step = (gi.getOldPrim() != gi.QUAD_ARRAY) ? 3 : 6;
+    int count = coordInds.length / step;
+    if (parallelism > 1) {
+      ParallelLoop.run(0, count, PARALLEL_CHUNK, parallelism,
+		       new ParallelLoop.Body() {
+	public void run(int start, int end) {
+	  calculatefacetNorms(coordinates, start * step, end * step);
 	}
+      });
+    } else calculatefacetNorms(coordinates, 0, count * step);
+  } // End of calculatefacetNorms
+
 
+
+  // Calculate the facet normals of the triangles whose indices are in
+  // coordInds[start] to coordInds[end - 1].  The arithmetic is the one
+  // of Vector3f.sub(), cross() and normalize(), so the normals are
+  // the same to the last bit.
+  private void calculatefacetNorms(Point3f coordinates[], int start, int end)
+  {
+    Point3f p0, p1, p2, p3;
+    float ax, ay, az, bx, by, bz;
+    int step;
+
+    if (gi.getOldPrim() != gi.QUAD_ARRAY) step = 3;
+    else step = 6;
+
+    for (int t = start ; t < end ; t += step) {
+      if (step == 3) {
+	p0 = coordinates[coordInds[t + 2]];
+	p1 = coordinates[coordInds[t + 1]];
+	p2 = coordinates[coordInds[t + 0]];
+	p3 = p1;
+      } else {
+	// For quads, the facet normal of both triangles is the cross 
+	// product of the two vectors that make an 'X' across the quad.
+	p0 = coordinates[coordInds[t + 2]];
+	p1 = coordinates[coordInds[t + 0]];
+	p2 = coordinates[coordInds[t + 5]];
+	p3 = coordinates[coordInds[t + 1]];
+      }
+      ax = p0.x - p1.x;
+      ay = p0.y - p1.y;
+      az = p0.z - p1.z;
+      bx = p2.x - p3.x;
+      by = p2.y - p3.y;
+      bz = p2.z - p3.z;
+
+      float x = ay*bz - az*by;
+      float y = bx*az - bz*ax;
+      float z = ax*by - ay*bx;
+      float norm = (float)(1.0/Math.sqrt(x*x + y*y + z*z));
+      x *= norm;
+      y *= norm;
+      z *= norm;
+
+      if (Float.isNaN(x)) {
+	// Normal isn't valid
+	x = 1.0f;
+	y = z = 0.0f;
+      }
+      facetNorms[t + 0] = x;
+      facetNorms[t + 1] = y;
+      facetNorms[t + 2] = z;
+      if (step == 6) {
         // Second triangle of quad
-	facetNorms[t / 3 + 1] = new Vector3f(facetNorms[t / 3]);
+	facetNorms[t + 3] = x;
+	facetNorms[t + 4] = y;
+	facetNorms[t + 5] = z;
+      }
 
-	if ((DEBUG & 1) != 0) {
-	  System.out.println("  " + (t/3) + "&" + (t/3 + 1) + " " +
-	    facetNorms[t / 3]);
-	}
+      if ((DEBUG & 1) != 0) {
+	System.out.println("  " + (t/3) + (step == 6 ? "&" + (t/3 + 1) : "") +
+	  " (" + x + ", " + y + ", " + z + ")");
       }
     }
   } // End of calculatefacetNorms
 
 
 
+  // Make the lists of triangle corners of each vertex.  They replace
+  // a hash table of the triangle edges: the triangle on the other side
+  // of an edge is found by looking through the corners of one of its
+  // vertices.
+  private void buildVertexCorners()
+  {
+    int numVerts = 0;
+    for (int c = 0 ; c < coordInds.length ; c++) {
+      if (coordInds[c] >= numVerts) numVerts = coordInds[c] + 1;
+    }
+    vertStart = new int[numVerts + 1];
+    for (int c = 0 ; c < coordInds.length ; c++) vertStart[coordInds[c] + 1]++;
+    for (int v = 0 ; v < numVerts ; v++) vertStart[v + 1] += vertStart[v];
+
+    // Fill in the lists using vertStart as the insertion points, which
+    // moves each entry to the start of the next list; then move it back
+    vertCorners = new int[coordInds.length];
+    for (int c = 0 ; c < coordInds.length ; c++)
+      vertCorners[vertStart[coordInds[c]]++] = c;
+    for (int v = numVerts ; v > 0 ; v--) vertStart[v] = vertStart[v - 1];
+    vertStart[0] = 0;
+  } // End of buildVertexCorners
+
+
+
+  // Returns the third corner of the first triangle with the edge going
+  // from vertex a to vertex b, or -1 if no triangle has that edge.
+  private int findEdge(int a, int b)
+  {
+    for (int i = vertStart[a] ; i < vertStart[a + 1] ; i++) {
+      int c = vertCorners[i];
+      if (coordInds[(c + 1) % 3 == 0 ? c - 2 : c + 1] == b)
+	return (c % 3) == 0 ? c + 2 : c - 1;
+    }
+    return -1;
+  } // End of findEdge
+
+
+
   // The vertex normals will be calculated by averaging the facet normals
   // of groups of triangles sharing the vertex.  At the end of this routine
   // the groups of coordinate indexes will all be made, and the normal
@@ -173,149 +260,245 @@ public class NormalGenerator {
   //
   private int createHardEdges()
   {
-    EdgeTable et = new EdgeTable(coordInds);
-    tally = new ArrayList();
-    int normalMap[] = new int[coordInds.length];
+    buildVertexCorners();
+    // Every corner ends up in exactly one group
+    sharers = new int[coordInds.length];
+    groupStart = new int[coordInds.length + 1];
+    numGroups = 0;
+    normalInds = new int[coordInds.length];
     int maxShare = 1;
-    float cosine;
-    boolean smooth;
     float threshold = (float)Math.cos(creaseAngle);
-    boolean goingRight;
 
     // Set Normal Indices array values to a flag
     for (int c = 0 ; c < coordInds.length ; c++)
-      normalMap[c] = Integer.MAX_VALUE;
+      normalInds[c] = Integer.MAX_VALUE;
+
+    if (!(parallelism > 1 && createHardEdgesParallel(threshold))) {
+      // Cycle through each vertex
+      int numSharers = 0;
+      for (int c = 0 ; c < coordInds.length ; c++) {
+	// See if this vertex's normal has already been done
+	if (normalInds[c] == Integer.MAX_VALUE) {
+	  if ((DEBUG & 32) != 0) {
+	    System.out.println(
+	      "Coordinate Index " + c + ": vertex " + coordInds[c]);
+	  }
+	  // Make the list of vertices used for calculating this normal
+	  groupStart[numGroups] = numSharers;
+	  numSharers += shareVertexNormal(c, numGroups, sharers, numSharers,
+					  threshold, false);
+	  numGroups++;
+	}
+      }
+      groupStart[numGroups] = numSharers;
+    }
 
-    // Cycle through each vertex
-    for (int c = 0 ; c < coordInds.length ; c++) {
-      // See if this vertex's normal has already been done
-      if (normalMap[c] == Integer.MAX_VALUE) {
-	if ((DEBUG & 32) != 0) {
-	  System.out.println(
-	    "Coordinate Index " + c + ": vertex " + coordInds[c]);
+    for (int n = 0 ; n < numGroups ; n++) {
+      int size = groupStart[n + 1] - groupStart[n];
+      if (size > maxShare) maxShare = size;
+    }
+
+    if ((DEBUG & 32) != 0) {
+      System.out.println("Tally:");
+      for (int i = 0 ; i < numGroups ; i++) {
+	System.out.print("  " + i + ": ");
+	for (int j = groupStart[i] ; j < groupStart[i + 1] ; j++) {
+	  System.out.print(" " + sharers[j]);
 	}
-	// Create a list of vertices used for calculating this normal
-	ArrayList sharers = new ArrayList();
-	tally.add(sharers);
-	// Put this coordinate in the list
-	sharers.add(new Integer(c));
-	// Point this coordinate's index at its list
-	normalMap[c] = tally.size() - 1;
-
-	// First do right edge
-	goingRight = true;
-	Edge edge = new Edge(coordInds[c],
-			     coordInds[(c + 1) % 3 == 0 ? c - 2 : c + 1]);
-	if ((DEBUG & 32) != 0)
-	  System.out.println( "  Right edge: " + edge);
+	System.out.println();
+      }
 
-	// This is how we'll know we've gone all the way around
-	int endVertex = coordInds[c % 3 == 0 ? c + 2 : c - 1];
+      System.out.println("Normal Indexes:");
+      for (int i = 0 ; i < normalInds.length ; i++) {
+	System.out.println("  " + i + ": " + normalInds[i]);
+      }
+    }
 
-        // Start at current triangle
-        int cur = c;
+    return maxShare;
+  } // End of createHardEdges
 
-	// Proceed from one triangle to the next
-	do {
-	  // Look up edge in Edge Table to find neighbor triangle
-	  Integer tableVal = et.get(edge.v2, edge.v1);
-	  if ((DEBUG & 32) != 0) {
-	    System.out.println(
-	      "  Search Edge: " + (new Edge(edge.v2, edge.v1)));
-	  }
 
-	  // See if there is no triangle on the other side of this edge
-	  if (tableVal == null) {
-	    smooth = false;
-	    if ((DEBUG & 32) != 0)
-	      System.out.println("    No neighboring triangle found.");
-	  } else {
 
-	    int n = tableVal.intValue();
-	    if ((DEBUG & 32) != 0) {
-	      System.out.println(
-		"    Table lookup result: " + n + " (vertex " + coordInds[n] +
-		")");
-	      System.out.print("      Triangles " + (cur/3) + " & " + (n/3) +
-		": ");
+  // Parallel version of the vertex loop of createHardEdges.  Going
+  // around a vertex only visits the coordinates of that same vertex, so
+  // the vertices are split among the threads, and each vertex's
+  // coordinates are visited in increasing order like the sequential
+  // loop does.  The groups are then numbered in the order of their
+  // first coordinate, which is the order the sequential loop creates
+  // them in.  Returns false without making the groups if going around
+  // a vertex reaches another vertex, which only happens with bad data;
+  // the sequential loop is used in that case.
+  private boolean createHardEdgesParallel(final float threshold)
+  {
+    int numVerts = vertStart.length - 1;
+
+    // Each group is first stored in the part of buf holding the
+    // corners of its vertex, at groupOffset[c] for the group started
+    // by coordinate c
+    final int buf[] = new int[coordInds.length];
+    final int groupOffset[] = new int[coordInds.length];
+    final int groupSize[] = new int[coordInds.length];
+    final boolean badData[] = new boolean[1];
+    ParallelLoop.run(0, numVerts, PARALLEL_CHUNK, parallelism,
+		     new ParallelLoop.Body() {
+      public void run(int start, int end) {
+	int offset = vertStart[start];
+	for (int i = vertStart[start] ; i < vertStart[end] ; i++) {
+	  int c = vertCorners[i];
+	  if (normalInds[c] == Integer.MAX_VALUE) {
+	    int size = shareVertexNormal(c, c, buf, offset, threshold, true);
+	    if (size < 0) {
+	      synchronized (badData) {
+		badData[0] = true;
+	      }
+	      return;
 	    }
+	    groupOffset[c] = offset;
+	    groupSize[c] = size;
+	    offset += size;
+	  }
+	}
+      }
+    });
 
-	    cosine = facetNorms[cur / 3].dot(facetNorms[n / 3]);
-	    smooth = cosine > threshold;
-	    if (smooth) {
-	      // The center coordinate (c) shares the same normal in these
-	      // two triangles.  Find that coordinate and set its index
-	      // normalMap[n] = normalMap[cur];
-	      int centerv = (((n + 1) % 3) == 0 ? n - 2 : n + 1);
-	      if (coordInds[c] != coordInds[centerv]) {
-		centerv = ((n % 3) == 0 ? n + 2 : n - 1);
-	      }
+    if (badData[0]) {
+      for (int c = 0 ; c < coordInds.length ; c++)
+	normalInds[c] = Integer.MAX_VALUE;
+      return false;
+    }
+
+    int numSharers = 0;
+    for (int c = 0 ; c < coordInds.length ; c++) {
+      if (groupSize[c] != 0) {
+	groupStart[numGroups] = numSharers;
+	for (int i = groupOffset[c] ; i < groupOffset[c] + groupSize[c] ; i++) {
+	  sharers[numSharers++] = buf[i];
+	  normalInds[buf[i]] = numGroups;
+	}
+	numGroups++;
+      }
+    }
+    groupStart[numGroups] = numSharers;
+    return true;
+  } // End of createHardEdgesParallel
 
-	      if ((DEBUG & 32) != 0)
-		System.out.println("Smooth!  Adding " + centerv);
 
-	      if (normalMap[centerv] != Integer.MAX_VALUE) {
-		smooth = false;
-		if ((DEBUG & 32) != 0) System.out.println(
-		  "    Error:  Coordinate aleady has normal (bad data).");
-	      } else {
 
-		normalMap[centerv] = tally.size() - 1;
+  // Goes around the vertex of coordinate c as described above, storing
+  // the coordinates that share c's normal in group, starting at first,
+  // and setting their normalInds entries to normal.  Returns the number
+  // of coordinates stored.  If sameVertex is true, stops and returns -1
+  // when it reaches a coordinate of another vertex.
+  private int shareVertexNormal(int c, int normal, int group[], int first,
+				float threshold, boolean sameVertex)
+  {
+    float cosine;
+    boolean smooth;
+    boolean goingRight;
+    int count = 0;
+
+    // Put this coordinate in the list
+    group[first + count++] = c;
+    // Point this coordinate's index at its list
+    normalInds[c] = normal;
+
+    // First do right edge
+    goingRight = true;
+    int v1 = coordInds[c];
+    int v2 = coordInds[(c + 1) % 3 == 0 ? c - 2 : c + 1];
+    if ((DEBUG & 32) != 0)
+      System.out.println( "  Right edge: (" + v1 + ", " + v2 + ")");
+
+    // This is how we'll know we've gone all the way around
+    int endVertex = coordInds[c % 3 == 0 ? c + 2 : c - 1];
+
+    // Start at current triangle
+    int cur = c;
+
+    // Proceed from one triangle to the next
+    do {
+      // Look up edge to find neighbor triangle
+      int n = findEdge(v2, v1);
+      if ((DEBUG & 32) != 0) {
+	System.out.println("  Search Edge: (" + v2 + ", " + v1 + ")");
+      }
 
-		// Consider this triangle's facet normal when calculating the
-		// vertex's normal
-		sharers.add(new Integer(centerv));
-		if (sharers.size() > maxShare) maxShare = sharers.size();
+      // See if there is no triangle on the other side of this edge
+      if (n < 0) {
+	smooth = false;
+	if ((DEBUG & 32) != 0)
+	  System.out.println("    No neighboring triangle found.");
+      } else {
 
-		// Continue on around the vertex to the next triangle
-		cur = n;
-		if (goingRight) edge.v2 = coordInds[cur];
-		else edge.v1 = coordInds[cur];
-	      }
-	    } else if ((DEBUG & 32) != 0) System.out.println("Hard Edge!");
+	if ((DEBUG & 32) != 0) {
+	  System.out.println(
+	    "    Table lookup result: " + n + " (vertex " + coordInds[n] +
+	    ")");
+	  System.out.print("      Triangles " + (cur/3) + " & " + (n/3) +
+	    ": ");
+	}
+
+	int f = cur / 3 * 3;
+	int g = n / 3 * 3;
+	cosine = facetNorms[f] * facetNorms[g] +
+	  facetNorms[f + 1] * facetNorms[g + 1] +
+	  facetNorms[f + 2] * facetNorms[g + 2];
+	smooth = cosine > threshold;
+	if (smooth) {
+	  // The center coordinate (c) shares the same normal in these
+	  // two triangles.  Find that coordinate and set its index
+	  // normalInds[n] = normalInds[cur];
+	  int centerv = (((n + 1) % 3) == 0 ? n - 2 : n + 1);
+	  if (coordInds[c] != coordInds[centerv]) {
+	    centerv = ((n % 3) == 0 ? n + 2 : n - 1);
 	  }
-	  
-	  if (!smooth && goingRight) {
+	  if (sameVertex && coordInds[c] != coordInds[centerv]) return -1;
 
-	    // We've hit an impasse going right, so now try going left
-	    // from the original triangle
-	    goingRight = false;
-	    smooth = true;		// Trick do loop
-	    cur = c;			// Go back to original triangle
+	  if ((DEBUG & 32) != 0)
+	    System.out.println("Smooth!  Adding " + centerv);
 
-	    edge = new Edge(coordInds[(c % 3) == 0 ? c + 2 : c - 1],
-			    coordInds[c]);
-	    if ((DEBUG & 32) != 0) System.out.println( "  Left edge: " + edge);
+	  if (normalInds[centerv] != Integer.MAX_VALUE) {
+	    smooth = false;
+	    if ((DEBUG & 32) != 0) System.out.println(
+	      "    Error:  Coordinate aleady has normal (bad data).");
+	  } else {
 
-	  }
-          
-	} while (smooth && ((goingRight && (edge.v2 != endVertex)) ||
-			    !goingRight));
+	    normalInds[centerv] = normal;
 
-	if (((DEBUG & 32) != 0) && goingRight && (edge.v2 == endVertex))
-	  System.out.println("  Went all the way around!");
-      }
-    }
+	    // Consider this triangle's facet normal when calculating the
+	    // vertex's normal
+	    group[first + count++] = centerv;
 
-    if ((DEBUG & 32) != 0) {
-      System.out.println("Tally:");
-      for (int i = 0 ; i < tally.size() ; i++) {
-	System.out.print("  " + i + ": ");
-	ArrayList sharers = (ArrayList)(tally.get(i));
-	for (int j = 0 ; j < sharers.size() ; j++) {
-	  System.out.print(" " + sharers.get(j));
-	}
-	System.out.println();
+	    // Continue on around the vertex to the next triangle
+	    cur = n;
+	    if (goingRight) v2 = coordInds[cur];
+	    else v1 = coordInds[cur];
+	  }
+	} else if ((DEBUG & 32) != 0) System.out.println("Hard Edge!");
       }
 
-      System.out.println("Normal Indexes:");
-      for (int i = 0 ; i < normalMap.length ; i++) {
-	System.out.println("  " + i + ": " + normalMap[i]);
+      if (!smooth && goingRight) {
+
+	// We've hit an impasse going right, so now try going left
+	// from the original triangle
+	goingRight = false;
+	smooth = true;		// Trick do loop
+	cur = c;			// Go back to original triangle
+
+	v1 = coordInds[(c % 3) == 0 ? c + 2 : c - 1];
+	v2 = coordInds[c];
+	if ((DEBUG & 32) != 0)
+	  System.out.println( "  Left edge: (" + v1 + ", " + v2 + ")");
+
       }
-    }
 
-    return maxShare;
-  } // End of createHardEdges
+    } while (smooth && ((goingRight && (v2 != endVertex)) ||
+			!goingRight));
+
+    if (((DEBUG & 32) != 0) && goingRight && (v2 == endVertex))
+      System.out.println("  Went all the way around!");
+    return count;
+  } // End of shareVertexNormal
 
 
   // Now take all of the triangles who share a vertex (who have
@@ -335,84 +518,43 @@ public class NormalGenerator {
   // indexed, table.  That way, to tell if two triangles have the
   // same normal, we just need to compare indexes.  This would speed up
   // the process of checking for duplicates.
-  private void calculateVertexNormals(int maxShare)
+  private void calculateVertexNormals(final int maxShare)
   {
-    Vector3f normals[];
-    ArrayList sharers;
-    int triangle;
-    Vector3f fn[];	// Normals of facets joined by this vertex
-    int fnsize;		// Number of elements currently ised in fn
+    final float normals[];
 
     if (creaseAngle != 0.0) {
-      fn = new Vector3f[maxShare];
-      normals = new Vector3f[tally.size()];
-      normalInds = new int[coordInds.length];
-      for (int n = 0 ; n < tally.size() ; n++) {
-	sharers = (ArrayList)(tally.get(n));
-	if ((DEBUG & 128) != 0) {
-	  System.out.println(n + ": " + sharers.size() +
-	    " triangles:");
-	}
-	fnsize = 0;
-	normals[n] = new Vector3f();
-	for (int t = 0 ; t < sharers.size() ; t++) {
-	  int v = ((Integer)sharers.get(t)).intValue();
-	  // See if index removed by hard edge process
-	  if (v != -1) {
-	    triangle = v / 3;
-	    if (!Float.isNaN(facetNorms[triangle].x)) {
-
-	      int f;
-	      // Don't add the same facet normal twice
-	      for (f = 0 ; f < fnsize ; f++) {
-		if (fn[f].equals(facetNorms[triangle])) break;
-	      }
-
-	      normalInds[v] = n;
-	      if (f == fnsize) {
-		// Didn't find this triangle's normal already in the list
-		normals[n].add(facetNorms[triangle]);
-		fn[fnsize++] = facetNorms[triangle];
-	      } else if ((DEBUG & 128) != 0) {
-		System.out.println("  triangle " + t + " ignored.");
-	      }
-	    }
+      normals = new float[numGroups * 3];
+      if (parallelism > 1) {
+	ParallelLoop.run(0, numGroups, PARALLEL_CHUNK, parallelism,
+			 new ParallelLoop.Body() {
+	  public void run(int start, int end) {
+	    averageFacetNormals(start, end, normals, new int[maxShare]);
 	  }
-	}
-	normals[n].normalize();
-	if (Float.isNaN(normals[n].x)) {
-	  // Normal isn't valid
-	  normals[n].x = 1.0f; normals[n].y = normals[n].z = 0.0f;
-	}
-	if ((DEBUG & 128) != 0) {
-	  for (int t = 0 ; t < sharers.size() ; t++) {
-	    int v = ((Integer)sharers.get(t)).intValue();
-	    if (v != -1) {
-	      triangle = v / 3;
-	      System.out.println("  " + facetNorms[triangle]);
-	    }
-	  }
-	  System.out.println("  Result: " + normals[n]);
-	  System.out.println();
-	}
-      }
+	});
+      } else averageFacetNormals(0, numGroups, normals, new int[maxShare]);
     } else {
       // This code renders the facet normals
       normals = facetNorms;
 
-      normalInds = new int[facetNorms.length * 3];
-      for (int i = 0 ; i < facetNorms.length ; i++) {
+      normalInds = new int[coordInds.length];
+      for (int i = 0 ; i < coordInds.length / 3 ; i++) {
 	normalInds[i * 3 + 0] = i;
 	normalInds[i * 3 + 1] = i;
 	normalInds[i * 3 + 2] = i;
       }
     }
-    gi.setNormals(normals);
+
+    Vector3f normalList[] = new Vector3f[normals.length / 3];
+    for (int i = 0 ; i < normalList.length ; i++) {
+      normalList[i] = new Vector3f(normals[i * 3], normals[i * 3 + 1],
+				   normals[i * 3 + 2]);
+    }
+    gi.setNormals(normalList);
 
     if ((DEBUG & 4) != 0) {
       System.out.println("Normals:");
-      for (int i = 0 ; i < normals.length ; i++) {
-	System.out.println("  " + i + " " + normals[i]);
+      for (int i = 0 ; i < normalList.length ; i++) {
+	System.out.println("  " + i + " " + normalList[i]);
       }
       System.out.println("Indices:");
       for (int i = 0 ; i < normalInds.length ; i++) {
@@ -423,6 +565,65 @@ public class NormalGenerator {
 
 
 
+  // Average the facet normals of the groups of triangles start to
+  // end - 1.  fn must be able to hold maxShare triangle numbers.
+  private void averageFacetNormals(int start, int end, float normals[],
+				   int fn[])
+  {
+    int triangle;
+    int fnsize;		// Number of elements currently ised in fn
+    float x, y, z;
+
+    for (int n = start ; n < end ; n++) {
+      if ((DEBUG & 128) != 0) {
+	System.out.println(n + ": " + (groupStart[n + 1] - groupStart[n]) +
+	  " triangles:");
+      }
+      fnsize = 0;
+      x = y = z = 0.0f;
+      for (int t = groupStart[n] ; t < groupStart[n + 1] ; t++) {
+	triangle = sharers[t] / 3 * 3;
+	if (!Float.isNaN(facetNorms[triangle])) {
+
+	  int f;
+	  // Don't add the same facet normal twice
+	  for (f = 0 ; f < fnsize ; f++) {
+	    if ((facetNorms[fn[f]] == facetNorms[triangle]) &&
+		(facetNorms[fn[f] + 1] == facetNorms[triangle + 1]) &&
+		(facetNorms[fn[f] + 2] == facetNorms[triangle + 2])) break;
+	  }
+
+	  if (f == fnsize) {
+	    // Didn't find this triangle's normal already in the list
+	    x += facetNorms[triangle];
+	    y += facetNorms[triangle + 1];
+	    z += facetNorms[triangle + 2];
+	    fn[fnsize++] = triangle;
+	  } else if ((DEBUG & 128) != 0) {
+	    System.out.println("  triangle " + t + " ignored.");
+	  }
+	}
+      }
+      float norm = (float)(1.0/Math.sqrt(x*x + y*y + z*z));
+      x *= norm;
+      y *= norm;
+      z *= norm;
+      if (Float.isNaN(x)) {
+	// Normal isn't valid
+	x = 1.0f; y = z = 0.0f;
+      }
+      normals[n * 3 + 0] = x;
+      normals[n * 3 + 1] = y;
+      normals[n * 3 + 2] = z;
+      if ((DEBUG & 128) != 0) {
+	System.out.println("  Result: (" + x + ", " + y + ", " + z + ")");
+	System.out.println();
+      }
+    }
+  } // End of averageFacetNormals
+
+
+
   // The original data was in quads and we converted it to triangles to
   // calculate the normals.  Now we are converting it back to quads.
   // It's a very simple algorithm.
@@ -774,6 +975,7 @@ public class NormalGenerator {
   public void generateNormals(GeometryInfo geom)
   {
     gi = geom;
+    parallelism = gi.getParallelism();
     gi.setNormals((Vector3f[])null);
     gi.setNormalIndices(null);
 
@@ -816,7 +1018,9 @@ public class NormalGenerator {
       time = System.currentTimeMillis();
     }
       
-    int maxShare = createHardEdges();
+    // The groups are only used to average the normals
+    int maxShare = 1;
+    if (creaseAngle != 0.0) maxShare = createHardEdges();
     if ((DEBUG & 16) != 0) {
       t3 += System.currentTimeMillis() - time;
       System.out.println("Hard Edges: " + t3 + " ms");
@@ -846,6 +1050,13 @@ public class NormalGenerator {
       gi.setTextureCoordinateIndices(i, texInds[i]);
     }
     gi.setStripCounts(stripCounts);
+
+    // Don't hold on to the work arrays
+    facetNorms = null;
+    sharers = null;
+    groupStart = null;
+    vertStart = null;
+    vertCorners = null;
   } // End of generateNormals
 
 
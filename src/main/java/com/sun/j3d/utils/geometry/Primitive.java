@@ -45,6 +45,7 @@ import java.util.*;
 import javax.media.j3d.*;
 import javax.vecmath.*;
 import java.math.*;
+import com.sun.j3d.internal.GeometryCache;
 
 /**
  * Base class for all Java 3D primitives. By default all primitives
@@ -237,7 +238,17 @@ public abstract class Primitive extends Group {
     setAppearance(a);
   }
 
-  static Hashtable geomCache = new Hashtable(); 
+  // Rough memory used by a cached vertex: its coordinate, normal and
+  // texture coordinate objects, and its part of the geometry array
+  static final int BYTES_PER_VERTEX = 112;
+
+  static GeometryCache geomCache = new GeometryCache(
+      GeometryCache.getSizeProperty("j3d.primitiveCacheSize", 16),
+      new GeometryCache.Weigher() {
+	public long weigh(Object key, Object value) {
+	  return (long)((GeomBuffer)value).pts.length * BYTES_PER_VERTEX;
+	}
+      });
 
   String strfloat(float x)
   {
@@ -258,7 +269,7 @@ public abstract class Primitive extends Group {
   {
     String key = new String(kind+strfloat(a)+strfloat(b)+
 			    strfloat(c)+d+e+flags);
-    Object cache =  geomCache.get(key);
+    Object cache = geomCache.get(key);
 
     return((GeomBuffer) cache);
   }
@@ -273,5 +284,76 @@ public abstract class Primitive extends Group {
   public static void clearGeometryCache() {
     geomCache.clear();
   }
+
+  /**
+   * Sets the limit on the memory used by the shared geometry cache
+   * of all Primitive types.  When the cache goes over the limit, the
+   * geometry that was used the least recently is dropped from it:
+   * existing Shapes keep sharing it, new Primitives with the same
+   * parameters create new shared geometry.  The default limit is 16
+   * megabytes, or the value of the j3d.primitiveCacheSize property,
+   * in megabytes.
+   *
+   * @param bytes the limit in bytes, no limit if 0 or less
+   *
+   * @since Java 3D 1.6
+   */
+  public static void setGeometryCacheLimit(long bytes) {
+    geomCache.setMaxWeight(bytes);
+  }
+
+  /**
+   * Returns the limit on the memory used by the shared geometry
+   * cache of all Primitive types.
+   *
+   * @return the limit in bytes, no limit if 0 or less
+   *
+   * @since Java 3D 1.6
+   */
+  public static long getGeometryCacheLimit() {
+    return geomCache.getMaxWeight();
+  }
+
+  /**
+   * Returns the memory used by the shared geometry cache of all
+   * Primitive types.
+   *
+   * @return the estimated size of the cached geometry in bytes
+   *
+   * @since Java 3D 1.6
+   */
+  public static long getGeometryCacheSize() {
+    return geomCache.getWeight();
+  }
+
+  /**
+   * Returns the number of Primitives which found their geometry in
+   * the shared geometry cache.
+   *
+   * @since Java 3D 1.6
+   */
+  public static long getGeometryCacheHitCount() {
+    return geomCache.getHitCount();
+  }
+
+  /**
+   * Returns the number of Primitives which didn't find their geometry
+   * in the shared geometry cache.
+   *
+   * @since Java 3D 1.6
+   */
+  public static long getGeometryCacheMissCount() {
+    return geomCache.getMissCount();
+  }
+
+  /**
+   * Returns the number of geometries dropped from the shared geometry
+   * cache to keep it under its limit.
+   *
+   * @since Java 3D 1.6
+   */
+  public static long getGeometryCacheEvictionCount() {
+    return geomCache.getEvictionCount();
+  }
 }
 
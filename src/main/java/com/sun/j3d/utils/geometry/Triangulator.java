@@ -57,7 +57,9 @@ package com.sun.j3d.utils.geometry;
 import javax.vecmath.*;
 import java.util.*;
 import com.sun.j3d.utils.geometry.GeometryInfo;
+import com.sun.j3d.internal.FastVector;
 import com.sun.j3d.internal.J3dUtilsI18N;
+import com.sun.j3d.internal.ParallelLoop;
 
 /**
  * Triangulator is a utility for turning arbitrary polygons into triangles
@@ -136,6 +138,16 @@ public class Triangulator extends Object {
     boolean earsRandom = true;
     boolean earsSorted = true;
 
+    // Set by the MONOTONE flag of the constructor
+    boolean monotoneFlag = false;
+    // Set for each triangulate() call from monotoneFlag and the
+    // triangulation algorithm of the GeometryInfo
+    boolean monotone = false;
+
+    // Set when the ears of the last face had to be re-classified; the
+    // next face then goes straight to the desperate measures.
+    boolean reset = false;
+
     int identCntr;  // Not sure what is this for. (Ask Martin)
 
     //  double epsilon = 1.0e-12;
@@ -146,6 +158,37 @@ public class Triangulator extends Object {
     static final int EARS_RANDOM = 1;
     static final int EARS_SORTED = 2;
 
+    /**
+     * Triangulation algorithm for
+     * <code>GeometryInfo.setTriangulationAlgorithm</code> which selects
+     * the default ear clipping triangulation.
+     *
+     * @see GeometryInfo#setTriangulationAlgorithm
+     *
+     * @since Java 3D 1.6
+     */
+    public static final int EAR_CLIPPING = 0;
+
+    /**
+     * Triangulation algorithm for
+     * <code>GeometryInfo.setTriangulationAlgorithm</code>, also a flag
+     * for the <code>Triangulator(int)</code> constructor, which
+     * selects the monotone decomposition triangulation.  The faces are
+     * cut in y-monotone pieces by a plane sweep, so a face with n
+     * vertices is triangulated in O(n log n) time, which makes it much
+     * faster than the default ear clipping for large polygons with many
+     * holes.  A face the sweep can't handle, such as a self intersecting
+     * one, is triangulated by ear clipping instead.  The triangles
+     * returned in the GeometryInfo are wound like the outer contour of
+     * their face, as with ear clipping, but they are not the same
+     * triangles.
+     *
+     * @see GeometryInfo#setTriangulationAlgorithm
+     *
+     * @since Java 3D 1.6
+     */
+    public static final int MONOTONE = 0x100;
+
 
     static final int INC_LIST_BK = 100;
     static final int INC_LOOP_BK = 20;
@@ -153,6 +196,9 @@ public class Triangulator extends Object {
     static final int INC_POINT_BK = 100;
     static final int INC_DIST_BK = 50;
 
+    // Smallest number of faces triangulated by one parallel task
+    static final int MIN_PARALLEL_FACES = 64;
+
     private static final int DEBUG = 0;
 
     /**
@@ -168,14 +214,17 @@ public class Triangulator extends Object {
     }
 
     /**
-     * Creates a new instance of a Triangulator.
+     * Creates a new instance of a Triangulator.  The
+     * <code>MONOTONE</code> flag may be or'ed into earOrder to select
+     * the monotone decomposition triangulation.
      * @deprecated This class is created automatically when needed in
      * GeometryInfo and never needs to be used directly.  Putting data
      * into a GeometryInfo with primitive POLYGON_ARRAY automatically
      * causes the triangulator to be created and used.
      */
     public Triangulator(int earOrder) {
-	switch(earOrder) {
+	monotoneFlag = ((earOrder & MONOTONE) != 0);
+	switch(earOrder & ~MONOTONE) {
 	case EARS_SEQUENCE:
 	    earsRandom = false;
 	    earsSorted = false;
@@ -210,18 +259,15 @@ public class Triangulator extends Object {
      * @param gi Geometry to be triangulated
      **/
     public void triangulate(GeometryInfo gi) {
-	int i, j, k;
-	int sIndex = 0, index, currLoop, lastInd, ind;
-	boolean proceed;
-	boolean reset = false, troubles = false;
-
-	boolean done[] = new boolean[1];
-	boolean gotIt[] = new boolean[1];
+	int i;
 
 	if (gi.getPrimitive() != GeometryInfo.POLYGON_ARRAY){
 	    throw new IllegalArgumentException(J3dUtilsI18N.getString("Triangulator0"));
 	}
 
+	monotone = monotoneFlag ||
+	    (gi.getTriangulationAlgorithm() == MONOTONE);
+
 	gi.indexify();
 
 	vertices = gi.getCoordinates();
@@ -250,32 +296,183 @@ public class Triangulator extends Object {
 	numFaces = faces.length;
 	numTexSets = gInfo.getTexCoordSetCount();
 
+	int parallelism = gi.getParallelism();
+	if ((parallelism > 1) && (numFaces >= 2 * MIN_PARALLEL_FACES)) {
+	    triangulateParallel(parallelism);
+	    return;
+	}
 
-	// For debugging ...
-	/*
-	  System.out.println("Faces (number " + faces.length + ") : ");
-	  for(i=0; i<faces.length; i++) {
-	  System.out.println(faces[i]  + ", ");
-	  }
+	reset = false;
+	int triangleIndices[] = triangulateRange(0, numFaces, 0, 0);
+	if (triangleIndices != null) {
+	    // Output triangles here.
+	    writeTriangleToGeomInfo(triangleIndices);
+	}
+    }
 
-	  System.out.println("StripCounts (number " + stripCounts.length + ") : ");
-	  for(i=0; i<stripCounts.length; i++) {
-	  System.out.println(stripCounts[i]  + ", ");
-	  }
+    /**
+     * Triangulates the faces in chunks with one Triangulator per chunk,
+     * then writes the triangles of all the chunks in face order.  Each
+     * face is triangulated on its own, so the result is the same as
+     * triangulating all the faces in sequence.
+     */
+    private void triangulateParallel(int parallelism) {
+	final int numChunks = Math.max(2, Math.min(parallelism * 4,
+					numFaces / MIN_PARALLEL_FACES));
+	final int chunkFaces[] = new int[numChunks + 1];
+	final int chunkStrips[] = new int[numChunks + 1];
+	final int chunkIndices[] = new int[numChunks + 1];
+	int face = 0, strip = 0, index = 0;
+	for (int c = 0; c < numChunks; c++) {
+	    int end = (int)((long)numFaces * (c + 1) / numChunks);
+	    chunkFaces[c] = face;
+	    chunkStrips[c] = strip;
+	    chunkIndices[c] = index;
+	    for (; face < end; face++) {
+		for (int j = 0; j < faces[face]; j++, strip++) {
+		    index += stripCounts[strip];
+		}
+	    }
+	}
+	chunkFaces[numChunks] = face;
+
+	final int triangleIndices[][] = new int[numChunks][];
+	final boolean endReset[] = new boolean[numChunks];
+	ParallelLoop.run(0, numChunks, 1, parallelism, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int c = start; c < end; c++) {
+		    triangulateChunk(c, false, chunkFaces, chunkStrips,
+				     chunkIndices, triangleIndices, endReset);
+		}
+	    }
+	});
+
+	// A chunk that was left in the reset state changes how the
+	// first face of the next chunk is handled, so redo that chunk
+	// the way a single pass would have.
+	for (int c = 1; c < numChunks; c++) {
+	    if (triangleIndices[c - 1] == null) {
+		return;
+	    }
+	    if (endReset[c - 1]) {
+		triangulateChunk(c, true, chunkFaces, chunkStrips,
+				 chunkIndices, triangleIndices, endReset);
+	    }
+	}
+	if (triangleIndices[numChunks - 1] == null) {
+	    return;
+	}
 
-	  System.out.println("Vertices (number " + vertices.length + ") : ");
-	  for(i=0; i<vertices.length; i++) {
-	  System.out.println(i + " x " + vertices[i].x  + " y " + vertices[i].y +
-	  " z " + vertices[i].z);
-	  }
+	int numIndices = 0;
+	for (int c = 0; c < numChunks; c++) {
+	    numIndices += triangleIndices[c].length;
+	}
+	int allIndices[] = new int[numIndices];
+	numIndices = 0;
+	for (int c = 0; c < numChunks; c++) {
+	    System.arraycopy(triangleIndices[c], 0, allIndices, numIndices,
+			     triangleIndices[c].length);
+	    numIndices += triangleIndices[c].length;
+	}
+	writeTriangleToGeomInfo(allIndices);
+    }
 
+    private void triangulateChunk(int c, boolean startReset,
+				  int chunkFaces[], int chunkStrips[],
+				  int chunkIndices[], int triangleIndices[][],
+				  boolean endReset[]) {
+	Triangulator t = copyTriangulator();
+	t.monotone = monotone;
+	t.reset = startReset;
+	triangleIndices[c] = t.triangulateRange(chunkFaces[c], chunkFaces[c + 1],
+						chunkStrips[c], chunkIndices[c]);
+	endReset[c] = t.reset;
+    }
 
-	  System.out.println("VertexIndices (number " + vertexIndices.length + ") : ");
+    /**
+     * Returns an ear clipping Triangulator working on the same polygons.
+     */
+    private Triangulator copyTriangulator() {
+	Triangulator t = new Triangulator();
+	t.earsRandom = earsRandom;
+	t.earsSorted = earsSorted;
+	if (earsRandom) {
+	    t.randomGen = new Random();
+	}
+	t.gInfo = gInfo;
+	t.vertices = vertices;
+	t.vertexIndices = vertexIndices;
+	t.colors = colors;
+	t.normals = normals;
+	t.stripCounts = stripCounts;
+	t.faces = faces;
+	t.numFaces = numFaces;
+	t.numTexSets = numTexSets;
+	return t;
+    }
 
-	  for(i=0; i<vertexIndices.length; i++) {
-	  System.out.print(vertexIndices[i]  + ", ");
-	  }
-	*/
+    /**
+     * Triangulates the faces [firstFace, lastFace) with the selected
+     * method and returns the vertices of the triangles, as indices into
+     * the vertex list of the polygons, or null if one of the faces
+     * can't be triangulated.
+     */
+    int[] triangulateRange(int firstFace, int lastFace,
+			   int firstStrip, int firstIndex) {
+	if (monotone) {
+	    return triangulateMonotone(firstFace, lastFace,
+				       firstStrip, firstIndex);
+	}
+	if (triangulateFaces(firstFace, lastFace, firstStrip, firstIndex)) {
+	    return getTriangleIndices();
+	}
+	return null;
+    }
+
+    private int[] triangulateMonotone(int firstFace, int lastFace,
+				      int firstStrip, int firstIndex) {
+	MonotoneTriangulator mt =
+	    new MonotoneTriangulator(vertices, vertexIndices);
+	FastVector out = new FastVector(INC_TRI_BK * 3);
+	int strip = firstStrip;
+	int index = firstIndex;
+	for (int f = firstFace; f < lastFace; f++) {
+	    if (!mt.triangulateFace(stripCounts, strip, faces[f], index, out)) {
+		// Clip the ears of the faces the sweep can't handle
+		Triangulator t = copyTriangulator();
+		if (!t.triangulateFaces(f, f + 1, strip, index)) {
+		    return null;
+		}
+		int earIndices[] = t.getTriangleIndices();
+		for (int i = 0; i < earIndices.length; i++) {
+		    out.addElement(earIndices[i]);
+		}
+	    }
+	    for (int j = 0; j < faces[f]; j++, strip++) {
+		index += stripCounts[strip];
+	    }
+	}
+	int triangleIndices[] = new int[out.getSize()];
+	System.arraycopy(out.getData(), 0, triangleIndices, 0,
+			 triangleIndices.length);
+	return triangleIndices;
+    }
+
+    /**
+     * Triangulates the faces [firstFace, lastFace).  firstStrip is the
+     * index of the first contour of firstFace in stripCounts and
+     * firstIndex the index of its first vertex in vertexIndices.
+     * Returns false if one of the faces can't be triangulated.
+     */
+    boolean triangulateFaces(int firstFace, int lastFace,
+			     int firstStrip, int firstIndex) {
+	int i, j, k;
+	int sIndex, index, currLoop, lastInd, ind;
+	boolean proceed;
+	boolean troubles = false;
+
+	boolean done[] = new boolean[1];
+	boolean gotIt[] = new boolean[1];
 
 	maxNumLoops = 0;
 	maxNumList = 0;
@@ -285,7 +482,8 @@ public class Triangulator extends Object {
 	maxNumPUnsorted = 0;
 
 	// Compute the length of loops and list.
-	for(i=0; i<faces.length; i++) {
+	sIndex = firstStrip;
+	for(i=firstFace; i<lastFace; i++) {
 	    maxNumLoops += faces[i];
 	    for(j=0; j<faces[i]; j++, sIndex++) {
 		maxNumList += (stripCounts[sIndex]+1);
@@ -310,10 +508,10 @@ public class Triangulator extends Object {
 	numPoints = 0;
 	numLoops = 0;
 	numList = 0;
-	sIndex = 0;
-	index = 0;
+	sIndex = firstStrip;
+	index = firstIndex;
 
-	for(i=0; i<faces.length; i++) {
+	for(i=firstFace; i<lastFace; i++) {
 	    for(j=0; j<faces[i]; j++, sIndex++) {
 
 		currLoop = makeLoopHeader();
@@ -357,7 +555,7 @@ public class Triangulator extends Object {
 
 	int i1 = 0;
 	int i2 = 0;
-	for( j = 0;  j < numFaces;  ++j) {
+	for( j = firstFace;  j < lastFace;  ++j) {
 	    ccwLoop = true;
 	    done[0] = false;
 	    i2 = i1 + faces[j];
@@ -479,7 +677,7 @@ public class Triangulator extends Object {
 				      System.out.println("***** ask a triangulation wizard, or ");
 				      System.out.println("clean-up your polyhedron! ***** \n");
 				    */
-				    return;
+				    return false;
 				}
 			    }
 			    else {
@@ -541,9 +739,7 @@ public class Triangulator extends Object {
 	*/
 	// System.out.println("\n...writing the output data: ");
 
-	// Output triangles here.
-	writeTriangleToGeomInfo();
-
+	return true;
     }
 
     void printVtxList() {
@@ -585,8 +781,24 @@ public class Triangulator extends Object {
 
     }
 
-    void writeTriangleToGeomInfo() {
+    /**
+     * Returns the vertices of the triangles, as indices into the
+     * vertex list of the polygons.
+     */
+    int[] getTriangleIndices() {
+	int triangleIndices[] = new int[numTriangles*3];
+	int currIndex = 0;
+	for(int i=0; i<numTriangles; i++) {
+	    triangleIndices[currIndex++] = list[triangles[i].v1].getCommonIndex();
+	    triangleIndices[currIndex++] = list[triangles[i].v2].getCommonIndex();
+	    triangleIndices[currIndex++] = list[triangles[i].v3].getCommonIndex();
+	}
+	return triangleIndices;
+    }
+
+    void writeTriangleToGeomInfo(int triangleIndices[]) {
 	int i, currIndex;
+	int numTriangles = triangleIndices.length / 3;
 
 	// There are 2 approaches to take here : (1) Output all triangles as
 	// a single face.(Easy) (2) Preserve the faces of the polyhedron and
@@ -628,11 +840,11 @@ public class Triangulator extends Object {
 	int newVertexIndices[] = new int[numTriangles*3];
 	int index;
 	for(i=0; i<numTriangles; i++) {
-	    index = list[triangles[i].v1].getCommonIndex();
+	    index = triangleIndices[i*3+0];
 	    newVertexIndices[currIndex++] = vertexIndices[index];
-	    index = list[triangles[i].v2].getCommonIndex();
+	    index = triangleIndices[i*3+1];
 	    newVertexIndices[currIndex++] = vertexIndices[index];
-	    index = list[triangles[i].v3].getCommonIndex();
+	    index = triangleIndices[i*3+2];
 	    newVertexIndices[currIndex++] = vertexIndices[index];
 	}
 	gInfo.setCoordinateIndices(newVertexIndices);
@@ -657,11 +869,11 @@ public class Triangulator extends Object {
 	    int newNormalIndices[] = new int[numTriangles*3];
 	    currIndex = 0;
 	    for(i=0; i<numTriangles; i++) {
-		index = list[triangles[i].v1].getCommonIndex();
+		index = triangleIndices[i*3+0];
 		newNormalIndices[currIndex++] = oldNormalIndices[index];
-		index = list[triangles[i].v2].getCommonIndex();
+		index = triangleIndices[i*3+1];
 		newNormalIndices[currIndex++] = oldNormalIndices[index];
-		index = list[triangles[i].v3].getCommonIndex();
+		index = triangleIndices[i*3+2];
 		newNormalIndices[currIndex++] = oldNormalIndices[index];
 	    }
 	    gInfo.setNormalIndices(newNormalIndices);
@@ -672,11 +884,11 @@ public class Triangulator extends Object {
 	    int oldColorIndices[] = gInfo.getColorIndices();
 	    int newColorIndices[] = new int[numTriangles*3];
 	    for(i=0; i<numTriangles; i++) {
-		index = list[triangles[i].v1].getCommonIndex();
+		index = triangleIndices[i*3+0];
 		newColorIndices[currIndex++] = oldColorIndices[index];
-		index = list[triangles[i].v2].getCommonIndex();
+		index = triangleIndices[i*3+1];
 		newColorIndices[currIndex++] = oldColorIndices[index];
-		index = list[triangles[i].v3].getCommonIndex();
+		index = triangleIndices[i*3+2];
 		newColorIndices[currIndex++] = oldColorIndices[index];
 	    }
 	    gInfo.setColorIndices(newColorIndices);
@@ -687,11 +899,11 @@ public class Triangulator extends Object {
 	    int oldTextureIndices[] = gInfo.getTextureCoordinateIndices(j);
 	    currIndex = 0;
 	    for(i=0; i<numTriangles; i++) {
-		index = list[triangles[i].v1].getCommonIndex();
+		index = triangleIndices[i*3+0];
 		newTextureIndices[currIndex++] = oldTextureIndices[index];
-		index = list[triangles[i].v2].getCommonIndex();
+		index = triangleIndices[i*3+1];
 		newTextureIndices[currIndex++] = oldTextureIndices[index];
-		index = list[triangles[i].v3].getCommonIndex();
+		index = triangleIndices[i*3+2];
 		newTextureIndices[currIndex++] = oldTextureIndices[index];
 	    }
 	    gInfo.setTextureCoordinateIndices(j, newTextureIndices);
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.geometry;
+
+import javax.vecmath.Tuple2f;
+import javax.vecmath.Tuple3f;
+import javax.vecmath.Tuple4f;
+
+import com.sun.j3d.internal.ParallelLoop;
+
+/**
+ * Finds the duplicate entries of the GeometryInfo data lists.  Every
+ * entry gets the index of the first entry equal to it, the same result
+ * a HashMap of the tuples gives.  The tuples are packed in a float
+ * array and looked up in an open addressing table of ints, so nothing
+ * is allocated per entry.  Large lists are split by hash value in
+ * partitions that are welded in parallel; equal entries always land in
+ * the same partition, so the result doesn't depend on the number of
+ * threads.
+ */
+class VertexWelder {
+
+  // Lists shorter than this are never split in partitions
+  static final int MIN_PARALLEL_SIZE = 1 << 14;
+
+  private static final int MAX_PARTITIONS = 256;
+
+  // Hash of a null entry
+  private static final int NULL_HASH = 0x3c6ef372;
+
+  // Compares two entries of the list being welded
+  private interface Keys {
+    boolean same(int i, int j);
+  }
+
+
+
+  /*
+   * Returns the number of floats in each element of list, or 0 if
+   * the elements aren't float tuples.
+   */
+  static int getDimension(Object list[])
+  {
+    if (list instanceof Tuple2f[]) return 2;
+    if (list instanceof Tuple3f[]) return 3;
+    if (list instanceof Tuple4f[]) return 4;
+    return 0;
+  } // End of getDimension
+
+
+
+  /*
+   * Copies the tuples of list into a float array.  Null elements
+   * are stored as zeros.
+   */
+  static float[] pack(Object list[], int dim)
+  {
+    float data[] = new float[list.length * dim];
+    int j = 0;
+    if (dim == 2) {
+      Tuple2f t[] = (Tuple2f[])list;
+      for (int i = 0 ; i < t.length ; i++, j += 2) {
+	if (t[i] == null) continue;
+	data[j] = t[i].x;
+	data[j + 1] = t[i].y;
+      }
+    } else if (dim == 3) {
+      Tuple3f t[] = (Tuple3f[])list;
+      for (int i = 0 ; i < t.length ; i++, j += 3) {
+	if (t[i] == null) continue;
+	data[j] = t[i].x;
+	data[j + 1] = t[i].y;
+	data[j + 2] = t[i].z;
+      }
+    } else {
+      Tuple4f t[] = (Tuple4f[])list;
+      for (int i = 0 ; i < t.length ; i++, j += 4) {
+	if (t[i] == null) continue;
+	data[j] = t[i].x;
+	data[j + 1] = t[i].y;
+	data[j + 2] = t[i].z;
+	data[j + 3] = t[i].w;
+      }
+    }
+    return data;
+  } // End of pack
+
+
+
+  /**
+   * Returns the index list of a list of Tuple2f, Tuple3f or Tuple4f
+   * elements.  With an epsilon of 0 elements are equal when all their
+   * components are ==, as in Tuple3f.equals().  With a positive
+   * epsilon an element is welded to the first earlier unique element
+   * whose components are all within epsilon of its own.  That isn't
+   * transitive, so the epsilon welding is done in list order on the
+   * calling thread.
+   */
+  static int[] weld(final Object list[], float epsilon, int parallelism)
+  {
+    final int dim = getDimension(list);
+    final float data[] = pack(list, dim);
+
+    if (epsilon > 0.0f) return weldNear(data, list, dim, epsilon);
+
+    int n = list.length;
+    int hash[] = new int[n];
+    for (int i = 0 ; i < n ; i++) {
+      if (list[i] == null) {
+	hash[i] = NULL_HASH;
+	continue;
+      }
+      int h = 1;
+      for (int c = i * dim ; c < (i + 1) * dim ; c++) {
+	// 0.0f == -0.0f, so they must hash the same
+	float f = data[c];
+	h = 31 * h + ((f == 0.0f) ? 0 : Float.floatToIntBits(f));
+      }
+      hash[i] = h;
+    }
+
+    return weld(hash, new Keys() {
+      public boolean same(int i, int j) {
+	if (list[i] == list[j]) return true;
+	if ((list[i] == null) || (list[j] == null)) return false;
+	int a = i * dim;
+	int b = j * dim;
+	for (int c = 0 ; c < dim ; c++) {
+	  if (data[a + c] != data[b + c]) return false;
+	}
+	return true;
+      }
+    }, parallelism);
+  } // End of weld
+
+
+
+  /**
+   * Returns the index list of rows of width ints packed in rows.
+   * Each row gets the index of the first row with the same values.
+   */
+  static int[] weldRows(final int rows[], final int width, int parallelism)
+  {
+    int n = rows.length / width;
+    int hash[] = new int[n];
+    for (int i = 0 ; i < n ; i++) {
+      int h = 1;
+      for (int c = i * width ; c < (i + 1) * width ; c++) {
+	h = 31 * h + rows[c];
+      }
+      hash[i] = h;
+    }
+
+    return weld(hash, new Keys() {
+      public boolean same(int i, int j) {
+	int a = i * width;
+	int b = j * width;
+	for (int c = 0 ; c < width ; c++) {
+	  if (rows[a + c] != rows[b + c]) return false;
+	}
+	return true;
+      }
+    }, parallelism);
+  } // End of weldRows
+
+
+
+  // Spreads the bits of a hash value over the whole int
+  private static int mix(int h)
+  {
+    h *= 0x9e3779b9;
+    return h ^ (h >>> 16);
+  } // End of mix
+
+
+
+  // Returns a power of two table size at least twice count
+  private static int tableSize(int count)
+  {
+    int size = 16;
+    while (size < 2 * count) size <<= 1;
+    return size;
+  } // End of tableSize
+
+
+
+  private static int[] weld(final int hash[], final Keys keys,
+			    int parallelism)
+  {
+    int n = hash.length;
+    final int indices[] = new int[n];
+
+    int bits = 0;
+    if ((parallelism > 1) && (n >= MIN_PARALLEL_SIZE)) {
+      while (((1 << bits) < 4 * parallelism) &&
+	     ((1 << bits) < MAX_PARTITIONS)) bits++;
+    }
+    if (bits == 0) {
+      weldPartition(hash, keys, null, 0, n, indices);
+      return indices;
+    }
+
+    // Sort the entries by partition, keeping them in list order
+    // within each partition.  The partition comes from the high bits
+    // of the mixed hash and the table slot from the low ones.
+    int numPartitions = 1 << bits;
+    int shift = 32 - bits;
+    final int start[] = new int[numPartitions + 1];
+    for (int i = 0 ; i < n ; i++) {
+      start[(mix(hash[i]) >>> shift) + 1]++;
+    }
+    for (int p = 0 ; p < numPartitions ; p++) {
+      start[p + 1] += start[p];
+    }
+    final int order[] = new int[n];
+    int fill[] = new int[numPartitions];
+    System.arraycopy(start, 0, fill, 0, numPartitions);
+    for (int i = 0 ; i < n ; i++) {
+      order[fill[mix(hash[i]) >>> shift]++] = i;
+    }
+
+    ParallelLoop.run(0, numPartitions, 1, parallelism,
+		     new ParallelLoop.Body() {
+      public void run(int first, int last) {
+	for (int p = first ; p < last ; p++) {
+	  weldPartition(hash, keys, order, start[p], start[p + 1], indices);
+	}
+      }
+    });
+    return indices;
+  } // End of weld
+
+
+
+  /*
+   * Welds the entries order[first] to order[last - 1], which must be
+   * in increasing order.  A null order stands for the entries first
+   * to last - 1.
+   */
+  private static void weldPartition(int hash[], Keys keys, int order[],
+				    int first, int last, int indices[])
+  {
+    int size = tableSize(last - first);
+    int mask = size - 1;
+    // Index + 1 of the first entry of each value, 0 when empty
+    int table[] = new int[size];
+
+    for (int k = first ; k < last ; k++) {
+      int i = (order == null) ? k : order[k];
+      int h = hash[i];
+      int slot = mix(h) & mask;
+      int found = -1;
+      while (table[slot] != 0) {
+	int j = table[slot] - 1;
+	if ((hash[j] == h) && keys.same(j, i)) {
+	  found = j;
+	  break;
+	}
+	slot = (slot + 1) & mask;
+      }
+      if (found < 0) {
+	table[slot] = i + 1;
+	indices[i] = i;
+      } else indices[i] = found;
+    }
+  } // End of weldPartition
+
+
+
+  /*
+   * Welds the entries within epsilon of each other.  The unique
+   * entries are bucketed by a grid of epsilon sized cells over their
+   * first three components, so the candidates of an entry are in its
+   * own cell and the adjacent ones.
+   */
+  private static int[] weldNear(float data[], Object list[], int dim,
+				float epsilon)
+  {
+    int n = list.length;
+    int indices[] = new int[n];
+    int gridDim = Math.min(dim, 3);
+    int numNeighbors = 1;
+    for (int c = 0 ; c < gridDim ; c++) numNeighbors *= 3;
+
+    int size = tableSize(n);
+    int mask = size - 1;
+    // Index + 1 of the last unique entry of each bucket, and of the
+    // entry before it in the same bucket
+    int head[] = new int[size];
+    int next[] = new int[n];
+    long cell[] = new long[3];
+
+    for (int i = 0 ; i < n ; i++) {
+      int a = i * dim;
+      for (int c = 0 ; c < gridDim ; c++) {
+	cell[c] = (long)Math.floor((double)data[a + c] / epsilon);
+      }
+
+      int found = -1;
+      if (list[i] != null) {
+	for (int m = 0 ; m < numNeighbors ; m++) {
+	  int bucket = bucket(cell, gridDim, m, mask);
+	  for (int j = head[bucket] - 1 ; j >= 0 ; j = next[j] - 1) {
+	    if (((found < 0) || (j < found)) &&
+		near(data, list, dim, epsilon, j, i)) {
+	      found = j;
+	    }
+	  }
+	}
+      } else {
+	// Nulls only match nulls, and all share the center bucket
+	int bucket = bucket(cell, 0, 0, mask);
+	for (int j = head[bucket] - 1 ; j >= 0 ; j = next[j] - 1) {
+	  if (list[j] == null) found = j;
+	}
+      }
+
+      if (found < 0) {
+	int bucket = bucket(cell, (list[i] == null) ? 0 : gridDim,
+			    (numNeighbors - 1) / 2, mask);
+	next[i] = head[bucket];
+	head[bucket] = i + 1;
+	indices[i] = i;
+      } else indices[i] = found;
+    }
+    return indices;
+  } // End of weldNear
+
+
+
+  /*
+   * Returns the bucket of one of the cells around cell.  Each base 3
+   * digit of neighbor is an offset of -1, 0 or 1 along one axis, so
+   * (numNeighbors - 1) / 2 is the cell itself.
+   */
+  private static int bucket(long cell[], int gridDim, int neighbor,
+			    int mask)
+  {
+    long h = 1;
+    for (int c = 0 ; c < gridDim ; c++) {
+      h = h * 0x9e3779b97f4a7c15L + cell[c] + (neighbor % 3) - 1;
+      neighbor /= 3;
+    }
+    return mix((int)(h ^ (h >>> 32))) & mask;
+  } // End of bucket
+
+
+
+  private static boolean near(float data[], Object list[], int dim,
+			      float epsilon, int i, int j)
+  {
+    if (list[i] == list[j]) return true;
+    if ((list[i] == null) || (list[j] == null)) return false;
+    int a = i * dim;
+    int b = j * dim;
+    for (int c = 0 ; c < dim ; c++) {
+      float u = data[a + c];
+      float v = data[b + c];
+      if ((u != v) && !(Math.abs(u - v) <= epsilon)) return false;
+    }
+    return true;
+  } // End of near
+
+} // End of class VertexWelder
+
+// End of file VertexWelder.java
@@ -40,6 +40,7 @@
 package com.sun.j3d.utils.geometry.compression;
 
 import com.sun.j3d.internal.J3dUtilsI18N;
+import com.sun.j3d.internal.ParallelLoop;
 import javax.media.j3d.J3DBuffer;
 import javax.media.j3d.Shape3D;
 import javax.vecmath.Point3d;
@@ -278,6 +279,37 @@ public class CompressedGeometryData extends Object {
     }
 
 
+    /**
+     * Decompresses an array of independent compressed geometry objects,
+     * such as the blocks of a model read from a CompressedGeometryFile,
+     * using up to the given number of threads.  Element i of the returned
+     * array holds the Shape nodes returned by <code>decompress()</code>
+     * for element i of the given array.
+     *
+     * @param cgd the compressed geometry objects to decompress
+     * @param parallelism the maximum number of threads, including the
+     * calling thread; 1 decompresses the objects in the calling thread
+     * @return an array of arrays of Shape nodes, an element being null
+     * if the version of the corresponding compressed geometry is
+     * incompatible
+     *
+     * @since Java 3D 1.6
+     */
+    public static Shape3D[][] decompress(final CompressedGeometryData cgd[],
+					 int parallelism) {
+	final Shape3D shapes[][] = new Shape3D[cgd.length][] ;
+
+	ParallelLoop.run(0, cgd.length, 1, parallelism,
+			 new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int i = start ; i < end ; i++)
+		    shapes[i] = cgd[i].decompress() ;
+	    }
+	}) ;
+	return shapes ;
+    }
+
+
     /**
      * Retrieves the data access mode for this CompressedGeometryData object.
      * 
@@ -222,6 +222,13 @@ public class CompressionStream {
      */
     Point3d mcBounds[] = new Point3d[2] ;
 
+    /**
+     * Axes-aligned box used instead of mcBounds for normalizing positions
+     * to the unit cube, if not null.  The blocks of a model compressed in
+     * blocks all use the bounds of the whole model.
+     */
+    Point3d normalizationBounds[] = null ;
+
     /**
      * Axes-aligned box enclosing all vertices in normalized coordinates.
      */
@@ -555,13 +562,16 @@ public class CompressionStream {
 	// Compute position center and scaling for normalization to the unit
 	// cube.  This is a volume bounded by the open intervals (-1..1) on
 	// each axis.
-	center[0] = (mcBounds[1].x + mcBounds[0].x) / 2.0 ;
-	center[1] = (mcBounds[1].y + mcBounds[0].y) / 2.0 ;
-	center[2] = (mcBounds[1].z + mcBounds[0].z) / 2.0 ;
+	Point3d bounds[] =
+	    (normalizationBounds != null) ? normalizationBounds : mcBounds ;
+
+	center[0] = (bounds[1].x + bounds[0].x) / 2.0 ;
+	center[1] = (bounds[1].y + bounds[0].y) / 2.0 ;
+	center[2] = (bounds[1].z + bounds[0].z) / 2.0 ;
 
-	double xRange = mcBounds[1].x - mcBounds[0].x ;
-	double yRange = mcBounds[1].y - mcBounds[0].y ;
-	double zRange = mcBounds[1].z - mcBounds[0].z ;
+	double xRange = bounds[1].x - bounds[0].x ;
+	double yRange = bounds[1].y - bounds[0].y ;
+	double zRange = bounds[1].z - bounds[0].z ;
 
 	if (xRange > yRange)
 	    positionRangeMaximum = xRange ;
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.geometry.compression;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import javax.vecmath.Point3d;
+import javax.vecmath.Point3f;
+import com.sun.j3d.internal.ParallelLoop;
+import com.sun.j3d.utils.geometry.GeometryInfo;
+
+/**
+ * Compresses a model in blocks for GeometryCompressor.  The GeometryInfo
+ * objects of the model are sorted along a Morton curve through the
+ * centers of their bounds, so that each block holds nearby geometry,
+ * then cut in blocks of about blockSize vertices.  The blocks are
+ * compressed in parallel, each with its own Huffman table, but they all
+ * normalize their positions with the bounds of the whole model, so one
+ * transform places all of them.  Each block is written to the file as
+ * soon as the blocks before it are written; the threads never run more
+ * than a few blocks ahead of the file, which bounds the memory used.
+ */
+class GeometryBlockCompressor {
+
+    // Blocks compressed ahead of the next one to write, per thread
+    private static final int BLOCKS_AHEAD = 2 ;
+
+    private GeometryInfo geometry[] ;
+    private int positionQuant ;
+    private int colorQuant ;
+    private int normalQuant ;
+    private CompressedGeometryFile file ;
+
+    private Point3d bounds[] ;
+    private int order[] ;
+    private int blockStart[] ;
+    private int numBlocks ;
+    private int window ;
+
+    // Compressed blocks waiting for the ones before them to be written
+    private CompressedGeometryData.Header headers[] ;
+    private byte output[][] ;
+    private int nextBlock = 0 ;
+    private IOException failure = null ;
+    private boolean aborted = false ;
+    private final Object writeLock = new Object() ;
+
+    GeometryBlockCompressor(GeometryInfo geometry[], int positionQuant,
+		    int colorQuant, int normalQuant,
+		    CompressedGeometryFile file) {
+	this.geometry = geometry ;
+	this.positionQuant = positionQuant ;
+	this.colorQuant = colorQuant ;
+	this.normalQuant = normalQuant ;
+	this.file = file ;
+    }
+
+    /**
+     * Compresses the model in blocks of about blockSize vertices with up
+     * to parallelism threads and returns the bounds of the model.
+     */
+    Point3d[] compress(int blockSize, int parallelism) throws IOException {
+	makeBlocks(blockSize) ;
+
+	window = BLOCKS_AHEAD * Math.max(1, parallelism) ;
+	headers = new CompressedGeometryData.Header[numBlocks] ;
+	output = new byte[numBlocks][] ;
+	ParallelLoop.run(0, numBlocks, 1, parallelism,
+			 new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int b = start ; b < end ; b++) {
+		    try {
+			compressBlock(b) ;
+		    } catch (RuntimeException e) {
+			abort() ;
+			throw e ;
+		    } catch (Error e) {
+			abort() ;
+			throw e ;
+		    }
+		}
+	    }
+	}) ;
+
+	if (failure != null)
+	    throw failure ;
+
+	Point3d modelBounds[] = new Point3d[2] ;
+	modelBounds[0] = new Point3d(bounds[0]) ;
+	modelBounds[1] = new Point3d(bounds[1]) ;
+	return modelBounds ;
+    }
+
+    //
+    // Compute the bounds of the model, sort the GeometryInfo objects
+    // along a Morton curve and cut them in blocks.
+    //
+    private void makeBlocks(int blockSize) {
+	int n = geometry.length ;
+	float centers[] = new float[3 * n] ;
+	int vertexCounts[] = new int[n] ;
+	bounds = new Point3d[2] ;
+	bounds[0] = new Point3d(Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY) ;
+	bounds[1] = new Point3d(Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY) ;
+
+	for (int i = 0 ; i < n ; i++) {
+	    if (geometry[i] == null)
+		throw new IllegalArgumentException
+		    ("GeometryInfo at index " + i + " is null") ;
+
+	    Point3f coords[] = geometry[i].getCoordinates() ;
+	    if (coords == null)
+		throw new IllegalArgumentException
+		    ("GeometryInfo at index " + i + " has no coordinates") ;
+
+	    // Only the coordinates used by the vertices count, as in
+	    // CompressionStream.
+	    int indices[] = geometry[i].getCoordinateIndices() ;
+	    int count = (indices != null) ? indices.length : coords.length ;
+	    float min[] = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+			   Float.POSITIVE_INFINITY} ;
+	    float max[] = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+			   Float.NEGATIVE_INFINITY} ;
+	    for (int v = 0 ; v < count ; v++) {
+		Point3f p = coords[(indices != null) ? indices[v] : v] ;
+		if (p.x < min[0]) min[0] = p.x ;
+		if (p.y < min[1]) min[1] = p.y ;
+		if (p.z < min[2]) min[2] = p.z ;
+		if (p.x > max[0]) max[0] = p.x ;
+		if (p.y > max[1]) max[1] = p.y ;
+		if (p.z > max[2]) max[2] = p.z ;
+	    }
+	    vertexCounts[i] = count ;
+	    if (count == 0)
+		continue ;
+
+	    for (int k = 0 ; k < 3 ; k++)
+		centers[3*i + k] = (min[k] + max[k]) / 2.0f ;
+
+	    if (min[0] < bounds[0].x) bounds[0].x = min[0] ;
+	    if (min[1] < bounds[0].y) bounds[0].y = min[1] ;
+	    if (min[2] < bounds[0].z) bounds[0].z = min[2] ;
+	    if (max[0] > bounds[1].x) bounds[1].x = max[0] ;
+	    if (max[1] > bounds[1].y) bounds[1].y = max[1] ;
+	    if (max[2] > bounds[1].z) bounds[1].z = max[2] ;
+	}
+
+	// Sort by the Morton code of the centers, on 10 bits per axis.
+	double size = Math.max(bounds[1].x - bounds[0].x,
+			       Math.max(bounds[1].y - bounds[0].y,
+					bounds[1].z - bounds[0].z)) ;
+	double cellScale = (size > 0.0) ? 1023.0 / size : 0.0 ;
+	long keys[] = new long[n] ;
+	for (int i = 0 ; i < n ; i++) {
+	    long code = 0 ;
+	    if (vertexCounts[i] > 0) {
+		code = mortonCode
+		    ((int)((centers[3*i] - bounds[0].x) * cellScale),
+		     (int)((centers[3*i + 1] - bounds[0].y) * cellScale),
+		     (int)((centers[3*i + 2] - bounds[0].z) * cellScale)) ;
+	    }
+	    keys[i] = (code << 31) | i ;
+	}
+	Arrays.sort(keys) ;
+	order = new int[n] ;
+	for (int i = 0 ; i < n ; i++)
+	    order[i] = (int)(keys[i] & 0x7fffffffL) ;
+
+	// Cut blocks of at least blockSize vertices.
+	blockStart = new int[n + 1] ;
+	numBlocks = 0 ;
+	int count = 0 ;
+	for (int i = 0 ; i < n ; i++) {
+	    if (count == 0)
+		blockStart[numBlocks++] = i ;
+	    count += vertexCounts[order[i]] ;
+	    if (count >= blockSize)
+		count = 0 ;
+	}
+	blockStart[numBlocks] = n ;
+    }
+
+    // Release the threads waiting for a block which won't be written.
+    private synchronized void abort() {
+	aborted = true ;
+	notifyAll() ;
+    }
+
+    // Interleave the bits of x, y and z, 10 bits each.
+    private static long mortonCode(int x, int y, int z) {
+	return (spreadBits(x) << 2) | (spreadBits(y) << 1) | spreadBits(z) ;
+    }
+
+    private static long spreadBits(int v) {
+	long x = v & 0x3ff ;
+	x = (x | (x << 16)) & 0x030000ffL ;
+	x = (x | (x << 8)) & 0x0300f00fL ;
+	x = (x | (x << 4)) & 0x030c30c3L ;
+	x = (x | (x << 2)) & 0x09249249L ;
+	return x ;
+    }
+
+    private void compressBlock(int b) {
+	// Don't get too far ahead of the file.
+	synchronized (this) {
+	    while ((failure == null) && !aborted &&
+		   (b >= nextBlock + window)) {
+		try {
+		    wait() ;
+		} catch (InterruptedException e) {
+		    failure = new InterruptedIOException
+			("interrupted while compressing geometry blocks") ;
+		    notifyAll() ;
+		}
+	    }
+	    if ((failure != null) || aborted)
+		return ;
+	}
+
+	GeometryInfo blockGeometry[] =
+	    new GeometryInfo[blockStart[b+1] - blockStart[b]] ;
+	for (int i = 0 ; i < blockGeometry.length ; i++)
+	    blockGeometry[i] = geometry[order[blockStart[b] + i]] ;
+
+	CompressionStream stream = new CompressionStream
+	    (positionQuant, colorQuant, normalQuant, blockGeometry) ;
+	stream.normalizationBounds = bounds ;
+
+	GeometryCompressor compressor = new GeometryCompressor() ;
+	compressor.compressStream(stream) ;
+
+	synchronized (this) {
+	    headers[b] = compressor.cgHeader ;
+	    output[b] = compressor.outputBuffer.getBytes() ;
+	}
+	writeBlocks() ;
+    }
+
+    //
+    // Write the compressed blocks which are next in order.  Only one
+    // thread writes at a time; a block finished while another thread is
+    // writing is picked up by that thread or by its own call.
+    //
+    private void writeBlocks() {
+	synchronized (writeLock) {
+	    while (true) {
+		CompressedGeometryData.Header header ;
+		byte data[] ;
+		synchronized (this) {
+		    if ((failure != null) || aborted ||
+			(nextBlock == numBlocks) ||
+			(output[nextBlock] == null))
+			return ;
+		    header = headers[nextBlock] ;
+		    data = output[nextBlock] ;
+		}
+
+		try {
+		    file.write(header, data) ;
+		} catch (IOException e) {
+		    synchronized (this) {
+			failure = e ;
+			notifyAll() ;
+		    }
+		    return ;
+		}
+
+		synchronized (this) {
+		    headers[nextBlock] = null ;
+		    output[nextBlock] = null ;
+		    nextBlock++ ;
+		    notifyAll() ;
+		}
+	    }
+	}
+    }
+}
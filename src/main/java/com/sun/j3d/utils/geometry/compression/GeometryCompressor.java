@@ -41,6 +41,7 @@ package com.sun.j3d.utils.geometry.compression;
 
 import java.io.IOException;
 import javax.vecmath.Point3d;
+import com.sun.j3d.utils.geometry.GeometryInfo;
 
 /**
  * A GeometryCompressor takes a stream of geometric elements and
@@ -62,8 +63,8 @@ public class GeometryCompressor {
     private static final boolean printHuffman = false ;
 
     private HuffmanTable huffmanTable ;
-    private CommandStream outputBuffer ;
-    private CompressedGeometryData.Header cgHeader ;
+    CommandStream outputBuffer ;
+    CompressedGeometryData.Header cgHeader ;
     private long startTime ;
 
     public GeometryCompressor() {
@@ -113,11 +114,67 @@ public class GeometryCompressor {
 	outputBuffer.clear() ;
     }
 
+    /**
+     * Compress an array of GeometryInfo objects in blocks and append one
+     * compressed object per block to a CompressedGeometryFile.  The
+     * GeometryInfo objects are grouped in blocks of nearby geometry with
+     * about blockSize vertices each, a GeometryInfo object always being
+     * in a single block.  The blocks are compressed in parallel and each
+     * one is written to the file as soon as the blocks before it are, so
+     * only a few blocks per thread are held in memory instead of the
+     * compressed stream of the whole model.<p>
+     *
+     * All the blocks are normalized to the unit cube with the bounds of
+     * the whole model, which are returned: the same transform places the
+     * decompressed objects of all the blocks.  Each block has its own
+     * Huffman table.  The resource remains open for subsequent updates;
+     * its close() method must be called to create a valid compressed
+     * geometry resource file.<p>
+     *
+     * @param geometry an array of GeometryInfo objects, all with the same
+     * vertex format and dimensionality
+     * @param positionQuant number of bits to quantize each position's X,
+     * Y, and Z components, ranging from 1 to 16
+     * @param colorQuant number of bits to quantize each color's R, G, B,
+     * and alpha components, ranging from 2 to 16
+     * @param normalQuant number of bits for quantizing each normal's U and
+     * V components, ranging from 0 to 6
+     * @param blockSize the number of vertices in a block
+     * @param parallelism the number of threads compressing blocks
+     * @param f a currently open CompressedGeometryFile with write access
+     * @return Point3d array of length 2 with the lower and upper bounds
+     * of the model in modeling coordinates
+     * @exception IllegalArgumentException if any GeometryInfo object is
+     * null, has no coordinates, or has an inconsistent dimensionality or
+     * vertex format
+     * @exception IOException if write fails
+     *
+     * @see CompressionStream#getModelBounds
+     *
+     * @since Java 3D 1.6
+     */
+    public Point3d[] compress(GeometryInfo geometry[], int positionQuant,
+			      int colorQuant, int normalQuant, int blockSize,
+			      int parallelism, CompressedGeometryFile f)
+	throws IOException {
+
+	if (geometry == null)
+	    throw new IllegalArgumentException("null GeometryInfo array") ;
+
+	if (geometry.length == 0)
+	    throw new IllegalArgumentException
+		("zero-length GeometryInfo array") ;
+
+	GeometryBlockCompressor blocks = new GeometryBlockCompressor
+	    (geometry, positionQuant, colorQuant, normalQuant, f) ;
+	return blocks.compress(blockSize, parallelism) ;
+    }
+
     //
     // Compress the stream and put the results in the output buffer.
     // Set up the CompressedGeometryData.Header object.
     //
-    private void compressStream(CompressionStream stream) {
+    void compressStream(CompressionStream stream) {
 	if (benchmark) startTime = System.currentTimeMillis() ;
 
 	// Create the Huffman table.
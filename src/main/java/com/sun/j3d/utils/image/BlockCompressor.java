@@ -0,0 +1,812 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.image;
+
+import javax.media.j3d.ImageComponent;
+import javax.media.j3d.ImageComponent2D;
+import javax.media.j3d.NioImageBuffer;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import com.sun.j3d.internal.ParallelLoop;
+
+/**
+ * This class compresses images to the S3TC block compressed formats
+ * (DXT1, DXT3 and DXT5, also known as BC1, BC2 and BC3), so that
+ * textures can be compressed offline and loaded with a
+ * CompressedTextureLoader.  The images are returned as NioImageBuffer
+ * objects that can be used by an ImageComponent2D with byReference and
+ * yUp set to true, and can be saved in a DDS or KTX container.
+ * <p>
+ * The colors of each 4x4 block are fitted along their principal axis
+ * and refined with a least squares pass.  The rows of blocks are split
+ * across the threads of a parallel loop.  As with the Y_UP flag of
+ * TextureLoader, the first row of the image is the first row of the
+ * texture, that is the bottom row when it is used in Java 3D.
+ *
+ * @see CompressedTextureLoader
+ *
+ * @since Java 3D 1.6
+ */
+public class BlockCompressor extends Object {
+
+    // images with fewer blocks than this are compressed by the calling
+    // thread alone
+    private static final int PARALLEL_THRESHOLD = 1024;
+
+    // OpenGL internal formats stored in KTX files
+    static final int GL_RGB = 0x1907;
+    static final int GL_RGBA = 0x1908;
+    static final int GL_COMPRESSED_RGB_S3TC_DXT1 = 0x83F0;
+    static final int GL_COMPRESSED_RGBA_S3TC_DXT1 = 0x83F1;
+    static final int GL_COMPRESSED_RGBA_S3TC_DXT3 = 0x83F2;
+    static final int GL_COMPRESSED_RGBA_S3TC_DXT5 = 0x83F3;
+    static final int GL_ETC1_RGB8 = 0x8D64;
+
+    static final byte[] KTX_IDENTIFIER = {
+	(byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB,
+	'\r', '\n', 0x1A, '\n'
+    };
+
+    private int parallelism = ParallelLoop.getDefaultParallelism();
+
+    /**
+     * Constructs a BlockCompressor.
+     */
+    public BlockCompressor() {
+    }
+
+    /**
+     * Sets the number of threads used to compress an image.
+     *
+     * @param parallelism the number of threads, 1 to compress on the
+     * calling thread only
+     *
+     * @exception IllegalArgumentException if parallelism is less than 1
+     */
+    public void setParallelism(int parallelism) {
+	if (parallelism < 1) {
+	    throw new IllegalArgumentException(
+		"BlockCompressor: parallelism must be at least 1");
+	}
+	this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of threads used to compress an image.
+     */
+    public int getParallelism() {
+	return parallelism;
+    }
+
+    /**
+     * Returns true if images can be compressed to the specified type,
+     * which is one of the DXT image types of NioImageBuffer.
+     */
+    public static boolean isTypeSupported(NioImageBuffer.ImageType type) {
+	switch (type) {
+	case TYPE_DXT1_RGB:
+	case TYPE_DXT1_RGBA:
+	case TYPE_DXT3_RGBA:
+	case TYPE_DXT5_RGBA:
+	    return true;
+	default:
+	    return false;
+	}
+    }
+
+    /**
+     * Compresses an image.
+     *
+     * @param image the image to compress
+     * @param type the compressed image type, one of the DXT types
+     *
+     * @return a new NioImageBuffer of the specified type holding the
+     * compressed image
+     *
+     * @exception IllegalArgumentException if type is not supported
+     */
+    public NioImageBuffer compress(BufferedImage image,
+				   NioImageBuffer.ImageType type) {
+	checkType(type);
+	int w = image.getWidth();
+	int h = image.getHeight();
+	int[] argb = image.getRGB(0, 0, w, h, null, 0, w);
+	return compress(argb, w, h, type);
+    }
+
+    /**
+     * Compresses an uncompressed NioImageBuffer image.
+     *
+     * @param image the image to compress, of one of the uncompressed
+     * image types
+     * @param type the compressed image type, one of the DXT types
+     *
+     * @return a new NioImageBuffer of the specified type holding the
+     * compressed image
+     *
+     * @exception IllegalArgumentException if type is not supported, or
+     * if the image is already compressed
+     */
+    public NioImageBuffer compress(NioImageBuffer image,
+				   NioImageBuffer.ImageType type) {
+	checkType(type);
+	int w = image.getWidth();
+	int h = image.getHeight();
+	return compress(readPixels(image), w, h, type);
+    }
+
+    /**
+     * Builds the mipmap chain of an image with a box filtering
+     * MipMapBuilder, and compresses each level.
+     *
+     * @param image the image of the base level
+     * @param type the compressed image type, one of the DXT types
+     *
+     * @return an array with a compressed NioImageBuffer for each level
+     *
+     * @exception IllegalArgumentException if type is not supported
+     *
+     * @see MipMapBuilder
+     */
+    public NioImageBuffer[] compressMipMaps(BufferedImage image,
+					    NioImageBuffer.ImageType type) {
+	checkType(type);
+	ImageComponent2D[] levels = new MipMapBuilder().build(image,
+		ImageComponent.FORMAT_RGBA, image.getWidth(), image.getHeight(),
+		true, true);
+	NioImageBuffer[] images = new NioImageBuffer[levels.length];
+	for (int i = 0; i < levels.length; i++) {
+	    images[i] = compress(levels[i].getNioImage(), type);
+	}
+	return images;
+    }
+
+    /**
+     * Writes the levels of a compressed texture to a DDS file.
+     *
+     * @param levels the mipmap levels, starting with the base level,
+     * all of the same DXT image type
+     * @param out the stream the file is written to; it is not closed
+     *
+     * @exception IllegalArgumentException if the levels aren't of the
+     * same DXT image type
+     * @exception IOException if the stream can't be written
+     */
+    public static void writeDDS(NioImageBuffer[] levels, OutputStream out)
+	throws IOException {
+
+	NioImageBuffer.ImageType type = checkLevels(levels);
+	String fourCC;
+	switch (type) {
+	case TYPE_DXT1_RGB:
+	case TYPE_DXT1_RGBA:
+	    fourCC = "DXT1";
+	    break;
+	case TYPE_DXT3_RGBA:
+	    fourCC = "DXT3";
+	    break;
+	case TYPE_DXT5_RGBA:
+	    fourCC = "DXT5";
+	    break;
+	default:
+	    throw new IllegalArgumentException(
+		"BlockCompressor: DDS files can't hold " + type + " images");
+	}
+
+	ByteBuffer header = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+	header.put(new byte[] {'D', 'D', 'S', ' '});
+	header.putInt(124);
+	// CAPS | HEIGHT | WIDTH | PIXELFORMAT | LINEARSIZE | MIPMAPCOUNT
+	header.putInt(0x1 | 0x2 | 0x4 | 0x1000 | 0x80000 |
+		      (levels.length > 1 ? 0x20000 : 0));
+	header.putInt(levels[0].getHeight());
+	header.putInt(levels[0].getWidth());
+	header.putInt(levels[0].getDataBuffer().limit());
+	header.putInt(0);
+	header.putInt(levels.length);
+	header.position(76);
+	header.putInt(32);
+	// FOURCC, with ALPHAPIXELS for DXT1 with alpha
+	header.putInt(0x4 | (type == NioImageBuffer.ImageType.TYPE_DXT1_RGBA ?
+			     0x1 : 0));
+	header.put(fourCC.getBytes("US-ASCII"));
+	header.position(108);
+	// TEXTURE, with COMPLEX | MIPMAP for a mipmap chain
+	header.putInt(0x1000 | (levels.length > 1 ? 0x8 | 0x400000 : 0));
+	out.write(header.array());
+
+	for (int i = 0; i < levels.length; i++) {
+	    writeData(levels[i], out);
+	}
+    }
+
+    /**
+     * Writes the levels of a compressed texture to a KTX file.
+     *
+     * @param levels the mipmap levels, starting with the base level,
+     * all of the same compressed image type
+     * @param out the stream the file is written to; it is not closed
+     *
+     * @exception IllegalArgumentException if the levels aren't of the
+     * same compressed image type
+     * @exception IOException if the stream can't be written
+     */
+    public static void writeKTX(NioImageBuffer[] levels, OutputStream out)
+	throws IOException {
+
+	NioImageBuffer.ImageType type = checkLevels(levels);
+	int internalFormat;
+	int baseFormat = GL_RGBA;
+	switch (type) {
+	case TYPE_DXT1_RGB:
+	    internalFormat = GL_COMPRESSED_RGB_S3TC_DXT1;
+	    baseFormat = GL_RGB;
+	    break;
+	case TYPE_DXT1_RGBA:
+	    internalFormat = GL_COMPRESSED_RGBA_S3TC_DXT1;
+	    break;
+	case TYPE_DXT3_RGBA:
+	    internalFormat = GL_COMPRESSED_RGBA_S3TC_DXT3;
+	    break;
+	case TYPE_DXT5_RGBA:
+	    internalFormat = GL_COMPRESSED_RGBA_S3TC_DXT5;
+	    break;
+	case TYPE_ETC1_RGB:
+	    internalFormat = GL_ETC1_RGB8;
+	    baseFormat = GL_RGB;
+	    break;
+	default:
+	    throw new IllegalArgumentException(
+		"BlockCompressor: KTX files can't hold " + type + " images");
+	}
+
+	ByteBuffer header = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+	header.put(KTX_IDENTIFIER);
+	header.putInt(0x04030201);
+	header.putInt(0);		// glType
+	header.putInt(1);		// glTypeSize
+	header.putInt(0);		// glFormat
+	header.putInt(internalFormat);
+	header.putInt(baseFormat);
+	header.putInt(levels[0].getWidth());
+	header.putInt(levels[0].getHeight());
+	header.putInt(0);		// pixelDepth
+	header.putInt(0);		// numberOfArrayElements
+	header.putInt(1);		// numberOfFaces
+	header.putInt(levels.length);
+	header.putInt(0);		// bytesOfKeyValueData
+	out.write(header.array());
+
+	ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+	for (int i = 0; i < levels.length; i++) {
+	    // the compressed sizes are multiples of 8, so no padding is
+	    // needed
+	    size.putInt(0, levels[i].getDataBuffer().limit());
+	    out.write(size.array());
+	    writeData(levels[i], out);
+	}
+    }
+
+    private static NioImageBuffer.ImageType checkLevels(NioImageBuffer[] levels) {
+	if (levels.length == 0) {
+	    throw new IllegalArgumentException(
+		"BlockCompressor: no levels to write");
+	}
+	NioImageBuffer.ImageType type = levels[0].getImageType();
+	for (int i = 1; i < levels.length; i++) {
+	    if (levels[i].getImageType() != type) {
+		throw new IllegalArgumentException(
+		    "BlockCompressor: levels of different image types");
+	    }
+	}
+	return type;
+    }
+
+    private static void writeData(NioImageBuffer image, OutputStream out)
+	throws IOException {
+	ByteBuffer data = (ByteBuffer) image.getDataBuffer();
+	byte[] bytes = new byte[data.remaining()];
+	data.get(bytes);
+	out.write(bytes);
+    }
+
+    private static void checkType(NioImageBuffer.ImageType type) {
+	if (!isTypeSupported(type)) {
+	    throw new IllegalArgumentException(
+		"BlockCompressor: unsupported image type " + type);
+	}
+    }
+
+    // Reads an uncompressed NioImageBuffer into ARGB pixels
+    private static int[] readPixels(NioImageBuffer image) {
+	int n = image.getWidth() * image.getHeight();
+	int[] argb = new int[n];
+
+	switch (image.getImageType()) {
+	case TYPE_INT_ARGB:
+	    ((IntBuffer) image.getDataBuffer()).get(argb);
+	    return argb;
+	case TYPE_INT_RGB:
+	    ((IntBuffer) image.getDataBuffer()).get(argb);
+	    for (int i = 0; i < n; i++) {
+		argb[i] |= 0xff000000;
+	    }
+	    return argb;
+	case TYPE_INT_BGR:
+	    ((IntBuffer) image.getDataBuffer()).get(argb);
+	    for (int i = 0; i < n; i++) {
+		int p = argb[i];
+		argb[i] = 0xff000000 | ((p & 0xff) << 16) |
+		    (p & 0xff00) | ((p >> 16) & 0xff);
+	    }
+	    return argb;
+	default:
+	    break;
+	}
+
+	ByteBuffer src = (ByteBuffer) image.getDataBuffer();
+	for (int i = 0, j = 0; i < n; i++) {
+	    int r, g, b, a = 0xff;
+	    switch (image.getImageType()) {
+	    case TYPE_4BYTE_RGBA:
+		r = src.get(j++); g = src.get(j++); b = src.get(j++);
+		a = src.get(j++);
+		break;
+	    case TYPE_4BYTE_ABGR:
+		a = src.get(j++); b = src.get(j++); g = src.get(j++);
+		r = src.get(j++);
+		break;
+	    case TYPE_3BYTE_RGB:
+		r = src.get(j++); g = src.get(j++); b = src.get(j++);
+		break;
+	    case TYPE_3BYTE_BGR:
+		b = src.get(j++); g = src.get(j++); r = src.get(j++);
+		break;
+	    case TYPE_BYTE_GRAY:
+		r = g = b = src.get(j++);
+		break;
+	    default:
+		throw new IllegalArgumentException(
+		    "BlockCompressor: image is already compressed");
+	    }
+	    argb[i] = ((a & 0xff) << 24) | ((r & 0xff) << 16) |
+		((g & 0xff) << 8) | (b & 0xff);
+	}
+	return argb;
+    }
+
+    private NioImageBuffer compress(final int[] argb, final int w,
+				    final int h,
+				    final NioImageBuffer.ImageType type) {
+
+	final int blockSize = (type == NioImageBuffer.ImageType.TYPE_DXT3_RGBA ||
+			       type == NioImageBuffer.ImageType.TYPE_DXT5_RGBA) ?
+	    16 : 8;
+	final int blocksWide = (w + 3) >> 2;
+	int blocksHigh = (h + 3) >> 2;
+	final ByteBuffer out = ByteBuffer.allocateDirect(
+	    blocksWide * blocksHigh * blockSize).order(ByteOrder.LITTLE_ENDIAN);
+
+	ParallelLoop.Body body = new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		BlockEncoder encoder = new BlockEncoder();
+		for (int by = start; by < end; by++) {
+		    int offset = by * blocksWide * blockSize;
+		    for (int bx = 0; bx < blocksWide; bx++, offset += blockSize) {
+			encoder.loadBlock(argb, w, h, bx << 2, by << 2);
+			switch (type) {
+			case TYPE_DXT1_RGB:
+			    encoder.encodeColor(out, offset, false);
+			    break;
+			case TYPE_DXT1_RGBA:
+			    encoder.encodeColor(out, offset, true);
+			    break;
+			case TYPE_DXT3_RGBA:
+			    encoder.encodeExplicitAlpha(out, offset);
+			    encoder.encodeColor(out, offset + 8, false);
+			    break;
+			case TYPE_DXT5_RGBA:
+			    encoder.encodeInterpolatedAlpha(out, offset);
+			    encoder.encodeColor(out, offset + 8, false);
+			    break;
+			}
+		    }
+		}
+	    }
+	};
+
+	if (blocksWide * blocksHigh < PARALLEL_THRESHOLD || parallelism < 2 ||
+	    blocksHigh < 2) {
+	    body.run(0, blocksHigh);
+	} else {
+	    int chunk = Math.max(1, (PARALLEL_THRESHOLD / 4) / blocksWide);
+	    ParallelLoop.run(0, blocksHigh, chunk, parallelism, body);
+	}
+
+	out.order(ByteOrder.nativeOrder());
+	return new NioImageBuffer(w, h, type, out);
+    }
+
+
+    /**
+     * Encodes one 4x4 block at a time; each thread has its own encoder.
+     */
+    private static class BlockEncoder {
+
+	private final int[] pixels = new int[16];
+	private final int[] indices = new int[16];
+	private final int[] bestIndices = new int[16];
+	private final int[] palette = new int[4];
+	private final int[] alphas = new int[8];
+
+	// squared error of the last fitAlpha
+	private long alphaError;
+
+	// Loads a block, repeating the last row and column of the image
+	// for the pixels of a partial block
+	void loadBlock(int[] argb, int w, int h, int x0, int y0) {
+	    for (int y = 0; y < 4; y++) {
+		int row = Math.min(y0 + y, h - 1) * w;
+		for (int x = 0; x < 4; x++) {
+		    pixels[(y << 2) + x] = argb[row + Math.min(x0 + x, w - 1)];
+		}
+	    }
+	}
+
+	// Encodes the 8 byte color part of the block.  DXT1 blocks with
+	// transparent pixels use the 3 color mode; DXT3 and DXT5 color
+	// blocks must use the 4 color mode.
+	void encodeColor(ByteBuffer out, int offset, boolean punchThrough) {
+
+	    int transparent = 0;
+	    if (punchThrough) {
+		for (int i = 0; i < 16; i++) {
+		    if ((pixels[i] >>> 24) < 128) {
+			transparent |= 1 << i;
+		    }
+		}
+	    }
+	    boolean fourColors = (transparent == 0);
+
+	    if (transparent == 0xffff) {
+		out.putShort(offset, (short) 0);
+		out.putShort(offset + 2, (short) 0);
+		out.putInt(offset + 4, -1);
+		return;
+	    }
+
+	    // Mean and covariance of the opaque pixels
+	    float n = 0, mr = 0, mg = 0, mb = 0;
+	    for (int i = 0; i < 16; i++) {
+		if ((transparent & (1 << i)) == 0) {
+		    int p = pixels[i];
+		    mr += (p >> 16) & 0xff;
+		    mg += (p >> 8) & 0xff;
+		    mb += p & 0xff;
+		    n++;
+		}
+	    }
+	    mr /= n;
+	    mg /= n;
+	    mb /= n;
+
+	    float crr = 0, crg = 0, crb = 0, cgg = 0, cgb = 0, cbb = 0;
+	    for (int i = 0; i < 16; i++) {
+		if ((transparent & (1 << i)) == 0) {
+		    int p = pixels[i];
+		    float r = ((p >> 16) & 0xff) - mr;
+		    float g = ((p >> 8) & 0xff) - mg;
+		    float b = (p & 0xff) - mb;
+		    crr += r * r;
+		    crg += r * g;
+		    crb += r * b;
+		    cgg += g * g;
+		    cgb += g * b;
+		    cbb += b * b;
+		}
+	    }
+
+	    // Principal axis by power iteration
+	    float vr = 1, vg = 1, vb = 1;
+	    for (int k = 0; k < 8; k++) {
+		float r = crr * vr + crg * vg + crb * vb;
+		float g = crg * vr + cgg * vg + cgb * vb;
+		float b = crb * vr + cgb * vg + cbb * vb;
+		float m = Math.max(Math.abs(r), Math.max(Math.abs(g), Math.abs(b)));
+		if (m == 0) {
+		    break;
+		}
+		vr = r / m;
+		vg = g / m;
+		vb = b / m;
+	    }
+	    float len = (float) Math.sqrt(vr * vr + vg * vg + vb * vb);
+	    vr /= len;
+	    vg /= len;
+	    vb /= len;
+
+	    // Endpoints from the extreme projections, inset slightly
+	    float tmin = Float.MAX_VALUE, tmax = -Float.MAX_VALUE;
+	    for (int i = 0; i < 16; i++) {
+		if ((transparent & (1 << i)) == 0) {
+		    int p = pixels[i];
+		    float t = (((p >> 16) & 0xff) - mr) * vr +
+			(((p >> 8) & 0xff) - mg) * vg + ((p & 0xff) - mb) * vb;
+		    tmin = Math.min(tmin, t);
+		    tmax = Math.max(tmax, t);
+		}
+	    }
+	    float inset = (tmax - tmin) / 16;
+	    tmin += inset;
+	    tmax -= inset;
+
+	    int c0 = to565(mr + vr * tmax, mg + vg * tmax, mb + vb * tmax);
+	    int c1 = to565(mr + vr * tmin, mg + vg * tmin, mb + vb * tmin);
+	    long error = fit(c0, c1, fourColors, transparent, bestIndices);
+
+	    // One least squares pass over the chosen indices
+	    float a2 = 0, b2 = 0, ab = 0;
+	    float ar = 0, ag = 0, abl = 0, br = 0, bg = 0, bbl = 0;
+	    for (int i = 0; i < 16; i++) {
+		if ((transparent & (1 << i)) != 0) {
+		    continue;
+		}
+		float wa;
+		switch (bestIndices[i]) {
+		case 0: wa = 1; break;
+		case 1: wa = 0; break;
+		case 2: wa = fourColors ? 2f / 3 : 0.5f; break;
+		default: wa = 1f / 3; break;
+		}
+		float wb = 1 - wa;
+		int p = pixels[i];
+		int r = (p >> 16) & 0xff, g = (p >> 8) & 0xff, b = p & 0xff;
+		a2 += wa * wa;
+		b2 += wb * wb;
+		ab += wa * wb;
+		ar += wa * r; ag += wa * g; abl += wa * b;
+		br += wb * r; bg += wb * g; bbl += wb * b;
+	    }
+	    float det = a2 * b2 - ab * ab;
+	    if (Math.abs(det) > 1e-6f) {
+		float f = 1 / det;
+		int d0 = to565((ar * b2 - br * ab) * f, (ag * b2 - bg * ab) * f,
+			       (abl * b2 - bbl * ab) * f);
+		int d1 = to565((br * a2 - ar * ab) * f, (bg * a2 - ag * ab) * f,
+			       (bbl * a2 - abl * ab) * f);
+		long e = fit(d0, d1, fourColors, transparent, indices);
+		if (e < error) {
+		    c0 = d0;
+		    c1 = d1;
+		    System.arraycopy(indices, 0, bestIndices, 0, 16);
+		}
+	    }
+
+	    // Order the endpoints to select the mode
+	    if (fourColors) {
+		if (c0 < c1) {
+		    int t = c0; c0 = c1; c1 = t;
+		    for (int i = 0; i < 16; i++) {
+			bestIndices[i] ^= 1;
+		    }
+		} else if (c0 == c1) {
+		    for (int i = 0; i < 16; i++) {
+			bestIndices[i] = 0;
+		    }
+		}
+	    } else if (c0 > c1) {
+		int t = c0; c0 = c1; c1 = t;
+		for (int i = 0; i < 16; i++) {
+		    if (bestIndices[i] < 2) {
+			bestIndices[i] ^= 1;
+		    }
+		}
+	    }
+
+	    int bits = 0;
+	    for (int i = 15; i >= 0; i--) {
+		bits = (bits << 2) | bestIndices[i];
+	    }
+	    out.putShort(offset, (short) c0);
+	    out.putShort(offset + 2, (short) c1);
+	    out.putInt(offset + 4, bits);
+	}
+
+	// Picks the nearest palette entry for each pixel and returns the
+	// total squared error
+	private long fit(int c0, int c1, boolean fourColors, int transparent,
+			 int[] result) {
+	    palette[0] = expand565(c0);
+	    palette[1] = expand565(c1);
+	    if (fourColors) {
+		palette[2] = mix(palette[0], 2, palette[1], 1, 3);
+		palette[3] = mix(palette[0], 1, palette[1], 2, 3);
+	    } else {
+		palette[2] = mix(palette[0], 1, palette[1], 1, 2);
+	    }
+	    int numColors = fourColors ? 4 : 3;
+
+	    long error = 0;
+	    for (int i = 0; i < 16; i++) {
+		if ((transparent & (1 << i)) != 0) {
+		    result[i] = 3;
+		    continue;
+		}
+		int p = pixels[i];
+		int best = 0;
+		int bestError = Integer.MAX_VALUE;
+		for (int k = 0; k < numColors; k++) {
+		    int q = palette[k];
+		    int dr = ((p >> 16) & 0xff) - ((q >> 16) & 0xff);
+		    int dg = ((p >> 8) & 0xff) - ((q >> 8) & 0xff);
+		    int db = (p & 0xff) - (q & 0xff);
+		    int e = dr * dr + dg * dg + db * db;
+		    if (e < bestError) {
+			bestError = e;
+			best = k;
+		    }
+		}
+		result[i] = best;
+		error += bestError;
+	    }
+	    return error;
+	}
+
+	// Encodes the 4 bit alpha values of a DXT3 block
+	void encodeExplicitAlpha(ByteBuffer out, int offset) {
+	    for (int i = 0; i < 16; i += 2) {
+		int a0 = ((pixels[i] >>> 24) * 15 + 127) / 255;
+		int a1 = ((pixels[i + 1] >>> 24) * 15 + 127) / 255;
+		out.put(offset + (i >> 1), (byte) (a0 | (a1 << 4)));
+	    }
+	}
+
+	// Encodes the interpolated alpha of a DXT5 block, trying both the
+	// 8 value mode and the 6 value mode with exact 0 and 255
+	void encodeInterpolatedAlpha(ByteBuffer out, int offset) {
+	    int min = 255, max = 0, min6 = 255, max6 = 0;
+	    for (int i = 0; i < 16; i++) {
+		int a = pixels[i] >>> 24;
+		min = Math.min(min, a);
+		max = Math.max(max, a);
+		if (a != 0 && a != 255) {
+		    min6 = Math.min(min6, a);
+		    max6 = Math.max(max6, a);
+		}
+	    }
+
+	    int a0, a1;
+	    long bits;
+	    if (min == max) {
+		a0 = a1 = max;
+		bits = 0;
+	    } else {
+		long bits8 = fitAlpha(max, min);
+		long error8 = alphaError;
+		if (min6 > max6) {
+		    min6 = max6 = 0;
+		}
+		long bits6 = fitAlpha(min6, max6);
+		if (alphaError < error8) {
+		    a0 = min6;
+		    a1 = max6;
+		    bits = bits6;
+		} else {
+		    a0 = max;
+		    a1 = min;
+		    bits = bits8;
+		}
+	    }
+
+	    out.put(offset, (byte) a0);
+	    out.put(offset + 1, (byte) a1);
+	    for (int i = 0; i < 6; i++) {
+		out.put(offset + 2 + i, (byte) (bits >>> (8 * i)));
+	    }
+	}
+
+	// Returns the packed 3 bit indices of the nearest alpha values for
+	// the endpoints a0 and a1, and sets alphaError
+	private long fitAlpha(int a0, int a1) {
+	    alphas[0] = a0;
+	    alphas[1] = a1;
+	    if (a0 > a1) {
+		for (int i = 1; i < 7; i++) {
+		    alphas[i + 1] = ((7 - i) * a0 + i * a1) / 7;
+		}
+	    } else {
+		for (int i = 1; i < 5; i++) {
+		    alphas[i + 1] = ((5 - i) * a0 + i * a1) / 5;
+		}
+		alphas[6] = 0;
+		alphas[7] = 255;
+	    }
+
+	    long bits = 0;
+	    alphaError = 0;
+	    for (int i = 15; i >= 0; i--) {
+		int a = pixels[i] >>> 24;
+		int best = 0;
+		int bestError = Integer.MAX_VALUE;
+		for (int k = 0; k < 8; k++) {
+		    int e = Math.abs(a - alphas[k]);
+		    if (e < bestError) {
+			bestError = e;
+			best = k;
+		    }
+		}
+		bits = (bits << 3) | best;
+		alphaError += bestError * bestError;
+	    }
+	    return bits;
+	}
+
+	private static int clamp(float c) {
+	    int v = Math.round(c);
+	    return v < 0 ? 0 : (v > 255 ? 255 : v);
+	}
+
+	private static int to565(float r, float g, float b) {
+	    return ((clamp(r) * 31 + 127) / 255 << 11) |
+		((clamp(g) * 63 + 127) / 255 << 5) |
+		((clamp(b) * 31 + 127) / 255);
+	}
+
+	// Expands a 565 color to 0xRRGGBB, the same way decoders do
+	private static int expand565(int c) {
+	    int r = (c >> 11) & 0x1f;
+	    int g = (c >> 5) & 0x3f;
+	    int b = c & 0x1f;
+	    return (((r << 3) | (r >> 2)) << 16) | (((g << 2) | (g >> 4)) << 8) |
+		((b << 3) | (b >> 2));
+	}
+
+	private static int mix(int c0, int w0, int c1, int w1, int d) {
+	    int r = (((c0 >> 16) & 0xff) * w0 + ((c1 >> 16) & 0xff) * w1) / d;
+	    int g = (((c0 >> 8) & 0xff) * w0 + ((c1 >> 8) & 0xff) * w1) / d;
+	    int b = ((c0 & 0xff) * w0 + (c1 & 0xff) * w1) / d;
+	    return (r << 16) | (g << 8) | b;
+	}
+    }
+}
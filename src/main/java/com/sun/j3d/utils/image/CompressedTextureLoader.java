@@ -0,0 +1,463 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.image;
+
+import javax.media.j3d.ImageComponent;
+import javax.media.j3d.ImageComponent2D;
+import javax.media.j3d.NioImageBuffer;
+import javax.media.j3d.Texture;
+import javax.media.j3d.Texture2D;
+import javax.media.j3d.TextureCubeMap;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class is used for loading a texture from a DDS or KTX file
+ * holding block compressed images (DXT1, DXT3, DXT5 or ETC1), such as
+ * the files written by BlockCompressor.  The compressed blocks of every
+ * mipmap level and cube map face in the file are kept as they are in
+ * NioImageBuffer objects, so the texture is loaded without decoding any
+ * image and is uploaded in its compressed form.
+ * <p>
+ * The images are used by reference with y up, so the first row of the
+ * file is the bottom row of the texture; files saved top row first,
+ * which is the DDS convention, appear flipped vertically.
+ *
+ * @see BlockCompressor
+ *
+ * @since Java 3D 1.6
+ */
+public class CompressedTextureLoader extends Object {
+
+    private static final int DDS_MAGIC = 0x20534444;	// "DDS "
+
+    private static final int DDSD_MIPMAPCOUNT = 0x20000;
+    private static final int DDPF_ALPHAPIXELS = 0x1;
+    private static final int DDPF_FOURCC = 0x4;
+    private static final int DDSCAPS2_CUBEMAP = 0x200;
+    private static final int DDSCAPS2_CUBEMAP_ALLFACES = 0xfc00;
+    private static final int DDSCAPS2_VOLUME = 0x200000;
+    private static final int DDS_RESOURCE_MISC_TEXTURECUBE = 0x4;
+
+    private NioImageBuffer.ImageType imageType;
+    private int width;
+    private int height;
+    // images[face][level]
+    private NioImageBuffer[][] images;
+    private Texture tex = null;
+
+    /**
+     * Contructs a CompressedTextureLoader object using the specified
+     * file.
+     *
+     * @param fname the DDS or KTX file to load the texture from
+     *
+     * @exception ImageException if there is a problem reading the file
+     */
+    public CompressedTextureLoader(final String fname) {
+	ByteBuffer data = (ByteBuffer)
+	    java.security.AccessController.doPrivileged(
+		new java.security.PrivilegedAction() {
+		    public Object run() {
+			try {
+			    return readFully(new FileInputStream(fname));
+			} catch (IOException e) {
+			    throw new ImageException(e);
+			}
+		    }
+		}
+	    );
+	parse(data, fname);
+    }
+
+    /**
+     * Contructs a CompressedTextureLoader object using the specified
+     * URL.
+     *
+     * @param url the URL of the DDS or KTX file to load the texture from
+     *
+     * @exception ImageException if there is a problem reading the file
+     */
+    public CompressedTextureLoader(final URL url) {
+	ByteBuffer data = (ByteBuffer)
+	    java.security.AccessController.doPrivileged(
+		new java.security.PrivilegedAction() {
+		    public Object run() {
+			try {
+			    return readFully(url.openStream());
+			} catch (IOException e) {
+			    throw new ImageException(e);
+			}
+		    }
+		}
+	    );
+	parse(data, url.toString());
+    }
+
+    /**
+     * Contructs a CompressedTextureLoader object that reads a DDS or KTX
+     * file from the specified stream.  The stream is read to its end and
+     * closed.
+     *
+     * @param in the stream to read the file from
+     *
+     * @exception ImageException if there is a problem reading the file
+     */
+    public CompressedTextureLoader(InputStream in) {
+	try {
+	    parse(readFully(in), "stream");
+	} catch (IOException e) {
+	    throw new ImageException(e);
+	}
+    }
+
+    /**
+     * Returns the compressed image type of the texture.
+     */
+    public NioImageBuffer.ImageType getImageType() {
+	return imageType;
+    }
+
+    /**
+     * Returns the number of mipmap levels in the file.
+     */
+    public int getNumLevels() {
+	return images[0].length;
+    }
+
+    /**
+     * Returns true if the file holds the six faces of a cube map.
+     */
+    public boolean isCubeMap() {
+	return images.length == 6;
+    }
+
+    /**
+     * Returns the base level image, or the base level image of the
+     * positive X face of a cube map.
+     *
+     * @return an ImageComponent2D wrapping the compressed image by
+     * reference
+     */
+    public ImageComponent2D getImage() {
+	return createImageComponent(images[0][0]);
+    }
+
+    /**
+     * Returns the associated Texture object: a Texture2D, or a
+     * TextureCubeMap if the file holds a cube map.  The texture has a
+     * MULTI_LEVEL_MIPMAP mipmap mode when the file holds more than one
+     * level, with its maximum level set to the last level in the file.
+     *
+     * @return The associated Texture object
+     */
+    public Texture getTexture() {
+	if (tex == null) {
+	    int numLevels = images[0].length;
+	    int mipmapMode = (numLevels > 1) ?
+		Texture.MULTI_LEVEL_MIPMAP : Texture.BASE_LEVEL;
+	    int format = (getNumComponents() == 4) ? Texture.RGBA : Texture.RGB;
+
+	    if (isCubeMap()) {
+		TextureCubeMap cubeMap = new TextureCubeMap(mipmapMode, format,
+							    width);
+		for (int face = 0; face < 6; face++) {
+		    for (int i = 0; i < numLevels; i++) {
+			cubeMap.setImage(i, face,
+					 createImageComponent(images[face][i]));
+		    }
+		}
+		tex = cubeMap;
+	    } else {
+		tex = new Texture2D(mipmapMode, format, width, height);
+		for (int i = 0; i < numLevels; i++) {
+		    tex.setImage(i, createImageComponent(images[0][i]));
+		}
+	    }
+
+	    if (numLevels > 1 &&
+		numLevels < MipMapBuilder.getNumLevels(width, height)) {
+		tex.setMaximumLevel(numLevels - 1);
+	    }
+	    tex.setMinFilter(Texture.BASE_LEVEL_LINEAR);
+	    tex.setMagFilter(Texture.BASE_LEVEL_LINEAR);
+	}
+	return tex;
+    }
+
+    private int getNumComponents() {
+	switch (imageType) {
+	case TYPE_DXT1_RGB:
+	case TYPE_ETC1_RGB:
+	    return 3;
+	default:
+	    return 4;
+	}
+    }
+
+    private ImageComponent2D createImageComponent(NioImageBuffer image) {
+	int format = (getNumComponents() == 4) ?
+	    ImageComponent.FORMAT_RGBA : ImageComponent.FORMAT_RGB;
+	return new ImageComponent2D(format, image, true, true);
+    }
+
+    private static ByteBuffer readFully(InputStream in) throws IOException {
+	try {
+	    ByteArrayOutputStream bytes = new ByteArrayOutputStream(65536);
+	    byte[] buffer = new byte[65536];
+	    int n;
+	    while ((n = in.read(buffer)) > 0) {
+		bytes.write(buffer, 0, n);
+	    }
+	    return ByteBuffer.wrap(bytes.toByteArray());
+	} finally {
+	    in.close();
+	}
+    }
+
+    private void parse(ByteBuffer data, String name) {
+	data.order(ByteOrder.LITTLE_ENDIAN);
+	try {
+	    if (data.remaining() >= 4 && data.getInt(0) == DDS_MAGIC) {
+		parseDDS(data);
+	    } else if (isKTX(data)) {
+		parseKTX(data);
+	    } else {
+		throw new ImageException("Not a DDS or KTX file: " + name);
+	    }
+	} catch (IndexOutOfBoundsException e) {
+	    throw new ImageException("Truncated texture file: " + name);
+	}
+    }
+
+    private void parseDDS(ByteBuffer data) {
+	if (data.getInt(4) != 124) {
+	    throw new ImageException("Bad DDS header size");
+	}
+	int flags = data.getInt(8);
+	height = data.getInt(12);
+	width = data.getInt(16);
+	int numLevels = ((flags & DDSD_MIPMAPCOUNT) != 0) ?
+	    Math.max(1, data.getInt(28)) : 1;
+	int pfFlags = data.getInt(80);
+	int fourCC = data.getInt(84);
+	int caps2 = data.getInt(112);
+	int numFaces = 1;
+	int offset = 128;
+
+	if ((caps2 & DDSCAPS2_VOLUME) != 0) {
+	    throw new ImageException("DDS volume textures are not supported");
+	}
+	if ((caps2 & DDSCAPS2_CUBEMAP) != 0) {
+	    if ((caps2 & DDSCAPS2_CUBEMAP_ALLFACES) != DDSCAPS2_CUBEMAP_ALLFACES) {
+		throw new ImageException("DDS cube maps must have all six faces");
+	    }
+	    numFaces = 6;
+	}
+	if ((pfFlags & DDPF_FOURCC) == 0) {
+	    throw new ImageException("DDS file is not block compressed");
+	}
+
+	String code = fourCCString(fourCC);
+	if (code.equals("DXT1")) {
+	    imageType = ((pfFlags & DDPF_ALPHAPIXELS) != 0) ?
+		NioImageBuffer.ImageType.TYPE_DXT1_RGBA :
+		NioImageBuffer.ImageType.TYPE_DXT1_RGB;
+	} else if (code.equals("DXT3")) {
+	    imageType = NioImageBuffer.ImageType.TYPE_DXT3_RGBA;
+	} else if (code.equals("DXT5")) {
+	    imageType = NioImageBuffer.ImageType.TYPE_DXT5_RGBA;
+	} else if (code.equals("DX10")) {
+	    int dxgiFormat = data.getInt(128);
+	    int miscFlag = data.getInt(136);
+	    int arraySize = data.getInt(140);
+	    switch (dxgiFormat) {
+	    case 71:	// BC1_UNORM
+	    case 72:	// BC1_UNORM_SRGB
+		imageType = NioImageBuffer.ImageType.TYPE_DXT1_RGBA;
+		break;
+	    case 74:	// BC2_UNORM
+	    case 75:	// BC2_UNORM_SRGB
+		imageType = NioImageBuffer.ImageType.TYPE_DXT3_RGBA;
+		break;
+	    case 77:	// BC3_UNORM
+	    case 78:	// BC3_UNORM_SRGB
+		imageType = NioImageBuffer.ImageType.TYPE_DXT5_RGBA;
+		break;
+	    default:
+		throw new ImageException("Unsupported DXGI format " + dxgiFormat);
+	    }
+	    if (arraySize > 1) {
+		throw new ImageException("DDS texture arrays are not supported");
+	    }
+	    if ((miscFlag & DDS_RESOURCE_MISC_TEXTURECUBE) != 0) {
+		numFaces = 6;
+	    }
+	    offset += 20;
+	} else {
+	    throw new ImageException("Unsupported DDS format " + code);
+	}
+
+	// DDS files store all the levels of a face before the next face
+	checkSize();
+	images = new NioImageBuffer[numFaces][numLevels];
+	for (int face = 0; face < numFaces; face++) {
+	    int w = width;
+	    int h = height;
+	    for (int i = 0; i < numLevels; i++) {
+		images[face][i] = createImage(data, offset, w, h);
+		offset += images[face][i].getDataBuffer().limit();
+		w = Math.max(1, w >> 1);
+		h = Math.max(1, h >> 1);
+	    }
+	}
+    }
+
+    private static boolean isKTX(ByteBuffer data) {
+	if (data.remaining() < BlockCompressor.KTX_IDENTIFIER.length) {
+	    return false;
+	}
+	for (int i = 0; i < BlockCompressor.KTX_IDENTIFIER.length; i++) {
+	    if (data.get(i) != BlockCompressor.KTX_IDENTIFIER[i]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    private void parseKTX(ByteBuffer data) {
+	if (data.getInt(12) == 0x01020304) {
+	    data.order(ByteOrder.BIG_ENDIAN);
+	} else if (data.getInt(12) != 0x04030201) {
+	    throw new ImageException("Bad KTX endianness");
+	}
+	int internalFormat = data.getInt(28);
+	width = data.getInt(36);
+	height = Math.max(1, data.getInt(40));
+	int depth = data.getInt(44);
+	int arrayElements = data.getInt(48);
+	int numFaces = data.getInt(52);
+	int numLevels = Math.max(1, data.getInt(56));
+	int keyValueBytes = data.getInt(60);
+
+	switch (internalFormat) {
+	case BlockCompressor.GL_COMPRESSED_RGB_S3TC_DXT1:
+	    imageType = NioImageBuffer.ImageType.TYPE_DXT1_RGB;
+	    break;
+	case BlockCompressor.GL_COMPRESSED_RGBA_S3TC_DXT1:
+	    imageType = NioImageBuffer.ImageType.TYPE_DXT1_RGBA;
+	    break;
+	case BlockCompressor.GL_COMPRESSED_RGBA_S3TC_DXT3:
+	    imageType = NioImageBuffer.ImageType.TYPE_DXT3_RGBA;
+	    break;
+	case BlockCompressor.GL_COMPRESSED_RGBA_S3TC_DXT5:
+	    imageType = NioImageBuffer.ImageType.TYPE_DXT5_RGBA;
+	    break;
+	case BlockCompressor.GL_ETC1_RGB8:
+	    imageType = NioImageBuffer.ImageType.TYPE_ETC1_RGB;
+	    break;
+	default:
+	    throw new ImageException("Unsupported KTX internal format 0x" +
+				     Integer.toHexString(internalFormat));
+	}
+	if (depth > 1 || arrayElements > 0) {
+	    throw new ImageException("KTX volume and array textures are not supported");
+	}
+	if (numFaces != 1 && numFaces != 6) {
+	    throw new ImageException("Bad KTX number of faces " + numFaces);
+	}
+
+	// KTX files store all the faces of a level before the next level,
+	// each level preceded by its size and padded to 4 bytes
+	checkSize();
+	images = new NioImageBuffer[numFaces][numLevels];
+	int offset = 64 + keyValueBytes;
+	int w = width;
+	int h = height;
+	for (int i = 0; i < numLevels; i++) {
+	    offset += 4;
+	    for (int face = 0; face < numFaces; face++) {
+		images[face][i] = createImage(data, offset, w, h);
+		offset += (images[face][i].getDataBuffer().limit() + 3) & ~3;
+	    }
+	    w = Math.max(1, w >> 1);
+	    h = Math.max(1, h >> 1);
+	}
+    }
+
+    private void checkSize() {
+	if (width < 1 || height < 1) {
+	    throw new ImageException("Bad texture size " + width + "x" + height);
+	}
+    }
+
+    // Copies the blocks of one level to a direct buffer
+    private NioImageBuffer createImage(ByteBuffer data, int offset,
+				       int w, int h) {
+	int blockSize = (imageType == NioImageBuffer.ImageType.TYPE_DXT3_RGBA ||
+			 imageType == NioImageBuffer.ImageType.TYPE_DXT5_RGBA) ?
+	    16 : 8;
+	int size = ((w + 3) >> 2) * ((h + 3) >> 2) * blockSize;
+	if (offset + size > data.limit()) {
+	    throw new IndexOutOfBoundsException();
+	}
+	ByteBuffer src = data.duplicate();
+	src.limit(offset + size);
+	src.position(offset);
+	ByteBuffer buffer = ByteBuffer.allocateDirect(size).
+	    order(ByteOrder.nativeOrder());
+	buffer.put(src);
+	buffer.rewind();
+	return new NioImageBuffer(w, h, imageType, buffer);
+    }
+
+    private static String fourCCString(int fourCC) {
+	char[] c = new char[4];
+	for (int i = 0; i < 4; i++) {
+	    c[i] = (char) ((fourCC >> (8 * i)) & 0xff);
+	}
+	return new String(c);
+    }
+}
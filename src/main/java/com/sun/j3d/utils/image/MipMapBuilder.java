@@ -0,0 +1,665 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.image;
+
+import javax.media.j3d.ImageComponent;
+import javax.media.j3d.ImageComponent2D;
+import javax.media.j3d.NioImageBuffer;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import com.sun.j3d.internal.ParallelLoop;
+
+/**
+ * This class builds the mipmap chain of a texture image.  The source
+ * image is read once into a packed RGBA or RGB byte array, scaled to
+ * the size of the base level if needed, and each following level is
+ * filtered down from the previous one.  The rows of each level are
+ * split across the threads of a parallel loop.
+ * <p>
+ * The levels are returned as ImageComponent2D objects.  When the
+ * images are used by reference with y up, the levels are backed by
+ * NioImageBuffer objects; otherwise they are backed by BufferedImages
+ * that wrap the level arrays directly, in a layout Java 3D can use
+ * without a further conversion.
+ * <p>
+ * A MipMapBuilder keeps its work buffers between builds, so reusing
+ * the same builder for many textures avoids most of the allocations.
+ * A MipMapBuilder must not be used by several threads at once.
+ *
+ * @see TextureLoader
+ */
+public class MipMapBuilder extends Object {
+
+    /**
+     * Filter each level with a 2x2 box filter.  This is the default.
+     */
+    public static final int BOX_FILTER = 0;
+
+    /**
+     * Filter each level with a 6 tap separable Kaiser windowed sinc
+     * filter, giving sharper levels than the box filter.
+     */
+    public static final int KAISER_FILTER = 1;
+
+    // levels smaller than this many pixels are filtered by the calling
+    // thread alone
+    private static final int PARALLEL_THRESHOLD = 16384;
+
+    // fixed point precision of the Kaiser filter weights
+    private static final int WEIGHT_SHIFT = 14;
+
+    private static final int[] kaiserWeights = computeKaiserWeights(4.0);
+
+    private static final ColorSpace cs =
+	ColorSpace.getInstance(ColorSpace.CS_sRGB);
+
+    private int filter;
+    private int parallelism = ParallelLoop.getDefaultParallelism();
+
+    // work buffers kept between builds
+    private byte[] srcBuffer = null;
+    private byte[] levelBuffer0 = null;
+    private byte[] levelBuffer1 = null;
+    private byte[] tmpBuffer = null;
+    private int[] rowBuffer = null;
+
+    /**
+     * Constructs a MipMapBuilder that uses the box filter.
+     */
+    public MipMapBuilder() {
+	this(BOX_FILTER);
+    }
+
+    /**
+     * Constructs a MipMapBuilder that uses the specified filter.
+     *
+     * @param filter BOX_FILTER or KAISER_FILTER
+     *
+     * @exception IllegalArgumentException if filter is not one of the
+     * legal values
+     */
+    public MipMapBuilder(int filter) {
+	setFilter(filter);
+    }
+
+    /**
+     * Sets the filter used to compute each level from the previous one.
+     *
+     * @param filter BOX_FILTER or KAISER_FILTER
+     *
+     * @exception IllegalArgumentException if filter is not one of the
+     * legal values
+     */
+    public void setFilter(int filter) {
+	if (filter != BOX_FILTER && filter != KAISER_FILTER) {
+	    throw new IllegalArgumentException("MipMapBuilder: illegal filter " +
+					       filter);
+	}
+	this.filter = filter;
+    }
+
+    /**
+     * Returns the filter used to compute each level.
+     */
+    public int getFilter() {
+	return filter;
+    }
+
+    /**
+     * Sets the maximum number of threads used to filter a level,
+     * including the calling thread.  A value of 1 filters all the
+     * levels in the calling thread.  The default is the number of
+     * available processors.
+     *
+     * @exception IllegalArgumentException if parallelism is less than 1
+     */
+    public void setParallelism(int parallelism) {
+	if (parallelism < 1) {
+	    throw new IllegalArgumentException(
+		"MipMapBuilder: parallelism must be at least 1");
+	}
+	this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the maximum number of threads used to filter a level.
+     */
+    public int getParallelism() {
+	return parallelism;
+    }
+
+    /**
+     * Returns true if the specified ImageComponent format can be
+     * produced by this class.  Only the RGB and RGBA based formats
+     * are supported.
+     */
+    public static boolean isFormatSupported(int format) {
+	return getNumComponents(format) != 0;
+    }
+
+    /**
+     * Returns the number of levels in a full mipmap chain for a base
+     * level of the specified size.  Each level is half the size of
+     * the previous one, rounded down, until both dimensions are 1.
+     */
+    public static int getNumLevels(int width, int height) {
+	int level = 1;
+	while (width > 1 || height > 1) {
+	    if (width > 1) width >>= 1;
+	    if (height > 1) height >>= 1;
+	    level++;
+	}
+	return level;
+    }
+
+    /**
+     * Builds the full mipmap chain of an image.  The image is scaled to
+     * width x height to make the base level.
+     *
+     * @param image the source image
+     * @param format the ImageComponent format of the levels, one of
+     * the RGB or RGBA based formats
+     * @param width the width of the base level
+     * @param height the height of the base level
+     * @param byReference the byReference flag of the levels
+     * @param yUp the yUp flag of the levels
+     *
+     * @return an array with an ImageComponent2D for each level
+     *
+     * @exception IllegalArgumentException if format is not supported,
+     * or if width or height is less than 1
+     */
+    public ImageComponent2D[] build(BufferedImage image, int format,
+				    int width, int height,
+				    boolean byReference, boolean yUp) {
+
+	int nc = getNumComponents(format);
+	if (nc == 0) {
+	    throw new IllegalArgumentException(
+		"MipMapBuilder: unsupported format " + format);
+	}
+	if (width < 1 || height < 1) {
+	    throw new IllegalArgumentException(
+		"MipMapBuilder: width and height must be at least 1");
+	}
+
+	boolean useNio = byReference && yUp;
+	int numLevels = getNumLevels(width, height);
+	ImageComponent2D[] levels = new ImageComponent2D[numLevels];
+
+	// Level 0: the source pixels, scaled to the base level size
+	int srcW = image.getWidth();
+	int srcH = image.getHeight();
+	byte[] level;
+	if (srcW == width && srcH == height) {
+	    level = useNio ? (levelBuffer0 = ensure(levelBuffer0, width * height * nc))
+			   : new byte[width * height * nc];
+	    readImage(image, level, nc);
+	} else {
+	    srcBuffer = ensure(srcBuffer, srcW * srcH * nc);
+	    readImage(image, srcBuffer, nc);
+	    level = useNio ? (levelBuffer0 = ensure(levelBuffer0, width * height * nc))
+			   : new byte[width * height * nc];
+	    resample(srcBuffer, srcW, srcH, level, width, height, nc);
+	}
+	levels[0] = createImageComponent(format, level, width, height, nc,
+					 byReference, yUp, useNio);
+
+	// Following levels: each one filtered from the previous one.  The
+	// NIO levels are copied out, so two buffers are enough.
+	int w = width;
+	int h = height;
+	for (int i = 1; i < numLevels; i++) {
+	    int dw = (w > 1) ? (w >> 1) : 1;
+	    int dh = (h > 1) ? (h >> 1) : 1;
+	    byte[] next;
+	    if (useNio) {
+		if (level == levelBuffer0) {
+		    next = levelBuffer1 = ensure(levelBuffer1, dw * dh * nc);
+		} else {
+		    next = levelBuffer0 = ensure(levelBuffer0, dw * dh * nc);
+		}
+	    } else {
+		next = new byte[dw * dh * nc];
+	    }
+	    if (filter == KAISER_FILTER) {
+		kaiserReduce(level, w, h, next, dw, dh, nc);
+	    } else {
+		boxReduce(level, w, h, next, dw, dh, nc);
+	    }
+	    levels[i] = createImageComponent(format, next, dw, dh, nc,
+					     byReference, yUp, useNio);
+	    level = next;
+	    w = dw;
+	    h = dh;
+	}
+	return levels;
+    }
+
+    private static int getNumComponents(int format) {
+	switch (format) {
+	case ImageComponent.FORMAT_RGBA:
+	case ImageComponent.FORMAT_RGBA4:
+	case ImageComponent.FORMAT_RGB5_A1:
+	    return 4;
+	case ImageComponent.FORMAT_RGB:
+	case ImageComponent.FORMAT_RGB4:
+	case ImageComponent.FORMAT_RGB5:
+	case ImageComponent.FORMAT_R3_G3_B2:
+	    return 3;
+	default:
+	    return 0;
+	}
+    }
+
+    private static byte[] ensure(byte[] buffer, int size) {
+	if (buffer == null || buffer.length < size) {
+	    return new byte[size];
+	}
+	return buffer;
+    }
+
+    private ImageComponent2D createImageComponent(int format, byte[] data,
+						  int w, int h, int nc,
+						  boolean byReference,
+						  boolean yUp,
+						  boolean useNio) {
+	if (useNio) {
+	    ByteBuffer buffer = ByteBuffer.allocateDirect(w * h * nc).
+		order(ByteOrder.nativeOrder());
+	    buffer.put(data, 0, w * h * nc);
+	    buffer.rewind();
+	    NioImageBuffer nioImage = new NioImageBuffer(w, h,
+		(nc == 4) ? NioImageBuffer.ImageType.TYPE_4BYTE_RGBA
+			  : NioImageBuffer.ImageType.TYPE_3BYTE_RGB,
+		buffer);
+	    return new ImageComponent2D(format, nioImage, true, true);
+	}
+
+	// Wrap the array in an image with the RGBA or RGB byte layout
+	// that ImageComponent uses as is
+	int[] bandOffset = (nc == 4) ? new int[] {0, 1, 2, 3}
+				     : new int[] {0, 1, 2};
+	int[] nBits = (nc == 4) ? new int[] {8, 8, 8, 8}
+				: new int[] {8, 8, 8};
+	ComponentColorModel cm = new ComponentColorModel(cs, nBits,
+		nc == 4, false,
+		(nc == 4) ? Transparency.TRANSLUCENT : Transparency.OPAQUE,
+		DataBuffer.TYPE_BYTE);
+	WritableRaster wr = Raster.createInterleavedRaster(
+		new DataBufferByte(data, w * h * nc), w, h, w * nc, nc,
+		bandOffset, null);
+	BufferedImage bImage = new BufferedImage(cm, wr, false, null);
+	return new ImageComponent2D(format, bImage, byReference, yUp);
+    }
+
+    // Copies the pixels of the image into dst as packed RGBA or RGB
+    // bytes, reading the backing arrays of the common image layouts
+    // directly.
+    private void readImage(BufferedImage image, byte[] dst, int nc) {
+	int w = image.getWidth();
+	int h = image.getHeight();
+	WritableRaster raster = image.getRaster();
+	ColorModel cm = image.getColorModel();
+	SampleModel sm = raster.getSampleModel();
+	DataBuffer db = raster.getDataBuffer();
+
+	boolean direct = raster.getSampleModelTranslateX() == 0 &&
+	    raster.getSampleModelTranslateY() == 0 &&
+	    db.getNumBanks() == 1 &&
+	    !cm.isAlphaPremultiplied() &&
+	    cm.getColorSpace().getType() == ColorSpace.TYPE_RGB;
+
+	if (direct && db instanceof DataBufferInt &&
+	    sm instanceof SinglePixelPackedSampleModel &&
+	    cm instanceof DirectColorModel) {
+
+	    SinglePixelPackedSampleModel sppsm =
+		(SinglePixelPackedSampleModel) sm;
+	    int[] masks = sppsm.getBitMasks();
+	    int[] offsets = sppsm.getBitOffsets();
+	    boolean is8Bit = masks.length >= 3;
+	    for (int i = 0; i < masks.length; i++) {
+		if ((masks[i] >>> offsets[i]) != 0xff) {
+		    is8Bit = false;
+		}
+	    }
+	    if (is8Bit) {
+		readPacked(((DataBufferInt) db).getData(), db.getOffset(),
+			   sppsm.getScanlineStride(), offsets,
+			   dst, w, h, nc);
+		return;
+	    }
+	} else if (direct && db instanceof DataBufferByte &&
+		   sm instanceof PixelInterleavedSampleModel &&
+		   cm instanceof ComponentColorModel) {
+
+	    PixelInterleavedSampleModel pism =
+		(PixelInterleavedSampleModel) sm;
+	    int numBands = pism.getNumBands();
+	    int[] nBits = cm.getComponentSize();
+	    boolean is8Bit = (numBands == 3 || numBands == 4);
+	    for (int i = 0; i < nBits.length; i++) {
+		if (nBits[i] != 8) {
+		    is8Bit = false;
+		}
+	    }
+	    if (is8Bit) {
+		readInterleaved(((DataBufferByte) db).getData(),
+				db.getOffset(), pism.getScanlineStride(),
+				pism.getPixelStride(), pism.getBandOffsets(),
+				dst, w, h, nc);
+		return;
+	    }
+	}
+
+	// Any other layout goes through the color model, a row at a time
+	if (rowBuffer == null || rowBuffer.length < w) {
+	    rowBuffer = new int[w];
+	}
+	int[] row = rowBuffer;
+	int d = 0;
+	for (int y = 0; y < h; y++) {
+	    image.getRGB(0, y, w, 1, row, 0, w);
+	    for (int x = 0; x < w; x++) {
+		int argb = row[x];
+		dst[d++] = (byte) (argb >> 16);
+		dst[d++] = (byte) (argb >> 8);
+		dst[d++] = (byte) argb;
+		if (nc == 4) {
+		    dst[d++] = (byte) (argb >>> 24);
+		}
+	    }
+	}
+    }
+
+    private void readPacked(final int[] src, final int offset,
+			    final int stride, int[] bitOffsets,
+			    final byte[] dst, final int w, int h,
+			    final int nc) {
+	final int rs = bitOffsets[0];
+	final int gs = bitOffsets[1];
+	final int bs = bitOffsets[2];
+	final boolean hasAlpha = bitOffsets.length > 3;
+	final int as = hasAlpha ? bitOffsets[3] : 0;
+
+	forEachRow(h, w, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int y = start; y < end; y++) {
+		    int s = offset + y * stride;
+		    int d = y * w * nc;
+		    for (int x = 0; x < w; x++) {
+			int p = src[s++];
+			dst[d++] = (byte) (p >> rs);
+			dst[d++] = (byte) (p >> gs);
+			dst[d++] = (byte) (p >> bs);
+			if (nc == 4) {
+			    dst[d++] = hasAlpha ? (byte) (p >> as) : (byte) 0xff;
+			}
+		    }
+		}
+	    }
+	});
+    }
+
+    private void readInterleaved(final byte[] src, final int offset,
+				 final int stride, final int pixelStride,
+				 int[] bandOffsets, final byte[] dst,
+				 final int w, int h, final int nc) {
+	final int ro = bandOffsets[0];
+	final int go = bandOffsets[1];
+	final int bo = bandOffsets[2];
+	final boolean hasAlpha = bandOffsets.length > 3;
+	final int ao = hasAlpha ? bandOffsets[3] : 0;
+
+	forEachRow(h, w, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int y = start; y < end; y++) {
+		    int s = offset + y * stride;
+		    int d = y * w * nc;
+		    for (int x = 0; x < w; x++, s += pixelStride) {
+			dst[d++] = src[s + ro];
+			dst[d++] = src[s + go];
+			dst[d++] = src[s + bo];
+			if (nc == 4) {
+			    dst[d++] = hasAlpha ? src[s + ao] : (byte) 0xff;
+			}
+		    }
+		}
+	    }
+	});
+    }
+
+    // Scales the base image to the base level size with a bilinear filter
+    private void resample(final byte[] src, final int sw, final int sh,
+			  final byte[] dst, final int dw, int dh,
+			  final int nc) {
+	final float sx = (float) sw / dw;
+	final float sy = (float) sh / dh;
+
+	forEachRow(dh, dw, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int y = start; y < end; y++) {
+		    float fy = (y + 0.5f) * sy - 0.5f;
+		    if (fy < 0) fy = 0;
+		    int y0 = (int) fy;
+		    int y1 = (y0 < sh - 1) ? y0 + 1 : y0;
+		    float ty = fy - y0;
+		    int r0 = y0 * sw * nc;
+		    int r1 = y1 * sw * nc;
+		    int d = y * dw * nc;
+		    for (int x = 0; x < dw; x++) {
+			float fx = (x + 0.5f) * sx - 0.5f;
+			if (fx < 0) fx = 0;
+			int x0 = (int) fx;
+			int x1 = (x0 < sw - 1) ? x0 + 1 : x0;
+			float tx = fx - x0;
+			int c0 = x0 * nc;
+			int c1 = x1 * nc;
+			for (int c = 0; c < nc; c++) {
+			    float top = (src[r0 + c0 + c] & 0xff) * (1 - tx) +
+				(src[r0 + c1 + c] & 0xff) * tx;
+			    float bottom = (src[r1 + c0 + c] & 0xff) * (1 - tx) +
+				(src[r1 + c1 + c] & 0xff) * tx;
+			    dst[d++] = (byte) (top + (bottom - top) * ty + 0.5f);
+			}
+		    }
+		}
+	    }
+	});
+    }
+
+    // Averages each 2x2 block of the source level.  An odd last row or
+    // column, or a dimension that is already 1, is clamped to the edge.
+    private void boxReduce(final byte[] src, final int sw, final int sh,
+			   final byte[] dst, final int dw, int dh,
+			   final int nc) {
+	forEachRow(dh, dw, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int y = start; y < end; y++) {
+		    int y0 = (sh > 1) ? y << 1 : 0;
+		    int y1 = (y0 + 1 < sh) ? y0 + 1 : y0;
+		    int r0 = y0 * sw * nc;
+		    int r1 = y1 * sw * nc;
+		    int d = y * dw * nc;
+		    for (int x = 0; x < dw; x++) {
+			int x0 = (sw > 1) ? x << 1 : 0;
+			int x1 = (x0 + 1 < sw) ? x0 + 1 : x0;
+			int c0 = x0 * nc;
+			int c1 = x1 * nc;
+			for (int c = 0; c < nc; c++) {
+			    int sum = (src[r0 + c0 + c] & 0xff) +
+				(src[r0 + c1 + c] & 0xff) +
+				(src[r1 + c0 + c] & 0xff) +
+				(src[r1 + c1 + c] & 0xff);
+			    dst[d++] = (byte) ((sum + 2) >> 2);
+			}
+		    }
+		}
+	    }
+	});
+    }
+
+    // Filters the source level with the separable Kaiser kernel, first
+    // along x into the temporary buffer, then along y.  A dimension
+    // that is already 1 is copied as is.
+    private void kaiserReduce(final byte[] src, final int sw, int sh,
+			      final byte[] dst, final int dw, int dh,
+			      final int nc) {
+	final byte[] tmp = tmpBuffer = ensure(tmpBuffer, dw * sh * nc);
+	final int[] k = kaiserWeights;
+	final int taps = k.length;
+	final int half = taps / 2;
+
+	forEachRow(sh, dw, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int y = start; y < end; y++) {
+		    int r = y * sw * nc;
+		    int d = y * dw * nc;
+		    if (sw == 1) {
+			System.arraycopy(src, r, tmp, d, nc);
+			continue;
+		    }
+		    for (int x = 0; x < dw; x++) {
+			int first = (x << 1) + 1 - half;
+			for (int c = 0; c < nc; c++) {
+			    int sum = 0;
+			    for (int t = 0; t < taps; t++) {
+				int sx = clamp(first + t, sw);
+				sum += (src[r + sx * nc + c] & 0xff) * k[t];
+			    }
+			    tmp[d++] = toByte(sum);
+			}
+		    }
+		}
+	    }
+	});
+
+	final int th = sh;
+	forEachRow(dh, dw, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		int rowLength = dw * nc;
+		for (int y = start; y < end; y++) {
+		    int d = y * rowLength;
+		    if (th == 1) {
+			System.arraycopy(tmp, 0, dst, d, rowLength);
+			continue;
+		    }
+		    int first = (y << 1) + 1 - half;
+		    for (int i = 0; i < rowLength; i++) {
+			int sum = 0;
+			for (int t = 0; t < taps; t++) {
+			    int sy = clamp(first + t, th);
+			    sum += (tmp[sy * rowLength + i] & 0xff) * k[t];
+			}
+			dst[d++] = toByte(sum);
+		    }
+		}
+	    }
+	});
+    }
+
+    private static int clamp(int i, int size) {
+	return (i < 0) ? 0 : ((i >= size) ? size - 1 : i);
+    }
+
+    private static byte toByte(int sum) {
+	int v = (sum + (1 << (WEIGHT_SHIFT - 1))) >> WEIGHT_SHIFT;
+	return (byte) ((v < 0) ? 0 : ((v > 255) ? 255 : v));
+    }
+
+    // Runs body over the rows of a level, in parallel when the level is
+    // large enough to make it worthwhile.
+    private void forEachRow(int rows, int rowPixels, ParallelLoop.Body body) {
+	if (parallelism == 1 || rows * rowPixels < PARALLEL_THRESHOLD) {
+	    body.run(0, rows);
+	} else {
+	    int chunk = Math.max(1, (PARALLEL_THRESHOLD / 4) / rowPixels);
+	    ParallelLoop.run(0, rows, chunk, parallelism, body);
+	}
+    }
+
+    // Computes the 6 tap weights of a sinc filter for a 2:1 reduction,
+    // windowed by a Kaiser window, in fixed point with a sum of
+    // 1 << WEIGHT_SHIFT.
+    private static int[] computeKaiserWeights(double alpha) {
+	int taps = 6;
+	double[] w = new double[taps];
+	double sum = 0.0;
+	for (int i = 0; i < taps; i++) {
+	    // distance from the center of the destination pixel, in
+	    // source pixels
+	    double x = i - (taps - 1) / 2.0;
+	    double s = x / 2.0;
+	    double sinc = Math.sin(Math.PI * s) / (Math.PI * s);
+	    double r = x / ((taps + 1) / 2.0);
+	    double window = bessel0(alpha * Math.sqrt(1.0 - r * r)) /
+		bessel0(alpha);
+	    w[i] = sinc * window;
+	    sum += w[i];
+	}
+	int[] weights = new int[taps];
+	int total = 0;
+	for (int i = 0; i < taps; i++) {
+	    weights[i] = (int) Math.round(w[i] / sum * (1 << WEIGHT_SHIFT));
+	    total += weights[i];
+	}
+	// put the rounding error on the center taps
+	weights[taps / 2 - 1] += ((1 << WEIGHT_SHIFT) - total) / 2;
+	weights[taps / 2] += (1 << WEIGHT_SHIFT) - total -
+	    ((1 << WEIGHT_SHIFT) - total) / 2;
+	return weights;
+    }
+
+    // Zeroth order modified Bessel function of the first kind
+    private static double bessel0(double x) {
+	double sum = 1.0;
+	double term = 1.0;
+	double halfX = x / 2.0;
+	for (int k = 1; k < 32; k++) {
+	    term *= halfX / k;
+	    sum += term * term;
+	}
+	return sum;
+    }
+}
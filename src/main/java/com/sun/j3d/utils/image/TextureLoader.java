@@ -67,7 +67,11 @@ import javax.imageio.ImageIO;
 public class TextureLoader extends Object {
 
     /**
-     * Optional flag - specifies that mipmaps are generated for all levels 
+     * Optional flag - specifies that mipmaps are generated for all levels.
+     * For the RGB and RGBA based formats the levels are box filtered by
+     * a MipMapBuilder.
+     *
+     * @see MipMapBuilder
      */
     public static final int GENERATE_MIPMAP =  0x01;
 
@@ -523,7 +527,20 @@ public class TextureLoader extends Object {
               height = bufferedImage.getHeight();
 	  }
 
-	  if ((flags & GENERATE_MIPMAP) != 0) {
+	  if ((flags & GENERATE_MIPMAP) != 0 &&
+	      MipMapBuilder.isFormatSupported(imageComponentFormat)) {
+
+	    // Filter the chain straight from the packed pixels
+	    scaledImageComponents = new MipMapBuilder().build(bufferedImage,
+			imageComponentFormat, width, height, byRef, yUp);
+            tex = new Texture2D(tex.MULTI_LEVEL_MIPMAP, textureFormat,
+                width, height);
+
+            for (int i = 0; i < scaledImageComponents.length; i++) {
+                tex.setImage(i, scaledImageComponents[i]);
+            }
+
+	  } else if ((flags & GENERATE_MIPMAP) != 0) {
       
 	    BufferedImage origImage = bufferedImage;
 	    int newW = width;
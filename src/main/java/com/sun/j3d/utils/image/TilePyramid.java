@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.sun.j3d.internal.J3dUtilsI18N;
+
+/**
+ * A TilePyramid gives access to the tiles of an image pyramid written by
+ * a TilePyramidBuilder.  Each level of the pyramid is half the size of
+ * the previous one and is split into square tiles with a border of
+ * pixels copied from the neighbouring tiles, so that a tile can be
+ * filtered on its own.  Each level is stored in its own file, which is
+ * memory mapped, so reading a tile is a copy out of the file cache of
+ * the operating system.
+ * <p>
+ * A tile holds (tileSize + 2 * border)<sup>2</sup> pixels of 4 bytes,
+ * in RGBA order.  Tile row 0 and the first pixel row of each tile are
+ * at the bottom of the image, as with an ImageComponent with yUp set.
+ * TilePyramid methods may be called by several threads at once.
+ *
+ * @see TilePyramidBuilder
+ * @see VirtualTexture
+ *
+ * @since Java 3D 1.6
+ */
+public class TilePyramid extends Object {
+
+    static final int MAGIC = 0x4a334454;	// "J3DT"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 36;
+
+    private final int tileSize;
+    private final int border;
+    private final int numLevels;
+    private final LevelFile[] levels;
+
+    /**
+     * Opens the tile pyramid stored in the specified directory.
+     *
+     * @param directory the directory written by a TilePyramidBuilder
+     *
+     * @exception IOException if the level files can't be read or are
+     * not tile files
+     */
+    public TilePyramid(File directory) throws IOException {
+	LevelFile first = new LevelFile(getLevelFile(directory, 0));
+	tileSize = first.tileSize;
+	border = first.border;
+	numLevels = first.numLevels;
+
+	levels = new LevelFile[numLevels];
+	levels[0] = first;
+	for (int level = 1; level < numLevels; level++) {
+	    File file = getLevelFile(directory, level);
+	    levels[level] = new LevelFile(file);
+	    if (levels[level].tileSize != tileSize ||
+		levels[level].border != border ||
+		levels[level].level != level) {
+		throw new IOException(J3dUtilsI18N.getString("TilePyramid0") +
+				      " " + file);
+	    }
+	}
+    }
+
+    static File getLevelFile(File directory, int level) {
+	return new File(directory, "level" + level + ".tiles");
+    }
+
+    /**
+     * Returns the number of levels; the last level fits in one tile.
+     */
+    public int getNumLevels() {
+	return numLevels;
+    }
+
+    /**
+     * Returns the size of the tiles, without their border.
+     */
+    public int getTileSize() {
+	return tileSize;
+    }
+
+    /**
+     * Returns the width of the border around each tile.
+     */
+    public int getBorder() {
+	return border;
+    }
+
+    /**
+     * Returns the number of bytes of a tile, including its border.
+     */
+    public int getTileBytes() {
+	return levels[0].tileBytes;
+    }
+
+    /**
+     * Returns the width in pixels of the specified level.
+     */
+    public int getWidth(int level) {
+	return levels[level].width;
+    }
+
+    /**
+     * Returns the height in pixels of the specified level.
+     */
+    public int getHeight(int level) {
+	return levels[level].height;
+    }
+
+    /**
+     * Returns the number of tile columns of the specified level.
+     */
+    public int getTilesWide(int level) {
+	return levels[level].tilesWide;
+    }
+
+    /**
+     * Returns the number of tile rows of the specified level.
+     */
+    public int getTilesHigh(int level) {
+	return levels[level].tilesHigh;
+    }
+
+    /**
+     * Copies a tile, with its border, to the specified buffer, starting
+     * at its current position.
+     *
+     * @param level the level of the tile
+     * @param tx the column of the tile
+     * @param ty the row of the tile, counted from the bottom
+     * @param dst the buffer the tile is copied to, with at least
+     * getTileBytes() bytes remaining
+     *
+     * @exception IndexOutOfBoundsException if the tile doesn't exist
+     */
+    public void readTile(int level, int tx, int ty, ByteBuffer dst) {
+	levels[level].readTile(tx, ty, dst);
+    }
+
+    /**
+     * Returns the packed RGBA value of a pixel of a level.
+     */
+    int getPixel(int level, int x, int y) {
+	return levels[level].getPixel(x, y);
+    }
+
+
+    /**
+     * The memory mapped file of one level.  The file starts with a
+     * header of 9 ints: magic, version, tile size, border, width,
+     * height, level, number of levels and a reserved 0, followed by
+     * the tiles in row major order starting from the bottom row.
+     * Files over 2GB are mapped in several segments.
+     */
+    static class LevelFile {
+	final int tileSize;
+	final int border;
+	final int width;
+	final int height;
+	final int level;
+	final int numLevels;
+	final int tilesWide;
+	final int tilesHigh;
+	final int tileBytes;
+
+	private final MappedByteBuffer[] segments;
+	private final int tilesPerSegment;
+
+	LevelFile(File file) throws IOException {
+	    RandomAccessFile raf = new RandomAccessFile(file, "r");
+	    try {
+		byte[] bytes = new byte[HEADER_SIZE];
+		raf.readFully(bytes);
+		ByteBuffer header = ByteBuffer.wrap(bytes);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+		    throw new IOException(J3dUtilsI18N.getString("TilePyramid1") +
+					  " " + file);
+		}
+		tileSize = header.getInt(8);
+		border = header.getInt(12);
+		width = header.getInt(16);
+		height = header.getInt(20);
+		level = header.getInt(24);
+		numLevels = header.getInt(28);
+		if (tileSize < 1 || border < 0 || width < 1 || height < 1 ||
+		    numLevels < 1) {
+		    throw new IOException(J3dUtilsI18N.getString("TilePyramid1") +
+					  " " + file);
+		}
+		tilesWide = (width + tileSize - 1) / tileSize;
+		tilesHigh = (height + tileSize - 1) / tileSize;
+		int size = tileSize + 2 * border;
+		tileBytes = size * size * 4;
+		tilesPerSegment = Math.max(1, Integer.MAX_VALUE / tileBytes);
+
+		long numTiles = (long) tilesWide * tilesHigh;
+		FileChannel channel = raf.getChannel();
+		if (channel.size() < HEADER_SIZE + numTiles * tileBytes) {
+		    throw new IOException(J3dUtilsI18N.getString("TilePyramid2") +
+					  " " + file);
+		}
+		int numSegments = (int) ((numTiles + tilesPerSegment - 1) /
+					 tilesPerSegment);
+		segments = new MappedByteBuffer[numSegments];
+		for (int i = 0; i < numSegments; i++) {
+		    long firstTile = (long) i * tilesPerSegment;
+		    long count = Math.min(tilesPerSegment, numTiles - firstTile);
+		    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+					      HEADER_SIZE + firstTile * tileBytes,
+					      count * tileBytes);
+		}
+	    } finally {
+		// the mappings stay valid once the file is closed
+		raf.close();
+	    }
+	}
+
+	void readTile(int tx, int ty, ByteBuffer dst) {
+	    if (tx < 0 || ty < 0 || tx >= tilesWide || ty >= tilesHigh) {
+		throw new IndexOutOfBoundsException(
+		    J3dUtilsI18N.getString("TilePyramid3") + " " + level +
+		    ": " + tx + "," + ty);
+	    }
+	    long index = (long) ty * tilesWide + tx;
+	    ByteBuffer src = segments[(int) (index / tilesPerSegment)].duplicate();
+	    int offset = (int) (index % tilesPerSegment) * tileBytes;
+	    src.limit(offset + tileBytes);
+	    src.position(offset);
+	    dst.put(src);
+	}
+
+	// returns the 0xRRGGBBAA value of a pixel, read from the tile
+	// holding it
+	int getPixel(int x, int y) {
+	    int tx = x / tileSize;
+	    int ty = y / tileSize;
+	    long index = (long) ty * tilesWide + tx;
+	    int size = tileSize + 2 * border;
+	    int offset = (int) (index % tilesPerSegment) * tileBytes +
+		((y - ty * tileSize + border) * size +
+		 (x - tx * tileSize + border)) * 4;
+	    return segments[(int) (index / tilesPerSegment)].getInt(offset);
+	}
+    }
+}
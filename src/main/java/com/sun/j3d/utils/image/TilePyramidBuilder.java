@@ -0,0 +1,489 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.sun.j3d.internal.J3dUtilsI18N;
+import com.sun.j3d.internal.ParallelLoop;
+
+/**
+ * This class builds the tile pyramid of an image, to be used by a
+ * VirtualTexture.  The first level holds the image itself, and each
+ * following level is a box filtered copy of half the size of the
+ * previous one, down to a level that fits in a single tile.  Each level
+ * is written in its own file, level<i>N</i>.tiles, in the output
+ * directory.
+ * <p>
+ * Images read from a file or a URL are read in strips of tile rows, so
+ * images much larger than the Java heap can be used, as long as their
+ * ImageIO reader supports reading a source region.  The following
+ * levels are computed from the memory mapped file of the previous
+ * level.  The tiles of a tile row are built in parallel.
+ *
+ * @see TilePyramid
+ * @see VirtualTexture
+ *
+ * @since Java 3D 1.6
+ */
+public class TilePyramidBuilder extends Object {
+
+    /**
+     * The default size of a tile.  With the border of 1 pixel on each
+     * side, a tile fills a 256x256 slot of a VirtualTexture.
+     */
+    public static final int DEFAULT_TILE_SIZE = 254;
+
+    /**
+     * The width of the border of pixels copied from the neighbouring
+     * tiles around each tile, used for bilinear filtering.
+     */
+    public static final int BORDER = 1;
+
+    private BufferedImage image = null;
+    private File file = null;
+    private URL url = null;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private int parallelism = ParallelLoop.getDefaultParallelism();
+
+    /**
+     * Constructs a TilePyramidBuilder for an image in memory.
+     *
+     * @param image the image to tile
+     */
+    public TilePyramidBuilder(BufferedImage image) {
+	if (image == null) {
+	    throw new NullPointerException();
+	}
+	this.image = image;
+    }
+
+    /**
+     * Constructs a TilePyramidBuilder for an image file, in any format
+     * ImageIO can read.
+     *
+     * @param fname the name of the image file
+     */
+    public TilePyramidBuilder(String fname) {
+	file = new File(fname);
+    }
+
+    /**
+     * Constructs a TilePyramidBuilder for an image at a URL, in any
+     * format ImageIO can read.
+     *
+     * @param url the location of the image
+     */
+    public TilePyramidBuilder(URL url) {
+	if (url == null) {
+	    throw new NullPointerException();
+	}
+	this.url = url;
+    }
+
+    /**
+     * Sets the size of the tiles, without their border.  A tile size of
+     * 2<sup>n</sup> - 2 * BORDER gives slots with power of two sizes.
+     *
+     * @param tileSize the size of the tiles
+     *
+     * @exception IllegalArgumentException if tileSize is less than 1
+     */
+    public void setTileSize(int tileSize) {
+	if (tileSize < 1) {
+	    throw new IllegalArgumentException(
+		J3dUtilsI18N.getString("TilePyramidBuilder0"));
+	}
+	this.tileSize = tileSize;
+    }
+
+    /**
+     * Returns the size of the tiles, without their border.
+     */
+    public int getTileSize() {
+	return tileSize;
+    }
+
+    /**
+     * Sets the number of threads used to build the tiles.
+     *
+     * @param parallelism the number of threads, 1 to build the tiles
+     * on the calling thread only
+     *
+     * @exception IllegalArgumentException if parallelism is less than 1
+     */
+    public void setParallelism(int parallelism) {
+	if (parallelism < 1) {
+	    throw new IllegalArgumentException(
+		J3dUtilsI18N.getString("TilePyramidBuilder1"));
+	}
+	this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of threads used to build the tiles.
+     */
+    public int getParallelism() {
+	return parallelism;
+    }
+
+    /**
+     * Builds the tile pyramid in the specified directory, which is
+     * created if needed.  Existing level files are overwritten.
+     *
+     * @param directory the output directory
+     * @return the tile pyramid that was built
+     *
+     * @exception IOException if the image can't be read or the tiles
+     * can't be written
+     */
+    public TilePyramid build(File directory) throws IOException {
+	if (!directory.isDirectory() && !directory.mkdirs()) {
+	    throw new IOException(J3dUtilsI18N.getString("TilePyramidBuilder2") +
+				  " " + directory);
+	}
+
+	Source source = openSource();
+	try {
+	    int width = source.getWidth();
+	    int height = source.getHeight();
+
+	    int numLevels = 1;
+	    for (int w = width, h = height; w > tileSize || h > tileSize; ) {
+		w = (w + 1) >> 1;
+		h = (h + 1) >> 1;
+		numLevels++;
+	    }
+
+	    writeFirstLevel(directory, source, numLevels);
+	} finally {
+	    source.dispose();
+	}
+
+	TilePyramid.LevelFile previous = new TilePyramid.LevelFile(
+	    TilePyramid.getLevelFile(directory, 0));
+	for (int level = 1; level < previous.numLevels; level++) {
+	    writeLevel(directory, previous, level);
+	    previous = new TilePyramid.LevelFile(
+		TilePyramid.getLevelFile(directory, level));
+	}
+
+	return new TilePyramid(directory);
+    }
+
+    private void writeFirstLevel(File directory, final Source source,
+				 int numLevels) throws IOException {
+	final int width = source.getWidth();
+	final int height = source.getHeight();
+	final int size = tileSize + 2 * BORDER;
+	int tilesWide = (width + tileSize - 1) / tileSize;
+	int tilesHigh = (height + tileSize - 1) / tileSize;
+
+	final int[] strip = new int[width * size];
+	LevelWriter writer = new LevelWriter(directory, width, height,
+					     0, numLevels);
+	try {
+	    for (int ty = 0; ty < tilesHigh; ty++) {
+		// rows of the tile and its border, counted from the bottom,
+		// are read from the top down
+		final int y0 = Math.max(ty * tileSize - BORDER, 0);
+		int y1 = Math.min(ty * tileSize + tileSize + BORDER, height) - 1;
+		final int top = height - 1 - y1;
+		source.readRows(top, y1 - y0 + 1, strip);
+
+		final int tileY = ty;
+		final ByteBuffer row = writer.row;
+		ParallelLoop.Body body = new ParallelLoop.Body() {
+		    public void run(int start, int end) {
+			for (int tx = start; tx < end; tx++) {
+			    int offset = tx * size * size * 4;
+			    for (int j = 0; j < size; j++) {
+				int y = clamp(tileY * tileSize + j - BORDER, height);
+				int line = (height - 1 - y - top) * width;
+				for (int i = 0; i < size; i++) {
+				    int x = clamp(tx * tileSize + i - BORDER, width);
+				    int argb = strip[line + x];
+				    row.putInt(offset, (argb << 8) | (argb >>> 24));
+				    offset += 4;
+				}
+			    }
+			}
+		    }
+		};
+		runTiles(tilesWide, body);
+		writer.writeRow(ty);
+	    }
+	} finally {
+	    writer.close();
+	}
+    }
+
+    private void writeLevel(File directory, final TilePyramid.LevelFile src,
+			    int level) throws IOException {
+	final int width = (src.width + 1) >> 1;
+	final int height = (src.height + 1) >> 1;
+	final int size = tileSize + 2 * BORDER;
+	int tilesWide = (width + tileSize - 1) / tileSize;
+	int tilesHigh = (height + tileSize - 1) / tileSize;
+
+	LevelWriter writer = new LevelWriter(directory, width, height,
+					     level, src.numLevels);
+	try {
+	    for (int ty = 0; ty < tilesHigh; ty++) {
+		final int tileY = ty;
+		final ByteBuffer row = writer.row;
+		ParallelLoop.Body body = new ParallelLoop.Body() {
+		    public void run(int start, int end) {
+			for (int tx = start; tx < end; tx++) {
+			    int offset = tx * size * size * 4;
+			    for (int j = 0; j < size; j++) {
+				int y = clamp(tileY * tileSize + j - BORDER, height);
+				int sy0 = 2 * y;
+				int sy1 = Math.min(sy0 + 1, src.height - 1);
+				for (int i = 0; i < size; i++) {
+				    int x = clamp(tx * tileSize + i - BORDER, width);
+				    int sx0 = 2 * x;
+				    int sx1 = Math.min(sx0 + 1, src.width - 1);
+				    row.putInt(offset,
+					       average(src.getPixel(sx0, sy0),
+						       src.getPixel(sx1, sy0),
+						       src.getPixel(sx0, sy1),
+						       src.getPixel(sx1, sy1)));
+				    offset += 4;
+				}
+			    }
+			}
+		    }
+		};
+		runTiles(tilesWide, body);
+		writer.writeRow(ty);
+	    }
+	} finally {
+	    writer.close();
+	}
+    }
+
+    private void runTiles(int tilesWide, ParallelLoop.Body body) {
+	if (parallelism < 2 || tilesWide < 2) {
+	    body.run(0, tilesWide);
+	} else {
+	    ParallelLoop.run(0, tilesWide, 1, parallelism, body);
+	}
+    }
+
+    static int clamp(int v, int size) {
+	return v < 0 ? 0 : (v >= size ? size - 1 : v);
+    }
+
+    // averages each byte of four packed pixels, with rounding
+    static int average(int a, int b, int c, int d) {
+	int result = 0;
+	for (int shift = 0; shift < 32; shift += 8) {
+	    int sum = ((a >>> shift) & 0xff) + ((b >>> shift) & 0xff) +
+		((c >>> shift) & 0xff) + ((d >>> shift) & 0xff);
+	    result |= ((sum + 2) >> 2) << shift;
+	}
+	return result;
+    }
+
+
+    /**
+     * Writes the level file one tile row at a time.
+     */
+    private class LevelWriter {
+	final ByteBuffer row;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final int tilesWide;
+	private final int tileBytes;
+
+	LevelWriter(File directory, int width, int height,
+		    int level, int numLevels) throws IOException {
+	    int size = tileSize + 2 * BORDER;
+	    tileBytes = size * size * 4;
+	    tilesWide = (width + tileSize - 1) / tileSize;
+	    long rowBytes = (long) tilesWide * tileBytes;
+	    if (rowBytes > Integer.MAX_VALUE) {
+		throw new IOException(J3dUtilsI18N.getString("TilePyramidBuilder3") +
+				      " " + width);
+	    }
+	    row = ByteBuffer.allocate((int) rowBytes);
+
+	    raf = new RandomAccessFile(TilePyramid.getLevelFile(directory, level),
+				       "rw");
+	    raf.setLength(0);
+	    channel = raf.getChannel();
+
+	    ByteBuffer header = ByteBuffer.allocate(TilePyramid.HEADER_SIZE);
+	    header.putInt(TilePyramid.MAGIC);
+	    header.putInt(TilePyramid.VERSION);
+	    header.putInt(tileSize);
+	    header.putInt(BORDER);
+	    header.putInt(width);
+	    header.putInt(height);
+	    header.putInt(level);
+	    header.putInt(numLevels);
+	    header.putInt(0);
+	    header.flip();
+	    write(header, 0);
+	}
+
+	void writeRow(int ty) throws IOException {
+	    row.clear();
+	    write(row, TilePyramid.HEADER_SIZE + (long) ty * tilesWide * tileBytes);
+	}
+
+	private void write(ByteBuffer buffer, long position) throws IOException {
+	    while (buffer.hasRemaining()) {
+		position += channel.write(buffer, position);
+	    }
+	}
+
+	void close() throws IOException {
+	    raf.close();
+	}
+    }
+
+
+    /**
+     * Reads the rows of the source image as ARGB pixels.
+     */
+    private interface Source {
+	int getWidth();
+	int getHeight();
+	// reads count rows from the top row y into pixels
+	void readRows(int y, int count, int[] pixels) throws IOException;
+	void dispose() throws IOException;
+    }
+
+    private Source openSource() throws IOException {
+	if (image != null) {
+	    return new Source() {
+		public int getWidth() {
+		    return image.getWidth();
+		}
+		public int getHeight() {
+		    return image.getHeight();
+		}
+		public void readRows(int y, int count, int[] pixels) {
+		    image.getRGB(0, y, image.getWidth(), count,
+				 pixels, 0, image.getWidth());
+		}
+		public void dispose() {
+		}
+	    };
+	}
+
+	final InputStream in;
+	final ImageInputStream iis;
+	if (file != null) {
+	    in = null;
+	    iis = ImageIO.createImageInputStream(file);
+	} else {
+	    in = url.openStream();
+	    iis = ImageIO.createImageInputStream(in);
+	}
+	if (iis == null) {
+	    if (in != null) {
+		in.close();
+	    }
+	    throw new IOException(J3dUtilsI18N.getString("TilePyramidBuilder4") +
+				  " " + (file != null ? file : url));
+	}
+
+	Iterator readers = ImageIO.getImageReaders(iis);
+	if (!readers.hasNext()) {
+	    iis.close();
+	    if (in != null) {
+		in.close();
+	    }
+	    throw new IOException(J3dUtilsI18N.getString("TilePyramidBuilder5") +
+				  " " + (file != null ? file : url));
+	}
+	final ImageReader reader = (ImageReader) readers.next();
+	reader.setInput(iis, true, true);
+
+	return new Source() {
+	    public int getWidth() {
+		try {
+		    return reader.getWidth(0);
+		} catch (IOException e) {
+		    throw new ImageException(e);
+		}
+	    }
+	    public int getHeight() {
+		try {
+		    return reader.getHeight(0);
+		} catch (IOException e) {
+		    throw new ImageException(e);
+		}
+	    }
+	    public void readRows(int y, int count, int[] pixels)
+		throws IOException {
+		int width = reader.getWidth(0);
+		ImageReadParam param = reader.getDefaultReadParam();
+		param.setSourceRegion(new Rectangle(0, y, width, count));
+		BufferedImage strip = reader.read(0, param);
+		strip.getRGB(0, 0, width, count, pixels, 0, width);
+	    }
+	    public void dispose() throws IOException {
+		reader.dispose();
+		iis.close();
+		if (in != null) {
+		    in.close();
+		}
+	    }
+	};
+    }
+}
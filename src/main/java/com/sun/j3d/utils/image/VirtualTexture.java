@@ -0,0 +1,756 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.image;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import javax.media.j3d.GLSLShaderProgram;
+import javax.media.j3d.ImageComponent;
+import javax.media.j3d.ImageComponent2D;
+import javax.media.j3d.NioImageBuffer;
+import javax.media.j3d.Shader;
+import javax.media.j3d.ShaderAppearance;
+import javax.media.j3d.ShaderAttributeSet;
+import javax.media.j3d.ShaderAttributeValue;
+import javax.media.j3d.SourceCodeShader;
+import javax.media.j3d.Texture;
+import javax.media.j3d.Texture2D;
+import javax.media.j3d.TextureUnitState;
+import javax.vecmath.Point2f;
+
+import com.sun.j3d.internal.J3dUtilsI18N;
+
+/**
+ * A VirtualTexture shows an image far larger than a texture, using only
+ * the tiles of its TilePyramid needed for the current view.  Resident
+ * tiles are kept in the slots of an atlas texture, and a page table
+ * texture holds, for each tile of the first level, the slot and level
+ * of the finest resident tile covering it.  The shader program of the
+ * appearance returned by createAppearance looks up the page table and
+ * then samples the atlas, so the texture coordinates of the shapes are
+ * those of the whole image.
+ * <p>
+ * The application, usually through a VirtualTextureBehavior, calls
+ * requestRegion with the level of detail needed for each visible part
+ * of the image, then update once per frame.  Missing tiles are read by
+ * a background loader thread, coarser levels first, and their upload
+ * to the atlas is spread over frames.  Until a tile is loaded, the
+ * page table points to a coarser one, and the single tile of the last
+ * level is always resident.  When the atlas is full, the slot used
+ * least recently is reused.
+ * <p>
+ * The atlas size, slots per side times the tile size plus its
+ * borders, should be a power of two unless non power of two textures
+ * are available.  The atlas is not mipmapped, so the level requested
+ * for a region should be the one whose texels match the screen pixels.
+ * The shaders use texture coordinate set 0 of the geometry.
+ *
+ * @see TilePyramid
+ * @see VirtualTextureBehavior
+ *
+ * @since Java 3D 1.6
+ */
+public class VirtualTexture extends Object {
+
+    /**
+     * The default number of slots on each side of the atlas.
+     */
+    public static final int DEFAULT_SLOTS_PER_SIDE = 16;
+
+    static final String VERTEX_SHADER =
+	"void main() {\n" +
+	"    gl_TexCoord[0] = gl_MultiTexCoord0;\n" +
+	"    gl_Position = ftransform();\n" +
+	"}\n";
+
+    static final String FRAGMENT_SHADER =
+	"uniform sampler2D pageTable;\n" +
+	"uniform sampler2D atlas;\n" +
+	"uniform vec2 imageSize;\n" +
+	"uniform vec2 pageTableSize;\n" +
+	"uniform float tileSize;\n" +
+	"uniform float border;\n" +
+	"uniform float slotSize;\n" +
+	"uniform float atlasSize;\n" +
+	"void main() {\n" +
+	"    vec2 texel = min(clamp(gl_TexCoord[0].st, 0.0, 1.0) * imageSize,\n" +
+	"                     imageSize - 0.5);\n" +
+	"    vec2 tile = floor(texel / tileSize);\n" +
+	"    vec4 entry = floor(texture2D(pageTable, (tile + 0.5) / pageTableSize)\n" +
+	"                       * 255.0 + 0.5);\n" +
+	"    float scale = exp2(entry.b);\n" +
+	"    vec2 inTile = texel / (tileSize * scale) - floor(tile / scale);\n" +
+	"    vec2 pos = entry.rg * slotSize + border + inTile * tileSize;\n" +
+	"    gl_FragColor = texture2D(atlas, pos / atlasSize);\n" +
+	"}\n";
+
+    // completed loads kept for each upload allowed per frame
+    private static final int COMPLETED_PER_UPLOAD = 2;
+
+    private final TilePyramid pyramid;
+    private final int numLevels;
+    private final int tileSize;
+    private final int tileBytes;
+    private final int slotSize;
+    private final int slotsPerSide;
+    private final int atlasSize;
+    private final int pageTableWidth;
+    private final int pageTableHeight;
+
+    private final ByteBuffer atlasData;
+    private final ImageComponent2D atlasImage;
+    private final Texture2D atlasTexture;
+    private final ByteBuffer pageTableData;
+    private final ImageComponent2D pageTableImage;
+    private final Texture2D pageTableTexture;
+
+    // slot of each resident tile of each level, or -1
+    private final int[][] slotOf;
+    // the tile held by each slot
+    private final int[] slotLevel;
+    private final int[] slotTile;
+    private final long[] slotLastUsed;
+    private int residentCount = 0;
+
+    // queued loads of each level, owned by the thread calling update
+    private final Request[][] pending;
+    private int pendingCount = 0;
+
+    // finest level wanted for each tile of the first level, for the
+    // current frame and the next one
+    private byte[] wantedLevel;
+    private byte[] nextWantedLevel;
+    private boolean requestedThisFrame = false;
+    private boolean pageTableChanged = true;
+
+    private long frame = 0;
+    private int uploadsPerFrame = 8;
+
+    // shared with the loader thread
+    private final Object lock = new Object();
+    private final PriorityQueue queue;
+    private final ArrayList completed = new ArrayList();
+    private final ArrayList freeBuffers = new ArrayList();
+    private volatile long currentFrame = 0;
+    private long sequence = 0;
+    private Thread loaderThread = null;
+    private boolean running = false;
+
+    /**
+     * Constructs a VirtualTexture for a tile pyramid with an atlas of
+     * DEFAULT_SLOTS_PER_SIDE slots on each side.
+     *
+     * @param pyramid the tiles of the image
+     */
+    public VirtualTexture(TilePyramid pyramid) {
+	this(pyramid, DEFAULT_SLOTS_PER_SIDE);
+    }
+
+    /**
+     * Constructs a VirtualTexture for a tile pyramid.  The tile of the
+     * last level is loaded by the constructor.
+     *
+     * @param pyramid the tiles of the image
+     * @param slotsPerSide the number of slots on each side of the
+     * atlas
+     *
+     * @exception IllegalArgumentException if slotsPerSide is less than 2
+     * or greater than 256
+     */
+    public VirtualTexture(TilePyramid pyramid, int slotsPerSide) {
+	if (slotsPerSide < 2 || slotsPerSide > 256) {
+	    throw new IllegalArgumentException(
+		J3dUtilsI18N.getString("VirtualTexture0"));
+	}
+	this.pyramid = pyramid;
+	this.slotsPerSide = slotsPerSide;
+	numLevels = pyramid.getNumLevels();
+	tileSize = pyramid.getTileSize();
+	tileBytes = pyramid.getTileBytes();
+	slotSize = tileSize + 2 * pyramid.getBorder();
+	atlasSize = slotsPerSide * slotSize;
+
+	atlasData = ByteBuffer.allocateDirect(atlasSize * atlasSize * 4);
+	atlasImage = new ImageComponent2D(ImageComponent.FORMAT_RGBA,
+	    new NioImageBuffer(atlasSize, atlasSize,
+			       NioImageBuffer.ImageType.TYPE_4BYTE_RGBA, atlasData),
+	    true, true);
+	atlasImage.setCapability(ImageComponent.ALLOW_IMAGE_WRITE);
+	atlasTexture = new Texture2D(Texture.BASE_LEVEL, Texture.RGBA,
+				     atlasSize, atlasSize);
+	atlasTexture.setImage(0, atlasImage);
+	atlasTexture.setMinFilter(Texture.BASE_LEVEL_LINEAR);
+	atlasTexture.setMagFilter(Texture.BASE_LEVEL_LINEAR);
+	atlasTexture.setBoundaryModeS(Texture.CLAMP_TO_EDGE);
+	atlasTexture.setBoundaryModeT(Texture.CLAMP_TO_EDGE);
+
+	int tilesWide = pyramid.getTilesWide(0);
+	int tilesHigh = pyramid.getTilesHigh(0);
+	pageTableWidth = nextPowerOfTwo(tilesWide);
+	pageTableHeight = nextPowerOfTwo(tilesHigh);
+	pageTableData = ByteBuffer.allocateDirect(pageTableWidth *
+						  pageTableHeight * 4);
+	pageTableImage = new ImageComponent2D(ImageComponent.FORMAT_RGBA,
+	    new NioImageBuffer(pageTableWidth, pageTableHeight,
+			       NioImageBuffer.ImageType.TYPE_4BYTE_RGBA,
+			       pageTableData),
+	    true, true);
+	pageTableImage.setCapability(ImageComponent.ALLOW_IMAGE_WRITE);
+	pageTableTexture = new Texture2D(Texture.BASE_LEVEL, Texture.RGBA,
+					 pageTableWidth, pageTableHeight);
+	pageTableTexture.setImage(0, pageTableImage);
+	pageTableTexture.setMinFilter(Texture.BASE_LEVEL_POINT);
+	pageTableTexture.setMagFilter(Texture.BASE_LEVEL_POINT);
+	pageTableTexture.setBoundaryModeS(Texture.CLAMP_TO_EDGE);
+	pageTableTexture.setBoundaryModeT(Texture.CLAMP_TO_EDGE);
+
+	slotOf = new int[numLevels][];
+	pending = new Request[numLevels][];
+	for (int level = 0; level < numLevels; level++) {
+	    int n = pyramid.getTilesWide(level) * pyramid.getTilesHigh(level);
+	    slotOf[level] = new int[n];
+	    java.util.Arrays.fill(slotOf[level], -1);
+	    pending[level] = new Request[n];
+	}
+	int numSlots = slotsPerSide * slotsPerSide;
+	slotLevel = new int[numSlots];
+	slotTile = new int[numSlots];
+	slotLastUsed = new long[numSlots];
+	java.util.Arrays.fill(slotLevel, -1);
+
+	wantedLevel = new byte[tilesWide * tilesHigh];
+	nextWantedLevel = new byte[tilesWide * tilesHigh];
+	java.util.Arrays.fill(wantedLevel, (byte) (numLevels - 1));
+	java.util.Arrays.fill(nextWantedLevel, (byte) (numLevels - 1));
+
+	queue = new PriorityQueue(64, new Comparator() {
+	    public int compare(Object o1, Object o2) {
+		Request r1 = (Request) o1;
+		Request r2 = (Request) o2;
+		// coarser levels first, then the oldest request
+		if (r1.level != r2.level) {
+		    return r1.level > r2.level ? -1 : 1;
+		}
+		return r1.sequence < r2.sequence ? -1 :
+		    (r1.sequence > r2.sequence ? 1 : 0);
+	    }
+	});
+
+	// the last level is always resident, in slot 0
+	ByteBuffer tile = ByteBuffer.allocate(tileBytes);
+	pyramid.readTile(numLevels - 1, 0, 0, tile);
+	tile.flip();
+	slotLastUsed[0] = Long.MAX_VALUE;
+	storeTile(0, numLevels - 1, 0, tile);
+	updatePageTable();
+    }
+
+    static int nextPowerOfTwo(int value) {
+	int result = 1;
+	while (result < value) {
+	    result <<= 1;
+	}
+	return result;
+    }
+
+    /**
+     * Returns the tile pyramid of this virtual texture.
+     */
+    public TilePyramid getTilePyramid() {
+	return pyramid;
+    }
+
+    /**
+     * Returns the atlas texture holding the resident tiles.
+     */
+    public Texture2D getAtlasTexture() {
+	return atlasTexture;
+    }
+
+    /**
+     * Returns the page table texture.  Each texel, for a tile of the
+     * first level, holds the column and row of the atlas slot in its
+     * red and green components and the level of the tile in that slot
+     * in its blue component.
+     */
+    public Texture2D getPageTableTexture() {
+	return pageTableTexture;
+    }
+
+    /**
+     * Sets the maximum number of tiles copied to the atlas by each call
+     * to update.  The default is 8.
+     *
+     * @param uploadsPerFrame the number of tiles, at least 1
+     *
+     * @exception IllegalArgumentException if uploadsPerFrame is less
+     * than 1
+     */
+    public void setUploadsPerFrame(int uploadsPerFrame) {
+	if (uploadsPerFrame < 1) {
+	    throw new IllegalArgumentException(
+		J3dUtilsI18N.getString("VirtualTexture1"));
+	}
+	this.uploadsPerFrame = uploadsPerFrame;
+    }
+
+    /**
+     * Returns the maximum number of tiles copied to the atlas by each
+     * call to update.
+     */
+    public int getUploadsPerFrame() {
+	return uploadsPerFrame;
+    }
+
+    /**
+     * Returns the number of slots of the atlas.
+     */
+    public int getSlotCount() {
+	return slotLevel.length;
+    }
+
+    /**
+     * Returns the number of tiles resident in the atlas.
+     */
+    public int getResidentTileCount() {
+	return residentCount;
+    }
+
+    /**
+     * Returns the number of tiles requested but not yet in the atlas.
+     */
+    public int getPendingTileCount() {
+	return pendingCount;
+    }
+
+    /**
+     * Returns true if the specified tile is resident in the atlas.
+     */
+    public boolean isResident(int level, int tx, int ty) {
+	return slotOf[level][ty * pyramid.getTilesWide(level) + tx] >= 0;
+    }
+
+    /**
+     * Requests the tiles of a level covering a rectangle of texture
+     * coordinates, for the current frame.  Resident tiles are marked as
+     * used and missing ones are queued for the loader thread.  If the
+     * rectangle covers more tiles than half the atlas, a coarser level
+     * is used.
+     *
+     * @param level the level wanted, 0 for the full resolution
+     * @param s0 the lowest s coordinate
+     * @param t0 the lowest t coordinate
+     * @param s1 the highest s coordinate
+     * @param t1 the highest t coordinate
+     */
+    public void requestRegion(int level, float s0, float t0,
+			      float s1, float t1) {
+	if (s1 < 0.0f || t1 < 0.0f || s0 > 1.0f || t0 > 1.0f) {
+	    return;
+	}
+	s0 = Math.max(s0, 0.0f);
+	t0 = Math.max(t0, 0.0f);
+	s1 = Math.min(s1, 1.0f);
+	t1 = Math.min(t1, 1.0f);
+	level = Math.max(0, Math.min(level, numLevels - 1));
+
+	int width = pyramid.getWidth(0);
+	int height = pyramid.getHeight(0);
+	int tx0, ty0, tx1, ty1;
+	for (;;) {
+	    // tiles of a level cover tileSize << level pixels of level 0
+	    float span = (float) tileSize * (1 << level);
+	    tx0 = (int) (s0 * width / span);
+	    ty0 = (int) (t0 * height / span);
+	    tx1 = Math.min((int) (s1 * width / span),
+			   pyramid.getTilesWide(level) - 1);
+	    ty1 = Math.min((int) (t1 * height / span),
+			   pyramid.getTilesHigh(level) - 1);
+	    if (level == numLevels - 1 ||
+		(tx1 - tx0 + 1) * (ty1 - ty0 + 1) <= slotLevel.length / 2) {
+		break;
+	    }
+	    level++;
+	}
+
+	int tilesWide = pyramid.getTilesWide(level);
+	for (int ty = ty0; ty <= ty1; ty++) {
+	    for (int tx = tx0; tx <= tx1; tx++) {
+		int tile = ty * tilesWide + tx;
+		int slot = slotOf[level][tile];
+		if (slot >= 0) {
+		    if (slot != 0) {
+			slotLastUsed[slot] = frame;
+		    }
+		} else {
+		    Request request = pending[level][tile];
+		    if (request != null) {
+			request.frame = frame;
+		    } else {
+			request = new Request(level, tx, ty, frame);
+			pending[level][tile] = request;
+			pendingCount++;
+			enqueue(request);
+		    }
+		}
+	    }
+	}
+
+	// the finest level wanted for the tiles of level 0 under the region
+	int tilesWide0 = pyramid.getTilesWide(0);
+	int x0 = tx0 << level;
+	int y0 = ty0 << level;
+	int x1 = Math.min(((tx1 + 1) << level), tilesWide0) - 1;
+	int y1 = Math.min(((ty1 + 1) << level), pyramid.getTilesHigh(0)) - 1;
+	for (int y = y0; y <= y1; y++) {
+	    for (int x = x0; x <= x1; x++) {
+		int i = y * tilesWide0 + x;
+		if (nextWantedLevel[i] > level) {
+		    nextWantedLevel[i] = (byte) level;
+		}
+	    }
+	}
+	requestedThisFrame = true;
+    }
+
+    /**
+     * Copies up to the uploads per frame of the tiles loaded since the
+     * last call to the atlas, updates the page table and starts a new
+     * frame.  This method should be called once per frame, after the
+     * regions visible in the frame have been requested, from the same
+     * thread as requestRegion.
+     */
+    public void update() {
+	ArrayList loaded = new ArrayList();
+	synchronized (lock) {
+	    // dropped requests don't count against the uploads
+	    int uploads = 0;
+	    while (!completed.isEmpty() && uploads < uploadsPerFrame) {
+		Request request = (Request) completed.remove(0);
+		if (request.data != null) {
+		    uploads++;
+		}
+		loaded.add(request);
+	    }
+	    lock.notifyAll();
+	}
+
+	for (int i = 0; i < loaded.size(); i++) {
+	    Request request = (Request) loaded.get(i);
+	    int tile = request.ty * pyramid.getTilesWide(request.level) +
+		request.tx;
+	    pending[request.level][tile] = null;
+	    pendingCount--;
+	    if (request.data != null) {
+		int slot = findFreeSlot();
+		if (slot >= 0) {
+		    slotLastUsed[slot] = request.frame;
+		    storeTile(slot, request.level, tile, request.data);
+		}
+		synchronized (lock) {
+		    freeBuffers.add(request.data);
+		}
+		request.data = null;
+	    }
+	}
+
+	if (requestedThisFrame) {
+	    byte[] tmp = wantedLevel;
+	    wantedLevel = nextWantedLevel;
+	    nextWantedLevel = tmp;
+	    java.util.Arrays.fill(nextWantedLevel, (byte) (numLevels - 1));
+	    requestedThisFrame = false;
+	    pageTableChanged = true;
+	}
+	if (pageTableChanged) {
+	    updatePageTable();
+	}
+
+	frame++;
+	currentFrame = frame;
+    }
+
+    // returns the least recently used slot, or -1 if all of them are
+    // in use by the current frame
+    private int findFreeSlot() {
+	int best = -1;
+	long bestFrame = frame;
+	for (int slot = 1; slot < slotLevel.length; slot++) {
+	    if (slotLevel[slot] < 0) {
+		return slot;
+	    }
+	    if (slotLastUsed[slot] < bestFrame) {
+		best = slot;
+		bestFrame = slotLastUsed[slot];
+	    }
+	}
+	return best;
+    }
+
+    private void storeTile(int slot, int level, int tile,
+			   final ByteBuffer data) {
+	if (slotLevel[slot] >= 0) {
+	    slotOf[slotLevel[slot]][slotTile[slot]] = -1;
+	    residentCount--;
+	}
+	slotLevel[slot] = level;
+	slotTile[slot] = tile;
+	slotOf[level][tile] = slot;
+	residentCount++;
+	pageTableChanged = true;
+
+	int x = (slot % slotsPerSide) * slotSize;
+	int y = (slot / slotsPerSide) * slotSize;
+	atlasImage.updateData(new ImageComponent2D.Updater() {
+	    public void updateData(ImageComponent2D imageComponent,
+				   int x, int y, int width, int height) {
+		ByteBuffer dst = atlasData.duplicate();
+		ByteBuffer src = data.duplicate();
+		int rowBytes = width * 4;
+		for (int row = 0; row < height; row++) {
+		    src.limit(src.position() + rowBytes);
+		    dst.position(((y + row) * atlasSize + x) * 4);
+		    dst.put(src);
+		}
+	    }
+	}, x, y, slotSize, slotSize);
+    }
+
+    private void updatePageTable() {
+	final int tilesWide = pyramid.getTilesWide(0);
+	final int tilesHigh = pyramid.getTilesHigh(0);
+	pageTableImage.updateData(new ImageComponent2D.Updater() {
+	    public void updateData(ImageComponent2D imageComponent,
+				   int x, int y, int width, int height) {
+		for (int ty = 0; ty < tilesHigh; ty++) {
+		    for (int tx = 0; tx < tilesWide; tx++) {
+			// the finest resident tile at or above the level
+			// wanted, the last level being always resident
+			int wanted = wantedLevel[ty * tilesWide + tx];
+			int slot = -1;
+			int level;
+			for (level = wanted; level < numLevels; level++) {
+			    slot = slotOf[level][(ty >> level) *
+				pyramid.getTilesWide(level) + (tx >> level)];
+			    if (slot >= 0) {
+				break;
+			    }
+			}
+			int offset = (ty * pageTableWidth + tx) * 4;
+			pageTableData.put(offset, (byte) (slot % slotsPerSide));
+			pageTableData.put(offset + 1, (byte) (slot / slotsPerSide));
+			pageTableData.put(offset + 2, (byte) level);
+			pageTableData.put(offset + 3, (byte) 0xff);
+		    }
+		}
+	    }
+	}, 0, 0, pageTableWidth, pageTableHeight);
+	pageTableChanged = false;
+    }
+
+    /**
+     * Creates an appearance showing this virtual texture, with the page
+     * table on texture unit 0, the atlas on texture unit 1 and a GLSL
+     * shader program doing the lookup.
+     */
+    public ShaderAppearance createAppearance() {
+	TextureUnitState[] units = new TextureUnitState[2];
+	units[0] = new TextureUnitState(pageTableTexture, null, null);
+	units[1] = new TextureUnitState(atlasTexture, null, null);
+
+	GLSLShaderProgram program = new GLSLShaderProgram();
+	program.setShaders(new Shader[] {
+	    new SourceCodeShader(Shader.SHADING_LANGUAGE_GLSL,
+				 Shader.SHADER_TYPE_VERTEX, VERTEX_SHADER),
+	    new SourceCodeShader(Shader.SHADING_LANGUAGE_GLSL,
+				 Shader.SHADER_TYPE_FRAGMENT, FRAGMENT_SHADER)
+	});
+	String[] names = {
+	    "pageTable", "atlas", "imageSize", "pageTableSize",
+	    "tileSize", "border", "slotSize", "atlasSize"
+	};
+	program.setShaderAttrNames(names);
+
+	ShaderAttributeSet attributes = new ShaderAttributeSet();
+	attributes.put(new ShaderAttributeValue("pageTable", new Integer(0)));
+	attributes.put(new ShaderAttributeValue("atlas", new Integer(1)));
+	attributes.put(new ShaderAttributeValue("imageSize",
+	    new Point2f(pyramid.getWidth(0), pyramid.getHeight(0))));
+	attributes.put(new ShaderAttributeValue("pageTableSize",
+	    new Point2f(pageTableWidth, pageTableHeight)));
+	attributes.put(new ShaderAttributeValue("tileSize",
+						new Float(tileSize)));
+	attributes.put(new ShaderAttributeValue("border",
+	    new Float(pyramid.getBorder())));
+	attributes.put(new ShaderAttributeValue("slotSize",
+						new Float(slotSize)));
+	attributes.put(new ShaderAttributeValue("atlasSize",
+						new Float(atlasSize)));
+
+	ShaderAppearance appearance = new ShaderAppearance();
+	appearance.setTextureUnitState(units);
+	appearance.setShaderProgram(program);
+	appearance.setShaderAttributeSet(attributes);
+	return appearance;
+    }
+
+    /**
+     * Stops the loader thread.  Requests made after this call start it
+     * again.
+     */
+    public void dispose() {
+	Thread t;
+	synchronized (lock) {
+	    running = false;
+	    t = loaderThread;
+	    loaderThread = null;
+	    lock.notifyAll();
+	}
+	if (t != null) {
+	    try {
+		t.join();
+	    }
+	    catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	}
+    }
+
+    private void enqueue(Request request) {
+	synchronized (lock) {
+	    request.sequence = sequence++;
+	    queue.add(request);
+	    if (loaderThread == null) {
+		running = true;
+		loaderThread = new Thread(new Loader(),
+					  "J3D-VirtualTextureLoader");
+		loaderThread.setDaemon(true);
+		loaderThread.start();
+	    }
+	    lock.notifyAll();
+	}
+    }
+
+
+    /**
+     * A tile to be read by the loader thread.
+     */
+    private static class Request {
+	final int level;
+	final int tx;
+	final int ty;
+	// the last frame the tile was requested in
+	volatile long frame;
+	long sequence;
+	ByteBuffer data = null;
+
+	Request(int level, int tx, int ty, long frame) {
+	    this.level = level;
+	    this.tx = tx;
+	    this.ty = ty;
+	    this.frame = frame;
+	}
+    }
+
+
+    /**
+     * Reads the queued tiles.  Requests not renewed in the last frame
+     * are dropped without reading the tile, and so are the requests of
+     * tiles which can't be read, after logging the error.
+     */
+    private class Loader implements Runnable {
+	public void run() {
+	    for (;;) {
+		Request request;
+		ByteBuffer buffer;
+		synchronized (lock) {
+		    while (running && (queue.isEmpty() ||
+			   completed.size() >= uploadsPerFrame * COMPLETED_PER_UPLOAD)) {
+			try {
+			    lock.wait();
+			}
+			catch (InterruptedException e) {
+			    return;
+			}
+		    }
+		    if (!running) {
+			return;
+		    }
+		    request = (Request) queue.poll();
+		    if (request.frame + 1 < currentFrame) {
+			completed.add(request);
+			continue;
+		    }
+		    buffer = freeBuffers.isEmpty() ?
+			ByteBuffer.allocate(tileBytes) :
+			(ByteBuffer) freeBuffers.remove(freeBuffers.size() - 1);
+		}
+
+		buffer.clear();
+		try {
+		    pyramid.readTile(request.level, request.tx, request.ty,
+				     buffer);
+		    buffer.flip();
+		}
+		catch (RuntimeException e) {
+		    // complete the request without data, so that update()
+		    // clears its pending entry and the tile can be requested
+		    // again
+		    System.err.println(J3dUtilsI18N.getString("VirtualTexture2") +
+				       " (" + request.level + ", " + request.tx +
+				       ", " + request.ty + "): " + e);
+		    synchronized (lock) {
+			freeBuffers.add(buffer);
+			completed.add(request);
+		    }
+		    continue;
+		}
+
+		synchronized (lock) {
+		    request.data = buffer;
+		    completed.add(request);
+		}
+	    }
+	}
+    }
+}
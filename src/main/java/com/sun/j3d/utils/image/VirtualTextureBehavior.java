@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.image;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+
+import javax.media.j3d.Behavior;
+import javax.media.j3d.Canvas3D;
+import javax.media.j3d.Geometry;
+import javax.media.j3d.GeometryArray;
+import javax.media.j3d.Shape3D;
+import javax.media.j3d.Transform3D;
+import javax.media.j3d.View;
+import javax.media.j3d.WakeupCondition;
+import javax.media.j3d.WakeupOnElapsedFrames;
+import javax.vecmath.Point3d;
+import javax.vecmath.Point3f;
+import javax.vecmath.TexCoord2f;
+import javax.vecmath.Vector3d;
+
+import com.sun.j3d.internal.J3dUtilsI18N;
+import com.sun.j3d.utils.geometry.GeometryInfo;
+
+/**
+ * This behavior drives a VirtualTexture from the view of a Canvas3D.
+ * Each frame, the triangles of the registered shapes are projected with
+ * the current eye position and field of view, and for each visible
+ * triangle the level whose texels best match the screen pixels is
+ * requested over the texture coordinates of the triangle.  Triangles
+ * covering many tiles are split so that near and far parts of a large
+ * surface get different levels.  Then VirtualTexture.update is called.
+ * <p>
+ * The triangles and texture coordinate set 0 of the shapes are read
+ * when they are added, so later changes to their geometry are not seen.
+ * The shapes need the ALLOW_LOCAL_TO_VWORLD_READ capability, which
+ * addShape sets on shapes that are not live or compiled.
+ *
+ * @see VirtualTexture
+ *
+ * @since Java 3D 1.6
+ */
+public class VirtualTextureBehavior extends Behavior {
+
+    // the largest number of tiles a triangle may cover before it is
+    // split, and the number of times it may be split
+    private static final int MAX_TILES = 4;
+    private static final int MAX_DEPTH = 6;
+
+    private final VirtualTexture virtualTexture;
+    private final Canvas3D canvas;
+    private final ArrayList shapes = new ArrayList();
+    private final WakeupCondition condition = new WakeupOnElapsedFrames(0);
+
+    // per frame state
+    private final Transform3D transform = new Transform3D();
+    private final Point3d eye = new Point3d();
+    private final Vector3d direction = new Vector3d();
+    private final Point3d point = new Point3d();
+    private double cosHalfAngle;
+    private double sinHalfAngle;
+    private double pixelsPerRadian;
+    private double texelsPerUV;
+    private double tileUV;
+    private float[] world = new float[0];
+
+    // the triangle and the middles of its edges at each depth of
+    // subdivision, x y z s t for each vertex
+    private final float[][] stack = new float[MAX_DEPTH + 1][15];
+    private final float[][] middles = new float[MAX_DEPTH + 1][15];
+
+    /**
+     * Constructs a behavior requesting the tiles of a virtual texture
+     * needed by the view of a canvas.
+     *
+     * @param virtualTexture the virtual texture to drive
+     * @param canvas the canvas whose view is used
+     */
+    public VirtualTextureBehavior(VirtualTexture virtualTexture,
+				  Canvas3D canvas) {
+	this.virtualTexture = virtualTexture;
+	this.canvas = canvas;
+    }
+
+    /**
+     * Returns the virtual texture driven by this behavior.
+     */
+    public VirtualTexture getVirtualTexture() {
+	return virtualTexture;
+    }
+
+    /**
+     * Adds a shape textured with the virtual texture.  Its geometry
+     * arrays must have 2D texture coordinates.
+     *
+     * @param shape the shape to add
+     *
+     * @exception IllegalArgumentException if a geometry of the shape
+     * isn't a GeometryArray with 2D texture coordinates
+     */
+    public void addShape(Shape3D shape) {
+	if (!shape.isLive() && !shape.isCompiled()) {
+	    shape.setCapability(Shape3D.ALLOW_LOCAL_TO_VWORLD_READ);
+	}
+
+	for (int i = 0; i < shape.numGeometries(); i++) {
+	    Geometry geometry = shape.getGeometry(i);
+	    if (!(geometry instanceof GeometryArray)) {
+		throw new IllegalArgumentException(
+		    J3dUtilsI18N.getString("VirtualTextureBehavior0"));
+	    }
+	    GeometryArray ga = (GeometryArray) geometry;
+	    if ((ga.getVertexFormat() & GeometryArray.TEXTURE_COORDINATE_2) == 0) {
+		throw new IllegalArgumentException(
+		    J3dUtilsI18N.getString("VirtualTextureBehavior1"));
+	    }
+
+	    GeometryInfo gi = new GeometryInfo(ga);
+	    gi.convertToIndexedTriangles();
+	    Point3f[] coords = gi.getCoordinates();
+	    Object[] texCoords = gi.getTextureCoordinates(0);
+	    int[] coordIndices = gi.getCoordinateIndices();
+	    int[] texIndices = gi.getTextureCoordinateIndices(0);
+
+	    // one x y z s t vertex per triangle corner
+	    float[] vertices = new float[coordIndices.length * 5];
+	    for (int j = 0; j < coordIndices.length; j++) {
+		Point3f p = coords[coordIndices[j]];
+		TexCoord2f t = (TexCoord2f) texCoords[texIndices[j]];
+		vertices[j * 5] = p.x;
+		vertices[j * 5 + 1] = p.y;
+		vertices[j * 5 + 2] = p.z;
+		vertices[j * 5 + 3] = t.x;
+		vertices[j * 5 + 4] = t.y;
+	    }
+	    shapes.add(new ShapeData(shape, vertices));
+	}
+    }
+
+    /**
+     * Removes all the geometry of a shape added with addShape.
+     */
+    public void removeShape(Shape3D shape) {
+	for (int i = shapes.size() - 1; i >= 0; i--) {
+	    if (((ShapeData) shapes.get(i)).shape == shape) {
+		shapes.remove(i);
+	    }
+	}
+    }
+
+    /**
+     * Initializes the behavior to wake up every frame.
+     */
+    public void initialize() {
+	wakeupOn(condition);
+    }
+
+    /**
+     * Requests the tiles needed by the current view and updates the
+     * virtual texture.
+     */
+    public void processStimulus(Enumeration criteria) {
+	View view = canvas.getView();
+	if (view != null && canvas.getWidth() > 0 && canvas.getHeight() > 0) {
+	    canvas.getCenterEyeInImagePlate(eye);
+	    canvas.getImagePlateToVworld(transform);
+	    transform.transform(eye);
+	    direction.set(0.0, 0.0, -1.0);
+	    transform.transform(direction);
+	    direction.normalize();
+
+	    // a cone around the view direction containing the whole canvas
+	    double fov = view.getFieldOfView();
+	    double aspect = (double) canvas.getHeight() / canvas.getWidth();
+	    double halfAngle = Math.atan(Math.tan(0.5 * fov) *
+					 Math.sqrt(1.0 + aspect * aspect));
+	    cosHalfAngle = Math.cos(halfAngle);
+	    sinHalfAngle = Math.sin(halfAngle);
+	    pixelsPerRadian = canvas.getWidth() / fov;
+
+	    TilePyramid pyramid = virtualTexture.getTilePyramid();
+	    texelsPerUV = Math.sqrt((double) pyramid.getWidth(0) *
+				    pyramid.getHeight(0));
+	    tileUV = pyramid.getTileSize() / texelsPerUV;
+
+	    for (int i = 0; i < shapes.size(); i++) {
+		requestShape((ShapeData) shapes.get(i));
+	    }
+	}
+	virtualTexture.update();
+	wakeupOn(condition);
+    }
+
+    private void requestShape(ShapeData data) {
+	data.shape.getLocalToVworld(transform);
+	float[] vertices = data.vertices;
+	if (world.length < vertices.length) {
+	    world = new float[vertices.length];
+	}
+	for (int i = 0; i < vertices.length; i += 5) {
+	    point.set(vertices[i], vertices[i + 1], vertices[i + 2]);
+	    transform.transform(point);
+	    world[i] = (float) point.x;
+	    world[i + 1] = (float) point.y;
+	    world[i + 2] = (float) point.z;
+	    world[i + 3] = vertices[i + 3];
+	    world[i + 4] = vertices[i + 4];
+	}
+	for (int i = 0; i < vertices.length; i += 15) {
+	    System.arraycopy(world, i, stack[0], 0, 15);
+	    requestTriangle(0);
+	}
+    }
+
+    // requests the triangle at a depth of the stack, splitting it in 4
+    // if it covers too many tiles
+    private void requestTriangle(int depth) {
+	float[] v = stack[depth];
+
+	// bounding sphere around the centroid
+	double cx = (v[0] + v[5] + v[10]) / 3.0;
+	double cy = (v[1] + v[6] + v[11]) / 3.0;
+	double cz = (v[2] + v[7] + v[12]) / 3.0;
+	double radius = 0.0;
+	for (int i = 0; i < 15; i += 5) {
+	    double dx = v[i] - cx;
+	    double dy = v[i + 1] - cy;
+	    double dz = v[i + 2] - cz;
+	    radius = Math.max(radius, dx * dx + dy * dy + dz * dz);
+	}
+	radius = Math.sqrt(radius);
+
+	double dx = cx - eye.x;
+	double dy = cy - eye.y;
+	double dz = cz - eye.z;
+	double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+	boolean containsEye = distance <= radius;
+	if (!containsEye) {
+	    // outside of the view cone
+	    double along = dx * direction.x + dy * direction.y + dz * direction.z;
+	    double across = Math.sqrt(Math.max(0.0, distance * distance -
+						    along * along));
+	    if (along * sinHalfAngle - across * cosHalfAngle < -radius) {
+		return;
+	    }
+	}
+
+	float s0 = Math.min(v[3], Math.min(v[8], v[13]));
+	float t0 = Math.min(v[4], Math.min(v[9], v[14]));
+	float s1 = Math.max(v[3], Math.max(v[8], v[13]));
+	float t1 = Math.max(v[4], Math.max(v[9], v[14]));
+
+	int level = 0;
+	if (!containsEye) {
+	    // areas in texels of level 0 and in screen pixels, taking the
+	    // slant of the triangle into account
+	    double ex1 = v[5] - v[0], ey1 = v[6] - v[1], ez1 = v[7] - v[2];
+	    double ex2 = v[10] - v[0], ey2 = v[11] - v[1], ez2 = v[12] - v[2];
+	    double nx = ey1 * ez2 - ez1 * ey2;
+	    double ny = ez1 * ex2 - ex1 * ez2;
+	    double nz = ex1 * ey2 - ey1 * ex2;
+	    double area = Math.sqrt(nx * nx + ny * ny + nz * nz);
+	    double slant = area > 0.0 ?
+		Math.abs(nx * dx + ny * dy + nz * dz) / (area * distance) : 0.0;
+	    double pixels = 0.5 * area * Math.max(slant, 0.1) *
+		pixelsPerRadian * pixelsPerRadian / (distance * distance);
+	    double uvArea = 0.5 * Math.abs((v[8] - v[3]) * (v[14] - v[4]) -
+					   (v[13] - v[3]) * (v[9] - v[4]));
+	    double texels = uvArea * texelsPerUV * texelsPerUV;
+	    if (pixels > 0.0 && texels > pixels) {
+		level = (int) Math.floor(0.5 * Math.log(texels / pixels) /
+					 Math.log(2.0));
+	    }
+	}
+
+	double tiles = Math.max(s1 - s0, t1 - t0) / (tileUV * (1 << level));
+	if (depth < MAX_DEPTH && tiles > MAX_TILES) {
+	    // split at the middle of the edges, in 3 corner triangles
+	    // and the middle one
+	    float[] m = middles[depth];
+	    for (int i = 0; i < 5; i++) {
+		m[i] = 0.5f * (v[i] + v[5 + i]);
+		m[5 + i] = 0.5f * (v[5 + i] + v[10 + i]);
+		m[10 + i] = 0.5f * (v[10 + i] + v[i]);
+	    }
+	    float[] child = stack[depth + 1];
+	    for (int corner = 0; corner < 3; corner++) {
+		int prev = (corner + 2) % 3;
+		System.arraycopy(v, corner * 5, child, 0, 5);
+		System.arraycopy(m, corner * 5, child, 5, 5);
+		System.arraycopy(m, prev * 5, child, 10, 5);
+		requestTriangle(depth + 1);
+	    }
+	    System.arraycopy(m, 0, child, 0, 15);
+	    requestTriangle(depth + 1);
+	} else {
+	    virtualTexture.requestRegion(level, s0, t0, s1, t1);
+	}
+    }
+
+
+    /**
+     * The triangles of a shape, with their texture coordinates.
+     */
+    private static class ShapeData {
+	final Shape3D shape;
+	final float[] vertices;
+
+	ShapeData(Shape3D shape, float[] vertices) {
+	    this.shape = shape;
+	    this.vertices = vertices;
+	}
+    }
+}
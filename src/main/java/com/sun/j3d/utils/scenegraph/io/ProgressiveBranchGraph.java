@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.scenegraph.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.media.j3d.BranchGroup;
+import javax.media.j3d.Shape3D;
+import com.sun.j3d.utils.scenegraph.io.retained.StreamControl;
+
+/**
+ * A BranchGraph that is being read from a stream written by
+ * <code>SceneGraphStreamWriter.writeProgressiveBranchGraph</code>.<p>
+ *
+ * The graph returned by <code>getBranchGraph</code> is complete apart
+ * from the appearance and geometry of its Shape3Ds, which are drawn as
+ * boxes filling the bounds of each shape. It can be added to a live scene
+ * straight away. Each call to <code>refine</code> reads the appearance and
+ * geometry of one more Shape3D from the stream and replaces the box with
+ * them, so the scene fills in as the stream arrives.<p>
+ *
+ * By default the stream is read by the thread calling <code>refine</code>.
+ * <code>readInBackground</code> starts a thread which reads ahead of the
+ * calls to <code>refine</code>, up to a fixed number of shapes. When
+ * that many shapes are waiting the thread stops reading the stream, so a
+ * slow consumer slows down the writer instead of using more memory.<p>
+ *
+ * The SceneGraphStreamReader this graph was read from finishes reading
+ * this graph before reading anything else from the stream.
+ *
+ * @see SceneGraphStreamReader#readProgressiveBranchGraph
+ * @see SceneGraphStreamWriter#writeProgressiveBranchGraph
+ *
+ * @since Java 3D 1.6
+ */
+public class ProgressiveBranchGraph extends java.lang.Object {
+    
+    // Put in the buffer after the last shape
+    private static final Object END = new Object();
+    
+    private StreamControl control;
+    private BranchGroup graph;
+    private int shapeCount;
+    private volatile int refinedCount = 0;
+    private volatile boolean complete;
+    private IOException failure = null;
+    
+    // Shapes read by the background thread, followed by END or the
+    // exception that stopped the thread
+    private BlockingQueue buffer = null;
+    private Thread readThread = null;
+    
+    ProgressiveBranchGraph( StreamControl control, BranchGroup graph ) {
+        this.control = control;
+        this.graph = graph;
+        shapeCount = Math.max( control.getPendingShapeCount(), 0 );
+        complete = control.getPendingShapeCount()==-1;
+    }
+    
+    /**
+     * Return the root of the graph
+     */
+    public BranchGroup getBranchGraph() {
+        return graph;
+    }
+    
+    /**
+     * Return the number of Shape3Ds in the graph whose appearance and
+     * geometry follow the outline of the graph in the stream
+     */
+    public int getShapeCount() {
+        return shapeCount;
+    }
+    
+    /**
+     * Return the number of Shape3Ds whose appearance and geometry have
+     * been set
+     */
+    public int getRefinedShapeCount() {
+        return refinedCount;
+    }
+    
+    /**
+     * Returns true once the whole graph has been read, including the
+     * namedObjects passed to <code>readProgressiveBranchGraph</code>
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    /**
+     * Read the appearance and geometry of the next Shape3D and set them
+     * in the shape, waiting for them to arrive if necessary.<p>
+     *
+     * The Shape3Ds have the ALLOW_APPEARANCE_WRITE and
+     * ALLOW_GEOMETRY_WRITE capabilities set, so this may be called when the
+     * graph is live.
+     *
+     * If the stream can not be read, the exception is thrown by this and
+     * every later call, exceptions other than IOException being wrapped in
+     * an IOException.
+     *
+     * @return the Shape3D that has been refined, or null when the graph
+     * is complete
+     */
+    public synchronized Shape3D refine() throws IOException {
+        if (failure!=null)
+            throw failure;
+        if (complete)
+            return null;
+        
+        Object item;
+        if (buffer==null) {
+            try {
+                item = control.readShapeContent();
+            } catch( IOException e ) {
+                item = e;
+            } catch( RuntimeException e ) {
+                item = e;
+            } catch( Error e ) {
+                item = e;
+            }
+        } else
+            item = takeItem();
+        
+        if (item==null || item==END) {
+            complete = true;
+            return null;
+        }
+        
+        // The rest of the stream can't be read after a failure, so keep
+        // throwing it
+        if (item instanceof IOException) {
+            failure = (IOException)item;
+            throw failure;
+        } else if (item instanceof Throwable) {
+            failure = new IOException( item.toString(), (Throwable)item );
+            throw failure;
+        }
+        
+        StreamControl.ShapeContent content = (StreamControl.ShapeContent)item;
+        content.apply();
+        refinedCount++;
+        return content.getShape();
+    }
+    
+    /**
+     * Refine all the remaining Shape3Ds
+     */
+    public void refineAll() throws IOException {
+        while( refine()!=null ) {
+        }
+    }
+    
+    /**
+     * Start a thread which reads the remaining Shape3Ds ahead of the calls to
+     * <code>refine</code>. At most <code>bufferSize</code> shapes wait in
+     * the buffer, plus the one the thread has just read and is waiting to
+     * add to it, so up to <code>bufferSize+1</code> shapes may have been
+     * read but not refined.
+     *
+     * @exception IllegalArgumentException if bufferSize is less than 1
+     */
+    public synchronized void readInBackground( int bufferSize ) {
+        if (bufferSize<1)
+            throw new IllegalArgumentException( "bufferSize must be at least 1" );
+        if (buffer!=null || complete || failure!=null)
+            return;
+        
+        buffer = new ArrayBlockingQueue( bufferSize );
+        readThread = new Thread( new Runnable() {
+            public void run() {
+                readContent();
+            }
+        }, "J3D-SceneGraphStreamReader" );
+        readThread.setDaemon( true );
+        readThread.start();
+    }
+    
+    private void readContent() {
+        try {
+            try {
+                StreamControl.ShapeContent content;
+                while( (content=control.readShapeContent())!=null )
+                    buffer.put( content );
+                buffer.put( END );
+            } catch( IOException e ) {
+                buffer.put( e );
+            } catch( RuntimeException e ) {
+                buffer.put( e );
+            } catch( Error e ) {
+                buffer.put( e );
+            }
+        } catch( InterruptedException e ) {
+            // Stopped when the reader was closed, drop the shapes waiting in
+            // the buffer so a thread waiting in refine() is woken up
+            buffer.clear();
+            buffer.offer( new InterruptedIOException( "SceneGraphStreamReader closed" ) );
+        }
+    }
+    
+    /**
+     * Take the next item from the buffer. An interrupt of the calling
+     * thread is not a failure of the stream, so it is thrown here rather
+     * than returned.
+     */
+    private Object takeItem() throws IOException {
+        try {
+            return buffer.take();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while reading BranchGraph" );
+        }
+    }
+    
+    /**
+     * Stop the background thread
+     */
+    void stop() {
+        if (readThread!=null)
+            readThread.interrupt();
+    }
+}
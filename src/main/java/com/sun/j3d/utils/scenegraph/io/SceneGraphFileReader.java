@@ -41,6 +41,12 @@ package com.sun.j3d.utils.scenegraph.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.media.j3d.VirtualUniverse;
 import javax.media.j3d.BranchGroup;
@@ -59,12 +65,33 @@ public class SceneGraphFileReader extends java.lang.Object {
 
     private RandomAccessFileControl fileControl;
     
+    // The thread loading branchgraphs in the background, and the graphs
+    // it has been asked to load keyed by index
+    private ExecutorService loader = null;
+    private HashMap backgroundGraphs = new HashMap();
+    
     /**
      * Creates new SceneGraphFileReader.
      */
     public SceneGraphFileReader( java.io.File file ) throws IOException {
+        this( file, false );
+    }
+
+    /**
+     * Creates new SceneGraphFileReader, optionally memory mapping the file.<p>
+     *
+     * A memory mapped file is read from the mapping instead of with a
+     * system call for each value, which is much faster for large files,
+     * at the cost of address space for the whole file.
+     *
+     * @param file the file to read
+     * @param memoryMapped true to memory map the file
+     *
+     * @since Java 3D 1.6
+     */
+    public SceneGraphFileReader( java.io.File file, boolean memoryMapped ) throws IOException {
         fileControl = new RandomAccessFileControl();
-        fileControl.openFile( file );
+        fileControl.openFile( file, memoryMapped );
     }
 
     /**
@@ -78,7 +105,7 @@ public class SceneGraphFileReader extends java.lang.Object {
      * to the universe.
      * @see ConfiguredUniverse#getConfigURL
      */
-    public ConfiguredUniverse readUniverse(boolean attachBranchGraphs ) throws IOException {
+    public synchronized ConfiguredUniverse readUniverse(boolean attachBranchGraphs ) throws IOException {
         return fileControl.readUniverse( attachBranchGraphs, null );
     }
 
@@ -108,7 +135,7 @@ public class SceneGraphFileReader extends java.lang.Object {
      * to the universe.
      * @param canvas The canvas to be associated with the Universe.
      */
-    public ConfiguredUniverse readUniverse(boolean attachBranchGraphs,
+    public synchronized ConfiguredUniverse readUniverse(boolean attachBranchGraphs,
 					   Canvas3D canvas) throws IOException {
         return fileControl.readUniverse( attachBranchGraphs, canvas );
     }
@@ -123,7 +150,7 @@ public class SceneGraphFileReader extends java.lang.Object {
     /**
      * Get the Description of this file's contents
      */
-    public String readDescription() throws IOException {
+    public synchronized String readDescription() throws IOException {
         return fileControl.readFileDescription();
     }
     
@@ -149,13 +176,82 @@ public class SceneGraphFileReader extends java.lang.Object {
      *
      */
     public BranchGroup[] readBranchGraph(int index) throws IOException {
-        return fileControl.readBranchGraph( index );
+        Future graph;
+        synchronized( this ) {
+            graph = (Future)backgroundGraphs.remove( new Integer(index) );
+            if (graph==null)
+                return fileControl.readBranchGraph( index );
+        }
+        return waitForGraph( graph );
+    }
+    
+    /**
+     * Start reading the BranchGraph at index in a background thread and
+     * return immediately. A later call to <code>readBranchGraph( index )</code>
+     * returns the graph, waiting for it if it isn't loaded yet, and throws
+     * any exception raised while loading it.<p>
+     *
+     * The graphs are read one at a time in the order they are requested,
+     * in a single thread per reader. The other methods of this reader
+     * wait while the background thread is reading the file.
+     *
+     * @param index The index of the Graph in the file. First graph is at index 0
+     *
+     * @see #readBranchGraph( int index )
+     *
+     * @since Java 3D 1.6
+     */
+    public synchronized void loadBranchGraphInBackground( final int index ) {
+        Integer key = new Integer(index);
+        if (backgroundGraphs.containsKey( key ))
+            return;
+        
+        if (loader==null) {
+            loader = Executors.newSingleThreadExecutor( new ThreadFactory() {
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "J3D-SceneGraphFileReader" );
+                    t.setDaemon( true );
+                    return t;
+                }
+            });
+        }
+        
+        backgroundGraphs.put( key, loader.submit( new java.util.concurrent.Callable() {
+            public Object call() throws IOException {
+                synchronized( SceneGraphFileReader.this ) {
+                    if (loader.isShutdown())
+                        throw new IOException( "SceneGraphFileReader closed" );
+                    return fileControl.readBranchGraph( index );
+                }
+            }
+        }));
+    }
+    
+    private BranchGroup[] waitForGraph( Future graph ) throws IOException {
+        try {
+            return (BranchGroup[])graph.get();
+        } catch( InterruptedException e ) {
+            graph.cancel( false );
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException( "Interrupted while loading BranchGraph" );
+        } catch( java.util.concurrent.CancellationException e ) {
+            throw new IOException( "SceneGraphFileReader closed before the BranchGraph was loaded" );
+        } catch( java.util.concurrent.ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new IOException( cause.getMessage() );
+        }
     }
     
     /**
      * Read and return all the branchgraphs in the file
      */
-    public BranchGroup[] readAllBranchGraphs() throws IOException {
+    public synchronized BranchGroup[] readAllBranchGraphs() throws IOException {
         return fileControl.readAllBranchGraphs();
     }
     
@@ -177,7 +273,7 @@ public class SceneGraphFileReader extends java.lang.Object {
      * Given a BranchGraph that has been loaded return the index of the
      * graph in the file.  The the Branchgroup isn't found, -1 is returned.
      */
-    public int getBranchGraphPosition( BranchGroup graph ) {
+    public synchronized int getBranchGraphPosition( BranchGroup graph ) {
 	return fileControl.getBranchGraphPosition( graph );
     }
     
@@ -186,14 +282,14 @@ public class SceneGraphFileReader extends java.lang.Object {
      *
      * @param index the index of the graph in the file
      */
-    public Object readBranchGraphUserData( int index ) throws IOException {
+    public synchronized Object readBranchGraphUserData( int index ) throws IOException {
         return fileControl.readBranchGraphUserData( index );
     }
     
     /**
      * Return the names of all the named objects
      */
-    public String[] getNames() {
+    public synchronized String[] getNames() {
         return fileControl.getNames();
     }
     
@@ -205,14 +301,30 @@ public class SceneGraphFileReader extends java.lang.Object {
      * @exception NamedObjectException is thrown if the name is not known to the system
      * @exception ObjectNotLoadedException is thrown if the named object has not been loaded yet
      */
-    public SceneGraphObject getNamedObject( String name ) throws NamedObjectException, ObjectNotLoadedException {
+    public synchronized SceneGraphObject getNamedObject( String name ) throws NamedObjectException, ObjectNotLoadedException {
         return fileControl.getNamedObject( name );
     }
     
     /**
-     * Close the file and cleanup internal data structures
+     * Close the file and cleanup internal data structures. BranchGraphs
+     * waiting to be loaded in the background are not loaded, and
+     * <code>readBranchGraph</code> throws an IOException for them.
      */
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
+        // Cancel the graphs still queued, including those a thread
+        // is already waiting for in readBranchGraph
+        if (loader!=null) {
+            Iterator it = loader.shutdownNow().iterator();
+            while( it.hasNext() ) {
+                Object task = it.next();
+                if (task instanceof Future)
+                    ((Future)task).cancel( false );
+            }
+        }
+        Iterator it = backgroundGraphs.values().iterator();
+        while( it.hasNext() )
+            ((Future)it.next()).cancel( false );
+        backgroundGraphs.clear();
         fileControl.close();
     }
     
@@ -60,6 +60,9 @@ import com.sun.j3d.utils.universe.SimpleUniverse;
  * graphs. It will handle all Java3D 1.3 core classes and any user
  * subclass of a Node or NodeComponent that implements the SceneGraphIO
  * interface.
+ *
+ * Geometry arrays are written uncompressed unless the system property
+ * <code>j3d.io.GeometryCompression</code> is set to <code>Fast</code>.
  */
 public class SceneGraphFileWriter extends java.lang.Object {
 
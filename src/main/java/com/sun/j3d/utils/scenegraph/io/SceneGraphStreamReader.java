@@ -57,6 +57,9 @@ public class SceneGraphStreamReader extends java.lang.Object {
     
     private StreamControl control;
     private DataInputStream in;
+    
+    // The progressive graph which is still being read from the stream
+    private ProgressiveBranchGraph progressiveGraph = null;
 
     /** Creates new SceneGraphStreamReader and reads the file header information */
     public SceneGraphStreamReader( InputStream stream ) throws IOException {
@@ -70,6 +73,7 @@ public class SceneGraphStreamReader extends java.lang.Object {
      * they will be added to the universe before it is returned.
      */
     public ConfiguredUniverse readUniverse() throws IOException {
+        finishProgressiveGraph();
         return control.readUniverse(in, true, null);
     }
     
@@ -79,6 +83,7 @@ public class SceneGraphStreamReader extends java.lang.Object {
      * @param canvas The Canvas3D to associate with the universe.
      */
     public ConfiguredUniverse readUniverse(Canvas3D canvas) throws IOException {
+        finishProgressiveGraph();
         return control.readUniverse(in, true, canvas);
     }
     
@@ -88,8 +93,44 @@ public class SceneGraphStreamReader extends java.lang.Object {
      * were named during the write process
      */
     public BranchGroup readBranchGraph( HashMap namedObjects ) throws IOException {
+        finishProgressiveGraph();
         return control.readBranchGraph( namedObjects );
     }
+    
+    /**
+     * Read the outline of the next graph in the stream and return it
+     * without waiting for the appearance and geometry of its Shape3Ds.<p>
+     *
+     * The graph can be made live straight away. Placeholder boxes in the
+     * Shape3Ds are replaced as the rest of the graph is read, see
+     * ProgressiveBranchGraph. <code>namedObjects</code> map will be updated
+     * with any objects that were named during the write process once the
+     * whole graph has been read.<p>
+     *
+     * If the graph was written with <code>writeBranchGraph</code> it is
+     * read completely before it is returned.
+     *
+     * @see SceneGraphStreamWriter#writeProgressiveBranchGraph
+     *
+     * @since Java 3D 1.6
+     */
+    public ProgressiveBranchGraph readProgressiveBranchGraph( HashMap namedObjects ) throws IOException {
+        finishProgressiveGraph();
+        BranchGroup graph = control.readProgressiveBranchGraph( namedObjects );
+        progressiveGraph = new ProgressiveBranchGraph( control, graph );
+        return progressiveGraph;
+    }
+    
+    /**
+     * Read the rest of the progressive graph, if any, so the stream is at
+     * the start of the next graph
+     */
+    private void finishProgressiveGraph() throws IOException {
+        if (progressiveGraph!=null) {
+            progressiveGraph.refineAll();
+            progressiveGraph = null;
+        }
+    }
 
     /** 
       * Set the ClassLoader used to load the scene graph objects and
@@ -113,6 +154,8 @@ public class SceneGraphStreamReader extends java.lang.Object {
      * @since Java 3D 1.5.1
      */
     public void close() throws IOException {
+        if (progressiveGraph!=null)
+            progressiveGraph.stop();
         in.close();
         control.close();
     }
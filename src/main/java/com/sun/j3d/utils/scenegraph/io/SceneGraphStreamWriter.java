@@ -54,7 +54,9 @@ import com.sun.j3d.utils.universe.SimpleUniverse;
 /**
  * Writes a Java3D SceneGraph to a Java OutputStream.<p>
  * Using this class to write to a FileOutputStream is not recommended.  Use
- * SceneGraphFileWriter instead to achieve maximum performance and flexibility.
+ * SceneGraphFileWriter instead to achieve maximum performance and flexibility.<p>
+ * Geometry arrays are written uncompressed unless the system property
+ * <code>j3d.io.GeometryCompression</code> is set to <code>Fast</code>.
  */
 public class SceneGraphStreamWriter extends java.lang.Object {
     
@@ -113,6 +115,32 @@ public class SceneGraphStreamWriter extends java.lang.Object {
         control.writeBranchGraph( graph, null );
     }
     
+    /**
+     * Write the entire graph to the stream so that it can be displayed
+     * while it is being read.<p>
+     *
+     * The graph is written as with <code>writeBranchGraph</code> except that
+     * the appearance and geometry of each Shape3D are replaced by a box
+     * filling the bounds of the shape. The appearance and geometry of each
+     * Shape3D follow, largest shapes first, along with any NodeComponents
+     * they use which have not already been written. The stream is
+     * flushed after the outline of the graph and after each Shape3D.
+     * Primitives are rebuilt from their parameters when they are read, so
+     * they are written in full in the outline.<p>
+     *
+     * The graph can be read with
+     * <code>SceneGraphStreamReader.readProgressiveBranchGraph</code>, or
+     * completely with <code>readBranchGraph</code>.
+     *
+     * @see ProgressiveBranchGraph
+     *
+     * @since Java 3D 1.6
+     */
+    public void writeProgressiveBranchGraph( BranchGroup graph, HashMap namedObjects ) throws IOException, DanglingReferenceException, NamedObjectException {
+        control.addNamedObjects( namedObjects );
+        control.writeProgressiveBranchGraph( graph );
+    }
+    
     /** 
      * Close the SceneGraphStreamWriter and the associated stream
      */
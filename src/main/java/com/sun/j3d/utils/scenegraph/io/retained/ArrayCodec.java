@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.scenegraph.io.retained;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.sun.j3d.internal.ParallelLoop;
+
+/**
+ * Encodes the float, double and int arrays of geometry and images.
+ *
+ * Each array is written as the size of a block followed by the block so
+ * the reader can skip it. Before file version 6 the block holds the
+ * number of elements (except for int arrays) and the elements written
+ * one at a time with DataOutput. From version 6 the block starts with an
+ * encoding byte and the number of elements, followed by
+ *
+ * RAW - the elements in big endian order, written and read in bulk
+ * through ByteBuffer views
+ *
+ * DEFLATE - the elements split in chunks, the bytes of each chunk
+ * shuffled so the n-th bytes of all the elements are together and then
+ * deflated, the chunks being compressed and decompressed in parallel
+ *
+ * DELTA_VARINT - int arrays only, the zigzag encoded difference to the
+ * previous element as a variable length integer, which suits index arrays
+ */
+public class ArrayCodec {
+    
+    /**
+     * Write arrays without compression
+     */
+    public static final int NO_COMPRESSION = 0;
+    
+    /**
+     * Compress float and double arrays with DEFLATE and int arrays
+     * with DELTA_VARINT
+     */
+    public static final int FAST_COMPRESSION = 1;
+    
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+    private static final byte DELTA_VARINT = 2;
+    
+    // Number of elements in a compressed chunk
+    private static final int CHUNK_SIZE = 1<<16;
+    
+    // Arrays smaller than this are always RAW
+    private static final int MIN_COMPRESSED_SIZE = 64;
+    
+    private ArrayCodec() {
+    }
+    
+    public static void writeFloatArray( DataOutput out, float[] array, int compression ) throws IOException {
+        ByteBuffer raw = ByteBuffer.allocate( array.length*4 );
+        raw.asFloatBuffer().put( array );
+        writeBlock( out, raw.array(), 4, array.length, compression );
+    }
+    
+    public static void writeDoubleArray( DataOutput out, double[] array, int compression ) throws IOException {
+        ByteBuffer raw = ByteBuffer.allocate( array.length*8 );
+        raw.asDoubleBuffer().put( array );
+        writeBlock( out, raw.array(), 8, array.length, compression );
+    }
+    
+    public static void writeIntArray( DataOutput out, int[] array, int compression ) throws IOException {
+        if (compression!=NO_COMPRESSION && array.length>=MIN_COMPRESSED_SIZE) {
+            byte[] bytes = new byte[ 5+5*array.length ];
+            ByteBuffer buf = ByteBuffer.wrap( bytes );
+            buf.put( DELTA_VARINT );
+            buf.putInt( array.length );
+            int pos = buf.position();
+            int prev = 0;
+            for(int i=0; i<array.length; i++) {
+                int delta = array[i]-prev;
+                int v = (delta<<1) ^ (delta>>31);
+                while( (v & ~0x7f)!=0 ) {
+                    bytes[pos++] = (byte)((v & 0x7f) | 0x80);
+                    v >>>= 7;
+                }
+                bytes[pos++] = (byte)v;
+                prev = array[i];
+            }
+            out.writeInt( pos );
+            out.write( bytes, 0, pos );
+        } else {
+            ByteBuffer raw = ByteBuffer.allocate( array.length*4 );
+            raw.asIntBuffer().put( array );
+            writeBlock( out, raw.array(), 4, array.length, NO_COMPRESSION );
+        }
+    }
+    
+    public static float[] readFloatArray( DataInput in, boolean tagged ) throws IOException {
+        ByteBuffer block = readBlock( in );
+        byte encoding = tagged ? block.get() : RAW;
+        float[] array = new float[ block.getInt() ];
+        decodeBlock( block, encoding, 4, array.length ).asFloatBuffer().get( array );
+        return array;
+    }
+    
+    public static double[] readDoubleArray( DataInput in, boolean tagged ) throws IOException {
+        ByteBuffer block = readBlock( in );
+        byte encoding = tagged ? block.get() : RAW;
+        double[] array = new double[ block.getInt() ];
+        decodeBlock( block, encoding, 8, array.length ).asDoubleBuffer().get( array );
+        return array;
+    }
+    
+    /**
+     * Read array.length ints into array
+     */
+    public static void readIntArray( DataInput in, int[] array, boolean tagged ) throws IOException {
+        ByteBuffer block = readBlock( in );
+        byte encoding = RAW;
+        int count = block.remaining()/4;
+        if (tagged) {
+            encoding = block.get();
+            count = block.getInt();
+        }
+        if (count!=array.length)
+            throw new SGIORuntimeException( "Incorrect array length - file corrupt" );
+        
+        if (encoding==DELTA_VARINT) {
+            int prev = 0;
+            for(int i=0; i<count; i++) {
+                int v = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = block.get();
+                    v |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while( b<0 );
+                prev += (v>>>1) ^ -(v & 1);
+                array[i] = prev;
+            }
+        } else
+            decodeBlock( block, encoding, 4, count ).asIntBuffer().get( array );
+    }
+    
+    /**
+     * Write the elements in raw, big endian bytes of the given width
+     */
+    private static void writeBlock( DataOutput out, byte[] raw, int width, int count, int compression ) throws IOException {
+        if (compression==NO_COMPRESSION || count<MIN_COMPRESSED_SIZE) {
+            out.writeInt( 5+raw.length );
+            out.writeByte( RAW );
+            out.writeInt( count );
+            out.write( raw );
+            return;
+        }
+        
+        byte[][] chunks = deflate( raw, width, count );
+        int size = 9+4*chunks.length;
+        for(int i=0; i<chunks.length; i++)
+            size += chunks[i].length;
+        
+        out.writeInt( size );
+        out.writeByte( DEFLATE );
+        out.writeInt( count );
+        out.writeInt( chunks.length );
+        for(int i=0; i<chunks.length; i++)
+            out.writeInt( chunks[i].length );
+        for(int i=0; i<chunks.length; i++)
+            out.write( chunks[i] );
+    }
+    
+    private static byte[][] deflate( final byte[] raw, final int width, final int count ) {
+        final byte[][] chunks = new byte[ (count+CHUNK_SIZE-1)/CHUNK_SIZE ][];
+        
+        ParallelLoop.run( 0, chunks.length, 1, ParallelLoop.getDefaultParallelism(),
+                          new ParallelLoop.Body() {
+            public void run( int start, int end ) {
+                Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+                byte[] buffer = new byte[ 8192 ];
+                for(int c=start; c<end; c++) {
+                    int first = c*CHUNK_SIZE;
+                    int n = Math.min( CHUNK_SIZE, count-first );
+                    byte[] shuffled = new byte[ n*width ];
+                    for(int i=0; i<n; i++)
+                        for(int k=0; k<width; k++)
+                            shuffled[ k*n+i ] = raw[ (first+i)*width+k ];
+                    
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream( shuffled.length/2 );
+                    deflater.reset();
+                    deflater.setInput( shuffled );
+                    deflater.finish();
+                    while( !deflater.finished() ) {
+                        int len = deflater.deflate( buffer );
+                        bytes.write( buffer, 0, len );
+                    }
+                    chunks[c] = bytes.toByteArray();
+                }
+                deflater.end();
+            }
+        });
+        
+        return chunks;
+    }
+    
+    /**
+     * Return the raw elements of the block, positioned after the count
+     */
+    private static ByteBuffer decodeBlock( ByteBuffer block, byte encoding, final int width, final int count ) {
+        if (encoding==RAW)
+            return block.slice();
+        if (encoding!=DEFLATE)
+            throw new SGIORuntimeException( "Unknown array encoding - file corrupt" );
+        
+        final byte[][] chunks = new byte[ block.getInt() ][];
+        for(int c=0; c<chunks.length; c++)
+            chunks[c] = new byte[ block.getInt() ];
+        for(int c=0; c<chunks.length; c++)
+            block.get( chunks[c] );
+        
+        final byte[] raw = new byte[ count*width ];
+        ParallelLoop.run( 0, chunks.length, 1, ParallelLoop.getDefaultParallelism(),
+                          new ParallelLoop.Body() {
+            public void run( int start, int end ) {
+                Inflater inflater = new Inflater();
+                try {
+                    for(int c=start; c<end; c++) {
+                        int first = c*CHUNK_SIZE;
+                        int n = Math.min( CHUNK_SIZE, count-first );
+                        byte[] shuffled = new byte[ n*width ];
+                        inflater.reset();
+                        inflater.setInput( chunks[c] );
+                        int len = 0;
+                        while( len<shuffled.length && !inflater.finished() ) {
+                            int r = inflater.inflate( shuffled, len, shuffled.length-len );
+                            if (r==0 && inflater.needsInput())
+                                break;
+                            len += r;
+                        }
+                        if (len!=shuffled.length)
+                            throw new SGIORuntimeException( "Truncated array - file corrupt" );
+                        
+                        for(int i=0; i<n; i++)
+                            for(int k=0; k<width; k++)
+                                raw[ (first+i)*width+k ] = shuffled[ k*n+i ];
+                    }
+                } catch( DataFormatException e ) {
+                    throw new SGIORuntimeException( "Corrupt array data "+e.getMessage() );
+                } finally {
+                    inflater.end();
+                }
+            }
+        });
+        
+        return ByteBuffer.wrap( raw );
+    }
+    
+    /**
+     * Read the size of a block and return the block, shared with the file
+     * mapping if the input is a memory mapped file
+     */
+    private static ByteBuffer readBlock( DataInput in ) throws IOException {
+        int size = in.readInt();
+        if (in instanceof MappedFileInput)
+            return ((MappedFileInput)in).readBuffer( size );
+        
+        byte[] bytes = new byte[ size ];
+        in.readFully( bytes );
+        return ByteBuffer.wrap( bytes );
+    }
+}
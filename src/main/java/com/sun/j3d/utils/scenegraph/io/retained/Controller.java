@@ -57,6 +57,7 @@ import javax.media.j3d.Bounds;
 import javax.media.j3d.BranchGroup;
 import javax.media.j3d.Canvas3D;
 import javax.media.j3d.CapabilityNotSetException;
+import javax.media.j3d.Geometry;
 import javax.media.j3d.SceneGraphObject;
 import javax.media.j3d.SharedGroup;
 import javax.media.j3d.Transform3D;
@@ -119,8 +120,10 @@ public abstract class Controller extends java.lang.Object {
      * 3 = Java3D 1.5.1    1) Add support for SceneGraphObject Name field
      * 4 = Java3D 1.5.2    issue 532, for saving Background Geometry
      * 5 = Java3D 1.5.2+   issue 654, for saving required SpotLight attributes
+     * 6 = Java3D 1.6      Encoding byte and optional compression for
+                              geometry arrays and image rasters
      */
-    protected int outputFileVersion = 5;
+    protected int outputFileVersion = 6;
 
     /**
      * When running the application within webstart this may not be the 
@@ -144,6 +147,8 @@ public abstract class Controller extends java.lang.Object {
         
     private int imageCompression = ImageComponentState.NO_COMPRESSION;
     
+    private int geometryCompression = ArrayCodec.NO_COMPRESSION;
+    
     /** Creates new Controller */
     public Controller() {
         try {
@@ -159,6 +164,14 @@ public abstract class Controller extends java.lang.Object {
                 else if (imageC.equalsIgnoreCase("JPEG"))
                     imageCompression = ImageComponentState.JPEG_COMPRESSION;
             }
+            
+            String geometryC = System.getProperty("j3d.io.GeometryCompression");
+            if (geometryC!=null) {
+                if (geometryC.equalsIgnoreCase("None"))
+                    geometryCompression = ArrayCodec.NO_COMPRESSION;
+                else if (geometryC.equalsIgnoreCase("Fast"))
+                    geometryCompression = ArrayCodec.FAST_COMPRESSION;
+            }
         } catch( Exception e ) {}
         
     }
@@ -319,8 +332,13 @@ public abstract class Controller extends java.lang.Object {
     }
     
     public SceneGraphObjectState readObject( DataInput in ) throws IOException {
-        int classID = in.readInt();
-
+        return readObject( in, in.readInt() );
+    }
+    
+    /**
+     * Read the object whose class id has already been read from in
+     */
+    protected SceneGraphObjectState readObject( DataInput in, int classID ) throws IOException {
         SceneGraphObjectState state = null;
         
         if (classID==-1)
@@ -943,6 +961,25 @@ public abstract class Controller extends java.lang.Object {
     public int getImageCompression() {
         return imageCompression;
     }
+    
+    /**
+     * Return the Geometry to write in place of the geometry and appearance
+     * of the Shape3D in symbol, or null to write the Shape3D in full.
+     *
+     * StreamControl writes placeholders in the outline of a progressive
+     * BranchGraph, this implementation always returns null
+     */
+    public Geometry getPlaceholderGeometry( SymbolTableData symbol ) {
+        return null;
+    }
+    
+    /**
+     * Returns the compression of geometry arrays
+     * ArrayCodec.NO_COMPRESSION or ArrayCodec.FAST_COMPRESSION
+     */
+    public int getGeometryCompression() {
+        return geometryCompression;
+    }
      
 
     /** 
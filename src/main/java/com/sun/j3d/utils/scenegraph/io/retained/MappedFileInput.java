@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2007 Sun Microsystems, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in
+ *   the documentation and/or other materials provided with the
+ *   distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any
+ * kind. ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND
+ * WARRANTIES, INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY
+ * EXCLUDED. SUN MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL
+ * NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF
+ * USING, MODIFYING OR DISTRIBUTING THIS SOFTWARE OR ITS
+ * DERIVATIVES. IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR
+ * ANY LOST REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL,
+ * CONSEQUENTIAL, INCIDENTAL OR PUNITIVE DAMAGES, HOWEVER CAUSED AND
+ * REGARDLESS OF THE THEORY OF LIABILITY, ARISING OUT OF THE USE OF OR
+ * INABILITY TO USE THIS SOFTWARE, EVEN IF SUN HAS BEEN ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed, licensed or
+ * intended for use in the design, construction, operation or
+ * maintenance of any nuclear facility.
+ *
+ */
+
+package com.sun.j3d.utils.scenegraph.io.retained;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read only DataInput over a memory mapped file, with the seek and
+ * getFilePointer methods of RandomAccessFile.
+ *
+ * RandomAccessFile reads each primitive with a system call, which makes
+ * the DataInput based scene graph reader slow on large files. The file is
+ * mapped in segments of up to 1GB so files larger than 2GB can be read,
+ * each segment overlapping the next one by a few bytes so a primitive
+ * never straddles two segments.
+ */
+class MappedFileInput implements DataInput {
+    
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final int SEGMENT_OVERLAP = 8;
+    
+    private RandomAccessFile file;
+    private ByteBuffer[] segments;
+    private long length;
+    
+    // The segment holding the current position and the position of the
+    // start of that segment
+    private ByteBuffer current;
+    private long currentStart;
+    
+    /** Map file for reading */
+    public MappedFileInput( File f ) throws IOException {
+        file = new RandomAccessFile( f, "r" );
+        try {
+            FileChannel channel = file.getChannel();
+            length = channel.size();
+            
+            int count = (int)((length+SEGMENT_SIZE-1) >> SEGMENT_SHIFT);
+            segments = new ByteBuffer[ Math.max( count, 1 ) ];
+            for(int i=0; i<count; i++) {
+                long start = (long)i << SEGMENT_SHIFT;
+                long size = Math.min( SEGMENT_SIZE+SEGMENT_OVERLAP, length-start );
+                segments[i] = channel.map( FileChannel.MapMode.READ_ONLY, start, size );
+            }
+            if (count==0)
+                segments[0] = ByteBuffer.allocate( 0 );
+        } catch( IOException e ) {
+            file.close();
+            throw e;
+        }
+        
+        seek( 0 );
+    }
+    
+    /**
+     * Set the position of the next read
+     */
+    public void seek( long pos ) throws IOException {
+        if (segments==null)
+            throw new IOException( "Stream Closed" );
+        if (pos<0 || pos>length)
+            throw new IOException( "Seek outside of the file "+pos );
+        
+        int index = (int)(pos >> SEGMENT_SHIFT);
+        if (index==segments.length)
+            index--;            // End of a file which is a multiple of SEGMENT_SIZE
+        
+        current = segments[index];
+        currentStart = (long)index << SEGMENT_SHIFT;
+        current.position( (int)(pos-currentStart) );
+    }
+    
+    /**
+     * Return the position of the next read
+     */
+    public long getFilePointer() {
+        return currentStart + current.position();
+    }
+    
+    public long length() {
+        return length;
+    }
+    
+    /**
+     * Return a buffer holding the next size bytes and move the file pointer
+     * past them. The buffer shares the content of the mapped file if it
+     * fits in a segment, otherwise the bytes are copied.
+     */
+    public ByteBuffer readBuffer( int size ) throws IOException {
+        if (getFilePointer()+size>length)
+            throw new EOFException();
+
+        ByteBuffer ret;
+        if (current.remaining()>=size) {
+            ret = current.slice();
+            ret.limit( size );
+            current.position( current.position()+size );
+        } else {
+            byte[] bytes = new byte[size];
+            readFully( bytes );
+            ret = ByteBuffer.wrap( bytes );
+        }
+        return ret;
+    }
+
+    // Make sure the next size bytes are in the current segment, size
+    // is at most SEGMENT_OVERLAP
+    private void require( int size ) throws IOException {
+        if (current.remaining()<size) {
+            long pos = getFilePointer();
+            if (pos+size>length)
+                throw new EOFException();
+            seek( pos );
+        }
+    }
+    
+    public void readFully( byte[] b ) throws IOException {
+        readFully( b, 0, b.length );
+    }
+    
+    public void readFully( byte[] b, int off, int len ) throws IOException {
+        if (getFilePointer()+len>length)
+            throw new EOFException();
+        
+        while( len>0 ) {
+            if (!current.hasRemaining())
+                seek( getFilePointer() );
+            int n = Math.min( len, current.remaining() );
+            current.get( b, off, n );
+            off += n;
+            len -= n;
+        }
+    }
+    
+    public int skipBytes( int n ) throws IOException {
+        if (n<=0)
+            return 0;
+        long pos = getFilePointer();
+        n = (int)Math.min( n, length-pos );
+        seek( pos+n );
+        return n;
+    }
+    
+    public boolean readBoolean() throws IOException {
+        return readByte()!=0;
+    }
+    
+    public byte readByte() throws IOException {
+        require( 1 );
+        return current.get();
+    }
+    
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xff;
+    }
+    
+    public short readShort() throws IOException {
+        require( 2 );
+        return current.getShort();
+    }
+    
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xffff;
+    }
+    
+    public char readChar() throws IOException {
+        require( 2 );
+        return current.getChar();
+    }
+    
+    public int readInt() throws IOException {
+        require( 4 );
+        return current.getInt();
+    }
+    
+    public long readLong() throws IOException {
+        require( 8 );
+        return current.getLong();
+    }
+    
+    public float readFloat() throws IOException {
+        require( 4 );
+        return current.getFloat();
+    }
+    
+    public double readDouble() throws IOException {
+        require( 8 );
+        return current.getDouble();
+    }
+    
+    public String readLine() throws IOException {
+        StringBuffer buf = new StringBuffer();
+        long pos = getFilePointer();
+        if (pos==length)
+            return null;
+        
+        while( pos<length ) {
+            int c = readUnsignedByte();
+            pos++;
+            if (c=='\n')
+                break;
+            if (c=='\r') {
+                if (pos<length && readUnsignedByte()!='\n')
+                    seek( pos );
+                break;
+            }
+            buf.append( (char)c );
+        }
+        return buf.toString();
+    }
+    
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF( this );
+    }
+    
+    /**
+     * Release the mapping and close the file
+     */
+    public void close() throws IOException {
+        segments = null;
+        current = null;
+        file.close();
+    }
+}
@@ -66,6 +66,12 @@ public class RandomAccessFileControl extends Controller {
     
     private RandomAccessFile raf;
     
+    // The file being read, memory mapped if not null
+    private MappedFileInput mappedFile;
+    
+    // The input of the read methods, raf or mappedFile
+    private DataInput in;
+    
     private int branchGraphCount=0;
     
     private boolean writeMode = false;
@@ -120,11 +126,33 @@ public class RandomAccessFileControl extends Controller {
      * Open the file for reading
      */
     public void openFile( java.io.File file ) throws IOException {
-        raf = new RandomAccessFile( file, "r" );
+        openFile( file, false );
+    }
+    
+    /**
+     * Open the file for reading, memory mapping it if memoryMapped is true
+     */
+    public void openFile( java.io.File file, boolean memoryMapped ) throws IOException {
+        if (memoryMapped) {
+            mappedFile = new MappedFileInput( file );
+            in = mappedFile;
+        } else {
+            raf = new RandomAccessFile( file, "r" );
+            in = raf;
+        }
         writeMode = false;
         
-        raf.seek(0);
-        String ident = raf.readUTF();
+        try {
+            readHeader();
+        } catch( IOException e ) {
+            closeInput();
+            throw e;
+        }
+    }
+    
+    private void readHeader() throws IOException {
+        seek(0);
+        String ident = in.readUTF();
         
         if ( ident.equals("demo_j3f") ) 
             throw new IOException(
@@ -134,8 +162,8 @@ public class RandomAccessFileControl extends Controller {
             throw new IOException(
 		"This is a Stream - use SceneGraphStreamReader instead");
         
-        raf.seek(20);
-        currentFileVersion = raf.readInt();
+        seek(20);
+        currentFileVersion = in.readInt();
         
 	if ( currentFileVersion > outputFileVersion ) {
             throw new IOException("Unsupported file version. This file was written using a new version of the SceneGraph IO API, please update your installtion to the latest version");
@@ -144,29 +172,44 @@ public class RandomAccessFileControl extends Controller {
         // readFileDescription sets user_data
         String description = readFileDescription();
         
-        raf.seek( BRANCH_GRAPH_COUNT );
-        branchGraphCount = raf.readInt();
+        seek( BRANCH_GRAPH_COUNT );
+        branchGraphCount = in.readInt();
         //System.out.println("BranchGraph count : "+branchGraphCount );
         
-        raf.seek( UNIVERSE_CONFIG_PTR );
-        universe_config = raf.readLong();
+        seek( UNIVERSE_CONFIG_PTR );
+        universe_config = in.readLong();
 
-        raf.seek( SYMBOL_TABLE_PTR );
-        symbol_table = raf.readLong();
-        
-        ConfiguredUniverse universe;
+        seek( SYMBOL_TABLE_PTR );
+        symbol_table = in.readLong();
         
-        raf.seek( symbol_table );
-        symbolTable.readTable( raf, false );
-        raf.seek(user_data);       
+        seek( symbol_table );
+        symbolTable.readTable( in, false );
+        seek(user_data);       
 
-        userData = readSerializedData(raf);
+        userData = readSerializedData(in);
+    }
+    
+    /**
+     * Move the read position of the file
+     */
+    private void seek( long pos ) throws IOException {
+        if (mappedFile!=null)
+            mappedFile.seek( pos );
+        else
+            raf.seek( pos );
+    }
+    
+    private void closeInput() throws IOException {
+        if (mappedFile!=null)
+            mappedFile.close();
+        else
+            raf.close();
     }
     
     public ConfiguredUniverse readUniverse( boolean attachBranchGraphs,
 					    Canvas3D canvas) throws IOException {
-        raf.seek( universe_config );
-        return readUniverse( raf, attachBranchGraphs, canvas );
+        seek( universe_config );
+        return readUniverse( in, attachBranchGraphs, canvas );
     }
     
     public Object getUserData() {
@@ -300,7 +343,7 @@ public class RandomAccessFileControl extends Controller {
             return (BranchGroupState)symbol.nodeState;
         }
         
-        raf.seek( symbolTable.getBranchGraphFilePosition( graphID ) );
+        seek( symbolTable.getBranchGraphFilePosition( graphID ) );
          
         return readNextBranchGraph();
     }    
@@ -310,14 +353,14 @@ public class RandomAccessFileControl extends Controller {
      * at the current position
      */
     private BranchGroupState readNextBranchGraph() throws IOException {
-        int nodeCount = raf.readInt();
-        skipUserData( raf );
+        int nodeCount = in.readInt();
+        skipUserData( in );
 
         BranchGroupState state=null;
         try {
-            state = (BranchGroupState)readObject( raf );
+            state = (BranchGroupState)readObject( in );
             
-            readNodeComponents( raf );
+            readNodeComponents( in );
             
         } catch( IOException e ) {
             e.printStackTrace();
@@ -328,10 +371,10 @@ public class RandomAccessFileControl extends Controller {
                 
     public Object readBranchGraphUserData( int graphID ) throws IOException {
         try {
-            raf.seek( symbolTable.getBranchGraphFilePosition( graphID ) );
+            seek( symbolTable.getBranchGraphFilePosition( graphID ) );
 
-            int nodeCount = raf.readInt();
-            return readSerializedData( raf );        
+            int nodeCount = in.readInt();
+            return readSerializedData( in );        
         } catch( SGIORuntimeException e ) {
             throw new IOException( e.getMessage() );
         }
@@ -375,7 +418,7 @@ public class RandomAccessFileControl extends Controller {
 	    long nextNC = in.readLong();
 		if (symbolTable.isLoaded( nodeID )) {
 		    // Skip this object
-		    raf.seek( nextNC );
+		    seek( nextNC );
 		} else {
 		    // Reading the objects will register them in the symbol table
 		    SceneGraphObjectState nodeComponent = readObject( in );
@@ -413,10 +456,10 @@ public class RandomAccessFileControl extends Controller {
 }
         
     public String readFileDescription() throws IOException {
-        raf.seek( FILE_DESCRIPTION );
-        String ret = raf.readUTF();
+        seek( FILE_DESCRIPTION );
+        String ret = in.readUTF();
         
-        user_data = raf.getFilePointer();
+        user_data = getFilePointer();
         return ret;
     }
     
@@ -426,8 +469,8 @@ public class RandomAccessFileControl extends Controller {
      */
     public void loadNodeComponent( SymbolTableData symbol ) throws IOException {
         try {
-            raf.seek( symbol.filePosition );
-            readObject( raf );
+            seek( symbol.filePosition );
+            readObject( in );
         } catch( SGIORuntimeException e ) {
             throw new IOException( e.getMessage() );
         }        
@@ -438,8 +481,8 @@ public class RandomAccessFileControl extends Controller {
      */
     public void loadSharedGroup( SymbolTableData symbol ) throws IOException {
         try {
-            raf.seek( symbol.filePosition );
-            readObject( raf );
+            seek( symbol.filePosition );
+            readObject( in );
         } catch( SGIORuntimeException e ) {
             throw new IOException( e.getMessage() );
         }        
@@ -451,7 +494,10 @@ public class RandomAccessFileControl extends Controller {
                 writeClose();       
 
             //System.out.println("File size at close "+raf.length() );
-            raf.close();
+            if (writeMode)
+                raf.close();
+            else
+                closeInput();
             super.reset();
         } catch( SGIORuntimeException e ) {
             throw new IOException( e.getMessage() );
@@ -477,6 +523,8 @@ public class RandomAccessFileControl extends Controller {
     }
     
     public long getFilePointer() {
+        if (mappedFile!=null)
+            return mappedFile.getFilePointer();
         try {
             return raf.getFilePointer();
         } catch(IOException e ) {}
@@ -45,12 +45,22 @@ import java.io.DataOutput;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 
 import javax.media.j3d.VirtualUniverse;
+import javax.media.j3d.Appearance;
+import javax.media.j3d.BoundingBox;
+import javax.media.j3d.Bounds;
 import javax.media.j3d.BranchGroup;
+import javax.media.j3d.Geometry;
+import javax.media.j3d.QuadArray;
 import javax.media.j3d.SceneGraphObject;
+import javax.media.j3d.Shape3D;
+import javax.vecmath.Point3d;
 
 import com.sun.j3d.utils.scenegraph.io.state.javax.media.j3d.SceneGraphObjectState;
 import com.sun.j3d.utils.scenegraph.io.state.javax.media.j3d.NodeComponentState;
@@ -64,8 +74,21 @@ public class StreamControl extends Controller {
         
     protected String FILE_IDENT = new String( "j3dsf" );
     
+    // Written in place of the class id of the BranchGroup at the start of
+    // a progressive BranchGraph
+    private static final int PROGRESSIVE_GRAPH = -2;
+    
     private DataInputStream inputStream;
     private DataOutputStream outputStream;
+    
+    // The Shape3Ds written as placeholders in the outline of the progressive
+    // BranchGraph being written, null when not writing an outline
+    private ArrayList placeholders = null;
+    
+    // The number of Shape3Ds still to be read in the progressive BranchGraph
+    // being read, -1 if no progressive BranchGraph is being read
+    private int pendingShapes = -1;
+    private HashMap pendingNamedObjects;
         
     public StreamControl( DataOutputStream out ) {
         super();
@@ -143,9 +166,155 @@ public class StreamControl extends Controller {
         }        
     }
     
+    /**
+     * Write the graph so it can be used before the whole graph has been
+     * read.
+     *
+     * The outline of the graph is written first, with the geometry and
+     * appearance of each Shape3D replaced by a box filling the bounds of the
+     * shape. The appearance and geometry of each Shape3D follow, largest
+     * shapes first, each with the NodeComponents it needs that have not
+     * already been written. The stream is flushed after the outline and after
+     * each shape.
+     */
+    public void writeProgressiveBranchGraph( BranchGroup bg ) throws IOException {
+        try {
+            outputStream.writeInt( PROGRESSIVE_GRAPH );
+            
+            SymbolTableData symbol = symbolTable.getSymbol( bg );
+
+            if (symbol==null) {
+                symbol = symbolTable.createSymbol( bg );
+                symbol.branchGraphID = -1;
+            }
+
+            symbolTable.setBranchGraphRoot( symbol, 0 );        
+            symbolTable.startUnsavedNodeComponentFrame();
+            placeholders = new ArrayList();
+            ArrayList shapes = placeholders;
+            try {
+                SceneGraphObjectState state = createState( bg, symbol );
+                writeObject( outputStream, state );
+                writeNodeComponents( outputStream );
+            } finally {
+                placeholders = null;
+            }
+            symbolTable.endUnsavedNodeComponentFrame();
+
+            if (symbolTable.branchGraphHasDependencies( symbol.branchGraphID ))
+                throw new javax.media.j3d.DanglingReferenceException();
+            
+            // Send the largest shapes first, they make the most difference
+            // to the image
+            Collections.sort( shapes, new Comparator() {
+                public int compare( Object o1, Object o2 ) {
+                    return Double.compare( ((Placeholder)o2).size, ((Placeholder)o1).size );
+                }
+            });
+            
+            outputStream.writeInt( shapes.size() );
+            for(int i=0; i<shapes.size(); i++)
+                outputStream.writeInt( ((Placeholder)shapes.get(i)).nodeID );
+            outputStream.flush();
+            
+            for(int i=0; i<shapes.size(); i++) {
+                Placeholder placeholder = (Placeholder)shapes.get(i);
+                Shape3D shape = placeholder.shape;
+                
+                symbolTable.startUnsavedNodeComponentFrame();
+                int appearance = symbolTable.addReference( shape.getAppearance() );
+                int[] geometry = new int[ shape.numGeometries() ];
+                for(int j=0; j<geometry.length; j++)
+                    geometry[j] = symbolTable.addReference( shape.getGeometry(j) );
+                
+                outputStream.writeInt( placeholder.nodeID );
+                writeNodeComponents( outputStream );
+                outputStream.writeInt( appearance );
+                outputStream.writeInt( geometry.length );
+                for(int j=0; j<geometry.length; j++)
+                    outputStream.writeInt( geometry[j] );
+                symbolTable.endUnsavedNodeComponentFrame();
+                outputStream.flush();
+            }
+            outputStream.writeInt( 0 );
+            
+            symbolTable.clearUnshared();
+            symbolTable.writeTable( outputStream );
+            outputStream.flush();
+        } catch( SGIORuntimeException e ) {
+            throw new IOException( e.getMessage() );
+        }        
+    }
+    
+    /**
+     * Register the Shape3D in symbol as a placeholder if the outline of a
+     * progressive graph is being written and return the box to write in place
+     * of its geometry.
+     */
+    public Geometry getPlaceholderGeometry( SymbolTableData symbol ) {
+        if (placeholders==null)
+            return null;
+        
+        Shape3D shape = (Shape3D)symbol.j3dNode;
+        Bounds bounds = shape.getBounds();
+        if (bounds==null || bounds.isEmpty())
+            return null;            // Nothing to draw, write the shape in full
+        
+        BoundingBox box = new BoundingBox( bounds );
+        Point3d lower = new Point3d();
+        Point3d upper = new Point3d();
+        box.getLower( lower );
+        box.getUpper( upper );
+        
+        placeholders.add( new Placeholder( symbol.nodeID, shape, lower.distance( upper ) ));
+        return createBox( lower, upper );
+    }
+    
+    // Corners of the faces of a box, bit 0 of each corner selects the upper
+    // x, bit 1 the upper y and bit 2 the upper z.
+    private static final int[] BOX_FACES = {
+        0, 4, 6, 2,   1, 3, 7, 5,
+        0, 1, 5, 4,   2, 6, 7, 3,
+        0, 2, 3, 1,   4, 5, 7, 6 };
+    
+    private static final float[] BOX_NORMALS = {
+        -1, 0, 0,   1, 0, 0,
+        0, -1, 0,   0, 1, 0,
+        0, 0, -1,   0, 0, 1 };
+    
+    private static Geometry createBox( Point3d lower, Point3d upper ) {
+        float[] coords = new float[ BOX_FACES.length*3 ];
+        float[] normals = new float[ BOX_FACES.length*3 ];
+        for(int i=0; i<BOX_FACES.length; i++) {
+            int corner = BOX_FACES[i];
+            coords[i*3]   = (float)((corner & 1)==0 ? lower.x : upper.x);
+            coords[i*3+1] = (float)((corner & 2)==0 ? lower.y : upper.y);
+            coords[i*3+2] = (float)((corner & 4)==0 ? lower.z : upper.z);
+            System.arraycopy( BOX_NORMALS, (i/4)*3, normals, i*3, 3 );
+        }
+        
+        QuadArray box = new QuadArray( BOX_FACES.length, QuadArray.COORDINATES | QuadArray.NORMALS );
+        box.setCoordinates( 0, coords );
+        box.setNormals( 0, normals );
+        return box;
+    }
+    
     public BranchGroup readBranchGraph( HashMap namedObjects ) throws IOException {
+        int classID = readGraphStart();
+        if (classID==PROGRESSIVE_GRAPH) {
+            BranchGroup bg = readGraphOutline( namedObjects, false );
+            ShapeContent content;
+            while( (content=readShapeContent())!=null )
+                content.apply();
+            return bg;
+        }
+        
+        return readBranchGraph( classID, namedObjects );
+    }
+    
+    private BranchGroup readBranchGraph( int classID, HashMap namedObjects ) throws IOException {
         try {
-            SceneGraphObjectState state = readObject( inputStream );
+            SceneGraphObjectState state = readObject( inputStream, classID );
             readNodeComponents( inputStream );
             symbolTable.readTable( inputStream, true );
 
@@ -162,6 +331,110 @@ public class StreamControl extends Controller {
         }        
     }
     
+    /**
+     * Read the outline of a progressive graph. The geometry and appearance
+     * of the Shape3Ds in the outline are read by readShapeContent. The
+     * Shape3Ds have the ALLOW_APPEARANCE_WRITE and ALLOW_GEOMETRY_WRITE
+     * capabilities set so they can be replaced when the graph is live.
+     *
+     * If the next graph in the stream is not progressive it is read
+     * completely.
+     */
+    public BranchGroup readProgressiveBranchGraph( HashMap namedObjects ) throws IOException {
+        int classID = readGraphStart();
+        if (classID==PROGRESSIVE_GRAPH)
+            return readGraphOutline( namedObjects, true );
+        
+        return readBranchGraph( classID, namedObjects );
+    }
+    
+    /**
+     * Read the int at the start of a graph, the class id of the root or
+     * PROGRESSIVE_GRAPH
+     */
+    private int readGraphStart() throws IOException {
+        if (pendingShapes!=-1)
+            throw new IOException( "The previous progressive BranchGraph has not been read" );
+        
+        return inputStream.readInt();
+    }
+    
+    private BranchGroup readGraphOutline( HashMap namedObjects,
+                                          boolean allowReplace ) throws IOException {
+        try {
+            SceneGraphObjectState state = readObject( inputStream );
+            readNodeComponents( inputStream );
+            
+            symbolTable.setBranchGraphRoot( state.getSymbol(), 0 );
+            
+            state.buildGraph();
+            
+            pendingShapes = inputStream.readInt();
+            pendingNamedObjects = namedObjects;
+            for(int i=0; i<pendingShapes; i++) {
+                Shape3D shape = (Shape3D)symbolTable.getJ3dNode( inputStream.readInt() );
+                if (allowReplace) {
+                    shape.setCapability( Shape3D.ALLOW_APPEARANCE_WRITE );
+                    shape.setCapability( Shape3D.ALLOW_GEOMETRY_WRITE );
+                }
+            }
+            
+            // Read the end of a graph without placeholders now, so the
+            // graph is complete
+            if (pendingShapes==0)
+                readShapeContent();
+            
+            return (BranchGroup)state.getNode();
+        } catch( SGIORuntimeException e ) {
+            throw new IOException( e.getMessage() );
+        }
+    }
+    
+    /**
+     * Return the number of Shape3Ds of the progressive graph that have
+     * not been read yet, or -1 if there is no progressive graph being read
+     */
+    public int getPendingShapeCount() {
+        return pendingShapes;
+    }
+    
+    /**
+     * Read the appearance and geometry of the next Shape3D in the
+     * progressive graph being read. Returns null once all the Shape3Ds
+     * have been read, after updating the namedObjects map passed to
+     * readProgressiveBranchGraph.
+     */
+    public ShapeContent readShapeContent() throws IOException {
+        if (pendingShapes==-1)
+            return null;
+        
+        try {
+            int shapeID = inputStream.readInt();
+            if (shapeID==0) {
+                symbolTable.readTable( inputStream, true );
+                if (pendingNamedObjects!=null)
+                    symbolTable.getNamedObjectMap( pendingNamedObjects );
+                pendingNamedObjects = null;
+                pendingShapes = -1;
+                return null;
+            }
+            
+            readNodeComponents( inputStream );
+            
+            ShapeContent content = new ShapeContent();
+            content.shape = (Shape3D)symbolTable.getJ3dNode( shapeID );
+            content.appearance = (Appearance)symbolTable.getJ3dNode( inputStream.readInt() );
+            content.geometry = new Geometry[ inputStream.readInt() ];
+            for(int i=0; i<content.geometry.length; i++)
+                content.geometry[i] = (Geometry)symbolTable.getJ3dNode( inputStream.readInt() );
+            
+            pendingShapes--;
+            return content;
+        } catch( SGIORuntimeException e ) {
+            throw new IOException( e.getMessage() );
+        }
+    }
+    
     /**
      * Read the set of branchgraps.
      *
@@ -197,4 +470,44 @@ public class StreamControl extends Controller {
         return 0L;
     }
     
+    /**
+     * The appearance and geometry of a Shape3D in a progressive graph
+     */
+    public static class ShapeContent {
+        
+        private Shape3D shape;
+        private Appearance appearance;
+        private Geometry[] geometry;
+        
+        /**
+         * Return the Shape3D in the graph
+         */
+        public Shape3D getShape() {
+            return shape;
+        }
+        
+        /**
+         * Replace the placeholder in the Shape3D with the appearance and
+         * geometry.
+         */
+        public void apply() {
+            shape.setAppearance( appearance );
+            shape.setGeometry( geometry.length==0 ? null : geometry[0] );
+            for(int i=1; i<geometry.length; i++)
+                shape.addGeometry( geometry[i] );
+        }
+    }
+    
+    private static class Placeholder {
+        int nodeID;
+        Shape3D shape;
+        double size;
+        
+        Placeholder( int nodeID, Shape3D shape, double size ) {
+            this.nodeID = nodeID;
+            this.shape = shape;
+            this.size = size;
+        }
+    }
+    
 }
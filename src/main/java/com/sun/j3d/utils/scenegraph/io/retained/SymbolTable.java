@@ -814,7 +814,9 @@ public class SymbolTable extends java.lang.Object implements SceneGraphObjectRef
         while (!unsavedNodeComponentsStack.empty())
             unsavedNodeComponentsStack.pop();
         
-        nodeIDIndexEnsureCapacity( nodeID );
+        // Symbols created after this are appended to nodeIDIndex, so the next
+        // nodeID must be the next index
+        nodeIDIndexEnsureCapacity( nodeID-1 );
         
         // Add the shared and dangling Symbols back into the other structures
         ListIterator list = sharedNodes.listIterator();
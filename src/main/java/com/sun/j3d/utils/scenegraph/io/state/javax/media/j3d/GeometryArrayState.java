@@ -45,6 +45,7 @@ import javax.media.j3d.IndexedGeometryArray;
 import javax.media.j3d.GeometryStripArray;
 import javax.media.j3d.SceneGraphObject;
 import javax.vecmath.*;
+import com.sun.j3d.utils.scenegraph.io.retained.ArrayCodec;
 import com.sun.j3d.utils.scenegraph.io.retained.Controller;
 import com.sun.j3d.utils.scenegraph.io.retained.SymbolTableData;
 import javax.media.j3d.J3DBuffer;
@@ -853,68 +854,18 @@ public abstract class GeometryArrayState extends GeometryState {
     }
     
     protected void writeDoubleArray( DataOutput out, double[] array ) throws IOException {
-
-        // Writing the array into a ByteArray in memory and then dumping
-        // the byte array to DataOutput with a single call is MUCH quicker
-        // than writing each double to DataOutput.
-        
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        DataOutputStream dataOut = new DataOutputStream( byteStream );
-
-        dataOut.writeInt( array.length );
-        for(int i=0; i<array.length; i++)
-            dataOut.writeDouble( array[i] );
-        dataOut.close();
-        
-        out.writeInt( byteStream.size() );
-        out.write( byteStream.toByteArray() );
+        ArrayCodec.writeDoubleArray( out, array, control.getGeometryCompression() );
     }
     
     protected double[] readDoubleArray( DataInput in ) throws IOException {
-        byte[] buffer = new byte[ in.readInt() ];
-        in.readFully( buffer );
-        ByteArrayInputStream byteStream = new ByteArrayInputStream( buffer );
-        DataInputStream dataIn = new DataInputStream( byteStream );
-        
-        double[] array = new double[ dataIn.readInt() ];
-        for(int i=0; i<array.length; i++)
-            array[i] = dataIn.readDouble();
-        
-        dataIn.close();
-        
-        return array;
+        return ArrayCodec.readDoubleArray( in, control.getCurrentFileVersion()>5 );
     }
     
     protected void writeFloatArray( DataOutput out, float[] array ) throws IOException {
-
-        // Writing the array into a ByteArray in memory and then dumping
-        // the byte array to DataOutput with a single call is MUCH quicker
-        // than writing each float to DataOutput.
-        
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        DataOutputStream dataOut = new DataOutputStream( byteStream );
-
-        dataOut.writeInt( array.length );
-        for(int i=0; i<array.length; i++)
-            dataOut.writeFloat( array[i] );
-        dataOut.close();
-        
-        out.writeInt( byteStream.size() );
-        out.write( byteStream.toByteArray() );
+        ArrayCodec.writeFloatArray( out, array, control.getGeometryCompression() );
     }
     
     protected float[] readFloatArray( DataInput in ) throws IOException {
-        byte[] buffer = new byte[ in.readInt() ];
-        in.readFully( buffer );
-        ByteArrayInputStream byteStream = new ByteArrayInputStream( buffer );
-        DataInputStream dataIn = new DataInputStream( byteStream );
-        
-        float[] array = new float[ dataIn.readInt() ];
-        for(int i=0; i<array.length; i++)
-            array[i] = dataIn.readFloat();
-        
-        dataIn.close();
-        
-        return array;
+        return ArrayCodec.readFloatArray( in, control.getCurrentFileVersion()>5 );
     }
 }
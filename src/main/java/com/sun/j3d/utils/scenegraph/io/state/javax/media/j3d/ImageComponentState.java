@@ -51,6 +51,7 @@ import java.io.IOException;
 import java.awt.Point;
 import java.awt.image.*;
 import javax.media.j3d.ImageComponent;
+import com.sun.j3d.utils.scenegraph.io.retained.ArrayCodec;
 import com.sun.j3d.utils.scenegraph.io.retained.Controller;
 import com.sun.j3d.utils.scenegraph.io.retained.SymbolTableData;
 import com.sun.j3d.utils.scenegraph.io.retained.SGIORuntimeException;
@@ -381,8 +382,7 @@ public abstract class ImageComponentState extends NodeComponentState {
         out.writeInt( data.length );
         for(int i=0; i<data.length; i++) {
             out.writeInt( data[i].length );
-            for( int j=0; j<data[i].length; j++)
-                out.writeInt( data[i][j] );
+            ArrayCodec.writeIntArray( out, data[i], ArrayCodec.NO_COMPRESSION );
         }
         
         out.writeInt( buffer.getSize() );
@@ -395,8 +395,12 @@ public abstract class ImageComponentState extends NodeComponentState {
         int[][] data = new int[in.readInt()][];
         for(int i=0; i<data.length; i++) {
             data[i] = new int[ in.readInt() ];
-            for( int j=0; j<data[i].length; j++)
-                data[i][j] = in.readInt();
+            if (control.getCurrentFileVersion()>5)
+                ArrayCodec.readIntArray( in, data[i], true );
+            else {
+                for( int j=0; j<data[i].length; j++)
+                    data[i][j] = in.readInt();
+            }
         }
         
         
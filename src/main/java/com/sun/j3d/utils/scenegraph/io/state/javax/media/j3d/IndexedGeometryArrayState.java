@@ -45,6 +45,7 @@ import javax.media.j3d.IndexedGeometryStripArray;
 import javax.media.j3d.GeometryArray;
 import javax.media.j3d.SceneGraphObject;
 import javax.vecmath.*;
+import com.sun.j3d.utils.scenegraph.io.retained.ArrayCodec;
 import com.sun.j3d.utils.scenegraph.io.retained.Controller;
 import com.sun.j3d.utils.scenegraph.io.retained.SymbolTableData;
 
@@ -145,27 +146,11 @@ public abstract class IndexedGeometryArrayState extends GeometryArrayState {
     }
     
     protected void writeIntArray( DataOutput out, int[] array ) throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        DataOutputStream dataOut = new DataOutputStream( byteStream );
-
-        for(int i=0; i<array.length; i++)
-            dataOut.writeInt( array[i] );
-        dataOut.close();
-        
-        out.writeInt( byteStream.size() );
-        out.write( byteStream.toByteArray() );
+        ArrayCodec.writeIntArray( out, array, control.getGeometryCompression() );
     }
     
     private void readIntArray( DataInput in, int[] array ) throws IOException {
-        byte[] buffer = new byte[ in.readInt() ];
-        in.readFully( buffer );
-        ByteArrayInputStream byteStream = new ByteArrayInputStream( buffer );
-        DataInputStream dataIn = new DataInputStream( byteStream );
-        
-        for(int i=0; i<array.length; i++)
-            array[i] = dataIn.readInt();
-        
-        dataIn.close();
+        ArrayCodec.readIntArray( in, array, control.getCurrentFileVersion()>5 );
     }
 
 }
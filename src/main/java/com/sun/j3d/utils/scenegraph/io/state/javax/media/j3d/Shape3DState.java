@@ -58,6 +58,15 @@ public class Shape3DState extends LeafState {
         super( symbol, control );
         
         if (node!=null) {
+            Geometry placeholder = control.getPlaceholderGeometry( symbol );
+            if (placeholder!=null) {
+                // The appearance and geometry follow the outline of a
+                // progressive graph
+                appearance = 0;
+                geometry = new int[] { control.getSymbolTable().addReference( placeholder ) };
+                return;
+            }
+            
             appearance = control.getSymbolTable().addReference( ((Shape3D)node).getAppearance() );
             int length = ((Shape3D)node).numGeometries();
             geometry = new int[length];
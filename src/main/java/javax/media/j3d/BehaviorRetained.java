@@ -33,20 +33,24 @@ package javax.media.j3d;
 
 class BehaviorRetained extends LeafRetained  {
     // These bitmasks are used to quickly tell what conditions this behavior
-    // is waiting for. Currently BehaviorStructure only used 4 of them.
+    // is waiting for. Currently BehaviorStructure only used 6 of them.
     static final int WAKEUP_ACTIVATE_INDEX 	= 0;
     static final int WAKEUP_DEACTIVATE_INDEX 	= 1;
     static final int WAKEUP_VP_ENTRY_INDEX 	= 2;
     static final int WAKEUP_VP_EXIT_INDEX 	= 3;
     static final int WAKEUP_TIME_INDEX          = 4;
+    static final int WAKEUP_SENSOR_ENTRY_INDEX  = 5;
+    static final int WAKEUP_SENSOR_EXIT_INDEX   = 6;
 
-    static final int NUM_WAKEUPS		= 5;
+    static final int NUM_WAKEUPS		= 7;
 
     static final int WAKEUP_ACTIVATE 	= 0x0001;
     static final int WAKEUP_DEACTIVATE 	= 0x0002;
     static final int WAKEUP_VP_ENTRY 	= 0x0004;
     static final int WAKEUP_VP_EXIT 	= 0x0008;
     static final int WAKEUP_TIME        = 0x0010;
+    static final int WAKEUP_SENSOR_ENTRY = 0x0020;
+    static final int WAKEUP_SENSOR_EXIT = 0x0040;
 
     /**
      * The number of scheduling intervals supported by this
@@ -33,6 +33,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.logging.Level;
 
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
@@ -65,6 +66,22 @@ class BehaviorStructure extends J3dStructure {
      */
     UnorderList processList[] = new UnorderList[BehaviorRetained.NUM_SCHEDULING_INTERVALS];
 
+    /**
+     * Spatial index of the transformed scheduling regions of the
+     * behaviors, used to find the behaviors that may be activated
+     * when a ViewPlatform is added or moved.
+     */
+    BoundsTree behaviorRegions = new BoundsTree();
+
+    // Candidate behaviors returned by behaviorRegions
+    UnorderList behaviorCandidates = new UnorderList(BehaviorRetained.class);
+
+    // Number of behaviors activated, deactivated and tested for
+    // activation since the last time they were recorded
+    int numActivated = 0;
+    int numDeactivated = 0;
+    int numActivationTests = 0;
+
    /**
      * A bounds used for getting a view platform scheduling BoundingSphere
      */
@@ -95,6 +112,20 @@ class BehaviorStructure extends J3dStructure {
      */
     WakeupIndexedList currentSensorExitList;
 
+    /**
+     * Spatial indices of the transformed regions of the conditions
+     * in wakeupOnViewPlatformEntry/Exit and wakeupOnSensorEntry/Exit,
+     * so that only the regions near a moved ViewPlatform or
+     * Sensor are tested.
+     */
+    BoundsTree vpEntryRegions = new BoundsTree();
+    BoundsTree vpExitRegions = new BoundsTree();
+    BoundsTree sensorEntryRegions = new BoundsTree();
+    BoundsTree sensorExitRegions = new BoundsTree();
+
+    // Candidate conditions returned by the region indices
+    UnorderList regionCandidates = new UnorderList(WakeupCondition.class);
+
     /**
      * The lists of the WakeupCriterion objects that the
      * behavior scheduler keeps.
@@ -139,6 +170,12 @@ class BehaviorStructure extends J3dStructure {
     Vector3d sensorLoc = new Vector3d();
     Point3d ptSensorLoc = new Point3d();
 
+    // vworld location of all active sensors, cached once per
+    // checkSensorEntryExit() in the order used by sensorIntersect()
+    Point3d sensorLocs[] = new Point3d[0];
+    Sensor sensorLocTargets[] = new Sensor[0];
+    int numSensorLocs = 0;
+
     // list of active physical environments
     UnorderList physicalEnvironments = new UnorderList(1, PhysicalEnvironment.class);
 
@@ -307,6 +344,18 @@ class BehaviorStructure extends J3dStructure {
 	    Arrays.fill(messages, 0, nMsg, null);
 	}
 
+	if (MasterControl.isStatsLoggable(Level.FINE)) {
+	    VirtualUniverse.mc.recordCount(MasterControl.CountType.BEHAVIOR_ACTIVATED,
+					   numActivated);
+	    VirtualUniverse.mc.recordCount(MasterControl.CountType.BEHAVIOR_DEACTIVATED,
+					   numDeactivated);
+	    VirtualUniverse.mc.recordCount(MasterControl.CountType.BEHAVIOR_ACTIVATION_TESTS,
+					   numActivationTests);
+	}
+	numActivated = 0;
+	numDeactivated = 0;
+	numActivationTests = 0;
+
 	// wakeup even when message is null since wakeupOnElapsedFrame
 	// will wakeup this
 
@@ -364,6 +413,7 @@ class BehaviorStructure extends J3dStructure {
 		behav.conditionSet = true;
 		behaviors.add(behav);
 		behav.updateTransformRegion();
+		behaviorRegions.add(behav, behav.transformedRegion);
 		addToScheduleList(behav);
 	    }
 	}
@@ -371,10 +421,6 @@ class BehaviorStructure extends J3dStructure {
     }
 
     void addViewPlatform(ViewPlatformRetained vp) {
-	int i;
-	BehaviorRetained behav;
-	BehaviorRetained behavArr[] = (BehaviorRetained []) behaviors.toArray(false);
-
 	viewPlatforms.add(vp);
 	vp.updateTransformRegion();
 
@@ -382,42 +428,11 @@ class BehaviorStructure extends J3dStructure {
 	    return;
 	}
 
-	// re-evaulate all behaviors to see if we need to put
-	// more behaviors in scheduleList
-
-	for (i=behaviors.arraySize()-1; i>=0; i--) {
-	    addToScheduleList(behavArr[i]);
-	}
-
-	// handle ViewPlatform Entry
-	WakeupOnViewPlatformEntry wakeupOnViewPlatformEntryArr[] =
-	    (WakeupOnViewPlatformEntry []) wakeupOnViewPlatformEntry.toArray(false);
-	WakeupOnViewPlatformEntry wentry;
-
-	for (i=wakeupOnViewPlatformEntry.arraySize()-1; i >=0; i--) {
-	    wentry = wakeupOnViewPlatformEntryArr[i];
-	    if (!boundsEntryList.contains(wentry) &&
-		wentry.transformedRegion.intersect(vp.center)) {
-		boundsEntryList.add(wentry);
-		wentry.triggeredVP = vp;
-		wentry.setTriggered();
-	    }
-	}
-
-	// handle ViewPlatform Exit
-	WakeupOnViewPlatformExit wakeupOnViewPlatformExitArr[] =
-	    (WakeupOnViewPlatformExit []) wakeupOnViewPlatformExit.toArray(false);
-	WakeupOnViewPlatformExit wexit;
-
-	for (i=wakeupOnViewPlatformExit.arraySize()-1; i >=0; i--) {
-	    wexit = wakeupOnViewPlatformExitArr[i];
-	    if (!boundsExitList.contains(wexit) &&
-		wexit.transformedRegion.intersect(vp.center)) {
-		wexit.triggeredVP = vp;
-		boundsExitList.add(wexit);
-	    }
-	}
+	// re-evaulate the behaviors in the scheduling region of
+	// this vp to see if we need to put more behaviors in scheduleList
+	scheduleBehaviorsInRegion(vp);
 
+	checkVPEnteredRegions(vp);
     }
 
     void removeNodes(J3dMessage m) {
@@ -585,6 +600,7 @@ class BehaviorStructure extends J3dStructure {
 
     void removeBehavior(BehaviorRetained behav) {
 	behaviors.remove(behav);
+	behaviorRegions.remove(behav);
 
 	if ((behav.wakeupCondition != null) &&
 	    (behav.wakeupCondition.behav != null)) {
@@ -819,6 +835,7 @@ class BehaviorStructure extends J3dStructure {
 
     void removeVPEntryCondition(WakeupCondition w) {
 	wakeupOnViewPlatformEntry.remove(w);
+	vpEntryRegions.remove(w);
 	// don't remove boundsEntryList, it is use next time
 	// when addVPExitCondition invoke to determine whether to
 	// trigger an event or not.
@@ -847,6 +864,7 @@ class BehaviorStructure extends J3dStructure {
 	}
 
 	wakeupOnViewPlatformEntry.add(w);
+	vpEntryRegions.add(w, w.transformedRegion);
 
 	ViewPlatformRetained triggeredVP = intersectVPCenter(w.transformedRegion);
 	if (triggeredVP != null) {
@@ -862,6 +880,7 @@ class BehaviorStructure extends J3dStructure {
 
     void removeVPExitCondition(WakeupOnViewPlatformExit w) {
 	wakeupOnViewPlatformExit.remove(w);
+	vpExitRegions.remove(w);
 	// don't remove boundsExitList, it is use next time
 	// when addVPEntryCondition invoke to determine whether to
 	// trigger an event or not.
@@ -886,6 +905,7 @@ class BehaviorStructure extends J3dStructure {
 
 	ViewPlatformRetained triggeredVP = intersectVPCenter(w.transformedRegion);
 	wakeupOnViewPlatformExit.add(w);
+	vpExitRegions.add(w, w.transformedRegion);
 
 	if (triggeredVP != null) {
 	    w.triggeredVP = triggeredVP;
@@ -922,6 +942,7 @@ class BehaviorStructure extends J3dStructure {
 
     void removeSensorEntryCondition(WakeupOnSensorEntry w) {
 	wakeupOnSensorEntry.remove(w);
+	sensorEntryRegions.remove(w);
 	// don't remove currentSensorEntryList, it is use next time
 	// when addSensorExitCondition invoke to determine whether to
 	// trigger an event or not.
@@ -949,6 +970,7 @@ class BehaviorStructure extends J3dStructure {
 	wakeupOnSensorEntry.add(w);
 
 	w.updateTransformRegion();
+	sensorEntryRegions.add(w, w.transformedRegion);
 	Sensor target = sensorIntersect(w.transformedRegion);
 	if (target != null) {
 	    w.setTarget(target);
@@ -965,6 +987,7 @@ class BehaviorStructure extends J3dStructure {
 
     void removeSensorExitCondition(WakeupOnSensorExit w) {
 	wakeupOnSensorExit.remove(w);
+	sensorExitRegions.remove(w);
 	// don't remove currentSensorExitList, it is use next time
 	// when addSensorEntryCondition invoke to determine whether to
 	// trigger an event or not
@@ -990,6 +1013,7 @@ class BehaviorStructure extends J3dStructure {
 	w.updateTransformRegion();
 	Sensor target = sensorIntersect(w.transformedRegion);
 	wakeupOnSensorExit.add(w);
+	sensorExitRegions.add(w, w.transformedRegion);
 
 	if (target != null) {
 	    w.setTarget(target);
@@ -1117,6 +1141,10 @@ class BehaviorStructure extends J3dStructure {
 
     // assume behav.updateTransformRegion() invoke before
     final void processBehaviorTransform(BehaviorRetained behav) {
+	if (behaviors.contains(behav)) {
+	    behaviorRegions.update(behav, behav.transformedRegion);
+	}
+
 	if ((behav.wakeupMask & BehaviorRetained.WAKEUP_VP_ENTRY) != 0) {
 	    updateVPEntryTransformRegion(behav);
 	}
@@ -1125,6 +1153,14 @@ class BehaviorStructure extends J3dStructure {
 	    updateVPExitTransformRegion(behav);
 	}
 
+	if ((behav.wakeupMask & BehaviorRetained.WAKEUP_SENSOR_ENTRY) != 0) {
+	    updateSensorEntryTransformRegion(behav);
+	}
+
+	if ((behav.wakeupMask & BehaviorRetained.WAKEUP_SENSOR_EXIT) != 0) {
+	    updateSensorExitTransformRegion(behav);
+	}
+
 	if (behav.active) {
 	    if (!intersectVPRegion(behav.transformedRegion)) {
 		removeFromScheduleList(behav);
@@ -1145,66 +1181,118 @@ class BehaviorStructure extends J3dStructure {
 	    return;
 	}
 
-	BehaviorRetained behavArr[] = (BehaviorRetained []) behaviors.toArray(false);
+	// re-evaulate the active behaviors, this vp may be the
+	// reason that they are in schedule list
+	BehaviorRetained scheduleArr[] = (BehaviorRetained [])
+	                                   scheduleList.toArray(false);
 
-	// re-evaulate all behaviors affected by this vp
-	for (i=behaviors.arraySize()-1; i>=0; i--) {
-	    behav = behavArr[i];
-	    if (behav.active) {
-		if (!intersectVPRegion(behav.transformedRegion)) {
-		    removeFromScheduleList(behav);
-		}
-	    } else {
-		addToScheduleList(behav);
+	for (i=scheduleList.arraySize()-1; i >=0 ; i--) {
+	    behav = scheduleArr[i];
+	    numActivationTests++;
+	    if (!intersectVPRegion(behav.transformedRegion)) {
+		removeFromScheduleList(behav);
 	    }
 	}
 
+	// then the behaviors now in the scheduling region of this vp
+	scheduleBehaviorsInRegion(vp);
+
+	checkVPExitedRegions();
+	checkVPEnteredRegions(vp);
+    }
+
+    /**
+     * Add the behaviors whose scheduling region intersect the
+     * scheduling region of vp to scheduleList.
+     */
+    void scheduleBehaviorsInRegion(ViewPlatformRetained vp) {
+	behaviorCandidates.clear();
+	behaviorRegions.query(vp.schedSphere, behaviorCandidates);
+	BehaviorRetained behavArr[] = (BehaviorRetained [])
+	                                behaviorCandidates.toArray(false);
+	int size = behaviorCandidates.arraySize();
+
+	numActivationTests += size;
+	for (int i=size-1; i >=0; i--) {
+	    addToScheduleList(behavArr[i]);
+	}
+	behaviorCandidates.clear();
+    }
+
+    /**
+     * Remove the regions in boundsEntryList/boundsExitList that
+     * no longer contain any ViewPlatform center.
+     */
+    void checkVPExitedRegions() {
+	int i;
+
 	// handle wakeupOnViewPlatformEntry
-	WakeupOnViewPlatformEntry wakeupOnViewPlatformEntryArr[] =
-	    (WakeupOnViewPlatformEntry []) wakeupOnViewPlatformEntry.toArray(false);
+	WakeupOnViewPlatformEntry boundsEntryArr[] =
+	    (WakeupOnViewPlatformEntry []) boundsEntryList.toArray(false);
 	WakeupOnViewPlatformEntry wentry;
-	int idx;
-	ViewPlatformRetained triggeredVP;
 
-	for (i=wakeupOnViewPlatformEntry.arraySize()-1; i >=0; i--) {
-	    wentry = wakeupOnViewPlatformEntryArr[i];
-	    idx = boundsEntryList.indexOf(wentry);
-	    if (idx < 0) {
-		if (wentry.transformedRegion.intersect(vp.center)) {
-		    boundsEntryList.add(wentry);
-		    wentry.triggeredVP = vp;
-		    wentry.setTriggered();
-		}
-	    } else {
-		triggeredVP = intersectVPCenter(wentry.transformedRegion);
-		if (triggeredVP == null) {
-		    boundsEntryList.remove(idx);
-		}
+	for (i=boundsEntryList.arraySize()-1; i >=0; i--) {
+	    wentry = boundsEntryArr[i];
+	    if (wakeupOnViewPlatformEntry.contains(wentry) &&
+		(intersectVPCenter(wentry.transformedRegion) == null)) {
+		boundsEntryList.remove(i);
 	    }
 	}
 
-	// handle wakeupOnViewPlatformExit;
-	WakeupOnViewPlatformExit wakeupOnViewPlatformExitArr[] =
-	    (WakeupOnViewPlatformExit []) wakeupOnViewPlatformExit.toArray(false);
+	// handle wakeupOnViewPlatformExit
+	WakeupOnViewPlatformExit boundsExitArr[] =
+	    (WakeupOnViewPlatformExit []) boundsExitList.toArray(false);
 	WakeupOnViewPlatformExit wexit;
 
-	for (i=wakeupOnViewPlatformExit.arraySize()-1; i >=0; i--) {
-	    wexit = wakeupOnViewPlatformExitArr[i];
-	    idx = boundsExitList.indexOf(wexit);
-	    if (idx < 0) {
-		if (wexit.transformedRegion.intersect(vp.center)) {
-		    wexit.triggeredVP = vp;
-		    boundsExitList.add(wexit);
+	for (i=boundsExitList.arraySize()-1; i >=0; i--) {
+	    wexit = boundsExitArr[i];
+	    if (wakeupOnViewPlatformExit.contains(wexit) &&
+		(intersectVPCenter(wexit.transformedRegion) == null)) {
+		boundsExitList.remove(i);
+		wexit.setTriggered();
+	    }
+	}
+    }
 
-		}
-	    } else {
-		triggeredVP = intersectVPCenter(wexit.transformedRegion);
-		if (triggeredVP == null) {
-		    boundsExitList.remove(idx);
-		    wexit.setTriggered();
-		}
+    /**
+     * Add the regions near vp that contain its center to
+     * boundsEntryList/boundsExitList.
+     */
+    void checkVPEnteredRegions(ViewPlatformRetained vp) {
+	int i;
+
+	// handle wakeupOnViewPlatformEntry
+	WakeupOnViewPlatformEntry wentry;
+	regionCandidates.clear();
+	vpEntryRegions.query(vp.center, regionCandidates);
+	WakeupCondition candidateArr[] = (WakeupCondition [])
+	                                   regionCandidates.toArray(false);
+
+	for (i=regionCandidates.arraySize()-1; i >=0; i--) {
+	    wentry = (WakeupOnViewPlatformEntry) candidateArr[i];
+	    if (!boundsEntryList.contains(wentry) &&
+		wentry.transformedRegion.intersect(vp.center)) {
+		boundsEntryList.add(wentry);
+		wentry.triggeredVP = vp;
+		wentry.setTriggered();
 	    }
 	}
+
+	// handle wakeupOnViewPlatformExit
+	WakeupOnViewPlatformExit wexit;
+	regionCandidates.clear();
+	vpExitRegions.query(vp.center, regionCandidates);
+	candidateArr = (WakeupCondition []) regionCandidates.toArray(false);
+
+	for (i=regionCandidates.arraySize()-1; i >=0; i--) {
+	    wexit = (WakeupOnViewPlatformExit) candidateArr[i];
+	    if (!boundsExitList.contains(wexit) &&
+		wexit.transformedRegion.intersect(vp.center)) {
+		wexit.triggeredVP = vp;
+		boundsExitList.add(wexit);
+	    }
+	}
+	regionCandidates.clear();
     }
 
     void updateVPEntryTransformRegion(BehaviorRetained behav) {
@@ -1217,6 +1305,7 @@ class BehaviorStructure extends J3dStructure {
 	    wentry = wakeupOnViewPlatformEntryArr[i];
 	    if (wentry.behav == behav) {
 		wentry.updateTransformRegion(behav);
+		vpEntryRegions.update(wentry, wentry.transformedRegion);
 		int idx = boundsEntryList.indexOf(wentry);
 
 		triggeredVP = intersectVPCenter(wentry.transformedRegion);
@@ -1248,7 +1337,7 @@ class BehaviorStructure extends J3dStructure {
 	    wexit = wakeupOnViewPlatformExitArr[i];
 	    if (wexit.behav == behav) {
 		wexit.updateTransformRegion(behav);
-		wexit = wakeupOnViewPlatformExitArr[i];
+		vpExitRegions.update(wexit, wexit.transformedRegion);
 		int idx = boundsExitList.indexOf(wexit);
 		triggeredVP = intersectVPCenter(wexit.transformedRegion);
 		if (triggeredVP != null) {
@@ -1289,29 +1378,74 @@ class BehaviorStructure extends J3dStructure {
 	}
     }
 
+    void updateSensorEntryTransformRegion(BehaviorRetained behav) {
+	WakeupOnSensorEntry wentryArr[] =
+	    (WakeupOnSensorEntry []) wakeupOnSensorEntry.toArray(false);
+	WakeupOnSensorEntry wentry;
+
+	for (int i=wakeupOnSensorEntry.arraySize()-1; i >=0; i--) {
+	    wentry = wentryArr[i];
+	    if (wentry.behav == behav) {
+		wentry.updateTransformRegion();
+		sensorEntryRegions.update(wentry, wentry.transformedRegion);
+	    }
+	}
+    }
+
+    void updateSensorExitTransformRegion(BehaviorRetained behav) {
+	WakeupOnSensorExit wexitArr[] =
+	    (WakeupOnSensorExit []) wakeupOnSensorExit.toArray(false);
+	WakeupOnSensorExit wexit;
+
+	for (int i=wakeupOnSensorExit.arraySize()-1; i >=0; i--) {
+	    wexit = wexitArr[i];
+	    if (wexit.behav == behav) {
+		wexit.updateTransformRegion();
+		sensorExitRegions.update(wexit, wexit.transformedRegion);
+	    }
+	}
+    }
+
+    /**
+     * The transformed regions are kept up to date by
+     * processBehaviorTransform(), so only the regions currently
+     * containing a sensor and the regions near each sensor
+     * are tested here.
+     */
     void checkSensorEntryExit() {
-	int i, idx;
+	int i, j;
 	Sensor target;
+	WakeupCondition candidateArr[];
+
+	updateSensorLocations();
 
 	// handle WakeupOnSensorEntry
 	WakeupOnSensorEntry wentry;
 	WakeupOnSensorEntry wentryArr[] = (WakeupOnSensorEntry [])
-	                                    wakeupOnSensorEntry.toArray();
+	                                    currentSensorEntryList.toArray();
 
-	for (i=wakeupOnSensorEntry.arraySize()-1; i>=0; i--) {
+	for (i=currentSensorEntryList.arraySize()-1; i>=0; i--) {
 	    wentry = wentryArr[i];
-	    idx = currentSensorEntryList.indexOf(wentry);
-	    wentry.updateTransformRegion();
-	    target = sensorIntersect(wentry.transformedRegion);
-	    if (target != null) {
-		if (idx < 0) {
-		    currentSensorEntryList.add(wentry);
-		    wentry.setTarget(target);
-		    wentry.setTriggered();
-		}
-	    } else {
-		if (idx >= 0) {
-		    currentSensorEntryList.remove(idx);
+	    if (wakeupOnSensorEntry.contains(wentry) &&
+		(sensorLocationIntersect(wentry.transformedRegion) == null)) {
+		currentSensorEntryList.remove(wentry);
+	    }
+	}
+
+	for (j=0; j < numSensorLocs; j++) {
+	    regionCandidates.clear();
+	    sensorEntryRegions.query(sensorLocs[j], regionCandidates);
+	    candidateArr = (WakeupCondition []) regionCandidates.toArray(false);
+
+	    for (i=regionCandidates.arraySize()-1; i>=0; i--) {
+		wentry = (WakeupOnSensorEntry) candidateArr[i];
+		if (!currentSensorEntryList.contains(wentry)) {
+		    target = sensorLocationIntersect(wentry.transformedRegion);
+		    if (target != null) {
+			currentSensorEntryList.add(wentry);
+			wentry.setTarget(target);
+			wentry.setTriggered();
+		    }
 		}
 	    }
 	}
@@ -1319,26 +1453,101 @@ class BehaviorStructure extends J3dStructure {
 	// handle WakeupOnSensorExit
 	WakeupOnSensorExit wexit;
 	WakeupOnSensorExit wexitArr[] = (WakeupOnSensorExit [])
-	                                    wakeupOnSensorExit.toArray();
+	                                    currentSensorExitList.toArray();
 
-	for (i=wakeupOnSensorExit.arraySize()-1; i>=0; i--) {
+	for (i=currentSensorExitList.arraySize()-1; i>=0; i--) {
 	    wexit = wexitArr[i];
-	    idx = currentSensorExitList.indexOf(wexit);
-	    wexit.updateTransformRegion();
-	    target = sensorIntersect(wexit.transformedRegion);
-	    if (target != null) {
-		if (idx < 0) {
-		    currentSensorExitList.add(wexit);
-		    wexit.setTarget(target);
+	    if (wakeupOnSensorExit.contains(wexit) &&
+		(sensorLocationIntersect(wexit.transformedRegion) == null)) {
+		currentSensorExitList.remove(wexit);
+		wexit.setTriggered();
+	    }
+	}
+
+	for (j=0; j < numSensorLocs; j++) {
+	    regionCandidates.clear();
+	    sensorExitRegions.query(sensorLocs[j], regionCandidates);
+	    candidateArr = (WakeupCondition []) regionCandidates.toArray(false);
+
+	    for (i=regionCandidates.arraySize()-1; i>=0; i--) {
+		wexit = (WakeupOnSensorExit) candidateArr[i];
+		if (!currentSensorExitList.contains(wexit)) {
+		    target = sensorLocationIntersect(wexit.transformedRegion);
+		    if (target != null) {
+			currentSensorExitList.add(wexit);
+			wexit.setTarget(target);
+		    }
 		}
-	    } else {
-		if (idx >= 0) {
-		    currentSensorExitList.remove(idx);
-		    wexit.setTriggered();
+	    }
+	}
+	regionCandidates.clear();
+    }
+
+    /**
+     * Cache the vworld location of every active sensor, in the
+     * same order as sensorIntersect() visits them.
+     */
+    void updateSensorLocations() {
+	PhysicalEnvironment env[] = (PhysicalEnvironment [])
+	                               physicalEnvironments.toArray(false);
+	Sensor sensors[];
+	Sensor s;
+	View v;
+
+	numSensorLocs = 0;
+	for (int i=physicalEnvironments.arraySize()-1; i>=0; i--) {
+	    if (env[i].activeViewRef > 0) {
+		sensors = env[i].getSensorList();
+		if (sensors != null) {
+		    for (int j= env[i].users.size()-1; j>=0; j--) {
+			v = (View) env[i].users.get(j);
+			synchronized (sensors) {
+			    for (int k=sensors.length-1; k >=0; k--) {
+				s = sensors[k];
+				if (s != null) {
+				    v.getSensorToVworld(s, sensorTransform);
+				    sensorTransform.get(sensorLoc);
+				    addSensorLocation(s, sensorLoc);
+				}
+			    }
+			}
+		    }
 		}
 	    }
 	}
+    }
 
+    private void addSensorLocation(Sensor s, Vector3d loc) {
+	if (numSensorLocs >= sensorLocs.length) {
+	    int newSize = (sensorLocs.length << 1) + 4;
+	    Point3d newLocs[] = new Point3d[newSize];
+	    Sensor newTargets[] = new Sensor[newSize];
+	    System.arraycopy(sensorLocs, 0, newLocs, 0, numSensorLocs);
+	    System.arraycopy(sensorLocTargets, 0, newTargets, 0, numSensorLocs);
+	    for (int i=numSensorLocs; i < newSize; i++) {
+		newLocs[i] = new Point3d();
+	    }
+	    sensorLocs = newLocs;
+	    sensorLocTargets = newTargets;
+	}
+	sensorLocs[numSensorLocs].set(loc);
+	sensorLocTargets[numSensorLocs++] = s;
+    }
+
+    /**
+     * return the Sensor in the cached sensor locations that
+     * intersect with behregion or null
+     */
+    Sensor sensorLocationIntersect(Bounds behregion) {
+	if (behregion == null)
+	    return null;
+
+	for (int i=0; i < numSensorLocs; i++) {
+	    if (behregion.intersect(sensorLocs[i])) {
+		return sensorLocTargets[i];
+	    }
+	}
+	return null;
     }
 
 
@@ -1548,6 +1757,7 @@ class BehaviorStructure extends J3dStructure {
 	    }
 	    scheduleList.remove(behav);
 	    behav.active = false;
+	    numDeactivated++;
 	    if (behav.universe != universe) {
 		J3dMessage m = new J3dMessage();
 		m.threads = J3dThread.UPDATE_BEHAVIOR;
@@ -1571,6 +1781,7 @@ class BehaviorStructure extends J3dStructure {
 
 	    scheduleList.add(behav);
 	    behav.active = true;
+	    numActivated++;
 	    if ((behav.wakeupMask &
 		 BehaviorRetained.WAKEUP_ACTIVATE) != 0) {
 		notifyActivationCondition(behav);
@@ -1660,12 +1871,17 @@ class BehaviorStructure extends J3dStructure {
 
     void cleanup() {
 	behaviors.clear();
+	behaviorRegions.clear();
 	viewPlatforms.clear();
 	scheduleList.clear();
 	boundsEntryList.clear();
 	boundsExitList.clear();
 	currentSensorEntryList.clear();
 	currentSensorExitList.clear();
+	vpEntryRegions.clear();
+	vpExitRegions.clear();
+	sensorEntryRegions.clear();
+	sensorExitRegions.clear();
 	wakeupOnAWTEvent.clear();
 	wakeupOnActivation.clear();
 	wakeupOnDeactivation.clear();
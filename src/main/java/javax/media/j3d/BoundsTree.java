@@ -0,0 +1,591 @@
+/*
+ * Copyright 1998-2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ *
+ */
+
+
+package javax.media.j3d;
+
+import java.util.HashMap;
+
+import javax.vecmath.Point3d;
+
+/**
+ * A dynamic axis-aligned bounding box tree used by the structures to
+ * find the objects whose bounds may contain a point or overlap another
+ * bounds without testing every object. Each object is stored in a leaf
+ * with a slightly enlarged box so that small moves don't restructure
+ * the tree, and the tree is kept balanced with AVL style rotations.
+ *
+ * <p>
+ * Query results are only candidates, the caller has to do the exact
+ * intersection test against its own bounds. Objects with infinite
+ * bounds are always returned, objects with empty bounds never are.
+ *
+ * <p>
+ * Like UnorderList, all operations are synchronized.
+ */
+
+class BoundsTree {
+
+    private static final int NULL_NODE = -1;
+
+    // proxy values of objects that are not stored in the tree
+    private static final Integer UNBOUNDED = new Integer(-2);
+    private static final Integer EMPTY = new Integer(-3);
+
+    // fraction of the largest extent added around each leaf box
+    private static final double FAT_RATIO = 0.1;
+
+    // Node storage, the box of node i is in
+    // box[6*i .. 6*i+5] as minx, miny, minz, maxx, maxy, maxz
+    private double box[];
+    private int parent[];
+    private int child1[];
+    private int child2[];
+    private int height[];
+    private Object item[];
+
+    private int root = NULL_NODE;
+    private int freeList = NULL_NODE;
+    private int nodeCapacity = 0;
+    private int nodeCount = 0;
+
+    // object -> Integer node index (or UNBOUNDED/EMPTY)
+    private HashMap proxies = new HashMap();
+
+    // objects with infinite bounds
+    private UnorderList unbounded = new UnorderList();
+
+    // traversal stack reused by queries
+    private int stack[] = new int[64];
+
+    // reusable temp objects
+    private BoundingBox tmpBox = new BoundingBox();
+    private double tmp[] = new double[6];
+
+    BoundsTree() {
+	growNodes(16);
+    }
+
+    /**
+     * Returns the number of objects in this tree.
+     */
+    synchronized final int size() {
+	return proxies.size();
+    }
+
+    /**
+     * Returns true if the object is stored in this tree.
+     */
+    synchronized final boolean contains(Object obj) {
+	return proxies.containsKey(obj);
+    }
+
+    /**
+     * Adds an object with the given bounds. If the object is already
+     * in the tree its bounds are updated.
+     */
+    synchronized final void add(Object obj, Bounds bounds) {
+	if (proxies.containsKey(obj)) {
+	    update(obj, bounds);
+	    return;
+	}
+	proxies.put(obj, insertObject(obj, bounds));
+    }
+
+    /**
+     * Updates the bounds of an object already in the tree. The tree
+     * is only changed when the new bounds escape the enlarged box of
+     * the leaf.
+     */
+    synchronized final void update(Object obj, Bounds bounds) {
+	Integer proxy = (Integer) proxies.get(obj);
+	if (proxy == null) {
+	    proxies.put(obj, insertObject(obj, bounds));
+	    return;
+	}
+
+	int node = proxy.intValue();
+	if ((node >= 0) && computeBox(bounds, tmp) && containsBox(node, tmp)) {
+	    return;
+	}
+	removeObject(obj, proxy);
+	proxies.put(obj, insertObject(obj, bounds));
+    }
+
+    /**
+     * Removes an object from this tree.
+     */
+    synchronized final void remove(Object obj) {
+	Integer proxy = (Integer) proxies.remove(obj);
+	if (proxy != null) {
+	    removeObject(obj, proxy);
+	}
+    }
+
+    /**
+     * Removes all objects from this tree.
+     */
+    synchronized final void clear() {
+	proxies.clear();
+	unbounded.clear();
+	root = NULL_NODE;
+	nodeCount = 0;
+	java.util.Arrays.fill(item, null);
+	for (int i=0; i < nodeCapacity; i++) {
+	    parent[i] = (i < nodeCapacity-1) ? i+1 : NULL_NODE;
+	}
+	freeList = 0;
+    }
+
+    /**
+     * Appends to result all objects whose box contains the point.
+     */
+    synchronized final void query(Point3d pt, UnorderList result) {
+	appendUnbounded(result);
+	if (root == NULL_NODE) {
+	    return;
+	}
+
+	int top = 0;
+	int node, off;
+	stack[top++] = root;
+	while (top > 0) {
+	    node = stack[--top];
+	    off = 6*node;
+	    if ((pt.x < box[off]) || (pt.x > box[off+3]) ||
+		(pt.y < box[off+1]) || (pt.y > box[off+4]) ||
+		(pt.z < box[off+2]) || (pt.z > box[off+5])) {
+		continue;
+	    }
+	    if (child1[node] == NULL_NODE) {
+		result.add(item[node]);
+	    } else {
+		top = push(top, child1[node], child2[node]);
+	    }
+	}
+    }
+
+    /**
+     * Appends to result all objects whose box overlaps the box
+     * of the given bounds.
+     */
+    synchronized final void query(Bounds bounds, UnorderList result) {
+	if (!computeBox(bounds, tmp)) {
+	    if ((bounds != null) && bounds.boundsIsInfinite) {
+		appendAll(result);
+	    }
+	    return;
+	}
+	appendUnbounded(result);
+	if (root == NULL_NODE) {
+	    return;
+	}
+
+	double minx = tmp[0], miny = tmp[1], minz = tmp[2];
+	double maxx = tmp[3], maxy = tmp[4], maxz = tmp[5];
+	int top = 0;
+	int node, off;
+	stack[top++] = root;
+	while (top > 0) {
+	    node = stack[--top];
+	    off = 6*node;
+	    if ((maxx < box[off]) || (minx > box[off+3]) ||
+		(maxy < box[off+1]) || (miny > box[off+4]) ||
+		(maxz < box[off+2]) || (minz > box[off+5])) {
+		continue;
+	    }
+	    if (child1[node] == NULL_NODE) {
+		result.add(item[node]);
+	    } else {
+		top = push(top, child1[node], child2[node]);
+	    }
+	}
+    }
+
+    private void appendUnbounded(UnorderList result) {
+	Object objs[] = unbounded.toArray(false);
+	int size = unbounded.arraySize();
+	for (int i=0; i < size; i++) {
+	    result.add(objs[i]);
+	}
+    }
+
+    private void appendAll(UnorderList result) {
+	appendUnbounded(result);
+	for (int i=0; i < nodeCapacity; i++) {
+	    if ((item[i] != null) && (child1[i] == NULL_NODE)) {
+		result.add(item[i]);
+	    }
+	}
+    }
+
+    private int push(int top, int a, int b) {
+	if (top + 2 > stack.length) {
+	    int newStack[] = new int[stack.length << 1];
+	    System.arraycopy(stack, 0, newStack, 0, top);
+	    stack = newStack;
+	}
+	stack[top++] = a;
+	stack[top++] = b;
+	return top;
+    }
+
+    private Integer insertObject(Object obj, Bounds bounds) {
+	if ((bounds == null) || bounds.boundsIsEmpty) {
+	    return EMPTY;
+	}
+	if (bounds.boundsIsInfinite || !computeBox(bounds, tmp)) {
+	    unbounded.add(obj);
+	    return UNBOUNDED;
+	}
+
+	int leaf = allocateNode();
+	double dx = tmp[3] - tmp[0];
+	double dy = tmp[4] - tmp[1];
+	double dz = tmp[5] - tmp[2];
+	double margin = FAT_RATIO * Math.max(dx, Math.max(dy, dz));
+	int off = 6*leaf;
+	box[off]   = tmp[0] - margin;
+	box[off+1] = tmp[1] - margin;
+	box[off+2] = tmp[2] - margin;
+	box[off+3] = tmp[3] + margin;
+	box[off+4] = tmp[4] + margin;
+	box[off+5] = tmp[5] + margin;
+	item[leaf] = obj;
+	height[leaf] = 0;
+	insertLeaf(leaf);
+	return new Integer(leaf);
+    }
+
+    private void removeObject(Object obj, Integer proxy) {
+	int node = proxy.intValue();
+	if (node >= 0) {
+	    removeLeaf(node);
+	    freeNode(node);
+	} else if (node == UNBOUNDED.intValue()) {
+	    unbounded.remove(obj);
+	}
+    }
+
+    /**
+     * Computes the axis-aligned box of bounds into b, returns false
+     * if the bounds is empty or infinite.
+     */
+    private boolean computeBox(Bounds bounds, double b[]) {
+	if ((bounds == null) || bounds.boundsIsEmpty ||
+	    bounds.boundsIsInfinite) {
+	    return false;
+	}
+	tmpBox.set(bounds);
+	b[0] = tmpBox.lower.x;
+	b[1] = tmpBox.lower.y;
+	b[2] = tmpBox.lower.z;
+	b[3] = tmpBox.upper.x;
+	b[4] = tmpBox.upper.y;
+	b[5] = tmpBox.upper.z;
+	return !(Double.isInfinite(b[0]) || Double.isInfinite(b[1]) ||
+		 Double.isInfinite(b[2]) || Double.isInfinite(b[3]) ||
+		 Double.isInfinite(b[4]) || Double.isInfinite(b[5]));
+    }
+
+    private boolean containsBox(int node, double b[]) {
+	int off = 6*node;
+	return ((box[off]   <= b[0]) && (box[off+1] <= b[1]) &&
+		(box[off+2] <= b[2]) && (box[off+3] >= b[3]) &&
+		(box[off+4] >= b[4]) && (box[off+5] >= b[5]));
+    }
+
+    private void growNodes(int newCapacity) {
+	double newBox[] = new double[6*newCapacity];
+	int newParent[] = new int[newCapacity];
+	int newChild1[] = new int[newCapacity];
+	int newChild2[] = new int[newCapacity];
+	int newHeight[] = new int[newCapacity];
+	Object newItem[] = new Object[newCapacity];
+
+	if (nodeCapacity > 0) {
+	    System.arraycopy(box, 0, newBox, 0, 6*nodeCapacity);
+	    System.arraycopy(parent, 0, newParent, 0, nodeCapacity);
+	    System.arraycopy(child1, 0, newChild1, 0, nodeCapacity);
+	    System.arraycopy(child2, 0, newChild2, 0, nodeCapacity);
+	    System.arraycopy(height, 0, newHeight, 0, nodeCapacity);
+	    System.arraycopy(item, 0, newItem, 0, nodeCapacity);
+	}
+	box = newBox;
+	parent = newParent;
+	child1 = newChild1;
+	child2 = newChild2;
+	height = newHeight;
+	item = newItem;
+
+	// link the new nodes into the free list, parent is used
+	// as the next pointer of free nodes
+	for (int i=nodeCapacity; i < newCapacity-1; i++) {
+	    parent[i] = i+1;
+	}
+	parent[newCapacity-1] = freeList;
+	freeList = nodeCapacity;
+	nodeCapacity = newCapacity;
+    }
+
+    private int allocateNode() {
+	if (freeList == NULL_NODE) {
+	    growNodes(nodeCapacity << 1);
+	}
+	int node = freeList;
+	freeList = parent[node];
+	parent[node] = NULL_NODE;
+	child1[node] = NULL_NODE;
+	child2[node] = NULL_NODE;
+	height[node] = 0;
+	item[node] = null;
+	nodeCount++;
+	return node;
+    }
+
+    private void freeNode(int node) {
+	item[node] = null;
+	child1[node] = NULL_NODE;
+	child2[node] = NULL_NODE;
+	height[node] = -1;
+	parent[node] = freeList;
+	freeList = node;
+	nodeCount--;
+    }
+
+    private void insertLeaf(int leaf) {
+	if (root == NULL_NODE) {
+	    root = leaf;
+	    parent[root] = NULL_NODE;
+	    return;
+	}
+
+	// Find the best sibling using the surface area heuristic
+	int off = 6*leaf;
+	int index = root;
+	while (child1[index] != NULL_NODE) {
+	    int c1 = child1[index];
+	    int c2 = child2[index];
+
+	    double area = area(index);
+	    double combinedArea = unionArea(index, off);
+	    double cost = 2.0 * combinedArea;
+	    double inheritanceCost = 2.0 * (combinedArea - area);
+
+	    double cost1 = unionArea(c1, off) + inheritanceCost;
+	    if (child1[c1] != NULL_NODE) {
+		cost1 -= area(c1);
+	    }
+	    double cost2 = unionArea(c2, off) + inheritanceCost;
+	    if (child1[c2] != NULL_NODE) {
+		cost2 -= area(c2);
+	    }
+
+	    if ((cost < cost1) && (cost < cost2)) {
+		break;
+	    }
+	    index = (cost1 < cost2) ? c1 : c2;
+	}
+
+	int sibling = index;
+	int oldParent = parent[sibling];
+	int newParent = allocateNode();
+	parent[newParent] = oldParent;
+	setUnion(newParent, leaf, sibling);
+	height[newParent] = height[sibling] + 1;
+
+	if (oldParent != NULL_NODE) {
+	    if (child1[oldParent] == sibling) {
+		child1[oldParent] = newParent;
+	    } else {
+		child2[oldParent] = newParent;
+	    }
+	} else {
+	    root = newParent;
+	}
+	child1[newParent] = sibling;
+	child2[newParent] = leaf;
+	parent[sibling] = newParent;
+	parent[leaf] = newParent;
+
+	refit(parent[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+	if (leaf == root) {
+	    root = NULL_NODE;
+	    return;
+	}
+
+	int p = parent[leaf];
+	int grandParent = parent[p];
+	int sibling = (child1[p] == leaf) ? child2[p] : child1[p];
+
+	if (grandParent != NULL_NODE) {
+	    if (child1[grandParent] == p) {
+		child1[grandParent] = sibling;
+	    } else {
+		child2[grandParent] = sibling;
+	    }
+	    parent[sibling] = grandParent;
+	    freeNode(p);
+	    refit(grandParent);
+	} else {
+	    root = sibling;
+	    parent[sibling] = NULL_NODE;
+	    freeNode(p);
+	}
+	parent[leaf] = NULL_NODE;
+    }
+
+    /**
+     * Walks up from index fixing the heights and boxes of the
+     * ancestors, rebalancing on the way.
+     */
+    private void refit(int index) {
+	while (index != NULL_NODE) {
+	    index = balance(index);
+	    int c1 = child1[index];
+	    int c2 = child2[index];
+	    height[index] = 1 + Math.max(height[c1], height[c2]);
+	    setUnion(index, c1, c2);
+	    index = parent[index];
+	}
+    }
+
+    /**
+     * Performs a left or right rotation if node a is imbalanced.
+     * Returns the new root index of the subtree.
+     */
+    private int balance(int a) {
+	if ((child1[a] == NULL_NODE) || (height[a] < 2)) {
+	    return a;
+	}
+
+	int b = child1[a];
+	int c = child2[a];
+	int bal = height[c] - height[b];
+
+	if (bal > 1) {
+	    // Rotate c up
+	    int f = child1[c];
+	    int g = child2[c];
+
+	    child1[c] = a;
+	    parent[c] = parent[a];
+	    parent[a] = c;
+	    replaceChild(parent[c], a, c);
+
+	    if (height[f] > height[g]) {
+		child2[c] = f;
+		child2[a] = g;
+		parent[g] = a;
+		setUnion(a, b, g);
+		setUnion(c, a, f);
+		height[a] = 1 + Math.max(height[b], height[g]);
+		height[c] = 1 + Math.max(height[a], height[f]);
+	    } else {
+		child2[c] = g;
+		child2[a] = f;
+		parent[f] = a;
+		setUnion(a, b, f);
+		setUnion(c, a, g);
+		height[a] = 1 + Math.max(height[b], height[f]);
+		height[c] = 1 + Math.max(height[a], height[g]);
+	    }
+	    return c;
+	}
+
+	if (bal < -1) {
+	    // Rotate b up
+	    int d = child1[b];
+	    int e = child2[b];
+
+	    child1[b] = a;
+	    parent[b] = parent[a];
+	    parent[a] = b;
+	    replaceChild(parent[b], a, b);
+
+	    if (height[d] > height[e]) {
+		child2[b] = d;
+		child1[a] = e;
+		parent[e] = a;
+		setUnion(a, c, e);
+		setUnion(b, a, d);
+		height[a] = 1 + Math.max(height[c], height[e]);
+		height[b] = 1 + Math.max(height[a], height[d]);
+	    } else {
+		child2[b] = e;
+		child1[a] = d;
+		parent[d] = a;
+		setUnion(a, c, d);
+		setUnion(b, a, e);
+		height[a] = 1 + Math.max(height[c], height[d]);
+		height[b] = 1 + Math.max(height[a], height[e]);
+	    }
+	    return b;
+	}
+	return a;
+    }
+
+    private void replaceChild(int p, int oldChild, int newChild) {
+	if (p != NULL_NODE) {
+	    if (child1[p] == oldChild) {
+		child1[p] = newChild;
+	    } else {
+		child2[p] = newChild;
+	    }
+	} else {
+	    root = newChild;
+	}
+    }
+
+    private void setUnion(int node, int a, int b) {
+	int o = 6*node, oa = 6*a, ob = 6*b;
+	box[o]   = Math.min(box[oa],   box[ob]);
+	box[o+1] = Math.min(box[oa+1], box[ob+1]);
+	box[o+2] = Math.min(box[oa+2], box[ob+2]);
+	box[o+3] = Math.max(box[oa+3], box[ob+3]);
+	box[o+4] = Math.max(box[oa+4], box[ob+4]);
+	box[o+5] = Math.max(box[oa+5], box[ob+5]);
+    }
+
+    private double area(int node) {
+	int o = 6*node;
+	double dx = box[o+3] - box[o];
+	double dy = box[o+4] - box[o+1];
+	double dz = box[o+5] - box[o+2];
+	return 2.0*(dx*dy + dy*dz + dz*dx);
+    }
+
+    private double unionArea(int node, int off) {
+	int o = 6*node;
+	double dx = Math.max(box[o+3], box[off+3]) - Math.min(box[o], box[off]);
+	double dy = Math.max(box[o+4], box[off+4]) - Math.min(box[o+1], box[off+1]);
+	double dz = Math.max(box[o+5], box[off+5]) - Math.min(box[o+2], box[off+2]);
+	return 2.0*(dx*dy + dy*dz + dz*dx);
+    }
+}
@@ -806,6 +806,8 @@ public class Canvas3D extends Canvas {
     static final int TEXTURE_LERP               = 0x4000;
     static final int TEXTURE_NON_POWER_OF_TWO	= 0x8000;
     static final int TEXTURE_AUTO_MIPMAP_GENERATION = 0x10000;
+    static final int TEXTURE_COMPRESSION_S3TC	= 0x20000;
+    static final int TEXTURE_COMPRESSION_ETC1	= 0x40000;
 
     int textureExtendedFeatures = 0;
 
@@ -880,6 +882,13 @@ public class Canvas3D extends Canvas {
     // It is used when sharedCtx = false;
     ArrayList textureIDResourceTable = new ArrayList(5);
 
+    // Tracks the size and use of the textures in textureIDResourceTable
+    // to keep them within the texture memory budget.
+    TextureResidencyManager textureResidency = new TextureResidencyManager();
+
+    // Spreads the texture uploads of this context over several frames
+    TextureUploadScheduler textureUploads = new TextureUploadScheduler();
+
     // The following variables are used by the lazy download of
     // states code to keep track of the set of current to be update bins
 
@@ -3292,6 +3301,14 @@ public class Canvas3D extends Canvas {
      * <td>Boolean</td>
      * </tr>
      * <tr>
+     * <td><code>textureCompressionS3TCAvailable</code></td>
+     * <td>Boolean</td>
+     * </tr>
+     * <tr>
+     * <td><code>textureCompressionETC1Available</code></td>
+     * <td>Boolean</td>
+     * </tr>
+     * <tr>
      * <td><code>vertexAttrsMax</code></td>
      * <td>Integer</td>
      * </tr>
@@ -3627,6 +3644,26 @@ public class Canvas3D extends Canvas {
      * </li>
      *
      * <li>
+     * <code>textureCompressionS3TCAvailable</code>
+     * <ul>
+     * A Boolean indicating whether or not S3TC (DXT1, DXT3 and DXT5)
+     * compressed images are supported for this Canvas3D. If it indicates
+     * false, then compressed NioImageBuffer images of these types are
+     * decoded and used as uncompressed RGBA images.
+     * </ul>
+     * </li>
+     *
+     * <li>
+     * <code>textureCompressionETC1Available</code>
+     * <ul>
+     * A Boolean indicating whether or not ETC1 compressed images are
+     * supported for this Canvas3D. If it indicates false, then compressed
+     * NioImageBuffer images of this type are decoded and used as
+     * uncompressed RGB images.
+     * </ul>
+     * </li>
+     *
+     * <li>
      * <code>vertexAttrsMax</code>
      * <ul>
      * An Integer indicating the maximum number of vertex attributes
@@ -3813,6 +3850,14 @@ public class Canvas3D extends Canvas {
         values.add(new Boolean(
                 (textureExtendedFeatures & TEXTURE_AUTO_MIPMAP_GENERATION) != 0));
 
+        keys.add("textureCompressionS3TCAvailable");
+        values.add(new Boolean(
+                (textureExtendedFeatures & TEXTURE_COMPRESSION_S3TC) != 0));
+
+        keys.add("textureCompressionETC1Available");
+        values.add(new Boolean(
+                (textureExtendedFeatures & TEXTURE_COMPRESSION_ETC1) != 0));
+
         keys.add("textureCoordSetsMax");
         values.add(new Integer(maxTexCoordSets));
 
@@ -3937,6 +3982,8 @@ public class Canvas3D extends Canvas {
 		}
 	    }
 	}
+	textureResidency.clear();
+	textureUploads.clear();
     }
 
 
@@ -4839,6 +4886,7 @@ public class Canvas3D extends Canvas {
                     Object obj = textureIDResourceTable.get(val);
                     if (obj instanceof TextureRetained) {
                         TextureRetained tex = (TextureRetained) obj;
+                        textureUploads.remove(tex);
                         synchronized (tex.resourceLock) {
                             tex.resourceCreationMask &= ~canvasBit;
                             if (tex.resourceCreationMask == 0) {
@@ -4849,12 +4897,24 @@ public class Canvas3D extends Canvas {
 
                     textureIDResourceTable.set(val, null);
                 }
+                textureResidency.remove(val);
                 freeTexture(ctx, val);
             }
             textureIdResourceFreeList.clear();
         }
     }
 
+    // Starts a new frame for the textures of this context: resets the
+    // upload budget and evicts the least recently used textures if they
+    // don't fit in the texture memory budget. ctx must be current.
+    void beginTextureFrame(Context ctx) {
+	textureUploads.beginFrame();
+	if (textureResidency.beginFrame(view.frameNumber)) {
+	    textureResidency.evictTextures(ctx, canvasBit,
+					   textureIDResourceTable);
+	}
+    }
+
     void freeContextResources(Renderer rdr, boolean freeBackground,
 			      Context ctx) {
 
@@ -4897,6 +4957,8 @@ public class Canvas3D extends Canvas {
 	    }
 	}
 	textureIDResourceTable.clear();
+	textureResidency.clear();
+	textureUploads.clear();
 
 	freeAllDisplayListResources(ctx);
     }
@@ -0,0 +1,363 @@
+/*
+ * Copyright 1998-2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ *
+ */
+
+
+package javax.media.j3d;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import com.sun.j3d.internal.ParallelLoop;
+
+/**
+ * The CompressedImageDecoder class knows the block layout of the
+ * compressed image formats (S3TC DXT1, DXT3, DXT5 and ETC1).  It is used
+ * to size and validate compressed image data, and to decode it to RGBA
+ * when the rendering layer has no support for the format.  Every format
+ * stores 4x4 pixel blocks, row of blocks after row of blocks, in the same
+ * row order as the uncompressed image.
+ */
+final class CompressedImageDecoder {
+
+    // ETC1 intensity modifier table, indexed by the table codeword
+    private static final int ETC1_MODIFIERS[][] = {
+	{2, 8}, {5, 17}, {9, 29}, {13, 42},
+	{18, 60}, {24, 80}, {33, 106}, {47, 183}
+    };
+
+    private CompressedImageDecoder() {
+    }
+
+    /**
+     * Returns true if the specified ImageComponentRetained image format
+     * value is one of the compressed formats.
+     */
+    static boolean isCompressed(int imageFormat) {
+	return getBlockSize(imageFormat) != 0;
+    }
+
+    /**
+     * Returns the number of bytes per 4x4 block for the specified
+     * ImageComponentRetained image format value, or 0 if the format
+     * isn't compressed.
+     */
+    static int getBlockSize(int imageFormat) {
+	switch (imageFormat) {
+	case ImageComponentRetained.TYPE_DXT1_RGB:
+	case ImageComponentRetained.TYPE_DXT1_RGBA:
+	case ImageComponentRetained.TYPE_ETC1_RGB:
+	    return 8;
+	case ImageComponentRetained.TYPE_DXT3_RGBA:
+	case ImageComponentRetained.TYPE_DXT5_RGBA:
+	    return 16;
+	default:
+	    return 0;
+	}
+    }
+
+    /**
+     * Returns the ImageComponentRetained image format value of the
+     * specified compressed NioImageBuffer image type.
+     */
+    static int getImageFormat(NioImageBuffer.ImageType imageType) {
+	switch (imageType) {
+	case TYPE_DXT1_RGB:
+	    return ImageComponentRetained.TYPE_DXT1_RGB;
+	case TYPE_DXT1_RGBA:
+	    return ImageComponentRetained.TYPE_DXT1_RGBA;
+	case TYPE_DXT3_RGBA:
+	    return ImageComponentRetained.TYPE_DXT3_RGBA;
+	case TYPE_DXT5_RGBA:
+	    return ImageComponentRetained.TYPE_DXT5_RGBA;
+	case TYPE_ETC1_RGB:
+	    return ImageComponentRetained.TYPE_ETC1_RGB;
+	default:
+	    throw new AssertionError();
+	}
+    }
+
+    /**
+     * Returns the number of bytes of a compressed image of the specified
+     * size.
+     */
+    static int getImageSize(int imageFormat, int width, int height) {
+	return ((width + 3) >> 2) * ((height + 3) >> 2) *
+	    getBlockSize(imageFormat);
+    }
+
+    /**
+     * Returns the Canvas3D texture extended feature bit needed to render
+     * the specified compressed image format.
+     */
+    static int getRequiredFeature(int imageFormat) {
+	if (imageFormat == ImageComponentRetained.TYPE_ETC1_RGB) {
+	    return Canvas3D.TEXTURE_COMPRESSION_ETC1;
+	}
+	return Canvas3D.TEXTURE_COMPRESSION_S3TC;
+    }
+
+    /**
+     * Checks that compressed image data passed to a texture update call
+     * is a byte buffer holding exactly the blocks of a width by height
+     * image or sub-image, and that a sub-image starts on a block
+     * boundary.
+     *
+     * @exception IllegalArgumentException if the data doesn't match the
+     * block layout of the format
+     */
+    static void checkImageData(int imageFormat, int xoffset, int yoffset,
+			       int width, int height,
+			       int dataType, Object data) {
+
+	if (dataType != ImageComponentRetained.IMAGE_DATA_TYPE_BYTE_BUFFER ||
+	    !(data instanceof ByteBuffer)) {
+	    throw new IllegalArgumentException(J3dI18N.getString("CompressedImageDecoder0"));
+	}
+
+	if (((Buffer) data).limit() != getImageSize(imageFormat, width, height)) {
+	    throw new IllegalArgumentException(J3dI18N.getString("CompressedImageDecoder1"));
+	}
+
+	if ((xoffset & 3) != 0 || (yoffset & 3) != 0) {
+	    throw new IllegalArgumentException(J3dI18N.getString("CompressedImageDecoder2"));
+	}
+    }
+
+    /**
+     * Decodes a compressed image to 4 bytes per pixel RGBA.  Large images
+     * are split by rows of blocks across a ParallelLoop.
+     *
+     * @param src the compressed blocks, starting at index 0
+     * @param dst the RGBA destination, starting at index 0, which must
+     * hold width*height*4 bytes
+     */
+    static void decode(final int imageFormat, ByteBuffer src,
+		       final int width, final int height, ByteBuffer dst) {
+
+	final ByteBuffer in = src.duplicate();
+	final ByteBuffer out = dst.duplicate().order(ByteOrder.BIG_ENDIAN);
+	final int blockSize = getBlockSize(imageFormat);
+	final int blocksWide = (width + 3) >> 2;
+	int blocksHigh = (height + 3) >> 2;
+
+	ParallelLoop.Body body = new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		int block[] = new int[16];
+		for (int by = start; by < end; by++) {
+		    int s = by * blocksWide * blockSize;
+		    for (int bx = 0; bx < blocksWide; bx++, s += blockSize) {
+			decodeBlock(imageFormat, in, s, block);
+			storeBlock(block, bx << 2, by << 2, width, height, out);
+		    }
+		}
+	    }
+	};
+
+	if ((long) width * height < ImageConverter.PARALLEL_THRESHOLD ||
+	    blocksHigh < 2) {
+	    body.run(0, blocksHigh);
+	} else {
+	    int chunk = Math.max(1, (ImageConverter.PARALLEL_THRESHOLD / 16) /
+				 blocksWide);
+	    ParallelLoop.run(0, blocksHigh, chunk,
+			     ParallelLoop.getDefaultParallelism(), body);
+	}
+    }
+
+    // Decodes the block at offset s into 16 RGBA pixels, row by row
+    static void decodeBlock(int imageFormat, ByteBuffer in, int s,
+			    int block[]) {
+	switch (imageFormat) {
+	case ImageComponentRetained.TYPE_DXT1_RGB:
+	    decodeColor(in, s, block, true, false);
+	    break;
+	case ImageComponentRetained.TYPE_DXT1_RGBA:
+	    decodeColor(in, s, block, true, true);
+	    break;
+	case ImageComponentRetained.TYPE_DXT3_RGBA:
+	    decodeColor(in, s + 8, block, false, false);
+	    decodeExplicitAlpha(in, s, block);
+	    break;
+	case ImageComponentRetained.TYPE_DXT5_RGBA:
+	    decodeColor(in, s + 8, block, false, false);
+	    decodeInterpolatedAlpha(in, s, block);
+	    break;
+	case ImageComponentRetained.TYPE_ETC1_RGB:
+	    decodeETC1(in, s, block);
+	    break;
+	default:
+	    throw new AssertionError();
+	}
+    }
+
+    private static void storeBlock(int block[], int x0, int y0,
+				   int width, int height, ByteBuffer out) {
+	int w = Math.min(4, width - x0);
+	int h = Math.min(4, height - y0);
+	for (int y = 0; y < h; y++) {
+	    int j = ((y0 + y) * width + x0) << 2;
+	    for (int x = 0; x < w; x++, j += 4) {
+		out.putInt(j, block[(y << 2) + x]);
+	    }
+	}
+    }
+
+    private static int unsignedShort(ByteBuffer in, int i) {
+	return (in.get(i) & 0xff) | ((in.get(i + 1) & 0xff) << 8);
+    }
+
+    private static int littleEndianInt(ByteBuffer in, int i) {
+	return unsignedShort(in, i) | (unsignedShort(in, i + 2) << 16);
+    }
+
+    // Expands a 565 color to 0xRRGGBB00
+    private static int expand565(int c) {
+	int r = (c >> 11) & 0x1f;
+	int g = (c >> 5) & 0x3f;
+	int b = c & 0x1f;
+	r = (r << 3) | (r >> 2);
+	g = (g << 2) | (g >> 4);
+	b = (b << 3) | (b >> 2);
+	return (r << 24) | (g << 16) | (b << 8);
+    }
+
+    private static int mix(int c0, int w0, int c1, int w1, int d) {
+	int r = (((c0 >>> 24) * w0) + ((c1 >>> 24) * w1)) / d;
+	int g = ((((c0 >> 16) & 0xff) * w0) + (((c1 >> 16) & 0xff) * w1)) / d;
+	int b = ((((c0 >> 8) & 0xff) * w0) + (((c1 >> 8) & 0xff) * w1)) / d;
+	return (r << 24) | (g << 16) | (b << 8);
+    }
+
+    // Decodes an 8 byte DXT color block; DXT3 and DXT5 color blocks
+    // always use the four color mode
+    private static void decodeColor(ByteBuffer in, int s, int block[],
+				    boolean dxt1, boolean punchThrough) {
+	int c0 = unsignedShort(in, s);
+	int c1 = unsignedShort(in, s + 2);
+	int bits = littleEndianInt(in, s + 4);
+	int colors[] = new int[4];
+
+	colors[0] = expand565(c0) | 0xff;
+	colors[1] = expand565(c1) | 0xff;
+	if (!dxt1 || c0 > c1) {
+	    colors[2] = mix(colors[0], 2, colors[1], 1, 3) | 0xff;
+	    colors[3] = mix(colors[0], 1, colors[1], 2, 3) | 0xff;
+	} else {
+	    colors[2] = mix(colors[0], 1, colors[1], 1, 2) | 0xff;
+	    colors[3] = punchThrough ? 0 : 0xff;
+	}
+
+	for (int i = 0; i < 16; i++, bits >>>= 2) {
+	    block[i] = colors[bits & 3];
+	}
+    }
+
+    private static void decodeExplicitAlpha(ByteBuffer in, int s,
+					    int block[]) {
+	for (int i = 0; i < 16; i += 2) {
+	    int a = in.get(s + (i >> 1)) & 0xff;
+	    block[i] = (block[i] & ~0xff) | ((a & 0xf) * 17);
+	    block[i + 1] = (block[i + 1] & ~0xff) | ((a >> 4) * 17);
+	}
+    }
+
+    private static void decodeInterpolatedAlpha(ByteBuffer in, int s,
+						int block[]) {
+	int a0 = in.get(s) & 0xff;
+	int a1 = in.get(s + 1) & 0xff;
+	int alphas[] = new int[8];
+
+	alphas[0] = a0;
+	alphas[1] = a1;
+	if (a0 > a1) {
+	    for (int i = 1; i < 7; i++) {
+		alphas[i + 1] = ((7 - i) * a0 + i * a1) / 7;
+	    }
+	} else {
+	    for (int i = 1; i < 5; i++) {
+		alphas[i + 1] = ((5 - i) * a0 + i * a1) / 5;
+	    }
+	    alphas[6] = 0;
+	    alphas[7] = 255;
+	}
+
+	long bits = (littleEndianInt(in, s + 2) & 0xffffffffL) |
+	    ((long) unsignedShort(in, s + 6) << 32);
+	for (int i = 0; i < 16; i++, bits >>>= 3) {
+	    block[i] = (block[i] & ~0xff) | alphas[(int) (bits & 7)];
+	}
+    }
+
+    private static int clamp(int c) {
+	return c < 0 ? 0 : (c > 255 ? 255 : c);
+    }
+
+    private static void decodeETC1(ByteBuffer in, int s, int block[]) {
+	int hi = ((in.get(s) & 0xff) << 24) | ((in.get(s + 1) & 0xff) << 16) |
+	    ((in.get(s + 2) & 0xff) << 8) | (in.get(s + 3) & 0xff);
+	int lo = ((in.get(s + 4) & 0xff) << 24) | ((in.get(s + 5) & 0xff) << 16) |
+	    ((in.get(s + 6) & 0xff) << 8) | (in.get(s + 7) & 0xff);
+	int base[][] = new int[2][3];
+
+	if ((hi & 0x2) == 0) {
+	    // Individual mode: two 444 colors
+	    for (int c = 0; c < 3; c++) {
+		int v0 = (hi >>> (28 - 8 * c)) & 0xf;
+		int v1 = (hi >>> (24 - 8 * c)) & 0xf;
+		base[0][c] = v0 * 17;
+		base[1][c] = v1 * 17;
+	    }
+	} else {
+	    // Differential mode: a 555 color and a signed 333 delta
+	    for (int c = 0; c < 3; c++) {
+		int v0 = (hi >>> (27 - 8 * c)) & 0x1f;
+		int d = ((hi >>> (24 - 8 * c)) & 0x7) << 29 >> 29;
+		int v1 = (v0 + d) & 0x1f;
+		base[0][c] = (v0 << 3) | (v0 >> 2);
+		base[1][c] = (v1 << 3) | (v1 >> 2);
+	    }
+	}
+
+	int table0 = (hi >>> 5) & 0x7;
+	int table1 = (hi >>> 2) & 0x7;
+	boolean flip = (hi & 0x1) != 0;
+
+	for (int x = 0; x < 4; x++) {
+	    for (int y = 0; y < 4; y++) {
+		int p = (x << 2) + y;
+		int sub = flip ? (y >> 1) : (x >> 1);
+		int idx = (((lo >>> (16 + p)) & 1) << 1) | ((lo >>> p) & 1);
+		int m = ETC1_MODIFIERS[sub == 0 ? table0 : table1][idx & 1];
+		if ((idx & 2) != 0) {
+		    m = -m;
+		}
+		block[(y << 2) + x] = (clamp(base[sub][0] + m) << 24) |
+		    (clamp(base[sub][1] + m) << 16) |
+		    (clamp(base[sub][2] + m) << 8) | 0xff;
+	    }
+	}
+    }
+}
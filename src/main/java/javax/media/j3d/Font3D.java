@@ -35,15 +35,17 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
 
 import javax.vecmath.Point3d;
 import javax.vecmath.Point3f;
 import javax.vecmath.Vector3f;
 
 import com.sun.j3d.internal.FastVector;
+import com.sun.j3d.internal.GeometryCache;
 import com.sun.j3d.utils.geometry.GeometryInfo;
 import com.sun.j3d.utils.geometry.NormalGenerator;
+import com.sun.j3d.utils.geometry.Triangulator;
 
 /**
  * The Font3D object is used to store extruded 2D glyphs.  These
@@ -86,8 +88,33 @@ public class Font3D extends NodeComponent {
     // Used by triangulateGlyphs method to split contour data into islands.
     final static float EPS = 0.000001f;
 
-    // Map glyph code to GeometryArrayRetained
-    Hashtable geomHash = new Hashtable(20);
+    // Memory used by a vertex of a glyph, with its coordinate and normal
+    static final int BYTES_PER_GLYPH_VERTEX = 24;
+
+    // Triangulation algorithm of the glyphs, monotone decomposition if
+    // the j3d.glyphTriangulation property is "monotone", ear clipping
+    // otherwise.  It is read once so all cached glyphs use the same one.
+    static final int glyphTriangulation =
+	"monotone".equalsIgnoreCase((String)
+	    java.security.AccessController.doPrivileged(
+		new java.security.PrivilegedAction() {
+		    public Object run() {
+			return System.getProperty("j3d.glyphTriangulation");
+		    }
+		})) ? Triangulator.MONOTONE : Triangulator.EAR_CLIPPING;
+
+    // Map GlyphKey to GeometryArrayRetained.  The glyphs are shared by
+    // all the Font3D objects with the same font, tessellation and
+    // extrusion.  The cache is limited to 16 megabytes, or the value of
+    // the j3d.glyphCacheSize property in megabytes.
+    static GeometryCache glyphCache = new GeometryCache(
+	GeometryCache.getSizeProperty("j3d.glyphCacheSize", 16),
+	new GeometryCache.Weigher() {
+	    public long weigh(Object key, Object value) {
+		return (long)((GeometryArrayRetained)value).getVertexCount() *
+		    BYTES_PER_GLYPH_VERTEX;
+	    }
+	});
 
     /**
      * Constructs a Font3D object from the specified Font and
@@ -243,11 +270,80 @@ public class Font3D extends NodeComponent {
         return ga;
     }
 
+    /**
+     * Sets the limit on the memory used by the cache of tessellated
+     * glyphs shared by all Font3D objects.  When the cache goes over the
+     * limit, the glyphs that were used the least recently are dropped
+     * from it and tessellated again when they are next needed.  The
+     * default limit is 16 megabytes, or the value of the
+     * j3d.glyphCacheSize property, in megabytes.
+     *
+     * @param bytes the limit in bytes, no limit if 0 or less
+     *
+     * @since Java 3D 1.6
+     */
+    public static void setGlyphCacheLimit(long bytes) {
+        glyphCache.setMaxWeight(bytes);
+    }
+
+    /**
+     * Returns the limit on the memory used by the glyph cache shared by
+     * all Font3D objects.
+     *
+     * @return the limit in bytes, no limit if 0 or less
+     *
+     * @since Java 3D 1.6
+     */
+    public static long getGlyphCacheLimit() {
+        return glyphCache.getMaxWeight();
+    }
+
+    /**
+     * Returns the memory used by the glyph cache shared by all Font3D
+     * objects.
+     *
+     * @return the estimated size of the cached glyphs in bytes
+     *
+     * @since Java 3D 1.6
+     */
+    public static long getGlyphCacheSize() {
+        return glyphCache.getWeight();
+    }
+
+    /**
+     * Returns the number of glyphs found in the glyph cache.
+     *
+     * @since Java 3D 1.6
+     */
+    public static long getGlyphCacheHitCount() {
+        return glyphCache.getHitCount();
+    }
+
+    /**
+     * Returns the number of glyphs which were not in the glyph cache
+     * and had to be tessellated.
+     *
+     * @since Java 3D 1.6
+     */
+    public static long getGlyphCacheMissCount() {
+        return glyphCache.getMissCount();
+    }
+
+    /**
+     * Returns the number of glyphs dropped from the glyph cache to keep
+     * it under its limit.
+     *
+     * @since Java 3D 1.6
+     */
+    public static long getGlyphCacheEvictionCount() {
+        return glyphCache.getEvictionCount();
+    }
+
 
   // Triangulate glyph with 'unicode' if not already done.
     GeometryArrayRetained triangulateGlyphs(GlyphVector gv, char c) {
-	Character ch = new Character(c);
-	GeometryArrayRetained geo = (GeometryArrayRetained) geomHash.get(ch);
+	GlyphKey key = new GlyphKey(this, c);
+	GeometryArrayRetained geo = (GeometryArrayRetained) glyphCache.get(key);
 
 	if (geo == null) {
 	  // Font Y-axis is downwards, so send affine transform to flip it.
@@ -457,6 +553,7 @@ public class Font3D extends NodeComponent {
 		contourCounts[0] = islandCounts[i].length;
 		numPoints += outVerts[i].length;
 		gi = new GeometryInfo(GeometryInfo.POLYGON_ARRAY);
+		gi.setTriangulationAlgorithm(glyphTriangulation);
 		gi.setCoordinates(outVerts[i]);
 		gi.setStripCounts(islandCounts[i]);
 		gi.setContourCounts(contourCounts);
@@ -935,7 +1032,7 @@ public class Font3D extends NodeComponent {
 		}// if shape
 	    }// if fontExtrusion
 	    geo = (GeometryArrayRetained) triAry.retained;
-	    geomHash.put(ch, geo);
+	    geo = (GeometryArrayRetained) glyphCache.putIfAbsent(key, geo);
 	}
 
 	return geo;
@@ -1167,4 +1264,55 @@ public class Font3D extends NodeComponent {
 	    }
 	}
     }
+
+    // Identifies a glyph by its code and the values which shape its
+    // tessellation, so that equal Font3D objects find the same glyphs
+    static class GlyphKey {
+	Font font;
+	double tessellationTolerance;
+	boolean extruded;
+	float length;
+	float extrusion[];
+	char c;
+	int hash;
+
+	GlyphKey(Font3D font3D, char c) {
+	    this.font = font3D.font;
+	    this.tessellationTolerance = font3D.tessellationTolerance;
+	    this.c = c;
+	    FontExtrusion fe = font3D.fontExtrusion;
+	    extruded = (fe != null);
+	    if (extruded) {
+		length = fe.length;
+		if ((fe.shape != null) && (fe.pnts != null)) {
+		    extrusion = new float[fe.pnts.length * 2];
+		    for (int i = 0; i < fe.pnts.length; i++) {
+			extrusion[2 * i] = fe.pnts[i].x;
+			extrusion[2 * i + 1] = fe.pnts[i].y;
+		    }
+		}
+	    }
+	    long bits = Double.doubleToLongBits(tessellationTolerance);
+	    hash = font.hashCode();
+	    hash = 31 * hash + (int)(bits ^ (bits >>> 32));
+	    hash = 31 * hash + Float.floatToIntBits(length);
+	    hash = 31 * hash + Arrays.hashCode(extrusion);
+	    hash = 31 * hash + c;
+	}
+
+	public int hashCode() {
+	    return hash;
+	}
+
+	public boolean equals(Object o) {
+	    if (!(o instanceof GlyphKey)) {
+		return false;
+	    }
+	    GlyphKey k = (GlyphKey) o;
+	    return (hash == k.hash) && (c == k.c) &&
+		(extruded == k.extruded) && (length == k.length) &&
+		(tessellationTolerance == k.tessellationTolerance) &&
+		Arrays.equals(extrusion, k.extrusion) && font.equals(k.font);
+	}
+    }
 }
@@ -25,9 +25,7 @@
  */
 
 package javax.media.j3d;
-import java.util.ArrayList;
 
-import javax.vecmath.Color3f;
 import javax.vecmath.Color4f;
 import javax.vecmath.Point3f;
 import javax.vecmath.Vector3f;
@@ -45,8 +43,19 @@ import javax.vecmath.Vector3f;
  */
 class GeneralizedVertexList implements GeneralizedStripFlags {
 
-    // The ArrayList containing the vertices.
-    private ArrayList vertices ;
+    // The vertex data, packed in float arrays: 3 floats per position and
+    // normal, 3 or 4 floats per color.  Components not in the vertex format
+    // aren't allocated.
+    private float coords[] ;
+    private float normals[] ;
+    private float colors[] ;
+    private int flags[] ;
+
+    // The number of vertices in the list.
+    private int numVertices ;
+
+    // The number of vertices the arrays can hold.
+    private int capacity ;
 
     // Booleans for individual vertex components.
     private boolean hasColor3 = false ;
@@ -90,10 +99,10 @@ class GeneralizedVertexList implements GeneralizedStripFlags {
 	this.frontFace = frontFace ;
 	setVertexFormat(vertexFormat) ;
 
-	if (initSize == 0)
-	    vertices = new ArrayList() ;
-	else
-	    vertices = new ArrayList(initSize) ;
+	capacity = (initSize > 0) ? initSize : 10 ;
+	coords = new float[3 * capacity] ;
+	flags = new int[capacity] ;
+	numVertices = 0 ;
 
 	stripCount = 0 ;
 	vertexCount = 0 ;
@@ -130,130 +139,125 @@ class GeneralizedVertexList implements GeneralizedStripFlags {
 		hasColor3 = true ;
     }
 
-    /**
-     * A class with fields corresponding to all the data that can be bundled
-     * with the vertices of generalized strips.
-     */
-    class Vertex {
-	int flag ;
-	Point3f coord ;
-	Color3f color3 ;
-	Color4f color4 ;
-	Vector3f normal ;
-
-	Vertex(Point3f p, Vector3f n, Color4f c, int flag) {
-	    this.flag = flag ;
-	    coord = new Point3f(p) ;
-
-	    if (hasNormals)
-		normal = new Vector3f(n) ;
+    // The number of floats per color.
+    private int colorSize() {
+	return hasColor4 ? 4 : 3 ;
+    }
 
-	    if (hasColor3)
-		color3 = new Color3f(c.x, c.y, c.z) ;
+    // Grow the arrays to hold at least one more vertex.
+    private void grow() {
+	int newCapacity = capacity + (capacity >> 1) + 1 ;
+	float newCoords[] = new float[3 * newCapacity] ;
+	System.arraycopy(coords, 0, newCoords, 0, 3 * numVertices) ;
+	coords = newCoords ;
+
+	int newFlags[] = new int[newCapacity] ;
+	System.arraycopy(flags, 0, newFlags, 0, numVertices) ;
+	flags = newFlags ;
+
+	if (normals != null) {
+	    float newNormals[] = new float[3 * newCapacity] ;
+	    System.arraycopy(normals, 0, newNormals, 0, 3 * numVertices) ;
+	    normals = newNormals ;
+	}
 
-	    else if (hasColor4)
-		color4 = new Color4f(c) ;
+	if (colors != null) {
+	    float newColors[] = new float[colorSize() * newCapacity] ;
+	    System.arraycopy(colors, 0,
+			     newColors, 0, colorSize() * numVertices) ;
+	    colors = newColors ;
 	}
+	capacity = newCapacity ;
     }
 
     /**
-     * Copy vertex data to a new Vertex object and add it to this list.
+     * Copy vertex data to the end of this list.  The vertex format only
+     * changes while the list is empty, so the normal and color arrays are
+     * allocated with the first vertex that needs them.
      */
     void addVertex(Point3f pos, Vector3f norm, Color4f color, int flag) {
-	vertices.add(new Vertex(pos, norm, color, flag)) ;
+	if (numVertices == capacity)
+	    grow() ;
+
+	int i = 3 * numVertices ;
+	coords[i]   = pos.x ;
+	coords[i+1] = pos.y ;
+	coords[i+2] = pos.z ;
+
+	if (hasNormals) {
+	    if (normals == null)
+		normals = new float[3 * capacity] ;
+
+	    normals[i]   = norm.x ;
+	    normals[i+1] = norm.y ;
+	    normals[i+2] = norm.z ;
+	}
+
+	if (hasColor3 || hasColor4) {
+	    int n = colorSize() ;
+	    if (colors == null)
+		colors = new float[n * capacity] ;
+
+	    int c = n * numVertices ;
+	    colors[c]   = color.x ;
+	    colors[c+1] = color.y ;
+	    colors[c+2] = color.z ;
+	    if (n == 4)
+		colors[c+3] = color.w ;
+	}
+
+	flags[numVertices++] = flag ;
     }
 
     /**
      * Return the number of vertices in this list.
      */
     int size() {
-	return vertices.size() ;
+	return numVertices ;
     }
 
     // GeneralizedStripFlags interface implementation
     public int getFlagCount() {
-	return vertices.size() ;
+	return numVertices ;
     }
 
     // GeneralizedStripFlags interface implementation
     public int getFlag(int index) {
-	return ((Vertex)vertices.get(index)).flag ;
+	return flags[index] ;
+    }
+
+    // Gather the components of the vertices in the given order.
+    private static float[] gather(float data[], int n,
+				  GeneralizedStrip.IntList indices) {
+	float out[] = new float[n * indices.count] ;
+	for (int i = 0, o = 0 ; i < indices.count ; i++) {
+	    int v = n * indices.ints[i] ;
+	    for (int k = 0 ; k < n ; k++)
+		out[o++] = data[v+k] ;
+	}
+	return out ;
     }
 
     // Copy vertices in the given order to a fixed-length GeometryArray.
-    // Using the array versions of the GeometryArray set() methods results in
-    // a significant performance improvement despite needing to create
-    // fixed-length arrays to hold the vertex elements.
+    // The packed float arrays are copied with the float array versions of
+    // the GeometryArray set() methods, without creating an object per
+    // vertex.
     private void copyVertexData(GeometryArray ga,
 				GeneralizedStrip.IntList indices) {
-	Vertex v ;
-	Point3f p3f[] = new Point3f[indices.count] ;
+	ga.setCoordinates(0, gather(coords, 3, indices)) ;
 
-	if (hasNormals) {
-	    Vector3f v3f[] = new Vector3f[indices.count] ;
-	    if (hasColor3) {
-		Color3f c3f[] = new Color3f[indices.count] ;
-		for (int i = 0 ; i < indices.count ; i++) {
-		    v = (Vertex)vertices.get(indices.ints[i]) ;
-		    p3f[i] = v.coord ;
-		    v3f[i] = v.normal ;
-		    c3f[i] = v.color3 ;
-		}
-		ga.setColors(0, c3f) ;
-
-	    } else if (hasColor4) {
-		Color4f c4f[] = new Color4f[indices.count] ;
-		for (int i = 0 ; i < indices.count ; i++) {
-		    v = (Vertex)vertices.get(indices.ints[i]) ;
-		    p3f[i] = v.coord ;
-		    v3f[i] = v.normal ;
-		    c4f[i] = v.color4 ;
-		}
-		ga.setColors(0, c4f) ;
-
-	    } else {
-		for (int i = 0 ; i < indices.count ; i++) {
-		    v = (Vertex)vertices.get(indices.ints[i]) ;
-		    p3f[i] = v.coord ;
-		    v3f[i] = v.normal ;
-		}
-	    }
-	    ga.setNormals(0, v3f) ;
-
-	} else {
-	    if (hasColor3) {
-		Color3f c3f[] = new Color3f[indices.count] ;
-		for (int i = 0 ; i < indices.count ; i++) {
-		    v = (Vertex)vertices.get(indices.ints[i]) ;
-		    p3f[i] = v.coord ;
-		    c3f[i] = v.color3 ;
-		}
-		ga.setColors(0, c3f) ;
-
-	    } else if (hasColor4) {
-		Color4f c4f[] = new Color4f[indices.count] ;
-		for (int i = 0 ; i < indices.count ; i++) {
-		    v = (Vertex)vertices.get(indices.ints[i]) ;
-		    p3f[i] = v.coord ;
-		    c4f[i] = v.color4 ;
-		}
-		ga.setColors(0, c4f) ;
-
-	    } else {
-		for (int i = 0 ; i < indices.count ; i++) {
-		    v = (Vertex)vertices.get(indices.ints[i]) ;
-		    p3f[i] = v.coord ;
-		}
-	    }
-	}
-	ga.setCoordinates(0, p3f) ;
+	if (hasNormals)
+	    ga.setNormals(0, gather(normals, 3, indices)) ;
+
+	if (hasColor3 || hasColor4)
+	    ga.setColors(0, gather(colors, colorSize(), indices)) ;
     }
 
     /**
      * Output a PointArray.
      */
     PointArray toPointArray() {
-	int size = vertices.size() ;
+	int size = numVertices ;
 
 	if (size > 0) {
 	    PointArray pa = new PointArray(size, vertexFormat) ;
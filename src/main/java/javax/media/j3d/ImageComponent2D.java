@@ -60,6 +60,14 @@ import java.util.logging.Level;
  * <p>
  * As of Java 3D 1.5, an ImageComponent2D accepts an NioImageBuffer object
  * as an alternative to a RenderedImage.
+ *
+ * <p>
+ * As of Java 3D 1.6, the NioImageBuffer may hold a block compressed image
+ * (DXT1, DXT3, DXT5 or ETC1). The compressed blocks are passed to the
+ * rendering layer as they are when it supports the format, and are
+ * decoded to an uncompressed image otherwise. A compressed image must
+ * use an RGB or RGBA based format that matches its number of components,
+ * and a sub-image update of a compressed image reloads the whole image.
  */
 
 public class ImageComponent2D extends ImageComponent {
@@ -73,9 +73,10 @@ class ImageComponent2DRetained extends ImageComponentRetained {
         // This is a byRef image.
         setRefImage(image,0);
 
-        // Reset this flag to true, incase it was set to false due to
+        // Reset these flags to true, incase they were set to false due to
         // the previous image type.
         abgrSupported = true;
+        compressionSupported = true;
 
         imageTypeIsSupported = isImageTypeSupported(image);
 
@@ -128,9 +129,10 @@ class ImageComponent2DRetained extends ImageComponentRetained {
             setRefImage(image,0);
         }
 
-        // Reset this flag to true, incase it was set to false due to
+        // Reset these flags to true, incase they were set to false due to
         // the previous image type.
         abgrSupported = true;
+        compressionSupported = true;
 
         imageTypeIsSupported = isImageTypeSupported(image);
 
@@ -302,7 +304,13 @@ class ImageComponent2DRetained extends ImageComponentRetained {
                     RenderedImage ri = (RenderedImage)refImage;
                     copyUnsupportedImageToImageData(ri, (x + ri.getMinX()), (y + ri.getMinY()), x, y, 0, width, height, imageData);
                 } else if (refImage instanceof NioImageBuffer) {
-                    copyUnsupportedNioImageToImageData((NioImageBuffer)refImage, x, y, x, y, width, height, imageData);
+                    NioImageBuffer nioImage = (NioImageBuffer)refImage;
+                    if (nioImage.isCompressed()) {
+                        // Compressed blocks are decoded as a whole image
+                        copyCompressedNioImageToImageData(nioImage, imageData);
+                    } else {
+                        copyUnsupportedNioImageToImageData(nioImage, x, y, x, y, width, height, imageData);
+                    }
                 } else {
                     assert false;
                 }
@@ -69,6 +69,11 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
     static final int TYPE_INT_BGR      =  0x80;
     static final int TYPE_INT_RGB      =  0x100;
     static final int TYPE_INT_ARGB     =  0x200;
+    static final int TYPE_DXT1_RGB     =  0x10000;
+    static final int TYPE_DXT1_RGBA    =  0x20000;
+    static final int TYPE_DXT3_RGBA    =  0x40000;
+    static final int TYPE_DXT5_RGBA    =  0x80000;
+    static final int TYPE_ETC1_RGB     =  0x100000;
 
     static final int  IMAGE_SIZE_512X512 = 262144;
 
@@ -83,7 +88,12 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
         TYPE_USHORT_GRAY,
         TYPE_INT_BGR,
         TYPE_INT_RGB,
-        TYPE_INT_ARGB
+        TYPE_INT_ARGB,
+        TYPE_DXT1_RGB,
+        TYPE_DXT1_RGBA,
+        TYPE_DXT3_RGBA,
+        TYPE_DXT5_RGBA,
+        TYPE_ETC1_RGB
     }
 
     static final int IMAGE_DATA_TYPE_BYTE_ARRAY     =  0x1000;
@@ -108,6 +118,7 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
     boolean imageTypeIsSupported;
     boolean abgrSupported = true;
     boolean npotSupported = true;
+    boolean compressionSupported = true;
     private int unitsPerPixel;
     private int numberOfComponents;
 
@@ -300,6 +311,21 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
             case TYPE_INT_ARGB:
                 iftValue = TYPE_INT_ARGB;
                 break;
+            case TYPE_DXT1_RGB:
+                iftValue = TYPE_DXT1_RGB;
+                break;
+            case TYPE_DXT1_RGBA:
+                iftValue = TYPE_DXT1_RGBA;
+                break;
+            case TYPE_DXT3_RGBA:
+                iftValue = TYPE_DXT3_RGBA;
+                break;
+            case TYPE_DXT5_RGBA:
+                iftValue = TYPE_DXT5_RGBA;
+                break;
+            case TYPE_ETC1_RGB:
+                iftValue = TYPE_ETC1_RGB;
+                break;
             default:
                 throw new AssertionError();
         }
@@ -319,6 +345,20 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
         return this.imageFormatType;
     }
 
+    // Returns true if the image data holds compressed 4x4 blocks
+    boolean isCompressed() {
+        switch(imageFormatType) {
+            case TYPE_DXT1_RGB:
+            case TYPE_DXT1_RGBA:
+            case TYPE_DXT3_RGBA:
+            case TYPE_DXT5_RGBA:
+            case TYPE_ETC1_RGB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     void setRefImage(Object image, int index) {
         this.refImage[index] = image;
     }
@@ -649,6 +689,18 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
                         imageFormatType = ImageFormatType.TYPE_INT_ARGB;
                         unitsPerPixel = 1;
                         break;
+                    case TYPE_DXT1_RGBA:
+                        imageFormatType = ImageFormatType.TYPE_DXT1_RGBA;
+                        unitsPerPixel = 1;
+                        break;
+                    case TYPE_DXT3_RGBA:
+                        imageFormatType = ImageFormatType.TYPE_DXT3_RGBA;
+                        unitsPerPixel = 1;
+                        break;
+                    case TYPE_DXT5_RGBA:
+                        imageFormatType = ImageFormatType.TYPE_DXT5_RGBA;
+                        unitsPerPixel = 1;
+                        break;
                     default:
                         throw new IllegalArgumentException(J3dI18N.getString("ImageComponent5"));
 
@@ -672,6 +724,14 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
                         imageFormatType = ImageFormatType.TYPE_INT_RGB;
                         unitsPerPixel = 1;
                         break;
+                    case TYPE_DXT1_RGB:
+                        imageFormatType = ImageFormatType.TYPE_DXT1_RGB;
+                        unitsPerPixel = 1;
+                        break;
+                    case TYPE_ETC1_RGB:
+                        imageFormatType = ImageFormatType.TYPE_ETC1_RGB;
+                        unitsPerPixel = 1;
+                        break;
                     default:
                         throw new IllegalArgumentException(J3dI18N.getString("ImageComponent5"));
                 }
@@ -801,9 +861,11 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
                             width, height, nioImageBuffer);
                 } else {
                     // This is needed only if abgr is unsupported.
+                    int length = width * height * depth * unitsPerPixel;
                     return new ImageData(ImageDataType.TYPE_BYTE_BUFFER,
-                            width * height * depth * unitsPerPixel,
-                            width, height);
+                            length, width, height,
+                            newConversionBuffer(ImageDataType.TYPE_BYTE_BUFFER, length),
+                            false);
                 }
             case TYPE_INT_RGB:
             case TYPE_INT_BGR:
@@ -811,6 +873,16 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
                 return new ImageData(ImageDataType.TYPE_INT_BUFFER,
                         width * height * depth * unitsPerPixel,
                         width, height, nioImageBuffer);
+            case TYPE_DXT1_RGB:
+            case TYPE_DXT1_RGBA:
+            case TYPE_DXT3_RGBA:
+            case TYPE_DXT5_RGBA:
+            case TYPE_ETC1_RGB:
+                // Compressed images are always used by reference
+                assert nioImageBuffer != null;
+                return new ImageData(ImageDataType.TYPE_BYTE_BUFFER,
+                        nioImageBuffer.getNumElements() * depth,
+                        width, height, nioImageBuffer);
             default:
                 throw new AssertionError();
         }
@@ -1094,7 +1166,6 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
 
         assert (data != null);
 
-        int h;
         int rowBegin,		// src begin row index
                 srcBegin,		// src begin offset
                 dstBegin;		// dst begin offset
@@ -1116,25 +1187,20 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
         int srcUnitsPerRow = srcWidth * unitsPerPixel;
         srcBegin = (rowBegin * srcWidth + srcX) * unitsPerPixel;
 
+        // Large images have their rows copied in parallel
         switch(data.getType()) {
             case TYPE_BYTE_ARRAY:
                 byte[] srcByteBuffer = ((DataBufferByte)bi.getRaster().getDataBuffer()).getData();
                 byte[] dstByteBuffer = data.getAsByteArray();
-                for (h = 0; h < copyHeight; h++) {
-                    System.arraycopy(srcByteBuffer, srcBegin, dstByteBuffer, dstBegin, copyUnits);
-                    dstBegin += dstUnitsPerRow;
-                    srcBegin += srcUnitsPerRow;
-                }
+                ImageConverter.copyRows(srcByteBuffer, srcBegin, srcUnitsPerRow,
+                        dstByteBuffer, dstBegin, dstUnitsPerRow, copyUnits, copyHeight);
                 break;
 
             case TYPE_INT_ARRAY:
                 int[] srcIntBuffer = ((DataBufferInt)bi.getRaster().getDataBuffer()).getData();
                 int[] dstIntBuffer = data.getAsIntArray();
-                for (h = 0; h < copyHeight; h++) {
-                    System.arraycopy(srcIntBuffer, srcBegin, dstIntBuffer, dstBegin, copyUnits);
-                    dstBegin += dstUnitsPerRow;
-                    srcBegin += srcUnitsPerRow;
-                }
+                ImageConverter.copyRows(srcIntBuffer, srcBegin, srcUnitsPerRow,
+                        dstIntBuffer, dstBegin, dstUnitsPerRow, copyUnits, copyHeight);
                 break;
             default:
                 assert false;
@@ -1228,19 +1294,12 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
         assert (iData.getType() == ImageDataType.TYPE_BYTE_BUFFER);
         assert (getImageFormatType() == ImageFormatType.TYPE_BYTE_RGBA);
 
-        int length = copyWidth * copyHeight;
+        int length = copyWidth * copyHeight * unitsPerPixel;
         ByteBuffer srcBuffer = (ByteBuffer) nioImage.getDataBuffer();
-        srcBuffer.rewind();
         ByteBuffer dstBuffer = iData.getAsByteBuffer();
-        dstBuffer.rewind();
 
         // Do copy and swap.
-        for(int i = 0; i < length; i +=4) {
-            dstBuffer.put(i, srcBuffer.get(i+3));
-            dstBuffer.put(i+1, srcBuffer.get(i+2));
-            dstBuffer.put(i+2, srcBuffer.get(i+1));
-            dstBuffer.put(i+3, srcBuffer.get(i));
-        }
+        ImageConverter.swapABGRToRGBA(srcBuffer, dstBuffer, length);
     }
 
     /*
@@ -1291,12 +1350,21 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
             dstBytesPerRow = - 1 * dstBytesPerRow;
         }
 
+        byte[] dstBuffer = data.getAsByteArray();
+
+        // Common layouts are converted straight from the backing array
+        if (ImageConverter.copyToByteArray(bi, srcX, srcY, copyWidth, copyHeight,
+                dstBuffer, dstBegin, dstBytesPerRow, numberOfComponents)) {
+            if((imageData == data) && (imageDataPowerOfTwo != null)) {
+                updateImageDataPowerOfTwo(depthIndex);
+            }
+            return;
+        }
+
         WritableRaster ras = bi.getRaster();
         ColorModel cm = bi.getColorModel();
         Object pixel = getDataElementBuffer(ras);
 
-        byte[] dstBuffer = data.getAsByteArray();
-
         switch(numberOfComponents) {
             case 4: {
                 for (row = rowBegin, h = 0;
@@ -1770,8 +1838,9 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
         // Issue 366: need to synchronize since it could be called concurrently
         // from multiple renderers (and maybe the renderer(s) and renderbin)
         synchronized (evaluateExtLock) {
-            // For performance reason the ordering of the following 2 statements is intentional.
+            // For performance reason the ordering of the following statements is intentional.
             // So that we only need to do format conversion for imageData only
+            evaluateExtCompression(canvas.textureExtendedFeatures);
             evaluateExtABGR(canvas.extensionsSupported);
             evaluateExtNonPowerOfTwo(canvas.textureExtendedFeatures);
         }
@@ -1802,6 +1871,68 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
 
     }
 
+    void evaluateExtCompression(int ext) {
+
+        // If compressionSupported is false, a decoded copy has been
+        // created so we don't have to check again.
+        if(!compressionSupported) {
+            return;
+        }
+
+        if(!isCompressed()) {
+            return;
+        }
+
+        int iftValue = getImageFormatTypeIntValue(false);
+        if((ext & CompressedImageDecoder.getRequiredFeature(iftValue)) != 0) {
+            return;
+        }
+
+        // Compressed format is unsupported, set flag to false.
+        compressionSupported = false;
+        decompressImageData();
+    }
+
+    /**
+     * Replaces the compressed imageData with an RGBA copy decoded from
+     * the referenced NioImageBuffer.
+     */
+    void decompressImageData() {
+
+        assert isCompressed();
+
+        int length = width * height * 4;
+
+        // Unsupported format on HW, switch to a decoded copy.
+        imageFormatType = ImageFormatType.TYPE_BYTE_RGBA;
+        unitsPerPixel = 4;
+        imageTypeIsSupported = false;
+        imageData = new ImageData(ImageDataType.TYPE_BYTE_BUFFER,
+                length, width, height,
+                newConversionBuffer(ImageDataType.TYPE_BYTE_BUFFER, length),
+                false);
+
+        copyCompressedNioImageToImageData((NioImageBuffer) getRefImage(0), imageData);
+    }
+
+    /**
+     * Decodes the complete compressed NioImageBuffer into a BYTE_BUFFER
+     * RGBA ImageData.
+     */
+    void copyCompressedNioImageToImageData(NioImageBuffer nioImage, ImageData data) {
+
+        assert (data.getType() == ImageDataType.TYPE_BYTE_BUFFER);
+
+        CompressedImageDecoder.decode(
+                CompressedImageDecoder.getImageFormat(nioImage.getImageType()),
+                (ByteBuffer) nioImage.getDataBuffer(),
+                width, height, (ByteBuffer) data.get());
+
+        if((imageData == data) && (imageDataPowerOfTwo != null)) {
+            updateImageDataPowerOfTwo(0);
+        }
+    }
+
     private int getClosestPowerOf2(int value) {
 
         if (value < 1)
@@ -1879,6 +2010,12 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
         // scale if scales aren't 1.0
         if (!(xScale == 1.0f && yScale == 1.0f)) {
 
+            if (isCompressed()) {
+                // The blocks can't be scaled, scale a decoded copy
+                compressionSupported = false;
+                decompressImageData();
+            }
+
             if (imageData == null) {
                 // This is a byRef, support format and is a RenderedImage case.
                 // See ImageComponent2DRetained.set(RenderedImage image)
@@ -1929,6 +2066,20 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
         }
     }
 
+    /*
+     * Returns a new byte array or direct byte buffer of the given length
+     * to hold an RGBA copy of an ABGR or compressed image.  Each ImageData
+     * owns its buffer: the renderer may still be uploading the previous
+     * ImageData when a new image is set, so buffers are never shared.
+     */
+    static Object newConversionBuffer(ImageDataType type, int length) {
+        if (type == ImageDataType.TYPE_BYTE_ARRAY) {
+            return new byte[length];
+        }
+        assert (type == ImageDataType.TYPE_BYTE_BUFFER);
+        return ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+    }
+
     void convertImageDataFromABGRToRGBA() {
 
         // Unsupported format on HW, switch to slow copy.
@@ -2300,6 +2451,21 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
             }
         }
 
+        /**
+         * Constructs a new ImageData buffer of the specified type with the
+         * specified length, using the specified byte array or direct
+         * buffer as data.
+         */
+        ImageData(ImageDataType imageDataType, int length, int dataWidth, int dataHeight,
+                Object buffer, boolean isByRef) {
+            this.imageDataType = imageDataType;
+            this.length = length;
+            this.dataWidth = dataWidth;
+            this.dataHeight = dataHeight;
+            this.dataIsByRef = isByRef;
+            this.data = buffer;
+        }
+
         /**
          * Constructs a new ImageData buffer from the specified
          * object. This object stores a reference to the input image data.
@@ -2593,7 +2759,6 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
         }
 
         void convertFromABGRToRGBA() {
-            int i;
 
             if(imageDataType == ImageComponentRetained.ImageDataType.TYPE_BYTE_ARRAY) {
                 // Note : Highly inefficient for depth > 0 case.
@@ -2603,28 +2768,15 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
                 srcBuffer = getAsByteArray();
 
                 if(dataIsByRef) {
-                    dstBuffer = new byte[length];
+                    dstBuffer = (byte[]) newConversionBuffer(imageDataType, length);
                     // Do copy and swap.
-                    for(i = 0; i < length; i +=4) {
-                        dstBuffer[i] = srcBuffer[i+3];
-                        dstBuffer[i+1] = srcBuffer[i+2];
-                        dstBuffer[i+2] = srcBuffer[i+1];
-                        dstBuffer[i+3] = srcBuffer[i];
-                    }
+                    ImageConverter.swapABGRToRGBA(srcBuffer, dstBuffer, length);
                     data = dstBuffer;
                     dataIsByRef = false;
 
                 } else {
-                    byte a, b;
                     // Do swap in place.
-                    for(i = 0; i < length; i +=4) {
-                        a = srcBuffer[i];
-                        b = srcBuffer[i+1];
-                        srcBuffer[i] = srcBuffer[i+3];
-                        srcBuffer[i+1]  = srcBuffer[i+2];
-                        srcBuffer[i+2] = b;
-                        srcBuffer[i+3] = a;
-                    }
+                    ImageConverter.swapABGRToRGBA(srcBuffer, srcBuffer, length);
                 }
             }
             else if(imageDataType == ImageComponentRetained.ImageDataType.TYPE_BYTE_BUFFER) {
@@ -2633,20 +2785,12 @@ abstract class ImageComponentRetained extends NodeComponentRetained {
                 ByteBuffer srcBuffer, dstBuffer;
 
                 srcBuffer = getAsByteBuffer();
-                srcBuffer.rewind();
-
-                ByteOrder order =  ByteOrder.nativeOrder();
-                dstBuffer = ByteBuffer.allocateDirect(length).order(order);
-                dstBuffer.rewind();
+                dstBuffer = (ByteBuffer) newConversionBuffer(imageDataType, length);
 
                 // Do copy and swap.
-                for(i = 0; i < length; i +=4) {
-                    dstBuffer.put(i, srcBuffer.get(i+3));
-                    dstBuffer.put(i+1, srcBuffer.get(i+2));
-                    dstBuffer.put(i+2, srcBuffer.get(i+1));
-                    dstBuffer.put(i+3, srcBuffer.get(i));
-                }
+                ImageConverter.swapABGRToRGBA(srcBuffer, dstBuffer, length);
 
+                data = dstBuffer;
                 dataIsByRef = false;
 
             }
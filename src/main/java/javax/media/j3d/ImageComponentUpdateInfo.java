@@ -36,6 +36,7 @@ class ImageComponentUpdateInfo extends Object {
     int z = 0;
     int width = 0;
     int height = 0;
+    int depth = 1;		// number of slices of a 3D update
     int updateMask = 0;		// which resources need to be updated
 				// canvas or renderer
     boolean entireImage = false;// true if the entire image needs to be updated
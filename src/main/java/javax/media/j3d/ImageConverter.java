@@ -0,0 +1,315 @@
+/*
+ * Copyright 1998-2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ *
+ */
+
+
+package javax.media.j3d;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import com.sun.j3d.internal.ParallelLoop;
+
+/**
+ * The ImageConverter class holds the bulk pixel copy and format
+ * conversion loops used by ImageComponentRetained.  The conversions
+ * read the backing arrays of the source image directly, instead of
+ * going through the Raster and ColorModel getters one pixel at a time,
+ * and large images are split by rows across a ParallelLoop.
+ */
+final class ImageConverter {
+
+    // Copies of fewer pixels than this are done by the calling thread
+    static final int PARALLEL_THRESHOLD = 65536;
+
+    private ImageConverter() {
+    }
+
+    /**
+     * Copies a region of a BufferedImage with 8 bit sRGB components to
+     * a byte array holding numComponents bytes per pixel: RGBA, RGB,
+     * LA (red and alpha) or L (red).  A missing alpha is set to 255,
+     * which matches what ColorModel.getAlpha returns.
+     *
+     * @param dstBegin the offset of the first destination pixel
+     * @param dstBytesPerRow the offset between destination rows, which
+     * is negative for a y down copy
+     *
+     * @return false if the image layout isn't one of the specialized
+     * layouts, in which case nothing is copied
+     */
+    static boolean copyToByteArray(BufferedImage bi, int srcX, int srcY,
+				   final int copyWidth, int copyHeight,
+				   final byte[] dst, final int dstBegin,
+				   final int dstBytesPerRow,
+				   final int numComponents) {
+
+	WritableRaster ras = bi.getRaster();
+	ColorModel cm = bi.getColorModel();
+	SampleModel sm = ras.getSampleModel();
+	DataBuffer db = ras.getDataBuffer();
+
+	if (db.getNumBanks() != 1 || cm.isAlphaPremultiplied() ||
+	    !cm.getColorSpace().isCS_sRGB()) {
+	    return false;
+	}
+
+	// position of (srcX, srcY) in the sample model
+	final int x0 = srcX - ras.getSampleModelTranslateX();
+	final int y0 = srcY - ras.getSampleModelTranslateY();
+
+	if (db instanceof DataBufferInt &&
+	    sm instanceof SinglePixelPackedSampleModel &&
+	    cm instanceof DirectColorModel) {
+
+	    SinglePixelPackedSampleModel sppsm =
+		(SinglePixelPackedSampleModel) sm;
+	    int masks[] = sppsm.getBitMasks();
+	    int offsets[] = sppsm.getBitOffsets();
+	    if (masks.length < 3) {
+		return false;
+	    }
+	    for (int i = 0; i < masks.length; i++) {
+		if ((masks[i] >>> offsets[i]) != 0xff) {
+		    return false;
+		}
+	    }
+	    final int src[] = ((DataBufferInt) db).getData();
+	    final int srcBegin = db.getOffset() +
+		y0 * sppsm.getScanlineStride() + x0;
+	    final int srcStride = sppsm.getScanlineStride();
+	    final int rs = offsets[0];
+	    final int gs = offsets[1];
+	    final int bs = offsets[2];
+	    final boolean hasAlpha = masks.length > 3;
+	    final int as = hasAlpha ? offsets[3] : 0;
+
+	    forEachRow(copyHeight, copyWidth, new ParallelLoop.Body() {
+		public void run(int start, int end) {
+		    for (int h = start; h < end; h++) {
+			int s = srcBegin + h * srcStride;
+			int j = dstBegin + h * dstBytesPerRow;
+			int sEnd = s + copyWidth;
+			switch (numComponents) {
+			case 4:
+			    for (; s < sEnd; s++) {
+				int p = src[s];
+				dst[j++] = (byte) (p >> rs);
+				dst[j++] = (byte) (p >> gs);
+				dst[j++] = (byte) (p >> bs);
+				dst[j++] = hasAlpha ? (byte) (p >> as) : (byte) 0xff;
+			    }
+			    break;
+			case 3:
+			    for (; s < sEnd; s++) {
+				int p = src[s];
+				dst[j++] = (byte) (p >> rs);
+				dst[j++] = (byte) (p >> gs);
+				dst[j++] = (byte) (p >> bs);
+			    }
+			    break;
+			case 2:
+			    for (; s < sEnd; s++) {
+				int p = src[s];
+				dst[j++] = (byte) (p >> rs);
+				dst[j++] = hasAlpha ? (byte) (p >> as) : (byte) 0xff;
+			    }
+			    break;
+			case 1:
+			    for (; s < sEnd; s++) {
+				dst[j++] = (byte) (src[s] >> rs);
+			    }
+			    break;
+			}
+		    }
+		}
+	    });
+	    return true;
+	}
+
+	if (db instanceof DataBufferByte &&
+	    sm instanceof ComponentSampleModel &&
+	    cm instanceof ComponentColorModel) {
+
+	    ComponentSampleModel csm = (ComponentSampleModel) sm;
+	    int numBands = csm.getNumBands();
+	    if (numBands != 3 && numBands != 4) {
+		return false;
+	    }
+	    int nBits[] = cm.getComponentSize();
+	    for (int i = 0; i < nBits.length; i++) {
+		if (nBits[i] != 8) {
+		    return false;
+		}
+	    }
+	    int bandOffsets[] = csm.getBandOffsets();
+	    final byte src[] = ((DataBufferByte) db).getData();
+	    final int pixelStride = csm.getPixelStride();
+	    final int srcStride = csm.getScanlineStride();
+	    final int srcBegin = db.getOffset() + y0 * srcStride +
+		x0 * pixelStride;
+	    final int ro = bandOffsets[0];
+	    final int go = bandOffsets[1];
+	    final int bo = bandOffsets[2];
+	    final boolean hasAlpha = numBands > 3;
+	    final int ao = hasAlpha ? bandOffsets[3] : 0;
+
+	    forEachRow(copyHeight, copyWidth, new ParallelLoop.Body() {
+		public void run(int start, int end) {
+		    for (int h = start; h < end; h++) {
+			int s = srcBegin + h * srcStride;
+			int j = dstBegin + h * dstBytesPerRow;
+			int sEnd = s + copyWidth * pixelStride;
+			switch (numComponents) {
+			case 4:
+			    for (; s < sEnd; s += pixelStride) {
+				dst[j++] = src[s + ro];
+				dst[j++] = src[s + go];
+				dst[j++] = src[s + bo];
+				dst[j++] = hasAlpha ? src[s + ao] : (byte) 0xff;
+			    }
+			    break;
+			case 3:
+			    for (; s < sEnd; s += pixelStride) {
+				dst[j++] = src[s + ro];
+				dst[j++] = src[s + go];
+				dst[j++] = src[s + bo];
+			    }
+			    break;
+			case 2:
+			    for (; s < sEnd; s += pixelStride) {
+				dst[j++] = src[s + ro];
+				dst[j++] = hasAlpha ? src[s + ao] : (byte) 0xff;
+			    }
+			    break;
+			case 1:
+			    for (; s < sEnd; s += pixelStride) {
+				dst[j++] = src[s + ro];
+			    }
+			    break;
+			}
+		    }
+		}
+	    });
+	    return true;
+	}
+
+	return false;
+    }
+
+    /**
+     * Copies copyHeight rows of rowLength elements between two byte or
+     * int arrays with the given row strides; a negative stride walks
+     * the rows upwards.
+     */
+    static void copyRows(final Object src, final int srcBegin,
+			 final int srcStride, final Object dst,
+			 final int dstBegin, final int dstStride,
+			 final int rowLength, int copyHeight) {
+
+	forEachRow(copyHeight, rowLength, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int h = start; h < end; h++) {
+		    System.arraycopy(src, srcBegin + h * srcStride,
+				     dst, dstBegin + h * dstStride,
+				     rowLength);
+		}
+	    }
+	});
+    }
+
+    /**
+     * Reorders length bytes of ABGR pixels into RGBA pixels.  src and
+     * dst may be the same array.
+     */
+    static void swapABGRToRGBA(final byte[] src, final byte[] dst,
+			       int length) {
+
+	forEachRow(length >> 2, 1, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		byte a, b;
+		for (int i = start << 2; i < (end << 2); i += 4) {
+		    a = src[i];
+		    b = src[i+1];
+		    dst[i] = src[i+3];
+		    dst[i+1] = src[i+2];
+		    dst[i+2] = b;
+		    dst[i+3] = a;
+		}
+	    }
+	});
+    }
+
+    /**
+     * Reorders length bytes of ABGR pixels into RGBA pixels.  Swapping
+     * the 4 components is the same as reversing the bytes of each
+     * pixel, so the buffers are read and written as int views, which
+     * is much faster than byte by byte access to a direct buffer.
+     * The views are made on duplicates, so the positions and byte
+     * orders of the buffers are left unchanged.
+     */
+    static void swapABGRToRGBA(ByteBuffer src, ByteBuffer dst, int length) {
+	ByteBuffer s = src.duplicate();
+	ByteBuffer d = dst.duplicate();
+	s.rewind();
+	d.rewind();
+	final IntBuffer srcInts = s.order(ByteOrder.nativeOrder()).asIntBuffer();
+	final IntBuffer dstInts = d.order(ByteOrder.nativeOrder()).asIntBuffer();
+
+	forEachRow(length >> 2, 1, new ParallelLoop.Body() {
+	    public void run(int start, int end) {
+		for (int i = start; i < end; i++) {
+		    dstInts.put(i, Integer.reverseBytes(srcInts.get(i)));
+		}
+	    }
+	});
+    }
+
+    // Runs body over [0, rows), split across a ParallelLoop when there
+    // are enough pixels to make it worthwhile.
+    private static void forEachRow(int rows, int rowPixels,
+				   ParallelLoop.Body body) {
+	long pixels = (long) rows * rowPixels;
+	if (pixels < PARALLEL_THRESHOLD || rows < 2) {
+	    body.run(0, rows);
+	} else {
+	    int chunk = Math.max(1, (PARALLEL_THRESHOLD / 4) /
+				 Math.max(1, rowPixels));
+	    ParallelLoop.run(0, rows, chunk,
+			     ParallelLoop.getDefaultParallelism(), body);
+	}
+    }
+}
@@ -92,6 +92,10 @@ class JoglPipeline extends Pipeline {
     // Configurable constant just in case we want to change this later
     private static final int MIN_FRAME_SIZE = 1;
 
+    // Compressed internal formats that aren't defined by the GL class
+    private static final int GL_ETC1_RGB8_OES = 0x8D64;
+    private static final int GL_COMPRESSED_RGB8_ETC2 = 0x9274;
+
     /**
      * Constructor for singleton JoglPipeline instance
      */
@@ -6399,7 +6403,15 @@ class JoglPipeline extends Pipeline {
             gl.glTexParameteri(target, GL.GL_GENERATE_MIPMAP, GL.GL_FALSE);
         }
 
-        if((dataType == ImageComponentRetained.IMAGE_DATA_TYPE_BYTE_ARRAY) ||
+        if (CompressedImageDecoder.isCompressed(imageFormat)) {
+            // The blocks are handed to the driver as they are
+            assert dataType == ImageComponentRetained.IMAGE_DATA_TYPE_BYTE_BUFFER;
+            gl.glCompressedTexImage2D(target, level,
+                    getCompressedInternalFormat(gl, imageFormat),
+                    width, height, boundaryWidth,
+                    ((Buffer) data).limit(), (Buffer) data);
+
+        } else if((dataType == ImageComponentRetained.IMAGE_DATA_TYPE_BYTE_ARRAY) ||
                 (dataType == ImageComponentRetained.IMAGE_DATA_TYPE_BYTE_BUFFER)) {
 
             switch (imageFormat) {
@@ -6508,6 +6520,27 @@ class JoglPipeline extends Pipeline {
         }
     }
 
+    private int getCompressedInternalFormat(GL gl, int imageFormat) {
+        switch (imageFormat) {
+            case ImageComponentRetained.TYPE_DXT1_RGB:
+                return GL.GL_COMPRESSED_RGB_S3TC_DXT1_EXT;
+            case ImageComponentRetained.TYPE_DXT1_RGBA:
+                return GL.GL_COMPRESSED_RGBA_S3TC_DXT1_EXT;
+            case ImageComponentRetained.TYPE_DXT3_RGBA:
+                return GL.GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+            case ImageComponentRetained.TYPE_DXT5_RGBA:
+                return GL.GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+            case ImageComponentRetained.TYPE_ETC1_RGB:
+                // ETC2 decoders read ETC1 blocks unchanged
+                if (gl.isExtensionAvailable("GL_OES_compressed_ETC1_RGB8_texture")) {
+                    return GL_ETC1_RGB8_OES;
+                }
+                return GL_COMPRESSED_RGB8_ETC2;
+            default:
+                throw new AssertionError();
+        }
+    }
+
     private void updateTexture2DSubImage(Context ctx,
             int target,
             int level, int xoffset, int yoffset,
@@ -8351,6 +8384,15 @@ class JoglPipeline extends Pipeline {
             cv.textureExtendedFeatures |= Canvas3D.TEXTURE_AUTO_MIPMAP_GENERATION;
         }
 
+        if (gl.isExtensionAvailable("GL_EXT_texture_compression_s3tc")) {
+            cv.textureExtendedFeatures |= Canvas3D.TEXTURE_COMPRESSION_S3TC;
+        }
+
+        if (gl.isExtensionAvailable("GL_OES_compressed_ETC1_RGB8_texture") ||
+                gl.isExtensionAvailable("GL_ARB_ES3_compatibility")) {
+            cv.textureExtendedFeatures |= Canvas3D.TEXTURE_COMPRESSION_ETC1;
+        }
+
     }
 
 
@@ -437,6 +437,14 @@ class MasterControl {
     // that we don't collide with a predefined gl_* attribute on nVidia cards.
     int glslVertexAttrOffset = 6;
 
+    // Texture memory budget in bytes of each context, above which the least
+    // recently used textures are evicted. 0 means no limit.
+    long textureMemoryBudget = 0L;
+
+    // Texture bytes sent to each context per frame, above which uploads
+    // are deferred to the next frames. 0 means no limit.
+    long textureUploadBudget = 0L;
+
     // Hashtable that maps a GraphicsDevice to its associated
     // Screen3D--this is only used for on-screen Canvas3Ds
     Hashtable deviceScreenMap = new Hashtable();
@@ -683,6 +691,36 @@ class MasterControl {
 			       glslVertexAttrOffset);
 	}
 
+	// Get the texture memory budget, in megabytes
+	Integer textureBudget =
+	    (Integer) java.security.AccessController.doPrivileged(
+	    new java.security.PrivilegedAction() {
+		public Object run() {
+		    return Integer.getInteger("j3d.textureMemoryBudget", 0);
+		}
+	    });
+
+	if (textureBudget.intValue() > 0) {
+	    textureMemoryBudget = textureBudget.intValue() * 1024L * 1024L;
+	    System.err.println("Java 3D: texture memory budget = " +
+			       textureBudget + " MB");
+	}
+
+	// Get the texture upload budget, in kilobytes per frame
+	Integer uploadBudget =
+	    (Integer) java.security.AccessController.doPrivileged(
+	    new java.security.PrivilegedAction() {
+		public Object run() {
+		    return Integer.getInteger("j3d.textureUploadBudget", 0);
+		}
+	    });
+
+	if (uploadBudget.intValue() > 0) {
+	    textureUploadBudget = uploadBudget.intValue() * 1024L;
+	    System.err.println("Java 3D: texture upload budget = " +
+			       uploadBudget + " KB per frame");
+	}
+
         // See if Xinerama should be disabled for better performance.
 	boolean disableXinerama = false;
 	if (getProperty("j3d.disableXinerama") != null) {
@@ -3896,9 +3934,26 @@ class MasterControl {
         // ...
     }
 
+    //
+    // Event counts are recorded the same way and reported as an
+    // average number per frame:
+    //
+    //     VirtualUniverse.mc.recordCount(MasterControl.CountType.XXXXX, count);
+    //
+    static enum CountType {
+        BEHAVIOR_ACTIVATED,
+        BEHAVIOR_DEACTIVATED,
+        BEHAVIOR_ACTIVATION_TESTS,
+        TEXTURE_RESIDENT_HITS,
+        TEXTURE_RESIDENT_MISSES,
+        TEXTURE_EVICTIONS,
+    }
+
     private long[] statTimes = new long[TimeType.values().length];
     private int[] statCounts = new int[TimeType.values().length];
     private boolean[] statSeen = new boolean[TimeType.values().length];
+    private long[] statEventCounts = new long[CountType.values().length];
+    private boolean[] statEventSeen = new boolean[CountType.values().length];
     private int frameCycleTick = 0;
     private long frameCycleNumber = 0L;
 
@@ -3911,6 +3966,14 @@ class MasterControl {
         statSeen[idx] = true;
     }
 
+    // Method to record counts -- should not be called unless the stats logger
+    // level is set to INFO or lower
+    synchronized void recordCount(CountType type, long count) {
+        int idx = type.ordinal();
+        statEventCounts[idx] += count;
+        statEventSeen[idx] = true;
+    }
+
     // Method to record times -- this is not called unless the stats logger
     // level is set to INFO or lower
     private synchronized void logTimes() {
@@ -3940,6 +4003,16 @@ class MasterControl {
                     }
                 }
             }
+            for (int i = 0; i < statEventCounts.length; i++) {
+                if (statEventSeen[i]) {
+                    strBuf.append("    ").
+                            append(CountType.values()[i]).
+                            append(" = ").
+                            append((double)statEventCounts[i] / (double)frameCycleTick).
+                            append(" per frame\n");
+                    statEventCounts[i] = 0L;
+                }
+            }
             getStatsLogger().info(strBuf.toString());
             frameCycleTick = 0;
         }
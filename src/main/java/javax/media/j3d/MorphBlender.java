@@ -0,0 +1,281 @@
+/*
+ * Copyright 1998-2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ *
+ */
+
+
+package javax.media.j3d;
+
+import com.sun.j3d.internal.ParallelLoop;
+
+/**
+ * The MorphBlender object computes the morphed data of a MorphRetained.
+ * The input GeometryArrays are flattened once into float arrays laid out
+ * like the morph data arrays (Mcoord, Mcolor, Mnormal and MtexCoord), so
+ * each blend is a tight loop over float arrays that writes straight into
+ * the by-reference arrays of the morphed GeometryArray.  Inputs with a
+ * zero weight are skipped.  For every input we also keep the range where
+ * it differs from the first input; when the weights change but not
+ * their sum, only the ranges of the inputs whose weight changed are
+ * blended again.  Large ranges are split across worker threads.
+ */
+class MorphBlender {
+
+    // Number of floats in a range before it is split across threads
+    static final int PARALLEL_THRESHOLD = 32768;
+
+    // Number of floats handed to a worker thread at a time
+    static final int CHUNK_SIZE = 8192;
+
+    private MorphRetained morph;
+
+    // The morph data arrays, one per channel : coordinates, colors,
+    // normals and one per texture coordinate set.  A null entry means
+    // the channel is not used.
+    private float outputs[][];
+
+    // The flattened input data, indexed by [channel][input].  Inputs
+    // identical to the first input in a channel share its array.
+    private float inputs[][][];
+
+    // The range, indexed by [channel][input], where the input differs
+    // from the first input.  An empty range has start >= end.
+    private int rangeStart[][];
+    private int rangeEnd[][];
+
+    // The weights of the last blend, and their sum
+    private double lastWeights[];
+    private double lastWeightSum;
+
+    // Whether the flattened input data is up to date
+    private boolean valid = false;
+
+    // Scratch list of the inputs with a non zero weight
+    private int activeInputs[];
+    private double activeWeights[];
+    private int numActive;
+
+    MorphBlender(MorphRetained morph) {
+	this.morph = morph;
+    }
+
+    /**
+     * Marks the flattened input data as stale.  The next blend reads
+     * the input GeometryArrays again and recomputes all the data.
+     */
+    void invalidate() {
+	valid = false;
+    }
+
+    /**
+     * Blends the input GeometryArrays with the given weights into the
+     * morph data arrays.
+     */
+    void blend(double weights[]) {
+	int c, j;
+	double weightSum = 0.0;
+
+	for (j = 0; j < weights.length; j++) {
+	    weightSum += weights[j];
+	}
+
+	if (!valid) {
+	    flatten();
+	    lastWeights = new double[weights.length];
+	    valid = true;
+	} else if (weightSum == lastWeightSum) {
+	    // The data outside the ranges of the inputs whose weight
+	    // changed is the first input scaled by the sum of the weights,
+	    // so it only moves if that sum changes.
+	    collectActive(weights);
+	    for (c = 0; c < outputs.length; c++) {
+		if (outputs[c] == null) {
+		    continue;
+		}
+		int start = Integer.MAX_VALUE;
+		int end = Integer.MIN_VALUE;
+		for (j = 0; j < weights.length; j++) {
+		    if (weights[j] != lastWeights[j] &&
+			rangeStart[c][j] < rangeEnd[c][j]) {
+			if (rangeStart[c][j] < start) {
+			    start = rangeStart[c][j];
+			}
+			if (rangeEnd[c][j] > end) {
+			    end = rangeEnd[c][j];
+			}
+		    }
+		}
+		if (start < end) {
+		    blendRange(c, start, end);
+		}
+	    }
+	    System.arraycopy(weights, 0, lastWeights, 0, weights.length);
+	    return;
+	}
+
+	// MorphRetained accepts weights which sum to 1 within a
+	// tolerance, blend everything again when the sum changes
+	collectActive(weights);
+	for (c = 0; c < outputs.length; c++) {
+	    if (outputs[c] != null) {
+		blendRange(c, 0, outputs[c].length);
+	    }
+	}
+	System.arraycopy(weights, 0, lastWeights, 0, weights.length);
+	lastWeightSum = weightSum;
+    }
+
+    /**
+     * Reads all the input GeometryArrays into float arrays and computes
+     * the ranges where they differ from the first one.
+     */
+    private void flatten() {
+	int c, j, k;
+	int numInputs = morph.geometryArrays.length;
+	int texCoordSetCount = (morph.MtexCoord == null ?
+				0 : morph.MtexCoord.length);
+
+	outputs = new float[3 + texCoordSetCount][];
+	outputs[0] = morph.Mcoord;
+	outputs[1] = morph.Mcolor;
+	outputs[2] = morph.Mnormal;
+	for (k = 0; k < texCoordSetCount; k++) {
+	    outputs[3 + k] = morph.MtexCoord[k];
+	}
+
+	inputs = new float[outputs.length][numInputs][];
+	rangeStart = new int[outputs.length][numInputs];
+	rangeEnd = new int[outputs.length][numInputs];
+
+	for (j = 0; j < numInputs; j++) {
+	    float texCoords[][] = new float[texCoordSetCount][];
+	    for (k = 0; k < texCoordSetCount; k++) {
+		texCoords[k] = newArray(outputs[3 + k]);
+	    }
+	    float coords[] = newArray(outputs[0]);
+	    float colors[] = newArray(outputs[1]);
+	    float normals[] = newArray(outputs[2]);
+	    morph.accumulateGeometry(j, 1.0, coords, colors, normals,
+				     texCoords);
+
+	    inputs[0][j] = coords;
+	    inputs[1][j] = colors;
+	    inputs[2][j] = normals;
+	    for (k = 0; k < texCoordSetCount; k++) {
+		inputs[3 + k][j] = texCoords[k];
+	    }
+
+	    for (c = 0; c < outputs.length; c++) {
+		if (outputs[c] != null) {
+		    computeRange(c, j);
+		}
+	    }
+	}
+    }
+
+    private static float[] newArray(float template[]) {
+	return (template == null ? null : new float[template.length]);
+    }
+
+    private void computeRange(int c, int j) {
+	float base[] = inputs[c][0];
+	float data[] = inputs[c][j];
+	int start = 0;
+	int end = data.length;
+
+	if (j > 0) {
+	    while (start < end && data[start] == base[start]) {
+		start++;
+	    }
+	    while (end > start && data[end - 1] == base[end - 1]) {
+		end--;
+	    }
+	}
+	if (start >= end) {
+	    // Same as the first input, share its data
+	    inputs[c][j] = base;
+	}
+	rangeStart[c][j] = start;
+	rangeEnd[c][j] = end;
+    }
+
+    private void collectActive(double weights[]) {
+	if (activeInputs == null || activeInputs.length < weights.length) {
+	    activeInputs = new int[weights.length];
+	    activeWeights = new double[weights.length];
+	}
+	numActive = 0;
+	for (int j = 0; j < weights.length; j++) {
+	    if (weights[j] != 0) {
+		activeInputs[numActive] = j;
+		activeWeights[numActive] = weights[j];
+		numActive++;
+	    }
+	}
+    }
+
+    private void blendRange(final int c, int start, int end) {
+	if (end - start < PARALLEL_THRESHOLD) {
+	    blendChunk(c, start, end);
+	    return;
+	}
+	ParallelLoop.run(start, end, CHUNK_SIZE,
+			 ParallelLoop.getDefaultParallelism(),
+			 new ParallelLoop.Body() {
+			     public void run(int s, int e) {
+				 blendChunk(c, s, e);
+			     }
+			 });
+    }
+
+    /**
+     * Computes the weighted sum of the active inputs over [start, end)
+     * of channel c.  The sum is accumulated in the same order, and with
+     * the same rounding, as the original per-vertex loops.
+     */
+    private void blendChunk(int c, int start, int end) {
+	float out[] = outputs[c];
+	int i;
+
+	if (numActive == 0) {
+	    for (i = start; i < end; i++) {
+		out[i] = 0.0f;
+	    }
+	    return;
+	}
+
+	float data[] = inputs[c][activeInputs[0]];
+	double w = activeWeights[0];
+	for (i = start; i < end; i++) {
+	    out[i] = (float) (data[i] * w);
+	}
+	for (int a = 1; a < numActive; a++) {
+	    data = inputs[c][activeInputs[a]];
+	    w = activeWeights[a];
+	    for (i = start; i < end; i++) {
+		out[i] += data[i] * w;
+	    }
+	}
+    }
+}
@@ -134,6 +134,9 @@ class MorphRetained extends LeafRetained implements GeometryUpdater {
     // each vertex has 2 or 3floats
     float[][]MtexCoord = null;
 
+    // Blends the input GeometryArrays into the morph data arrays above
+    MorphBlender blender = null;
+
     // Whether the normal appearance is overrided by the alternate app
     boolean appearanceOverrideEnable = false;
 
@@ -310,6 +313,7 @@ class MorphRetained extends LeafRetained implements GeometryUpdater {
 	}
 
 	//  create a new morphedGeometryArray
+	blender = null;
 	initMorphedGeometry();
 
 	if (source.isLive()) {
@@ -582,6 +586,17 @@ class MorphRetained extends LeafRetained implements GeometryUpdater {
 	if (Math.abs(sum - 1.0) > TOLERANCE)
 	    throw new IllegalArgumentException(J3dI18N.getString("MorphRetained8"));
 
+	// Nothing to update if the weights stay the same
+	boolean changed = false;
+	for (i=numGeometryArrays-1; i>=0; i--) {
+	    if (this.weights[i] != weights[i]) {
+		changed = true;
+		break;
+	    }
+	}
+	if (!changed)
+	    return;
+
 	// Weights array is ALWAYS malloced in setGeometryArrays method
 	for (i=numGeometryArrays-1; i>=0; i--)
 	    this.weights[i] = weights[i];
@@ -687,7 +702,10 @@ class MorphRetained extends LeafRetained implements GeometryUpdater {
 	    }
 	}
 
-
+	// The input data has changed, rebuild the blender cache
+	if (blender != null) {
+	    blender.invalidate();
+	}
 	((GeometryArrayRetained)morphedGeometryArray.retained).updateData(this);
 	// Compute the bounds once
 	if (boundsAutoCompute && coordinatesChanged) {
@@ -703,147 +721,117 @@ class MorphRetained extends LeafRetained implements GeometryUpdater {
      */
     public void updateData(Geometry mga) {
 
-	int i,j,k, vFormat, geoType, stripVCount[];
-	int iCount = 0;
-	int numStrips = 0;
-	int texCoordSetCount = 0;
-	float coord[] = new float[3], color[] = new float[4],
-	    normal[] = new float[3], texCoord[] = new float[3];
+	int k, vFormat, texCoordSetCount;
 
 	vFormat = geometryArrays[0].vertexFormat;
-	geoType = ((GeometryArrayRetained)geometryArrays[0]).geoType;
 	texCoordSetCount = geometryArrays[0].getTexCoordSetCount();
 
-
-
-	int vc = 0, nc = 0, cc = 0, n = 0;
-	int count = 0;
-	if (geometryArrays[0] instanceof IndexedGeometryArrayRetained){
-	     count = geometryArrays[0].getNumCoordCount();
-	} else {
-	     count = geometryArrays[0].validVertexCount;
+	if (blender == null) {
+	    blender = new MorphBlender(this);
 	}
+	blender.blend(weights);
 
-	for (i=0; i < count; i++) {
-	    Mcoord[vc++] = Mcoord[vc++] = Mcoord[vc++] = 0.0f;
-	}
+	GeometryArrayRetained mgaR =
+	    (GeometryArrayRetained)mga.retained;
 
+	mgaR.setCoordRefFloat(Mcoord);
 
-	if ((vFormat & GeometryArray.COLOR) != 0) {
-	    if (geometryArrays[0] instanceof IndexedGeometryArrayRetained){
-		count = geometryArrays[0].getNumColorCount();
-	    } else {
-		count = geometryArrays[0].validVertexCount;
-	    }
-	    for (i=0; i < count; i++) {
-		if ((vFormat & GeometryArray.COLOR_4) == GeometryArray.COLOR_3)
-		    Mcolor[cc++] = Mcolor[cc++] = Mcolor[cc++] = 0.0f;
+	if ((vFormat & GeometryArray.COLOR) != 0)
+	    mgaR.setColorRefFloat(Mcolor);
 
-		else if ((vFormat & GeometryArray.COLOR_4) == GeometryArray.COLOR_4)
-		    Mcolor[cc++] = Mcolor[cc++] = Mcolor[cc++] = Mcolor[cc++] = 0.0f;
+	// *******Need to normalize normals
+	if ((vFormat & GeometryArray.NORMALS) != 0)
+	    mgaR.setNormalRefFloat(Mnormal);
+
+	if ((vFormat & GeometryArray.TEXTURE_COORDINATE) != 0) {
+    	    for (k = 0; k < texCoordSetCount; k++) {
+		mgaR.setTexCoordRefFloat(k, MtexCoord[k]);
 	    }
 	}
+    }
 
+    /**
+     * Adds the j-th input GeometryArray, scaled by w, to the given
+     * arrays, which are laid out like Mcoord, Mcolor, Mnormal and
+     * MtexCoord.
+     */
+    void accumulateGeometry(int j, double w, float[] coords,
+			    float[] colors, float[] normals,
+			    float[][] texCoords) {
 
-	if ((vFormat & GeometryArray.NORMALS) != 0) {
-	    if (geometryArrays[0] instanceof IndexedGeometryArrayRetained){
-		count = geometryArrays[0].getNumNormalCount();
-	    } else {
-		count = geometryArrays[0].validVertexCount;
+	int i, k, vFormat, count;
+	int texCoordSetCount = 0;
+	float coord[] = new float[3], color[] = new float[4],
+	    normal[] = new float[3], texCoord[] = new float[3];
+
+	vFormat = geometryArrays[0].vertexFormat;
+	texCoordSetCount = geometryArrays[0].getTexCoordSetCount();
+
+	int vc = 0, nc = 0, cc = 0, n = 0;
+
+	// If by copy, then ...
+	if ((vFormat & GeometryArray.BY_REFERENCE) == 0) {
+	    vc = 0; nc = 0; cc = 0;
+	    int initialVertex = 0;
+	    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+		initialVertex = 0;
+		count =  geometryArrays[j].getNumCoordCount();
+	    }
+	    else {
+		initialVertex = geometryArrays[j].getInitialVertexIndex();
+		count = geometryArrays[j].validVertexCount;
 	    }
-	    for (i=0; i < count; i++) {
-		Mnormal[nc++] = Mnormal[nc++] = Mnormal[nc++] = 0.0f;
+	    int endVertex = initialVertex + count;
+	    for (i=initialVertex; i< endVertex; i++) {
+		geometryArrays[j].getCoordinate(i, coord);
+		coords[vc++] += coord[0]*w;
+		coords[vc++] += coord[1]*w;
+		coords[vc++] += coord[2]*w;
 	    }
-	}
 
-	if ((vFormat & GeometryArray.TEXTURE_COORDINATE) != 0) {
-	    for (k = 0; k < texCoordSetCount; k++) {
-		if (geometryArrays[0] instanceof IndexedGeometryArrayRetained){
-		    count = geometryArrays[0].getNumTexCoordCount(k);
-		} else {
-		    count = geometryArrays[0].validVertexCount;
+	    if ((vFormat & GeometryArray.COLOR) != 0) {
+		if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+		    count =  geometryArrays[j].getNumColorCount();
 		}
-		int tcount = 0;
-		for (i=0; i < count; i++) {
-		    MtexCoord[k][tcount++] = MtexCoord[k][tcount++] = 0.0f;
-		    if ((vFormat & GeometryArray.TEXTURE_COORDINATE_3) != 0) {
-			MtexCoord[k][tcount++] = 0.0f;
-		    } else if ((vFormat & GeometryArray.TEXTURE_COORDINATE_4) != 0) {
-			MtexCoord[k][tcount++] = 0.0f;
-			MtexCoord[k][tcount++] = 0.0f;
-		    }
+		endVertex = initialVertex + count;
+		for (i=initialVertex; i<  endVertex; i++) {
+		    geometryArrays[j].getColor(i, color);
+		    colors[cc++] += color[0]*w;
+		    colors[cc++] += color[1]*w;
+		    colors[cc++] += color[2]*w;
+		    if ((vFormat & GeometryArray.WITH_ALPHA) != 0)
+			colors[cc++] += color[3]*w;
+		}
+	    }
+	    if ((vFormat & GeometryArray.NORMALS) != 0) {
+		if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+		    count =  geometryArrays[j].getNumNormalCount();
+		}
+		endVertex = initialVertex + count;
+		for (i=initialVertex; i<  endVertex; i++) {
+		    geometryArrays[j].getNormal(i, normal);
+		    normals[nc++] += normal[0]*w;
+		    normals[nc++] += normal[1]*w;
+		    normals[nc++] += normal[2]*w;
 		}
 	    }
-	}
-	// If by copy, then ...
-	if ((vFormat & GeometryArray.BY_REFERENCE) == 0) {
-	    count = 0;
-	    for (j=0;j < numGeometryArrays;j++) {
-		double w = weights[j];
-		if (w != 0) {
-		    vc = 0; nc = 0; cc = 0;
-		    int initialVertex = 0;
-		    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-			initialVertex = 0;
-			count =  geometryArrays[j].getNumCoordCount();
-		    }
-		    else {
-			initialVertex = geometryArrays[j].getInitialVertexIndex();
-			count = geometryArrays[j].validVertexCount;
-		    }
-		    int endVertex = initialVertex + count;
-		    for (i=initialVertex; i< endVertex; i++) {
-			geometryArrays[j].getCoordinate(i, coord);
-			Mcoord[vc++] += coord[0]*w;
-			Mcoord[vc++] += coord[1]*w;
-			Mcoord[vc++] += coord[2]*w;
-		    }
 
-		    if ((vFormat & GeometryArray.COLOR) != 0) {
-			if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-			    count =  geometryArrays[j].getNumColorCount();
-			}
-			endVertex = initialVertex + count;
-			for (i=initialVertex; i<  endVertex; i++) {
-			    geometryArrays[j].getColor(i, color);
-			    Mcolor[cc++] += color[0]*w;
-			    Mcolor[cc++] += color[1]*w;
-			    Mcolor[cc++] += color[2]*w;
-			    if ((vFormat & GeometryArray.WITH_ALPHA) != 0)
-				Mcolor[cc++] += color[3]*w;
-			}
+	    if ((vFormat & GeometryArray.TEXTURE_COORDINATE) != 0) {
+		for (k = 0; k < texCoordSetCount; k++) {
+		    int tcount = 0;
+		    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+			count =  geometryArrays[j].getNumTexCoordCount(k);
 		    }
-		    if ((vFormat & GeometryArray.NORMALS) != 0) {
-			if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-			    count =  geometryArrays[j].getNumNormalCount();
-			}
-			endVertex = initialVertex + count;
-			for (i=initialVertex; i<  endVertex; i++) {
-			    geometryArrays[j].getNormal(i, normal);
-			    Mnormal[nc++] += normal[0]*w;
-			    Mnormal[nc++] += normal[1]*w;
-			    Mnormal[nc++] += normal[2]*w;
-			}
-		    }
-
-		    if ((vFormat & GeometryArray.TEXTURE_COORDINATE) != 0) {
-			for (k = 0; k < texCoordSetCount; k++) {
-			    int tcount = 0;
-			    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-				count =  geometryArrays[j].getNumTexCoordCount(i);
-			    }
-			    endVertex = initialVertex + count;
-			    for (i=initialVertex; i<  endVertex; i++) {
-				geometryArrays[j].getTextureCoordinate(k, i, texCoord);
-				MtexCoord[k][tcount++] += texCoord[0]*w;
-				MtexCoord[k][tcount++] += texCoord[1]*w;
-				if ((vFormat & GeometryArray.TEXTURE_COORDINATE_3) != 0) {
-				    MtexCoord[k][tcount++] += texCoord[2]*w;
-				} else if ((vFormat & GeometryArray.TEXTURE_COORDINATE_4) != 0) {
-				    MtexCoord[k][tcount++] += texCoord[2]*w;
-				    MtexCoord[k][tcount++] += texCoord[3]*w;
-				}
-			    }
+		    endVertex = initialVertex + count;
+		    for (i=initialVertex; i<  endVertex; i++) {
+			geometryArrays[j].getTextureCoordinate(k, i, texCoord);
+			texCoords[k][tcount++] += texCoord[0]*w;
+			texCoords[k][tcount++] += texCoord[1]*w;
+			if ((vFormat & GeometryArray.TEXTURE_COORDINATE_3) != 0) {
+			    texCoords[k][tcount++] += texCoord[2]*w;
+			} else if ((vFormat & GeometryArray.TEXTURE_COORDINATE_4) != 0) {
+			    texCoords[k][tcount++] += texCoord[2]*w;
+			    texCoords[k][tcount++] += texCoord[3]*w;
 			}
 		    }
 		}
@@ -877,336 +865,307 @@ class MorphRetained extends LeafRetained implements GeometryUpdater {
 		int voffset = geometryArrays[0].coordinateOffset();
 		int offset = 0;
 
-		int initialVertex = 0;
-		for (j=0;j < numGeometryArrays;j++) {
-		    double w = weights[j];
-		    if (w != 0) {
-			vc = 0; nc = 0; cc = 0; n = 0;
-			vdata = geometryArrays[j].getInterleavedVertices();
-			if ((vFormat & GeometryArray.TEXTURE_COORDINATE) != 0) {
-			    for (k = 0; k < texCoordSetCount; k++) {
-				if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-				    tIndex = 0;
-				    count =  geometryArrays[j].getNumCoordCount();
-				}
-				else {
-				    tIndex = geometryArrays[j].getInitialVertexIndex();
-				    count = geometryArrays[j].validVertexCount;
-				}
-				offset = (tIndex * stride)+k*tstride;
-				int tcount = 0;
-				for (i = 0; i < count; i++, offset += stride) {
-				    MtexCoord[k][tcount++] += vdata[offset] * w;
-				    MtexCoord[k][tcount++] += vdata[offset+1] * w;
-				    if ((vFormat & GeometryArray.TEXTURE_COORDINATE_3) != 0) {
-					MtexCoord[k][tcount++] += vdata[offset+2]*w;
-				    } else if ((vFormat & GeometryArray.TEXTURE_COORDINATE_4) != 0) {
-					MtexCoord[k][tcount++] += vdata[offset+2]*w;
-					MtexCoord[k][tcount++] += vdata[offset+3]*w;
-				    }
-				}
-			    }
-
-			}
-			if ((vFormat & GeometryArray.COLOR) != 0) {
-			    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-				cIndex = 0;
-				count =  geometryArrays[j].getNumCoordCount();
-			    }
-			    else {
-				cIndex = geometryArrays[j].getInitialVertexIndex();
-				count = geometryArrays[j].validVertexCount;
-			    }
-			    offset = (cIndex * stride)+coffset;
-			    for (i = 0; i < count; i++, offset += stride) {
-				Mcolor[cc++] += vdata[offset]*w;
-				Mcolor[cc++] += vdata[offset+1]*w;
-				Mcolor[cc++] += vdata[offset+2]*w;
-				if ((vFormat & GeometryArray.WITH_ALPHA)!= 0)
-				    Mcolor[cc++] += vdata[offset+3]*w;
-
-			    }
-			}
-
-			if ((vFormat & GeometryArray.NORMALS) != 0) {
-			    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-				nIndex = 0;
-				count =  geometryArrays[j].getNumCoordCount();
-			    }
-			    else {
-				nIndex = geometryArrays[j].getInitialVertexIndex();
-				count = geometryArrays[j].validVertexCount;
-			    }
-			    offset = (nIndex * stride)+noffset;
-			    for (i = 0; i < count; i++, offset += stride) {
-				Mnormal[nc++] += vdata[offset]*w;
-				Mnormal[nc++] += vdata[offset+1]*w;
-				Mnormal[nc++] += vdata[offset+2]*w;
-			    }
-			}
+		vc = 0; nc = 0; cc = 0; n = 0;
+		vdata = geometryArrays[j].getInterleavedVertices();
+		if ((vFormat & GeometryArray.TEXTURE_COORDINATE) != 0) {
+		    for (k = 0; k < texCoordSetCount; k++) {
 			if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-			    vIndex = 0;
+			    tIndex = 0;
 			    count =  geometryArrays[j].getNumCoordCount();
 			}
 			else {
-			    vIndex = geometryArrays[j].getInitialVertexIndex();
+			    tIndex = geometryArrays[j].getInitialVertexIndex();
 			    count = geometryArrays[j].validVertexCount;
 			}
-			offset = (vIndex * stride)+voffset;
+			offset = (tIndex * stride)+k*tstride;
+			int tcount = 0;
 			for (i = 0; i < count; i++, offset += stride) {
-			    Mcoord[vc++] += vdata[offset]*w;
-			    Mcoord[vc++] += vdata[offset+1]*w;
-			    Mcoord[vc++] += vdata[offset+2]*w;
-
+			    texCoords[k][tcount++] += vdata[offset] * w;
+			    texCoords[k][tcount++] += vdata[offset+1] * w;
+			    if ((vFormat & GeometryArray.TEXTURE_COORDINATE_3) != 0) {
+				texCoords[k][tcount++] += vdata[offset+2]*w;
+			    } else if ((vFormat & GeometryArray.TEXTURE_COORDINATE_4) != 0) {
+				texCoords[k][tcount++] += vdata[offset+2]*w;
+				texCoords[k][tcount++] += vdata[offset+3]*w;
+			    }
 			}
 		    }
+
+		}
+		if ((vFormat & GeometryArray.COLOR) != 0) {
+		    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+			cIndex = 0;
+			count =  geometryArrays[j].getNumCoordCount();
+		    }
+		    else {
+			cIndex = geometryArrays[j].getInitialVertexIndex();
+			count = geometryArrays[j].validVertexCount;
+		    }
+		    offset = (cIndex * stride)+coffset;
+		    for (i = 0; i < count; i++, offset += stride) {
+			colors[cc++] += vdata[offset]*w;
+			colors[cc++] += vdata[offset+1]*w;
+			colors[cc++] += vdata[offset+2]*w;
+			if ((vFormat & GeometryArray.WITH_ALPHA)!= 0)
+			    colors[cc++] += vdata[offset+3]*w;
+
+		    }
+		}
+
+		if ((vFormat & GeometryArray.NORMALS) != 0) {
+		    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+			nIndex = 0;
+			count =  geometryArrays[j].getNumCoordCount();
+		    }
+		    else {
+			nIndex = geometryArrays[j].getInitialVertexIndex();
+			count = geometryArrays[j].validVertexCount;
+		    }
+		    offset = (nIndex * stride)+noffset;
+		    for (i = 0; i < count; i++, offset += stride) {
+			normals[nc++] += vdata[offset]*w;
+			normals[nc++] += vdata[offset+1]*w;
+			normals[nc++] += vdata[offset+2]*w;
+		    }
+		}
+		if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+		    vIndex = 0;
+		    count =  geometryArrays[j].getNumCoordCount();
+		}
+		else {
+		    vIndex = geometryArrays[j].getInitialVertexIndex();
+		    count = geometryArrays[j].validVertexCount;
+		}
+		offset = (vIndex * stride)+voffset;
+		for (i = 0; i < count; i++, offset += stride) {
+		    coords[vc++] += vdata[offset]*w;
+		    coords[vc++] += vdata[offset+1]*w;
+		    coords[vc++] += vdata[offset+2]*w;
+
 		}
 	    }
 	    else {
 		float byteToFloatScale = 1.0f/255.0f;
-		for (j=0;j < numGeometryArrays;j++) {
-		    double w = weights[j];
-		    if (w != 0) {
-			if ((vFormat & GeometryArray.TEXTURE_COORDINATE) != 0) {
-			    switch ((geometryArrays[j].vertexType & GeometryArrayRetained.TEXCOORD_DEFINED)) {
-			    case GeometryArrayRetained.TF:
-				for (k = 0; k < texCoordSetCount; k++) {
-				    float[] tf = geometryArrays[j].getTexCoordRefFloat(k);
-				    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-					tIndex = 0;
-					count =  geometryArrays[j].getNumTexCoordCount(k);
-				    }
-				    else {
-					tIndex = geometryArrays[j].getInitialTexCoordIndex(k);
-					count =  geometryArrays[j].validVertexCount;
-				    }
-				    tIndex *= tstride;
-				    int tcount = 0;
-				    for (i=0; i< count; i++) {
-					MtexCoord[k][tcount++] += tf[tIndex++]*w;
-					MtexCoord[k][tcount++] += tf[tIndex++]*w;
-					if ((vFormat & GeometryArray.TEXTURE_COORDINATE_3) != 0)
-					    MtexCoord[k][tcount++] += tf[tIndex++]*w;
-				    }
-				}
-				break;
-			    case GeometryArrayRetained.T2F:
-				for (k = 0; k < texCoordSetCount; k++) {
-				    int tcount = 0;
-				    float[] tf = geometryArrays[j].getTexCoordRefFloat(k);
-				    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-					tIndex = 0;
-					count =  geometryArrays[j].getNumTexCoordCount(k);
-				    }
-				    else {
-					tIndex = geometryArrays[j].getInitialTexCoordIndex(k);
-					count =  geometryArrays[j].validVertexCount;
-				    }
-				    TexCoord2f[] t2f = geometryArrays[j].getTexCoordRef2f(k);
-				    for (i=0; i< count; i++, tIndex++) {
-					MtexCoord[k][tcount++] += t2f[tIndex].x*w;
-					MtexCoord[k][tcount++] += t2f[tIndex].y*w;
-				    }
-				}
-				break;
-			    case GeometryArrayRetained.T3F:
-				for (k = 0; k < texCoordSetCount; k++) {
-				    int tcount = 0;
-				    TexCoord3f[] t3f = geometryArrays[j].getTexCoordRef3f(k);
-				    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-					tIndex = 0;
-					count =  geometryArrays[j].getNumTexCoordCount(k);
-				    }
-				    else {
-					tIndex = geometryArrays[j].getInitialTexCoordIndex(k);
-					count =  geometryArrays[j].validVertexCount;
-				    }
-				    for (i=0; i< count; i++, tIndex++) {
-					MtexCoord[k][tcount++] += t3f[tIndex].x*w;
-					MtexCoord[k][tcount++] += t3f[tIndex].y*w;
-					MtexCoord[k][tcount++] += t3f[tIndex].z*w;
-				    }
-				}
-				break;
-
-			    }
-			}
-			if ((vFormat & GeometryArray.COLOR) != 0) {
-			    double val = byteToFloatScale * w;
+		if ((vFormat & GeometryArray.TEXTURE_COORDINATE) != 0) {
+		    switch ((geometryArrays[j].vertexType & GeometryArrayRetained.TEXCOORD_DEFINED)) {
+		    case GeometryArrayRetained.TF:
+			for (k = 0; k < texCoordSetCount; k++) {
+			    float[] tf = geometryArrays[j].getTexCoordRefFloat(k);
 			    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-				cIndex = 0;
-				count =  geometryArrays[j].getNumColorCount();
+				tIndex = 0;
+				count =  geometryArrays[j].getNumTexCoordCount(k);
 			    }
 			    else {
-				cIndex = geometryArrays[j].getInitialColorIndex();
+				tIndex = geometryArrays[j].getInitialTexCoordIndex(k);
 				count =  geometryArrays[j].validVertexCount;
 			    }
-
-			    switch ((geometryArrays[j].vertexType & GeometryArrayRetained.COLOR_DEFINED)) {
-			    case GeometryArrayRetained.CF:
-				float[] cf = geometryArrays[j].getColorRefFloat();
-				cc = 0;
-				cIndex *= cstride;
-				for (i=0; i< count; i++) {
-				    Mcolor[cc++] += cf[cIndex++]*w;
-				    Mcolor[cc++] += cf[cIndex++]*w;
-				    Mcolor[cc++] += cf[cIndex++]*w;
-				    if ((vFormat & GeometryArray.WITH_ALPHA)!= 0)
-					Mcolor[cc++] += cf[cIndex++]*w;
-				}
-				break;
-			    case GeometryArrayRetained.CUB:
-				byte[] cub = geometryArrays[j].getColorRefByte();
-				cc = 0;
-				cIndex *= cstride;
-				for (i=0; i< count; i++) {
-				    Mcolor[cc++] += (cub[cIndex++] & 0xff) * val;
-				    Mcolor[cc++] += (cub[cIndex++] & 0xff) *val;
-				    Mcolor[cc++] += (cub[cIndex++] & 0xff) *val;
-				    if ((vFormat & GeometryArray.WITH_ALPHA)!= 0)
-					Mcolor[cc++] += (cub[cIndex++] & 0xff) *val;
-				}
-
-				break;
-			    case GeometryArrayRetained.C3F:
-				Color3f[] c3f = geometryArrays[j].getColorRef3f();
-				cc = 0;
-				for (i=0; i< count; i++, cIndex++) {
-				    Mcolor[cc++] += c3f[cIndex].x * w;
-				    Mcolor[cc++] += c3f[cIndex].y * w;
-				    Mcolor[cc++] += c3f[cIndex].z * w;
-				}
-				break;
-			    case GeometryArrayRetained.C4F:
-				Color4f[] c4f = geometryArrays[j].getColorRef4f();
-				cc = 0;
-				for (i=0; i< count; i++, cIndex++) {
-				    Mcolor[cc++] += c4f[cIndex].x * w;
-				    Mcolor[cc++] += c4f[cIndex].y * w;
-				    Mcolor[cc++] += c4f[cIndex].z * w;
-				    Mcolor[cc++] += c4f[cIndex].w * w;
-				}
-				break;
-			    case GeometryArrayRetained.C3UB:
-				Color3b[] c3b = geometryArrays[j].getColorRef3b();
-				cc = 0;
-				for (i=0; i< count; i++, cIndex++) {
-				    Mcolor[cc++] += (c3b[cIndex].x  & 0xff)* val;
-				    Mcolor[cc++] += (c3b[cIndex].y  & 0xff) * val;
-				    Mcolor[cc++] += (c3b[cIndex].z & 0xff) * val;
-				}
-				break;
-			    case GeometryArrayRetained.C4UB:
-				Color4b[] c4b = geometryArrays[j].getColorRef4b();
-				cc = 0;
-				for (i=0; i< count; i++, cIndex++) {
-				    Mcolor[cc++] += (c4b[cIndex].x  & 0xff)* val;
-				    Mcolor[cc++] += (c4b[cIndex].y  & 0xff) * val;
-				    Mcolor[cc++] += (c4b[cIndex].z & 0xff) * val;
-				    Mcolor[cc++] += (c4b[cIndex].w & 0xff) * val;
-				}
-				break;
-
+			    tIndex *= tstride;
+			    int tcount = 0;
+			    for (i=0; i< count; i++) {
+				texCoords[k][tcount++] += tf[tIndex++]*w;
+				texCoords[k][tcount++] += tf[tIndex++]*w;
+				if ((vFormat & GeometryArray.TEXTURE_COORDINATE_3) != 0)
+				    texCoords[k][tcount++] += tf[tIndex++]*w;
 			    }
 			}
-			if ((vFormat & GeometryArray.NORMALS) != 0) {
-			    nc = 0;
+			break;
+		    case GeometryArrayRetained.T2F:
+			for (k = 0; k < texCoordSetCount; k++) {
+			    int tcount = 0;
+			    float[] tf = geometryArrays[j].getTexCoordRefFloat(k);
 			    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-				nIndex = 0;
-				count =  geometryArrays[j].getNumNormalCount();
+				tIndex = 0;
+				count =  geometryArrays[j].getNumTexCoordCount(k);
 			    }
 			    else {
-				nIndex = geometryArrays[j].getInitialNormalIndex();
+				tIndex = geometryArrays[j].getInitialTexCoordIndex(k);
 				count =  geometryArrays[j].validVertexCount;
 			    }
-			    switch ((geometryArrays[j].vertexType & GeometryArrayRetained.NORMAL_DEFINED)) {
-			    case GeometryArrayRetained.NF:
-				float[] nf = geometryArrays[j].getNormalRefFloat();
-				nIndex *= 3;
-				for (i=0; i< count; i++) {
-				    Mnormal[nc++] += nf[nIndex++]*w;
-				    Mnormal[nc++] += nf[nIndex++]*w;
-				    Mnormal[nc++] += nf[nIndex++]*w;
-				}
-				break;
-			    case GeometryArrayRetained.N3F:
-				Vector3f[] n3f = geometryArrays[j].getNormalRef3f();
-				for (i=0; i< count; i++, nIndex++) {
-				    Mnormal[nc++] += n3f[nIndex].x*w;
-				    Mnormal[nc++] += n3f[nIndex].y*w;
-				    Mnormal[nc++] += n3f[nIndex].z*w;
-				}
-				break;
+			    TexCoord2f[] t2f = geometryArrays[j].getTexCoordRef2f(k);
+			    for (i=0; i< count; i++, tIndex++) {
+				texCoords[k][tcount++] += t2f[tIndex].x*w;
+				texCoords[k][tcount++] += t2f[tIndex].y*w;
 			    }
 			}
-			// Handle vertices ..
-			vc = 0;
-			if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
-			    vIndex = 0;
-			    count =  geometryArrays[j].getNumCoordCount();
-			}
-			else {
-			    vIndex = geometryArrays[j].getInitialCoordIndex();
-			    count =  geometryArrays[j].validVertexCount;
-			}
-			switch ((geometryArrays[j].vertexType & GeometryArrayRetained.VERTEX_DEFINED)) {
-			case GeometryArrayRetained.PF:
-			    float[] pf = geometryArrays[j].getCoordRefFloat();
-			    vIndex *= 3;
-			    for (i=0; i< count; i++) {
-				Mcoord[vc++] += pf[vIndex++]*w;
-				Mcoord[vc++] += pf[vIndex++]*w;
-				Mcoord[vc++] += pf[vIndex++]*w;
-			    }
-			    break;
-			case GeometryArrayRetained.PD:
-			    double[] pd = geometryArrays[j].getCoordRefDouble();
-			    vIndex *= 3;
-			    for (i=0; i< count; i++) {
-				Mcoord[vc++] += (float)pd[vIndex++]*w;
-				Mcoord[vc++] += (float)pd[vIndex++]*w;
-				Mcoord[vc++] += (float)pd[vIndex++]*w;
+			break;
+		    case GeometryArrayRetained.T3F:
+			for (k = 0; k < texCoordSetCount; k++) {
+			    int tcount = 0;
+			    TexCoord3f[] t3f = geometryArrays[j].getTexCoordRef3f(k);
+			    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+				tIndex = 0;
+				count =  geometryArrays[j].getNumTexCoordCount(k);
 			    }
-			    break;
-			case GeometryArrayRetained.P3F:
-			    Point3f[] p3f = geometryArrays[j].getCoordRef3f();
-			    for (i=0; i< count; i++, vIndex++) {
-				Mcoord[vc++] += p3f[vIndex].x*w;
-				Mcoord[vc++] += p3f[vIndex].y*w;
-				Mcoord[vc++] += p3f[vIndex].z*w;
+			    else {
+				tIndex = geometryArrays[j].getInitialTexCoordIndex(k);
+				count =  geometryArrays[j].validVertexCount;
 			    }
-			    break;
-			case GeometryArrayRetained.P3D:
-			    Point3d[] p3d = geometryArrays[j].getCoordRef3d();
-			    for (i=0; i< count; i++, vIndex++) {
-				Mcoord[vc++] += (float)p3d[vIndex].x*w;
-				Mcoord[vc++] += (float)p3d[vIndex].y*w;
-				Mcoord[vc++] += (float)p3d[vIndex].z*w;
+			    for (i=0; i< count; i++, tIndex++) {
+				texCoords[k][tcount++] += t3f[tIndex].x*w;
+				texCoords[k][tcount++] += t3f[tIndex].y*w;
+				texCoords[k][tcount++] += t3f[tIndex].z*w;
 			    }
-			    break;
-
 			}
+			break;
 
 		    }
 		}
-	    }
-	}
+		if ((vFormat & GeometryArray.COLOR) != 0) {
+		    double val = byteToFloatScale * w;
+		    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+			cIndex = 0;
+			count =  geometryArrays[j].getNumColorCount();
+		    }
+		    else {
+			cIndex = geometryArrays[j].getInitialColorIndex();
+			count =  geometryArrays[j].validVertexCount;
+		    }
 
-	GeometryArrayRetained mgaR =
-	    (GeometryArrayRetained)mga.retained;
+		    switch ((geometryArrays[j].vertexType & GeometryArrayRetained.COLOR_DEFINED)) {
+		    case GeometryArrayRetained.CF:
+			float[] cf = geometryArrays[j].getColorRefFloat();
+			cc = 0;
+			cIndex *= cstride;
+			for (i=0; i< count; i++) {
+			    colors[cc++] += cf[cIndex++]*w;
+			    colors[cc++] += cf[cIndex++]*w;
+			    colors[cc++] += cf[cIndex++]*w;
+			    if ((vFormat & GeometryArray.WITH_ALPHA)!= 0)
+				colors[cc++] += cf[cIndex++]*w;
+			}
+			break;
+		    case GeometryArrayRetained.CUB:
+			byte[] cub = geometryArrays[j].getColorRefByte();
+			cc = 0;
+			cIndex *= cstride;
+			for (i=0; i< count; i++) {
+			    colors[cc++] += (cub[cIndex++] & 0xff) * val;
+			    colors[cc++] += (cub[cIndex++] & 0xff) *val;
+			    colors[cc++] += (cub[cIndex++] & 0xff) *val;
+			    if ((vFormat & GeometryArray.WITH_ALPHA)!= 0)
+				colors[cc++] += (cub[cIndex++] & 0xff) *val;
+			}
 
-	mgaR.setCoordRefFloat(Mcoord);
+			break;
+		    case GeometryArrayRetained.C3F:
+			Color3f[] c3f = geometryArrays[j].getColorRef3f();
+			cc = 0;
+			for (i=0; i< count; i++, cIndex++) {
+			    colors[cc++] += c3f[cIndex].x * w;
+			    colors[cc++] += c3f[cIndex].y * w;
+			    colors[cc++] += c3f[cIndex].z * w;
+			}
+			break;
+		    case GeometryArrayRetained.C4F:
+			Color4f[] c4f = geometryArrays[j].getColorRef4f();
+			cc = 0;
+			for (i=0; i< count; i++, cIndex++) {
+			    colors[cc++] += c4f[cIndex].x * w;
+			    colors[cc++] += c4f[cIndex].y * w;
+			    colors[cc++] += c4f[cIndex].z * w;
+			    colors[cc++] += c4f[cIndex].w * w;
+			}
+			break;
+		    case GeometryArrayRetained.C3UB:
+			Color3b[] c3b = geometryArrays[j].getColorRef3b();
+			cc = 0;
+			for (i=0; i< count; i++, cIndex++) {
+			    colors[cc++] += (c3b[cIndex].x  & 0xff)* val;
+			    colors[cc++] += (c3b[cIndex].y  & 0xff) * val;
+			    colors[cc++] += (c3b[cIndex].z & 0xff) * val;
+			}
+			break;
+		    case GeometryArrayRetained.C4UB:
+			Color4b[] c4b = geometryArrays[j].getColorRef4b();
+			cc = 0;
+			for (i=0; i< count; i++, cIndex++) {
+			    colors[cc++] += (c4b[cIndex].x  & 0xff)* val;
+			    colors[cc++] += (c4b[cIndex].y  & 0xff) * val;
+			    colors[cc++] += (c4b[cIndex].z & 0xff) * val;
+			    colors[cc++] += (c4b[cIndex].w & 0xff) * val;
+			}
+			break;
 
-	if ((vFormat & GeometryArray.COLOR) != 0)
-	    mgaR.setColorRefFloat(Mcolor);
+		    }
+		}
+		if ((vFormat & GeometryArray.NORMALS) != 0) {
+		    nc = 0;
+		    if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+			nIndex = 0;
+			count =  geometryArrays[j].getNumNormalCount();
+		    }
+		    else {
+			nIndex = geometryArrays[j].getInitialNormalIndex();
+			count =  geometryArrays[j].validVertexCount;
+		    }
+		    switch ((geometryArrays[j].vertexType & GeometryArrayRetained.NORMAL_DEFINED)) {
+		    case GeometryArrayRetained.NF:
+			float[] nf = geometryArrays[j].getNormalRefFloat();
+			nIndex *= 3;
+			for (i=0; i< count; i++) {
+			    normals[nc++] += nf[nIndex++]*w;
+			    normals[nc++] += nf[nIndex++]*w;
+			    normals[nc++] += nf[nIndex++]*w;
+			}
+			break;
+		    case GeometryArrayRetained.N3F:
+			Vector3f[] n3f = geometryArrays[j].getNormalRef3f();
+			for (i=0; i< count; i++, nIndex++) {
+			    normals[nc++] += n3f[nIndex].x*w;
+			    normals[nc++] += n3f[nIndex].y*w;
+			    normals[nc++] += n3f[nIndex].z*w;
+			}
+			break;
+		    }
+		}
+		// Handle vertices ..
+		vc = 0;
+		if (geometryArrays[j] instanceof IndexedGeometryArrayRetained) {
+		    vIndex = 0;
+		    count =  geometryArrays[j].getNumCoordCount();
+		}
+		else {
+		    vIndex = geometryArrays[j].getInitialCoordIndex();
+		    count =  geometryArrays[j].validVertexCount;
+		}
+		switch ((geometryArrays[j].vertexType & GeometryArrayRetained.VERTEX_DEFINED)) {
+		case GeometryArrayRetained.PF:
+		    float[] pf = geometryArrays[j].getCoordRefFloat();
+		    vIndex *= 3;
+		    for (i=0; i< count; i++) {
+			coords[vc++] += pf[vIndex++]*w;
+			coords[vc++] += pf[vIndex++]*w;
+			coords[vc++] += pf[vIndex++]*w;
+		    }
+		    break;
+		case GeometryArrayRetained.PD:
+		    double[] pd = geometryArrays[j].getCoordRefDouble();
+		    vIndex *= 3;
+		    for (i=0; i< count; i++) {
+			coords[vc++] += (float)pd[vIndex++]*w;
+			coords[vc++] += (float)pd[vIndex++]*w;
+			coords[vc++] += (float)pd[vIndex++]*w;
+		    }
+		    break;
+		case GeometryArrayRetained.P3F:
+		    Point3f[] p3f = geometryArrays[j].getCoordRef3f();
+		    for (i=0; i< count; i++, vIndex++) {
+			coords[vc++] += p3f[vIndex].x*w;
+			coords[vc++] += p3f[vIndex].y*w;
+			coords[vc++] += p3f[vIndex].z*w;
+		    }
+		    break;
+		case GeometryArrayRetained.P3D:
+		    Point3d[] p3d = geometryArrays[j].getCoordRef3d();
+		    for (i=0; i< count; i++, vIndex++) {
+			coords[vc++] += (float)p3d[vIndex].x*w;
+			coords[vc++] += (float)p3d[vIndex].y*w;
+			coords[vc++] += (float)p3d[vIndex].z*w;
+		    }
+		    break;
 
-	// *******Need to normalize normals
-	if ((vFormat & GeometryArray.NORMALS) != 0)
-	    mgaR.setNormalRefFloat(Mnormal);
+		}
 
-	if ((vFormat & GeometryArray.TEXTURE_COORDINATE) != 0) {
-    	    for (k = 0; k < texCoordSetCount; k++) {
-		mgaR.setTexCoordRefFloat(k, MtexCoord[k]);
 	    }
 	}
     }
@@ -1248,6 +1207,11 @@ class MorphRetained extends LeafRetained implements GeometryUpdater {
 	super.doSetLive(s);
 	nodeId = universe.getNodeId();
 
+	// The input GeometryArrays may have changed while not live
+	if (blender != null) {
+	    blender.invalidate();
+	}
+
 
 	for (i = 0; i < numGeometryArrays; i++) {
 	    synchronized(geometryArrays[i].liveStateLock) {
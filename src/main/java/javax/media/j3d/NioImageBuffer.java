@@ -111,6 +111,54 @@ public class NioImageBuffer {
          */
         TYPE_INT_RGB,
 
+        /**
+         * Represents an S3TC (DXT1 / BC1) compressed image with RGB color
+         * components. Each 4x4 block of pixels is stored in 8 bytes.
+         * The data buffer must be a ByteBuffer when using this imageType.
+         *
+         * @since Java 3D 1.6
+         */
+        TYPE_DXT1_RGB,
+
+        /**
+         * Represents an S3TC (DXT1 / BC1) compressed image with RGBA color
+         * components and 1-bit alpha. Each 4x4 block of pixels is stored
+         * in 8 bytes.
+         * The data buffer must be a ByteBuffer when using this imageType.
+         *
+         * @since Java 3D 1.6
+         */
+        TYPE_DXT1_RGBA,
+
+        /**
+         * Represents an S3TC (DXT3 / BC2) compressed image with RGBA color
+         * components and explicit 4-bit alpha. Each 4x4 block of pixels is
+         * stored in 16 bytes.
+         * The data buffer must be a ByteBuffer when using this imageType.
+         *
+         * @since Java 3D 1.6
+         */
+        TYPE_DXT3_RGBA,
+
+        /**
+         * Represents an S3TC (DXT5 / BC3) compressed image with RGBA color
+         * components and interpolated alpha. Each 4x4 block of pixels is
+         * stored in 16 bytes.
+         * The data buffer must be a ByteBuffer when using this imageType.
+         *
+         * @since Java 3D 1.6
+         */
+        TYPE_DXT5_RGBA,
+
+        /**
+         * Represents an ETC1 compressed image with RGB color components.
+         * Each 4x4 block of pixels is stored in 8 bytes.
+         * The data buffer must be a ByteBuffer when using this imageType.
+         *
+         * @since Java 3D 1.6
+         */
+        TYPE_ETC1_RGB,
+
     }
 
 
@@ -142,6 +190,9 @@ public class NioImageBuffer {
     // Number of byte or int elements per pixel
     int elementsPerPixel;
 
+    // Number of bytes per 4x4 block for compressed image types, 0 otherwise
+    int bytesPerBlock;
+
     /**
      * Constructs an NIO image buffer of the specified size and type.
      * A direct NIO buffer of the correct type (ByteBuffer or IntBuffer)
@@ -159,7 +210,7 @@ public class NioImageBuffer {
 
         processParams(width, height, imageType);
 
-        ByteBuffer tmpBuffer = ByteBuffer.allocateDirect(width * height * bytesPerPixel);
+        ByteBuffer tmpBuffer = ByteBuffer.allocateDirect(getNumElements() * bytesPerPixel);
         switch (bufferType) {
             case BYTE_BUFFER:
                 buffer = tmpBuffer;
@@ -195,14 +246,18 @@ public class NioImageBuffer {
      * where <code>numElementsPerPixel</code> is
      * 3 for TYPE_3BYTE_BGR and TYPE_3BYTE_RGB,
      * 4 for TYPE_4BYTE_ABGR and TYPE_4BYTE_RGBA,
-     * and 1 for all other types.
+     * and 1 for all other uncompressed types.
+     * For the compressed types the number of elements must be exactly
+     * <code>((width+3)/4)*((height+3)/4)*numBytesPerBlock</code>, where
+     * <code>numBytesPerBlock</code> is 16 for TYPE_DXT3_RGBA and
+     * TYPE_DXT5_RGBA, and 8 for all other compressed types.
      *
      * @exception IllegalArgumentException if width < 1 or height < 1
      * @exception NullPointerException if imageType or dataBuffer is null
      * @exception IllegalArgumentException if the type of the dataBuffer does
      * not match the imageType
-     * @exception IllegalArgumentException if <code>dataBuffer.limit() !=
-     * width*height*numElementsPerPixel</code>
+     * @exception IllegalArgumentException if <code>dataBuffer.limit()</code>
+     * does not match the number of elements given above
      * @exception IllegalArgumentException if the byte order of the specified
      * dataBuffer does not match the native byte order of the underlying
      * platform.
@@ -257,13 +312,17 @@ public class NioImageBuffer {
      * where <code>numElementsPerPixel</code> is
      * 3 for TYPE_3BYTE_BGR and TYPE_3BYTE_RGB,
      * 4 for TYPE_4BYTE_ABGR and TYPE_4BYTE_RGBA,
-     * and 1 for all other types.
+     * and 1 for all other uncompressed types.
+     * For the compressed types the number of elements must be exactly
+     * <code>((width+3)/4)*((height+3)/4)*numBytesPerBlock</code>, where
+     * <code>numBytesPerBlock</code> is 16 for TYPE_DXT3_RGBA and
+     * TYPE_DXT5_RGBA, and 8 for all other compressed types.
      *
      * @exception NullPointerException if dataBuffer is null
      * @exception IllegalArgumentException if the type of the dataBuffer does
      * not match the imageType
-     * @exception IllegalArgumentException if <code>dataBuffer.limit() !=
-     * width*height*numElementsPerPixel</code>
+     * @exception IllegalArgumentException if <code>dataBuffer.limit()</code>
+     * does not match the number of elements given above
      * @exception IllegalArgumentException if the byte order of the specified
      * dataBuffer does not match the native byte order of the underlying
      * platform.
@@ -273,7 +332,7 @@ public class NioImageBuffer {
             throw new NullPointerException();
         }
 
-        if (dataBuffer.limit() != width*height*elementsPerPixel) {
+        if (dataBuffer.limit() != getNumElements()) {
             throw new IllegalArgumentException(J3dI18N.getString("NioImageBuffer3"));
         }
 
@@ -380,6 +439,23 @@ public class NioImageBuffer {
                 elementsPerPixel = 1;
                 break;
 
+            case TYPE_DXT1_RGB:
+            case TYPE_DXT1_RGBA:
+            case TYPE_ETC1_RGB:
+                bufferType = BufferType.BYTE_BUFFER;
+                bytesPerPixel = 1;
+                elementsPerPixel = 1;
+                bytesPerBlock = 8;
+                break;
+
+            case TYPE_DXT3_RGBA:
+            case TYPE_DXT5_RGBA:
+                bufferType = BufferType.BYTE_BUFFER;
+                bytesPerPixel = 1;
+                elementsPerPixel = 1;
+                bytesPerBlock = 16;
+                break;
+
             default:
                 // We should never get here
                 throw new AssertionError("missing case statement");
@@ -390,4 +466,17 @@ public class NioImageBuffer {
         this.imageType = imageType;
     }
 
+    // Returns true if the image type is one of the block compressed types
+    boolean isCompressed() {
+        return bytesPerBlock != 0;
+    }
+
+    // Returns the number of byte or int elements needed to hold the image
+    int getNumElements() {
+        if (bytesPerBlock != 0) {
+            return ((width + 3) >> 2) * ((height + 3) >> 2) * bytesPerBlock;
+        }
+        return width * height * elementsPerPixel;
+    }
+
 }
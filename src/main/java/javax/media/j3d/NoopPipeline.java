@@ -993,6 +993,8 @@ class NoopPipeline extends Pipeline {
             int width, int height,
             int boundaryWidth,
             int imageDataType, Object data, boolean useAutoMipMap) {
+        checkCompressedImageData(imageFormat, 0, 0, width, height,
+                imageDataType, data);
     }
 
     void updateTexture2DSubImage(Context ctx,
@@ -1001,6 +1003,19 @@ class NoopPipeline extends Pipeline {
             int imgXOffset, int imgYOffset,
             int tilew, int width, int height,
             int imageDataType, Object data, boolean useAutoMipMap) {
+        checkCompressedImageData(imageFormat, xoffset, yoffset, width, height,
+                imageDataType, data);
+    }
+
+    // Validates the block layout of compressed images, which a native
+    // pipeline would hand to the driver unchecked
+    private void checkCompressedImageData(int imageFormat,
+            int xoffset, int yoffset, int width, int height,
+            int imageDataType, Object data) {
+        if (CompressedImageDecoder.isCompressed(imageFormat)) {
+            CompressedImageDecoder.checkImageData(imageFormat,
+                    xoffset, yoffset, width, height, imageDataType, data);
+        }
     }
 
     void updateTexture2DLodRange(Context ctx,
@@ -1114,6 +1129,8 @@ class NoopPipeline extends Pipeline {
             int width, int height,
             int boundaryWidth,
             int imageDataType, Object imageData, boolean useAutoMipMap) {
+        checkCompressedImageData(imageFormat, 0, 0, width, height,
+                imageDataType, imageData);
     }
 
     void updateTextureCubeMapSubImage(Context ctx,
@@ -1122,6 +1139,8 @@ class NoopPipeline extends Pipeline {
             int imgXOffset, int imgYOffset,
             int tilew, int width, int height,
             int imageDataType, Object imageData, boolean useAutoMipMap) {
+        checkCompressedImageData(imageFormat, xoffset, yoffset, width, height,
+                imageDataType, imageData);
     }
 
     void updateTextureCubeMapLodRange(Context ctx,
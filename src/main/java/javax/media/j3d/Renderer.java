@@ -175,6 +175,13 @@ class Renderer extends J3dThread {
     // It is used when sharedCtx = true;
     ArrayList textureIDResourceTable = new ArrayList(5);
 
+    // Tracks the size and use of the textures in textureIDResourceTable
+    // to keep them within the texture memory budget.
+    TextureResidencyManager textureResidency = new TextureResidencyManager();
+
+    // Spreads the texture uploads of the shared context over several frames
+    TextureUploadScheduler textureUploads = new TextureUploadScheduler();
+
     // Instrumentation of Java 3D renderer
     private long lastSwapTime = System.nanoTime();
 
@@ -1000,8 +1007,10 @@ class Renderer extends J3dThread {
 		        // handle free resource
 			if (canvas.useSharedCtx) {
 			    freeResourcesInFreeList(canvas);
+			    beginTextureFrame(canvas);
 			} else {
 			    canvas.freeResourcesInFreeList(canvas.ctx);
+			    canvas.beginTextureFrame(canvas.ctx);
 			}
 
 			if (VirtualUniverse.mc.doDsiRenderLock) {
@@ -1729,6 +1738,7 @@ class Renderer extends J3dThread {
                         Object obj = textureIDResourceTable.get(val);
                         if (obj instanceof TextureRetained) {
                             TextureRetained tex = (TextureRetained) obj;
+                            textureUploads.remove(tex);
                             synchronized (tex.resourceLock) {
                                 tex.resourceCreationMask &= ~rendererBit;
                                 if (tex.resourceCreationMask == 0) {
@@ -1739,6 +1749,7 @@ class Renderer extends J3dThread {
 
                         textureIDResourceTable.set(val, null);
 		    }
+		    textureResidency.remove(val);
 		    Canvas3D.freeTexture(sharedCtx, val);
 		}
 		textureIdResourceFreeList.clear();
@@ -1749,6 +1760,20 @@ class Renderer extends J3dThread {
 	}
     }
 
+    // Starts a new frame for the textures of the shared context: resets
+    // the upload budget and evicts the least recently used textures if
+    // they don't fit in the texture memory budget
+    void beginTextureFrame(Canvas3D cv) {
+	textureUploads.beginFrame();
+	if (textureResidency.beginFrame(cv.view.frameNumber) &&
+	    sharedCtx != null) {
+	    cv.makeCtxCurrent(sharedCtx);
+	    textureResidency.evictTextures(sharedCtx, rendererBit,
+					   textureIDResourceTable);
+	    cv.makeCtxCurrent(cv.ctx);
+	}
+    }
+
     final void addTextureResource(int id, Object obj) {
 	if (textureIDResourceTable.size() <= id) {
 	    for (int i=textureIDResourceTable.size();
@@ -1782,6 +1807,8 @@ class Renderer extends J3dThread {
 	    }
 	}
 	textureIDResourceTable.clear();
+	textureResidency.clear();
+	textureUploads.clear();
 
 	// displayList is free in Canvas.freeContextResources()
     }
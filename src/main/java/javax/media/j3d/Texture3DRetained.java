@@ -242,7 +242,7 @@ class Texture3DRetained extends TextureRetained {
                 format, image.getImageFormatTypeIntValue(false),
                 xoffset, yoffset, z,
                 image.width, image.height,
-                width, height, 1, image.getImageDataTypeIntValue(),
+                width, height, info.depth, image.getImageDataTypeIntValue(),
                 imageData.get());
     }
 
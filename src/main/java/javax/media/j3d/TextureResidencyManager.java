@@ -0,0 +1,283 @@
+/*
+ * Copyright 1998-2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ *
+ */
+
+
+package javax.media.j3d;
+
+import java.util.ArrayList;
+import java.util.logging.Level;
+
+/**
+ * The TextureResidencyManager keeps track of the textures loaded in one
+ * Canvas3D context, or in the shared context of a Renderer.  For every
+ * resident texture it records an estimate of its size in bytes and the
+ * last frame it was used in, in least recently used order.
+ * <p>
+ * When the j3d.textureMemoryBudget property is set, the textures that
+ * weren't used in the previous frame are evicted, least recently used
+ * first, at the start of each frame until the resident bytes fit the
+ * budget.  A texture is evicted the same way a texture on the free list
+ * is freed: its bit in the resourceCreationMask is cleared, its entry in
+ * the resource table is removed and its native texture is freed.  The
+ * next updateNative then reloads it through the usual bindTexture path.
+ * <p>
+ * This object is only used from the Renderer thread.
+ */
+class TextureResidencyManager {
+
+    // A resident texture, linked in LRU order
+    private static class Entry {
+	int id;
+	TextureRetained texture;
+	long bytes;
+	long lastUsedFrame;
+	Entry prev;
+	Entry next;
+    }
+
+    // Entries indexed by texture id
+    private Entry entries[] = new Entry[16];
+
+    // Most and least recently used entries
+    private Entry head = null;
+    private Entry tail = null;
+
+    private long residentBytes = 0L;
+    private long frame = 0L;
+
+    // Event counts since the last frame
+    private long hitCount = 0L;
+    private long missCount = 0L;
+    private long evictCount = 0L;
+
+    // Totals since creation
+    private long totalHits = 0L;
+    private long totalMisses = 0L;
+    private long totalEvictions = 0L;
+
+    TextureResidencyManager() {
+    }
+
+    /**
+     * Records that a texture was loaded, or reloaded, in this context.
+     */
+    void textureLoaded(int id, TextureRetained texture, long bytes) {
+	if (id <= 0) {
+	    return;
+	}
+	if (id >= entries.length) {
+	    Entry newEntries[] = new Entry[Math.max(id + 1, entries.length * 2)];
+	    System.arraycopy(entries, 0, newEntries, 0, entries.length);
+	    entries = newEntries;
+	}
+
+	Entry e = entries[id];
+	if (e == null) {
+	    e = new Entry();
+	    e.id = id;
+	    entries[id] = e;
+	} else {
+	    unlink(e);
+	    residentBytes -= e.bytes;
+	}
+	e.texture = texture;
+	e.bytes = bytes;
+	e.lastUsedFrame = frame;
+	residentBytes += bytes;
+	linkFirst(e);
+	missCount++;
+    }
+
+    /**
+     * Records that a resident texture was used without being reloaded.
+     */
+    void textureUsed(int id) {
+	if (id <= 0 || id >= entries.length) {
+	    return;
+	}
+	Entry e = entries[id];
+	if (e == null) {
+	    return;
+	}
+	e.lastUsedFrame = frame;
+	if (e != head) {
+	    unlink(e);
+	    linkFirst(e);
+	}
+	hitCount++;
+    }
+
+    /**
+     * Updates the size of a resident texture, as the mipmap levels left
+     * by a budgeted reload are loaded.
+     */
+    void textureResized(int id, long bytes) {
+	if (id <= 0 || id >= entries.length) {
+	    return;
+	}
+	Entry e = entries[id];
+	if (e == null) {
+	    return;
+	}
+	residentBytes += bytes - e.bytes;
+	e.bytes = bytes;
+    }
+
+    /**
+     * Forgets a texture whose native resource has been freed.
+     */
+    void remove(int id) {
+	if (id <= 0 || id >= entries.length) {
+	    return;
+	}
+	Entry e = entries[id];
+	if (e != null) {
+	    unlink(e);
+	    residentBytes -= e.bytes;
+	    entries[id] = null;
+	}
+    }
+
+    /**
+     * Forgets all the textures, when the context resources are freed.
+     */
+    void clear() {
+	for (int i = 0; i < entries.length; i++) {
+	    entries[i] = null;
+	}
+	head = tail = null;
+	residentBytes = 0L;
+    }
+
+    /**
+     * Starts a new frame, and returns true if some textures should be
+     * evicted, in which case evictTextures must be called with the
+     * context current.  frameNumber is the frame number of the view
+     * of the canvas; with several views on a shared context the
+     * largest one is used.
+     */
+    boolean beginFrame(long frameNumber) {
+	if (frameNumber > frame) {
+	    frame = frameNumber;
+	}
+
+	if (hitCount != 0 || missCount != 0 || evictCount != 0) {
+	    if (MasterControl.isStatsLoggable(Level.FINE)) {
+		VirtualUniverse.mc.recordCount(
+		    MasterControl.CountType.TEXTURE_RESIDENT_HITS, hitCount);
+		VirtualUniverse.mc.recordCount(
+		    MasterControl.CountType.TEXTURE_RESIDENT_MISSES, missCount);
+		VirtualUniverse.mc.recordCount(
+		    MasterControl.CountType.TEXTURE_EVICTIONS, evictCount);
+	    }
+	    totalHits += hitCount;
+	    totalMisses += missCount;
+	    totalEvictions += evictCount;
+	    hitCount = missCount = evictCount = 0L;
+	}
+
+	long budget = VirtualUniverse.mc.textureMemoryBudget;
+	return budget > 0 && residentBytes > budget &&
+	    tail != null && tail.lastUsedFrame < frame - 1;
+    }
+
+    /**
+     * Evicts the least recently used textures that weren't used in the
+     * previous frame until the resident bytes fit the budget.
+     *
+     * @param ctx the context the textures are loaded in, which must be
+     * current
+     * @param resourceBit the canvasBit or rendererBit of this context
+     * @param textureIDResourceTable the resource table of this context
+     */
+    void evictTextures(Context ctx, int resourceBit,
+		       ArrayList textureIDResourceTable) {
+	long budget = VirtualUniverse.mc.textureMemoryBudget;
+
+	while (residentBytes > budget && tail != null &&
+	       tail.lastUsedFrame < frame - 1) {
+
+	    Entry e = tail;
+	    TextureRetained tex = e.texture;
+	    synchronized (tex.resourceLock) {
+		tex.resourceCreationMask &= ~resourceBit;
+		if (tex.resourceCreationMask == 0) {
+		    tex.freeTextureId(e.id);
+		}
+	    }
+	    if (e.id < textureIDResourceTable.size()) {
+		textureIDResourceTable.set(e.id, null);
+	    }
+	    Canvas3D.freeTexture(ctx, e.id);
+
+	    unlink(e);
+	    residentBytes -= e.bytes;
+	    entries[e.id] = null;
+	    evictCount++;
+	}
+    }
+
+    long getResidentBytes() {
+	return residentBytes;
+    }
+
+    long getHitCount() {
+	return totalHits + hitCount;
+    }
+
+    long getMissCount() {
+	return totalMisses + missCount;
+    }
+
+    long getEvictionCount() {
+	return totalEvictions + evictCount;
+    }
+
+    private void linkFirst(Entry e) {
+	e.prev = null;
+	e.next = head;
+	if (head != null) {
+	    head.prev = e;
+	} else {
+	    tail = e;
+	}
+	head = e;
+    }
+
+    private void unlink(Entry e) {
+	if (e.prev != null) {
+	    e.prev.next = e.next;
+	} else {
+	    head = e.next;
+	}
+	if (e.next != null) {
+	    e.next.prev = e.prev;
+	} else {
+	    tail = e.prev;
+	}
+	e.prev = e.next = null;
+    }
+}
@@ -1606,6 +1606,21 @@ abstract class TextureRetained extends NodeComponentRetained {
 	    mlevel = maximumLevel;
 	}
 
+	TextureUploadScheduler uploads = getUploadScheduler(cv);
+	uploads.remove(this);
+
+	if (uploads.isEnabled() && mlevel > blevel &&
+	    mipmapMode != Texture.BASE_LEVEL &&
+	    (cv.textureExtendedFeatures & Canvas3D.TEXTURE_LOD_RANGE) != 0 &&
+	    !VirtualUniverse.mc.isD3D()) {
+
+	    // Load the coarse levels first, the rest in the next frames
+	    // if they don't fit in the upload budget
+	    updateTextureDimensions(cv);
+	    reloadTextureLevels(cv, uploads, mlevel, blevel);
+	    return;
+	}
+
 	if (blevel != 0) {
 	    // level 0 is not the base level, hence, need
             // to load level 0 explicitly with a null pointer in order
@@ -1614,6 +1629,10 @@ abstract class TextureRetained extends NodeComponentRetained {
 	    updateTextureDimensions(cv);
 	}
 
+	for (int i = blevel; i <= mlevel; i++) {
+	    uploads.uploaded(getLevelMemorySize(i));
+	}
+
 	for (int j = 0; j < numFaces; j++) {
 	    for (int i = blevel; i <= mlevel; i++) {
 
@@ -1633,14 +1652,57 @@ abstract class TextureRetained extends NodeComponentRetained {
     }
 
 
-    // update texture mipmap based on the imageUpdateInfo
+    /**
+     * Loads the levels from level down to blevel, coarsest first, as
+     * long as they fit in the upload budget; the coarsest one is always
+     * loaded.  The finest level loaded is used as the base level until
+     * the remaining levels are loaded by later calls.
+     */
+    void reloadTextureLevels(Canvas3D cv, TextureUploadScheduler uploads,
+			     int level, int blevel) {
+
+	int first = level;
+	for (; level >= blevel; level--) {
+	    long bytes = getLevelMemorySize(level);
+	    if (level < first && !uploads.canUpload(bytes)) {
+		break;
+	    }
+	    for (int j = 0; j < numFaces; j++) {
+                ImageComponentRetained image = images[j][level];
+		if (image != null) {
+                    image.evaluateExtensions(cv);
+		    reloadTextureImage(cv, j, level, image, maxLevels);
+		}
+	    }
+	    uploads.uploaded(bytes);
+	}
+
+	int finest = level + 1;
+	if (finest > blevel) {
+	    uploads.setPendingLevel(this, finest);
+	    updateTextureLodRange(cv.ctx, finest, maximumLevel,
+				  minimumLod, maximumLod);
+	} else {
+	    uploads.remove(this);
+	    updateTextureLOD(cv);
+	}
+    }
+
+
+    // update texture mipmap based on the imageUpdateInfo; returns false
+    // if some updates are left for the next frame because of the upload
+    // budget
 
-    void updateTexture(Canvas3D cv, int resourceBit) {
+    boolean updateTexture(Canvas3D cv, int resourceBit) {
 
 	//System.err.println("updateTexture\n");
 
 	ImageComponentUpdateInfo info;
+	TextureUploadScheduler uploads = getUploadScheduler(cv);
+	boolean budgeted = uploads.isEnabled();
+	boolean complete = true;
 
+	faces:
 	for (int k = 0; k < numFaces; k++) {
 	    for (int i = baseLevel; i <= maximumLevel; i++) {
 		if (imageUpdateInfo[k][i] != null) {
@@ -1657,6 +1719,22 @@ abstract class TextureRetained extends NodeComponentRetained {
 			    if ((info.updateMask & resourceBit) == 0)
 			        continue;
 
+			    // leave this update, and the ones after it, for
+			    // the next frame if it doesn't fit in the budget;
+			    // the previous image is drawn until then
+			    if (budgeted) {
+				long bytes = (info.entireImage ||
+					      images[k][i].isCompressed()) ?
+				    getImageMemorySize(images[k][i]) :
+				    (long) info.width * info.height *
+				    info.depth * getTexelSize();
+				if (!uploads.canUpload(bytes)) {
+				    complete = false;
+				    break faces;
+				}
+				uploads.uploaded(bytes);
+			    }
+
 
 			    // check if all canvases have processed this update
 			    info.updateMask &= ~resourceBit;
@@ -1684,7 +1762,10 @@ abstract class TextureRetained extends NodeComponentRetained {
 			    }
 			}
 
-			if (info.entireImage == true) {
+			// Compressed blocks can't be updated piecemeal,
+			// so reload the whole level
+			if (info.entireImage == true ||
+			    images[k][i].isCompressed()) {
 			    reloadTextureImage(cv, k, i,
 						images[k][i], maxLevels);
 			} else {
@@ -1695,6 +1776,7 @@ abstract class TextureRetained extends NodeComponentRetained {
 		}
 	    }
 	}
+	return complete;
     }
 
 
@@ -1738,6 +1820,76 @@ abstract class TextureRetained extends NodeComponentRetained {
 	    resourceLodUpdatedMask |= cv.screen.renderer.rendererBit;
 	    resourceInReloadList &= ~cv.screen.renderer.rendererBit;
 	}
+	cv.screen.renderer.textureResidency.textureLoaded(objectId, this,
+				getLoadedMemorySize(getUploadScheduler(cv)));
+    }
+
+    /**
+     * Returns an estimate of the texture memory used by the levels
+     * loaded so far: a budgeted reload leaves the finer levels for
+     * the next frames.
+     */
+    long getLoadedMemorySize(TextureUploadScheduler uploads) {
+	int pendingLevel = uploads.getPendingLevel(this);
+	if (pendingLevel < 0) {
+	    return getTextureMemorySize();
+	}
+	long size = 0L;
+	for (int i = pendingLevel; i < maxLevels; i++) {
+	    size += getLevelMemorySize(i);
+	}
+	return size;
+    }
+
+    /**
+     * Returns an estimate of the texture memory used by all the faces
+     * and levels of this texture, assuming RGB textures are padded to
+     * 4 bytes per texel.
+     */
+    long getTextureMemorySize() {
+	long size = 0L;
+	for (int i = 0; i < maxLevels; i++) {
+	    size += getLevelMemorySize(i);
+	}
+	return size;
+    }
+
+    // Estimated texture memory used by one level of all the faces
+    long getLevelMemorySize(int level) {
+	long size = 0L;
+	for (int j = 0; j < numFaces; j++) {
+	    size += getImageMemorySize(images[j][level]);
+	}
+	return size;
+    }
+
+    long getImageMemorySize(ImageComponentRetained image) {
+	if (image == null) {
+	    return 0L;
+	}
+	if (image.isCompressed()) {
+	    return (long) image.imageData.length();
+	}
+	return (long) image.width * image.height *
+	    Math.max(image.depth, 1) * getTexelSize();
+    }
+
+    int getTexelSize() {
+	switch (format) {
+	case Texture.INTENSITY:
+	case Texture.LUMINANCE:
+	case Texture.ALPHA:
+	    return 1;
+	case Texture.LUMINANCE_ALPHA:
+	    return 2;
+	default:
+	    return 4;
+	}
+    }
+
+    private TextureUploadScheduler getUploadScheduler(Canvas3D cv) {
+	return cv.useSharedCtx ?
+	    cv.screen.renderer.textureUploads : cv.textureUploads;
     }
 
 
@@ -1749,6 +1901,8 @@ abstract class TextureRetained extends NodeComponentRetained {
 	boolean reloadTexture = false; // true - reload all levels of texture
 	boolean updateTexture = false; // true - update a portion of texture
 	boolean updateTextureLod = false; // true - update texture Lod info
+	boolean updateTextureLevels = false; // true - load pending levels
+	int pendingLevel = -1;
 
         //System.err.println("Texture/updateNative: " + this + "object= " + objectId + " enable= " + enable);
 
@@ -1777,7 +1931,10 @@ abstract class TextureRetained extends NodeComponentRetained {
 		    updateTextureLod = true;
 		}
 	    }
-	    if (reloadTexture || updateTexture || updateTextureLod) {
+	    pendingLevel = getUploadScheduler(cv).getPendingLevel(this);
+	    updateTextureLevels = !reloadTexture && pendingLevel > 0;
+	    if (reloadTexture || updateTexture || updateTextureLod ||
+		updateTextureLevels) {
 		cv.makeCtxCurrent(cv.screen.renderer.sharedCtx);
 	        bindTexture(cv);
 	    }
@@ -1794,6 +1951,8 @@ abstract class TextureRetained extends NodeComponentRetained {
 		    updateTextureLod = true;
 		}
 	    }
+	    pendingLevel = getUploadScheduler(cv).getPendingLevel(this);
+	    updateTextureLevels = !reloadTexture && pendingLevel > 0;
 	}
 
 
@@ -1851,7 +2010,8 @@ abstract class TextureRetained extends NodeComponentRetained {
                     resourceLodUpdatedMask |= cv.canvasBit;
 	 	}
 	    }
-	} else if (updateTextureLod || updateTexture) {
+	} else if (updateTextureLod || updateTexture || updateTextureLevels) {
+	    boolean textureUpdated = true;
 
 	    if (updateTextureLod) {
 		updateTextureLOD(cv);
@@ -1871,7 +2031,15 @@ abstract class TextureRetained extends NodeComponentRetained {
 
 	        // update texture based on the imageComponent update info
 
-	        updateTexture(cv, resourceBit);
+	        textureUpdated = updateTexture(cv, resourceBit);
+	    }
+
+	    if (updateTextureLevels) {
+
+		// load the mipmap levels left by a budgeted reload
+
+		reloadTextureLevels(cv, getUploadScheduler(cv),
+				    pendingLevel - 1, baseLevel);
 	    }
 
 	    // set the appropriate bit in the resource update masks showing
@@ -1880,16 +2048,34 @@ abstract class TextureRetained extends NodeComponentRetained {
 	    if (cv.useSharedCtx) {
 		cv.makeCtxCurrent(cv.ctx);
                 synchronized(resourceLock) {
-		    resourceUpdatedMask |= cv.screen.renderer.rendererBit;
+		    if (textureUpdated) {
+			resourceUpdatedMask |= cv.screen.renderer.rendererBit;
+		    }
 		    resourceLodUpdatedMask |= cv.screen.renderer.rendererBit;
 	 	}
 	    } else {
                 synchronized(resourceLock) {
-		    resourceUpdatedMask |= cv.canvasBit;
+		    if (textureUpdated) {
+			resourceUpdatedMask |= cv.canvasBit;
+		    }
 		    resourceLodUpdatedMask |= cv.canvasBit;
 	 	}
 	    }
 	}
+
+	// keep track of the texture memory used by this context
+	TextureResidencyManager residency = cv.useSharedCtx ?
+	    cv.screen.renderer.textureResidency : cv.textureResidency;
+	if (reloadTexture) {
+	    residency.textureLoaded(objectId, this,
+				    getLoadedMemorySize(getUploadScheduler(cv)));
+	} else {
+	    residency.textureUsed(objectId);
+	    if (updateTextureLevels) {
+		residency.textureResized(objectId,
+				getLoadedMemorySize(getUploadScheduler(cv)));
+	    }
+	}
     }
 
     synchronized void createMirrorObject() {
@@ -2109,6 +2295,7 @@ abstract class TextureRetained extends NodeComponentRetained {
 	    info.z = arg.z;
 	    info.width = arg.width;
 	    info.height = arg.height;
+	    info.depth = arg.depth;
 	}
 
 	// save the mask which shows the canvases that have created resources
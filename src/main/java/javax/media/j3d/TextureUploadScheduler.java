@@ -0,0 +1,115 @@
+/*
+ * Copyright 1998-2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ *
+ */
+
+
+package javax.media.j3d;
+
+import java.util.HashMap;
+
+/**
+ * The TextureUploadScheduler spreads texture uploads of one Canvas3D
+ * context, or of the shared context of a Renderer, over several frames.
+ * When the j3d.textureUploadBudget property is set, at most that many
+ * kilobytes of texture images are sent per frame, except that one
+ * upload is always allowed so that every frame makes progress.
+ * <p>
+ * A mipmapped texture that doesn't fit is loaded from its coarsest
+ * level up, and drawn with the finest level loaded so far as its base
+ * level until the remaining levels are sent in the following frames.
+ * Image updates that don't fit are left pending, so the previous image
+ * is drawn until the update is sent.  Since uploads happen when a
+ * texture is drawn, the textures of the visible objects go first.
+ * <p>
+ * This object is only used from the Renderer thread.
+ */
+class TextureUploadScheduler {
+
+    // Finest mipmap level loaded so far of the partially loaded
+    // textures, keyed by texture
+    private HashMap pendingLevels = new HashMap();
+
+    private long uploadedBytes = 0L;
+    private int uploadCount = 0;
+
+    TextureUploadScheduler() {
+    }
+
+    /**
+     * Starts a new frame with a full budget.
+     */
+    void beginFrame() {
+	uploadedBytes = 0L;
+	uploadCount = 0;
+    }
+
+    /**
+     * Returns true if uploads are limited by a budget.
+     */
+    boolean isEnabled() {
+	return VirtualUniverse.mc.textureUploadBudget > 0;
+    }
+
+    /**
+     * Returns true if an upload of the given size fits in what is left
+     * of the budget of this frame.  The first upload of a frame always
+     * fits.
+     */
+    boolean canUpload(long bytes) {
+	long budget = VirtualUniverse.mc.textureUploadBudget;
+	return budget <= 0 || uploadCount == 0 ||
+	    uploadedBytes + bytes <= budget;
+    }
+
+    /**
+     * Records an upload of the given size.
+     */
+    void uploaded(long bytes) {
+	uploadedBytes += bytes;
+	uploadCount++;
+    }
+
+    /**
+     * Returns the finest level loaded so far of a partially loaded
+     * texture, or -1 if the texture isn't partially loaded.
+     */
+    int getPendingLevel(TextureRetained texture) {
+	Integer level = (Integer) pendingLevels.get(texture);
+	return (level == null) ? -1 : level.intValue();
+    }
+
+    void setPendingLevel(TextureRetained texture, int level) {
+	pendingLevels.put(texture, new Integer(level));
+    }
+
+    void remove(TextureRetained texture) {
+	pendingLevels.remove(texture);
+    }
+
+    void clear() {
+	pendingLevels.clear();
+	beginFrame();
+    }
+}
@@ -135,6 +135,63 @@ public class TransformGroup extends Group {
 	((TransformGroupRetained)this.retained).setTransform(t1);
     }
 
+    /**
+     * Sets the transform components of several TransformGroup objects.
+     * This is equivalent to calling <code>setTransform</code> on each of
+     * the first <code>count</code> groups with the transform at the same
+     * index, but the changes of all the groups are sent to the
+     * rendering system together.  A behavior that animates many
+     * TransformGroups should use this method once per frame rather than
+     * calling <code>setTransform</code> on each group.
+     *
+     * @param groups the TransformGroup objects to modify
+     * @param transforms the transforms to be copied, one per group
+     * @param count the number of groups to modify
+     * @exception CapabilityNotSetException if appropriate capability is
+     * not set on one of the groups and it is part of live or compiled
+     * scene graph
+     * @exception BadTransformException if one of the transforms is not
+     * affine.  No group is modified in that case.
+     *
+     * @since Java 3D 1.6
+     */
+    public static void setTransforms(TransformGroup groups[],
+				     Transform3D transforms[], int count) {
+	int i;
+
+	for (i = 0; i < count; i++) {
+	    if (groups[i].isLiveOrCompiled())
+		if(!groups[i].getCapability(ALLOW_TRANSFORM_WRITE))
+		    throw new CapabilityNotSetException(J3dI18N.getString("TransformGroup1"));
+
+	    if (!transforms[i].isAffine()) {
+		throw new BadTransformException(J3dI18N.getString("TransformGroup0"));
+	    }
+	}
+
+	J3dMessage messages[] = new J3dMessage[count];
+	int numMessages = 0;
+	try {
+	    for (i = 0; i < count; i++) {
+		J3dMessage m = ((TransformGroupRetained)groups[i].retained).
+		    updateTransform(transforms[i]);
+		if (m != null) {
+		    messages[numMessages++] = m;
+		}
+	    }
+	} finally {
+	    // Send the changes already made even if a group failed
+	    if (numMessages > 0) {
+		if (numMessages < count) {
+		    J3dMessage sent[] = new J3dMessage[numMessages];
+		    System.arraycopy(messages, 0, sent, 0, numMessages);
+		    messages = sent;
+		}
+		VirtualUniverse.mc.processMessage(messages);
+	    }
+	}
+    }
+
   /**
    * Copies the transform component of this TransformGroup into
    * the passed transform object.
@@ -123,8 +123,21 @@ class TransformGroupRetained extends GroupRetained implements TargetsInterface
    * @param t1 the transform to be copied
    */
   void setTransform(Transform3D t1) {
+      J3dMessage tchangeMessage = updateTransform(t1);
+
+      if (tchangeMessage != null) {
+	  VirtualUniverse.mc.processMessage(tchangeMessage);
+      }
+  }
+
+    /**
+     * Sets the transform and returns the message that carries the change
+     * to the structures, or null if this node is not live.  The message
+     * is not sent, which lets TransformGroup.setTransforms send the
+     * messages of many groups at once.
+     */
+  J3dMessage updateTransform(Transform3D t1) {
       J3dMessage tchangeMessage = null;
-      int i, j;
       Transform3D trans = null;
 
       if (staticTransform != null) {
@@ -159,9 +172,9 @@ class TransformGroupRetained extends GroupRetained implements TargetsInterface
 
 	  tchangeMessage.universe = universe;
 	  //System.err.println("TransformGroupRetained --- TRANSFORM_CHANGED " + this);
-	  VirtualUniverse.mc.processMessage(tchangeMessage);
       }
       dirtyBoundsCache();
+      return tchangeMessage;
   }
 
     /**
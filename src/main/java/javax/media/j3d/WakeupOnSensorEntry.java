@@ -84,6 +84,8 @@ public final class WakeupOnSensorEntry extends WakeupCriterion {
      * used to add wakeupCondition to behavior structure.
      */
     void addBehaviorCondition(BehaviorStructure bs) {
+	behav.wakeupArray[BehaviorRetained.WAKEUP_SENSOR_ENTRY_INDEX]++;
+	behav.wakeupMask |= BehaviorRetained.WAKEUP_SENSOR_ENTRY;
 	bs.addSensorEntryCondition(this);
 	if ((behav != null) && behav.enable) {
 	    bs.activeWakeupOnSensorCount++;
@@ -96,6 +98,10 @@ public final class WakeupOnSensorEntry extends WakeupCriterion {
      * used to remove wakeupCondition from behavior structure.
      */
     void removeBehaviorCondition(BehaviorStructure bs) {
+	behav.wakeupArray[BehaviorRetained.WAKEUP_SENSOR_ENTRY_INDEX]--;
+	if (behav.wakeupArray[BehaviorRetained.WAKEUP_SENSOR_ENTRY_INDEX] == 0) {
+	    behav.wakeupMask &= ~BehaviorRetained.WAKEUP_SENSOR_ENTRY;
+	}
 	bs.removeSensorEntryCondition(this);
 	if ((behav != null) && behav.enable) {
 	    bs.activeWakeupOnSensorCount--;
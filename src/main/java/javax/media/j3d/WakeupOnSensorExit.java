@@ -82,6 +82,8 @@ public final class WakeupOnSensorExit extends WakeupCriterion {
      * used to add wakeupCondition to behavior structure.
      */
     void addBehaviorCondition(BehaviorStructure bs) {
+	behav.wakeupArray[BehaviorRetained.WAKEUP_SENSOR_EXIT_INDEX]++;
+	behav.wakeupMask |= BehaviorRetained.WAKEUP_SENSOR_EXIT;
 	bs.addSensorExitCondition(this);
 	if ((behav != null) && behav.enable) {
 	    bs.activeWakeupOnSensorCount++;
@@ -94,6 +96,10 @@ public final class WakeupOnSensorExit extends WakeupCriterion {
      * used to remove wakeupCondition from behavior structure.
      */
     void removeBehaviorCondition(BehaviorStructure bs) {
+	behav.wakeupArray[BehaviorRetained.WAKEUP_SENSOR_EXIT_INDEX]--;
+	if (behav.wakeupArray[BehaviorRetained.WAKEUP_SENSOR_EXIT_INDEX] == 0) {
+	    behav.wakeupMask &= ~BehaviorRetained.WAKEUP_SENSOR_EXIT;
+	}
 	bs.removeSensorExitCondition(this);
 	if ((behav != null) && behav.enable) {
 	    bs.activeWakeupOnSensorCount--;